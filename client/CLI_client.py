@@ -15,11 +15,13 @@ URL_MAPPING = {
 	'get chat by id': ('/api/v1/chat/{chatId}', 'GET', ['chatId']),
 	'send chat': ('/api/v1/chat', 'POST', ['receiverUserId', 'content']),
 	'delete chat': ('/api/v1/chat/{chatId}', 'DELETE', ['chatId']),
-	'list all received chat': ('/api/v1/chat/received', 'GET', ['-nextId', '-size'])
+	'list all received chat': ('/api/v1/chat/received', 'GET', ['-nextId', '-size']),
+	'wait received chat': ('/api/v1/chat/received/poll', 'GET', ['afterId', '-size', '-timeoutMs'])
 }
 
 global_cookie = dict()
 global_header = dict()
+global_refresh_token = None
 # None, 'room list', 'in room'
 status = None
 global_opposite_user_id = None
@@ -40,17 +42,37 @@ COMMAND_LIST = {
 	'logout': 		('로그아웃', None),
 	'exit room': 	('방 나가기', 'list room'),
 	'list all received chat': ('수신한 모든 채팅 메시지 목록', 'list all received chat'),
+	'wait chat':	('새 메시지 기다리기', 'wait received chat'),
 	'quit':			('종료', None)
 }
 
 
+def refresh_token():
+	# access token 이 만료되면 refresh token 으로 다시 발급
+	global global_refresh_token
+	if global_refresh_token is None:
+		return False
+	r = requests.request('POST', URL_PREFIX + '/api/v1/members/refresh', json={'refreshToken': global_refresh_token})
+	if not 200 <= r.status_code < 300:
+		global_refresh_token = None
+		return False
+	js = json.loads(r.text)
+	global_refresh_token = js['refreshToken']
+	global_cookie['jwt-access-token'] = js['token']
+	global_header['Authorization'] = 'Bearer ' + js['token']
+	return True
+
+
 def request_api(url, method = 'GET', payload = None):
 	full_url = URL_PREFIX + url
 	print(f'url={full_url}, method={method}, payload={payload}')
-	if method.upper() == 'GET':
-		r = requests.request(method, full_url, params=payload, cookies=global_cookie, headers=global_header)
-	else:
-		r = requests.request(method, full_url, json=payload, cookies=global_cookie, headers=global_header)
+	for _ in range(2):
+		if method.upper() == 'GET':
+			r = requests.request(method, full_url, params=payload, cookies=global_cookie, headers=global_header)
+		else:
+			r = requests.request(method, full_url, json=payload, cookies=global_cookie, headers=global_header)
+		if r.status_code != 401 or not refresh_token():
+			break
 	if not 200 <= r.status_code < 300:
 		print(f'[{r.status_code}] message={r.text}')
 		return None, dict(r.headers)
@@ -149,7 +171,7 @@ def run_command(command, payload = None, show = True):
 
 
 def pretty_print(js, command):
-	global global_next_chat_id
+	global global_next_chat_id, global_refresh_token
 	print('=' * 60)
 	if command == 'list room':
 		for t in js:
@@ -157,14 +179,16 @@ def pretty_print(js, command):
 			chat_id = t['lastChatId']
 			chat = get_chat_by_id(chat_id)
 			print(f"[1:1 채팅방] {opposite_user_id} 와(과)의 대화 / {chat['senderUserId']} : {chat['content']} (보낸 시간 : {chat['created_at']}, 읽은 시간 : {chat['read_at']})")
-	elif command in ['enter room', 'list chat by room', 'list all received chat']:
+	elif command in ['enter room', 'list chat by room', 'list all received chat', 'wait received chat']:
 		for chat in js['list']:
 			print(f"[id={chat['id']}] {chat['senderUserId']} : {chat['content']} (보낸 시간 : {chat['created_at']}, 읽은 시간 : {chat['read_at']})")
 		global_next_chat_id = js['nextId']
 	elif command == 'list member':
-		for member in js:
+		for member in js['list']:
 			print(f"id={member['id']}, name={member['name']}, status message={member['statusMessage']}")
 	elif command in ['login', 'update member info']:
+		if 'refreshToken' in js:
+			global_refresh_token = js['refreshToken']
 		member = js
 		print(f"id={member['id']}, name={member['name']}, status message={member['statusMessage']}")
 	return
@@ -181,7 +205,7 @@ if __name__ == "__main__":
 		if status is None:
 			candidate = ['signup', 'login', 'quit']
 		elif status == 'room list':
-			candidate = ['list room', 'enter room', 'new room', 'list member', 'update member', 'logout']
+			candidate = ['list room', 'enter room', 'new room', 'wait chat', 'list member', 'update member', 'logout']
 		elif status == 'in room':
 			candidate = ['list chat', 'list more chat', 'send chat', 'delete chat', 'exit room']
 		
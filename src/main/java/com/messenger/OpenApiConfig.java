@@ -5,14 +5,17 @@ import io.swagger.v3.oas.models.OpenAPI;
 import io.swagger.v3.oas.models.info.Info;
 import io.swagger.v3.oas.models.security.SecurityScheme;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 /**
  * Swagger UI : http://localhost:8080/swagger-ui/index.html
  * OpenAPI description : http://localhost:8080/v3/api-docs
+ * springdoc.api-docs.enabled=false (production 프로필) 이면 만들지 않는다
  */
 @Configuration
+@ConditionalOnProperty(name = "springdoc.api-docs.enabled", matchIfMissing = true)
 public class OpenApiConfig {
 
     private static final String VERSION = "v1";
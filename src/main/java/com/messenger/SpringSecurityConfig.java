@@ -4,7 +4,11 @@ import com.messenger.jwt.JwtAccessDeniedHandler;
 import com.messenger.jwt.JwtAuthenticationEntryPoint;
 import com.messenger.jwt.JwtSecurityConfig;
 import com.messenger.jwt.TokenProvider;
+import com.messenger.security.BoundedPasswordEncoder;
+import com.messenger.security.IterationAwarePbkdf2PasswordEncoder;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -12,10 +16,14 @@ import org.springframework.security.config.annotation.method.configuration.Enabl
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.factory.PasswordEncoderFactories;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 
+import java.util.HashMap;
+import java.util.Map;
+
 @Slf4j
 @EnableGlobalMethodSecurity(prePostEnabled = true)
 @EnableWebSecurity(debug = true)
@@ -48,12 +56,21 @@ public class SpringSecurityConfig {
                                 .antMatchers("/").permitAll()
                                 // 로그인, 회원가입
                                 .antMatchers(HttpMethod.POST, "/api/v1/members/login", "/api/v1/members").permitAll()
+                                // 토큰 재발급 (refresh token 으로 인증)
+                                .antMatchers(HttpMethod.POST, "/api/v1/members/refresh").permitAll()
                                 // swagger-ui
                                 .antMatchers(
                                         "/swagger-ui.html", "/swagger-ui/**",
                                         "/v3/api-docs/**", "/swagger-resources/**"
                                 ).permitAll()
 
+                                // actuator
+                                .antMatchers("/actuator/health").permitAll()
+                                .antMatchers("/actuator/**").hasRole("ADMIN")
+
+                                // 검색 색인 재생성
+                                .antMatchers(HttpMethod.POST, "/api/v1/search/rebuild").hasRole("ADMIN")
+
                                 // 모든 1:1 채팅 메시지 조회
                                 .antMatchers(HttpMethod.GET, "/api/v1/chat").hasRole("ADMIN")
                                 .anyRequest().authenticated()
@@ -72,8 +89,36 @@ public class SpringSecurityConfig {
         return http.build();
     }
 
+    /**
+     * 새로 저장하는 비밀번호는 password.encoder.algorithm 으로 해시하고,
+     * 기존 해시는 {id} prefix 에 맞는 encoder 로 검증한다
+     * 알고리즘이나 cost(bcrypt strength, pbkdf2 반복 횟수)가 바뀌면 로그인할 때 upgradeEncoding() 으로 감지해 다시 해시한다 (MemberService.updatePassword)
+     * 평문 비밀번호({noop})는 허용하지 않는다
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return PasswordEncoderFactories.createDelegatingPasswordEncoder();
+    public PasswordEncoder passwordEncoder(
+            @Value("${password.encoder.algorithm:bcrypt}") String algorithm,
+            @Value("${password.encoder.bcrypt.strength:10}") int bcryptStrength,
+            @Value("${password.encoder.pbkdf2.iterations:310000}") int pbkdf2Iterations,
+            @Value("${password.encoder.threads:0}") int threads,
+            @Value("${password.encoder.queue-capacity:200}") int queueCapacity,
+            @Value("${password.encoder.timeout-ms:5000}") long timeoutMillis,
+            MeterRegistry meterRegistry
+    ) {
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put("bcrypt", new BCryptPasswordEncoder(bcryptStrength));
+        // 반복 횟수를 해시에 저장해서 설정이 바뀌면 다시 해시한다
+        encoders.put("pbkdf2", new IterationAwarePbkdf2PasswordEncoder(pbkdf2Iterations));
+        if (!encoders.containsKey(algorithm)) {
+            throw new IllegalArgumentException("unsupported password.encoder.algorithm: " + algorithm);
+        }
+        log.debug("password encoder = {}, bcrypt strength = {}, pbkdf2 iterations = {}",
+                algorithm, bcryptStrength, pbkdf2Iterations);
+
+        DelegatingPasswordEncoder delegatingPasswordEncoder = new DelegatingPasswordEncoder(algorithm, encoders);
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        return new BoundedPasswordEncoder(delegatingPasswordEncoder, threads, queueCapacity, timeoutMillis, meterRegistry);
     }
 }
@@ -0,0 +1,51 @@
+package com.messenger;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.MethodIntrospector;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * 시작 시간 관련 설정
+ *
+ * production 프로필은 spring.main.lazy-initialization=true 로 처음 사용할 때 bean 을 만든다
+ * 단, @Scheduled 작업(보관 정책, 아카이브, 색인 commit, 만료 정리 등)은 bean 이 만들어져야 등록되므로 항상 시작할 때 만든다
+ *
+ * startup.exit-after-ready=true 이면 시작이 끝난 뒤 걸린 시간을 기록하고 종료한다 (./gradlew measureStartup, cdsArchive)
+ */
+@Slf4j
+@Configuration
+public class StartupConfig {
+
+    @Bean
+    public static LazyInitializationExcludeFilter scheduledBeansLazyInitializationExcludeFilter() {
+        return (beanName, beanDefinition, beanType) -> hasScheduledMethod(beanType);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "startup.exit-after-ready", havingValue = "true")
+    public ApplicationListener<ApplicationReadyEvent> exitAfterReadyListener(ApplicationContext applicationContext) {
+        return event -> {
+            log.info("startup time: ready = {} ms, jvm uptime = {} ms",
+                    event.getTimeTaken().toMillis(), ManagementFactory.getRuntimeMXBean().getUptime());
+            System.exit(SpringApplication.exit(applicationContext, () -> 0));
+        };
+    }
+
+    private static boolean hasScheduledMethod(Class<?> beanType) {
+        return !MethodIntrospector.selectMethods(beanType,
+                (MethodIntrospector.MetadataLookup<Boolean>) method ->
+                        AnnotatedElementUtils.hasAnnotation(method, Scheduled.class) ? Boolean.TRUE : null
+        ).isEmpty();
+    }
+}
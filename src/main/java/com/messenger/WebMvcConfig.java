@@ -0,0 +1,55 @@
+package com.messenger;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * JSON 외에 바이너리 형식(CBOR, Smile)으로도 요청/응답할 수 있도록 message converter 추가
+ * 클라이언트가 Accept(또는 Content-Type) 헤더로 형식을 선택한다
+ *   - application/cbor
+ *   - application/x-jackson-smile
+ * 바이너리 형식에서는 시각을 epoch millis 숫자로, null 필드는 생략해서 보낸다
+ */
+@Configuration
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // jackson-dataformat-cbor, smile 이 classpath 에 있으면 Spring MVC 가 기본 converter 를 먼저 등록하므로
+        // 뒤에 추가하면 선택되지 않는다, 기본 converter 자리를 바꿔서 JSON 보다 뒤인 순서는 그대로 둔다
+        replaceOrAdd(converters, MappingJackson2CborHttpMessageConverter.class,
+                new MappingJackson2CborHttpMessageConverter(binaryObjectMapper(Jackson2ObjectMapperBuilder.cbor())));
+        replaceOrAdd(converters, MappingJackson2SmileHttpMessageConverter.class,
+                new MappingJackson2SmileHttpMessageConverter(binaryObjectMapper(Jackson2ObjectMapperBuilder.smile())));
+    }
+
+    private static void replaceOrAdd(List<HttpMessageConverter<?>> converters,
+                                     Class<? extends HttpMessageConverter<?>> type, HttpMessageConverter<?> converter) {
+        boolean replaced = false;
+        for (int i = 0; i < converters.size(); i++) {
+            if (type.isInstance(converters.get(i))) {
+                converters.set(i, converter);
+                replaced = true;
+            }
+        }
+        if (!replaced) {
+            converters.add(converter);
+        }
+    }
+
+    private ObjectMapper binaryObjectMapper(Jackson2ObjectMapperBuilder builder) {
+        return builder
+                .serializationInclusion(JsonInclude.Include.NON_NULL)
+                .featuresToEnable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+    }
+}
@@ -0,0 +1,67 @@
+package com.messenger.blob;
+
+import com.messenger.exception.ErrorCode;
+import com.messenger.exception.MyException;
+import lombok.Value;
+
+/**
+ * HTTP Range 요청의 한 구간 (bytes=first-last, last 포함)
+ * 여러 구간(multipart/byteranges)은 지원하지 않고 전체를 응답한다
+ */
+@Value
+public class ByteRange {
+
+    private static final String PREFIX = "bytes=";
+
+    long first;
+    long last;
+
+    public long length() {
+        return last - first + 1;
+    }
+
+    /**
+     * @param header Range 헤더 값
+     * @param size 파일 크기
+     * @return (Nullable) 요청한 구간, 헤더가 없거나 지원하지 않는 형식이면 null (전체 응답)
+     * @throws MyException 구간이 파일 크기를 벗어난 경우 RANGE_NOT_SATISFIABLE
+     */
+    public static ByteRange parse(String header, long size) {
+        if (header == null || !header.startsWith(PREFIX) || header.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = header.substring(PREFIX.length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+
+        long first;
+        long last;
+        try {
+            if (dash == 0) {
+                // 끝에서부터 n 바이트 (bytes=-n)
+                long suffix = Long.parseLong(spec.substring(1));
+                if (suffix <= 0 || size == 0) {
+                    throw new MyException(ErrorCode.RANGE_NOT_SATISFIABLE);
+                }
+                first = Math.max(0, size - suffix);
+                last = size - 1;
+            } else {
+                first = Long.parseLong(spec.substring(0, dash));
+                String end = spec.substring(dash + 1);
+                last = end.isEmpty() ? size - 1 : Math.min(Long.parseLong(end), size - 1);
+                if (!end.isEmpty() && Long.parseLong(end) < first) {
+                    return null;
+                }
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        if (first >= size) {
+            throw new MyException(ErrorCode.RANGE_NOT_SATISFIABLE);
+        }
+        return new ByteRange(first, last);
+    }
+}
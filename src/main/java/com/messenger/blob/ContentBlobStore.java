@@ -0,0 +1,203 @@
+package com.messenger.blob;
+
+import com.messenger.exception.ErrorCode;
+import com.messenger.exception.MyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * 큰 메시지 본문과 첨부 파일을 저장하는 로컬 디스크 content-addressed 저장소
+ *
+ * 파일 이름은 내용의 SHA-256 (hex 64자) 이고 <dir>/ab/cd/<id> 에 저장한다
+ * - 임시 파일에 다 쓰고 fsync 한 뒤 이름을 바꾸므로 읽는 쪽은 완성된 파일만 본다
+ * - 같은 내용은 한 번만 저장된다 (이미 있으면 새로 쓴 임시 파일을 지운다)
+ * - 저장한 파일은 바뀌지 않으므로 다운로드 응답을 오래 캐시할 수 있다
+ * 같은 내용을 여러 메시지가 참조할 수 있으므로 메시지를 삭제할 때 지우지 않고,
+ * ChatBlobService 가 어떤 메시지도 참조하지 않는 파일을 주기적으로 delete() 한다
+ */
+@Slf4j
+@Component
+public class ContentBlobStore {
+
+    private static final Pattern ID_PATTERN = Pattern.compile("[0-9a-f]{64}");
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // 시작할 때 이보다 오래된 임시 파일은 중단된 업로드로 보고 지운다
+    private static final Duration STALE_TMP_AGE = Duration.ofHours(1);
+
+    private final Path root;
+    private final Path tmpDir;
+    private final long maxSize;
+    private final Counter storedCounter;
+    private final Counter duplicateCounter;
+    private final Counter deletedCounter;
+
+    public ContentBlobStore(@Value("${chat.blob.dir:./data/blobs}") String dir,
+                            @Value("${chat.blob.max-size:26214400}") long maxSize,
+                            MeterRegistry meterRegistry) throws IOException {
+        this.root = Paths.get(dir);
+        this.tmpDir = root.resolve("tmp");
+        this.maxSize = maxSize;
+        Files.createDirectories(tmpDir);
+        deleteStaleTmpFiles();
+
+        this.storedCounter = Counter.builder("chat.blob.stored")
+                .description("새로 저장한 파일 수")
+                .register(meterRegistry);
+        this.duplicateCounter = Counter.builder("chat.blob.duplicates")
+                .description("이미 같은 내용이 있어서 저장하지 않은 파일 수")
+                .register(meterRegistry);
+        this.deletedCounter = Counter.builder("chat.blob.deleted")
+                .description("참조하는 메시지가 없어서 삭제한 파일 수")
+                .register(meterRegistry);
+        log.info("blob store opened: dir={}, maxSize={}", root.toAbsolutePath(), maxSize);
+    }
+
+    /**
+     * 내용을 읽어서 저장 (스트림은 닫지 않는다)
+     * @throws MyException 크기 제한을 넘는 경우 BLOB_TOO_LARGE
+     */
+    public StoredBlob put(InputStream in) {
+        Path tmp = null;
+        try {
+            tmp = Files.createTempFile(tmpDir, "upload-", ".tmp");
+            MessageDigest digest = sha256();
+            long size = 0;
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    size += read;
+                    if (size > maxSize) {
+                        throw new MyException(ErrorCode.BLOB_TOO_LARGE);
+                    }
+                    digest.update(buffer, 0, read);
+                    ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, read);
+                    while (byteBuffer.hasRemaining()) {
+                        channel.write(byteBuffer);
+                    }
+                }
+                channel.force(true);
+            }
+
+            String id = toHex(digest.digest());
+            Path target = resolve(id);
+            if (Files.exists(target)) {
+                duplicateCounter.increment();
+                return new StoredBlob(id, size);
+            }
+            Files.createDirectories(target.getParent());
+            // 같은 내용을 동시에 저장해도 내용이 같으므로 어느 쪽이 남아도 된다
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            tmp = null;
+            storedCounter.increment();
+            log.debug("blob stored: id={}, size={}", id, size);
+            return new StoredBlob(id, size);
+        } catch (IOException e) {
+            log.error("blob store put failed: exception = {}", e.getMessage());
+            throw new MyException(ErrorCode.FAIL_SAVE_BLOB);
+        } finally {
+            if (tmp != null) {
+                deleteQuietly(tmp);
+            }
+        }
+    }
+
+    public StoredBlob put(byte[] content) {
+        return put(new ByteArrayInputStream(content));
+    }
+
+    /**
+     * @param id 내용의 SHA-256 hex
+     * @return (Nullable) 저장된 파일 경로
+     */
+    public Optional<Path> find(String id) {
+        if (!isValidId(id)) {
+            return Optional.empty();
+        }
+        Path path = resolve(id);
+        return Files.isRegularFile(path) ? Optional.of(path) : Optional.empty();
+    }
+
+    /**
+     * 파일 삭제 (없으면 무시)
+     * @param id 내용의 SHA-256 hex
+     */
+    public void delete(String id) {
+        if (!isValidId(id)) {
+            return;
+        }
+        try {
+            if (Files.deleteIfExists(resolve(id))) {
+                deletedCounter.increment();
+                log.debug("blob deleted: id={}", id);
+            }
+        } catch (IOException e) {
+            log.warn("blob delete failed: id={}, exception = {}", id, e.getMessage());
+        }
+    }
+
+    public static boolean isValidId(String id) {
+        return id != null && ID_PATTERN.matcher(id).matches();
+    }
+
+    private Path resolve(String id) {
+        return root.resolve(id.substring(0, 2)).resolve(id.substring(2, 4)).resolve(id);
+    }
+
+    private void deleteStaleTmpFiles() throws IOException {
+        Instant threshold = Instant.now().minus(STALE_TMP_AGE);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(tmpDir)) {
+            for (Path file : files) {
+                if (Files.getLastModifiedTime(file).toInstant().isBefore(threshold)) {
+                    deleteQuietly(file);
+                }
+            }
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("blob tmp file delete failed: path={}, exception = {}", path, e.getMessage());
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+            sb.append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,13 @@
+package com.messenger.blob;
+
+import lombok.Value;
+
+/**
+ * 저장소에 저장한 파일 (id 는 내용의 SHA-256 hex)
+ */
+@Value
+public class StoredBlob {
+
+    String id;
+    long size;
+}
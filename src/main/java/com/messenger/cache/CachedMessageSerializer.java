@@ -0,0 +1,148 @@
+package com.messenger.cache;
+
+import com.messenger.domain.Chat;
+import com.messenger.domain.GroupChat;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+
+/**
+ * OffHeapMessageCache 에 저장하는 메시지 binary 형식
+ *
+ * 필드 순서대로 long 은 8 byte (null 은 Long.MIN_VALUE), 문자열은 [UTF-8 길이 int (null 은 -1)][내용] 이다
+ * Timestamp 는 epoch millis 와 nanos 를 따로 저장해서 DB 에서 읽은 값과 같게 복원한다
+ * 형식을 바꾸면 캐시는 서버 메모리에만 있으므로 재시작하면 사라진다 (이전 형식을 읽을 필요가 없다)
+ */
+public final class CachedMessageSerializer {
+
+    private static final long NULL_LONG = Long.MIN_VALUE;
+
+    private CachedMessageSerializer() {
+    }
+
+    public static byte[] serialize(Chat chat) {
+        byte[] sender = utf8(chat.getSenderUserId());
+        byte[] receiver = utf8(chat.getReceiverUserId());
+        byte[] groupId = utf8(chat.getGroupId());
+        byte[] content = utf8(chat.getContent());
+        byte[] blobId = utf8(chat.getBlobId());
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES * 2 + timestampSize() * 2
+                + stringSize(sender) + stringSize(receiver) + stringSize(groupId) + stringSize(content) + stringSize(blobId));
+        buffer.putLong(chat.getId());
+        putString(buffer, sender);
+        putString(buffer, receiver);
+        putString(buffer, groupId);
+        putString(buffer, content);
+        putTimestamp(buffer, chat.getRead_at());
+        putTimestamp(buffer, chat.getCreated_at());
+        putLong(buffer, chat.getSeq());
+        putString(buffer, blobId);
+        return buffer.array();
+    }
+
+    public static Chat deserializeChat(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return Chat.builder()
+                .id(buffer.getLong())
+                .senderUserId(getString(buffer))
+                .receiverUserId(getString(buffer))
+                .groupId(getString(buffer))
+                .content(getString(buffer))
+                .read_at(getTimestamp(buffer))
+                .created_at(getTimestamp(buffer))
+                .seq(getLong(buffer))
+                .blobId(getString(buffer))
+                .build();
+    }
+
+    public static byte[] serialize(GroupChat chat) {
+        byte[] sender = utf8(chat.getSenderUserId());
+        byte[] content = utf8(chat.getContent());
+        byte[] blobId = utf8(chat.getBlobId());
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES * 3 + timestampSize()
+                + stringSize(sender) + stringSize(content) + stringSize(blobId));
+        buffer.putLong(chat.getId());
+        putString(buffer, sender);
+        putLong(buffer, chat.getRoomId());
+        putString(buffer, content);
+        putTimestamp(buffer, chat.getCreated_at());
+        putLong(buffer, chat.getSeq());
+        putString(buffer, blobId);
+        return buffer.array();
+    }
+
+    public static GroupChat deserializeGroupChat(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return GroupChat.builder()
+                .id(buffer.getLong())
+                .senderUserId(getString(buffer))
+                .roomId(getLong(buffer))
+                .content(getString(buffer))
+                .created_at(getTimestamp(buffer))
+                .seq(getLong(buffer))
+                .blobId(getString(buffer))
+                .build();
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int stringSize(byte[] value) {
+        return Integer.BYTES + (value == null ? 0 : value.length);
+    }
+
+    private static int timestampSize() {
+        return Long.BYTES + Integer.BYTES;
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] value) {
+        if (value == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        buffer.putInt(value.length);
+        buffer.put(value);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static void putLong(ByteBuffer buffer, Long value) {
+        buffer.putLong(value == null ? NULL_LONG : value);
+    }
+
+    private static Long getLong(ByteBuffer buffer) {
+        long value = buffer.getLong();
+        return value == NULL_LONG ? null : value;
+    }
+
+    private static void putTimestamp(ByteBuffer buffer, Timestamp value) {
+        if (value == null) {
+            buffer.putLong(NULL_LONG);
+            buffer.putInt(0);
+            return;
+        }
+        buffer.putLong(value.getTime());
+        buffer.putInt(value.getNanos());
+    }
+
+    private static Timestamp getTimestamp(ByteBuffer buffer) {
+        long millis = buffer.getLong();
+        int nanos = buffer.getInt();
+        if (millis == NULL_LONG) {
+            return null;
+        }
+        Timestamp value = new Timestamp(millis);
+        value.setNanos(nanos);
+        return value;
+    }
+}
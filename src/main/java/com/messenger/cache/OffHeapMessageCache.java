@@ -0,0 +1,387 @@
+package com.messenger.cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 직렬화한 메시지를 JVM heap 밖(direct ByteBuffer)에 두는 LRU cache, key 는 메시지 id (1 이상)
+ *
+ * 메시지 객체(String, Timestamp 여러 개)를 heap 에 오래 두면 old generation 이 커지고 GC 가 길어지므로
+ * 값은 byte 배열로만 저장하고, heap 에는 primitive 배열로 된 색인만 둔다 (메시지 수와 관계없이 객체 수가 일정하다)
+ *
+ * - shard 별로 lock, 메모리 예산, 색인을 따로 가진다 (id 의 hash 로 shard 를 고른다)
+ * - 메모리는 slab(slab-size 의 direct ByteBuffer) 단위로 잡고, slab 을 같은 크기의 slot 으로 나눈다
+ *   slot 크기는 128 ~ 4096 byte 의 size class 이고, 값은 [길이 int][내용] 으로 맞는 가장 작은 class 에 저장한다
+ * - LRU 는 size class 별 이중 연결 리스트(slot 번호 int 배열)이다, 예산을 다 쓰면 같은 class 의 가장 오래된 값을 내보낸다
+ * - 색인은 open addressing (linear probing) hash table 이고, 삭제는 backward shift 로 tombstone 을 남기지 않는다
+ * 무효화와 DB 조회가 겹칠 때 지난 값을 저장하지 않도록, 조회 전에 stamp() 를 받아 두고 put 할 때 비교한다
+ */
+public class OffHeapMessageCache {
+
+    private static final int[] SLOT_SIZES = {128, 256, 512, 1024, 2048, 4096};
+    private static final int LENGTH_SIZE = Integer.BYTES;
+    private static final int CLASS_SHIFT = 28;
+    private static final int SLOT_MASK = (1 << CLASS_SHIFT) - 1;
+
+    public static final int MAX_VALUE_SIZE = SLOT_SIZES[SLOT_SIZES.length - 1] - LENGTH_SIZE;
+
+    private final Shard[] shards;
+    private final AtomicLong invalidations = new AtomicLong();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxBytes slab 으로 잡을 최대 메모리 (byte)
+     * @param slabSize slab 하나의 크기 (byte, 4096 이상)
+     * @param shardCount shard 수
+     */
+    public OffHeapMessageCache(long maxBytes, int slabSize, int shardCount) {
+        if (slabSize < SLOT_SIZES[SLOT_SIZES.length - 1] || shardCount < 1) {
+            throw new IllegalArgumentException("slabSize = " + slabSize + ", shardCount = " + shardCount);
+        }
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(maxBytes / shardCount, slabSize);
+        }
+    }
+
+    /**
+     * DB 조회 전에 받아 두고 put 에 넘긴다, 그 사이에 무효화가 있었으면 put 하지 않는다
+     */
+    public long stamp() {
+        return invalidations.get();
+    }
+
+    /**
+     * @return 저장했으면 true (값이 너무 크거나, stamp 이후 무효화가 있었거나, 공간이 없으면 false)
+     */
+    public boolean put(long key, byte[] value, long stamp) {
+        if (key <= 0) {
+            return false;
+        }
+        return shard(key).put(key, value, stamp);
+    }
+
+    /**
+     * @return (Nullable) 저장된 값의 복사본
+     */
+    public byte[] get(long key) {
+        if (key <= 0) {
+            return null;
+        }
+        return shard(key).get(key);
+    }
+
+    public void invalidate(long key) {
+        // put 과 같은 lock 을 잡기 전에 올려야 조회 중이던 지난 값이 저장되지 않는다
+        invalidations.incrementAndGet();
+        if (key > 0) {
+            shard(key).remove(key);
+        }
+    }
+
+    public long size() {
+        long size = 0;
+        for (Shard shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    /**
+     * slab 으로 잡은 메모리 (byte)
+     */
+    public long allocatedBytes() {
+        long allocated = 0;
+        for (Shard shard : shards) {
+            allocated += shard.allocatedBytes();
+        }
+        return allocated;
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    private Shard shard(long key) {
+        return shards[(int) ((mix(key) >>> 32) % shards.length)];
+    }
+
+    private static long mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    private static int sizeClass(int recordSize) {
+        for (int i = 0; i < SLOT_SIZES.length; i++) {
+            if (recordSize <= SLOT_SIZES[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private final class Shard {
+
+        private final long budget;
+        private final int slabSize;
+        private final SizeClass[] classes = new SizeClass[SLOT_SIZES.length];
+        private long allocated;
+
+        // 색인: keys[i] == 0 이면 빈 칸, handles[i] 는 (size class << 28 | slot)
+        private long[] keys = new long[64];
+        private int[] handles = new int[64];
+        private int count;
+
+        private Shard(long budget, int slabSize) {
+            this.budget = budget;
+            this.slabSize = slabSize;
+            for (int i = 0; i < SLOT_SIZES.length; i++) {
+                classes[i] = new SizeClass(SLOT_SIZES[i], slabSize / SLOT_SIZES[i]);
+            }
+        }
+
+        private synchronized byte[] get(long key) {
+            int index = find(key);
+            if (index < 0) {
+                return null;
+            }
+            int handle = handles[index];
+            SizeClass sizeClass = classes[handle >>> CLASS_SHIFT];
+            int slot = handle & SLOT_MASK;
+            sizeClass.moveToFront(slot);
+            return sizeClass.read(slot);
+        }
+
+        private synchronized boolean put(long key, byte[] value, long stamp) {
+            remove(key);
+            int classIndex = sizeClass(LENGTH_SIZE + value.length);
+            if (classIndex < 0 || invalidations.get() != stamp) {
+                return false;
+            }
+            SizeClass sizeClass = classes[classIndex];
+            int slot = sizeClass.takeFree();
+            if (slot < 0 && allocated + slabSize <= budget) {
+                sizeClass.addSlab(slabSize);
+                allocated += slabSize;
+                slot = sizeClass.takeFree();
+            }
+            if (slot < 0) {
+                // 같은 size class 에서 가장 오래 사용하지 않은 값을 내보낸다
+                slot = sizeClass.tail;
+                if (slot < 0) {
+                    return false;
+                }
+                removeFromIndex(sizeClass.slotKeys[slot]);
+                sizeClass.unlink(slot);
+                evictions.increment();
+            }
+            sizeClass.write(slot, value);
+            sizeClass.slotKeys[slot] = key;
+            sizeClass.linkFirst(slot);
+            insert(key, (classIndex << CLASS_SHIFT) | slot);
+            return true;
+        }
+
+        private synchronized void remove(long key) {
+            int index = find(key);
+            if (index < 0) {
+                return;
+            }
+            int handle = handles[index];
+            removeAt(index);
+            SizeClass sizeClass = classes[handle >>> CLASS_SHIFT];
+            int slot = handle & SLOT_MASK;
+            sizeClass.unlink(slot);
+            sizeClass.free(slot);
+        }
+
+        private synchronized int size() {
+            return count;
+        }
+
+        private synchronized long allocatedBytes() {
+            return allocated;
+        }
+
+        private int home(long key) {
+            return (int) mix(key) & (keys.length - 1);
+        }
+
+        private int find(long key) {
+            int mask = keys.length - 1;
+            for (int i = home(key); ; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return i;
+                }
+                if (keys[i] == 0) {
+                    return -1;
+                }
+            }
+        }
+
+        private void insert(long key, int handle) {
+            // 채우는 비율을 2/3 이하로 유지
+            if ((count + 1) * 3 > keys.length * 2) {
+                resize(keys.length * 2);
+            }
+            int mask = keys.length - 1;
+            int i = home(key);
+            while (keys[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            handles[i] = handle;
+            count++;
+        }
+
+        private void removeFromIndex(long key) {
+            int index = find(key);
+            if (index >= 0) {
+                removeAt(index);
+            }
+        }
+
+        /**
+         * 뒤에 이어진 값 중 원래 위치가 빈 칸보다 앞(순환)인 값을 당겨서 빈 칸을 메운다
+         */
+        private void removeAt(int index) {
+            int mask = keys.length - 1;
+            int hole = index;
+            int i = index;
+            while (true) {
+                i = (i + 1) & mask;
+                if (keys[i] == 0) {
+                    break;
+                }
+                int home = home(keys[i]);
+                boolean between = hole <= i ? (hole < home && home <= i) : (hole < home || home <= i);
+                if (!between) {
+                    keys[hole] = keys[i];
+                    handles[hole] = handles[i];
+                    hole = i;
+                }
+            }
+            keys[hole] = 0;
+            handles[hole] = 0;
+            count--;
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            int[] oldHandles = handles;
+            keys = new long[capacity];
+            handles = new int[capacity];
+            int mask = capacity - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] != 0) {
+                    int i = home(oldKeys[j]);
+                    while (keys[i] != 0) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    handles[i] = oldHandles[j];
+                }
+            }
+        }
+    }
+
+    /**
+     * 같은 크기 slot 들과 LRU 리스트 (head 가 최근, tail 이 가장 오래 사용하지 않은 slot)
+     */
+    private static final class SizeClass {
+
+        private final int slotSize;
+        private final int slotsPerSlab;
+        private final List<ByteBuffer> slabs = new ArrayList<>();
+        private int[] prev = new int[0];
+        private int[] next = new int[0];
+        private long[] slotKeys = new long[0];
+        private int[] freeSlots = new int[0];
+        private int freeCount;
+        private int head = -1;
+        private int tail = -1;
+
+        private SizeClass(int slotSize, int slotsPerSlab) {
+            this.slotSize = slotSize;
+            this.slotsPerSlab = slotsPerSlab;
+        }
+
+        private void addSlab(int slabSize) {
+            int first = slabs.size() * slotsPerSlab;
+            slabs.add(ByteBuffer.allocateDirect(slabSize));
+            int slots = first + slotsPerSlab;
+            prev = Arrays.copyOf(prev, slots);
+            next = Arrays.copyOf(next, slots);
+            slotKeys = Arrays.copyOf(slotKeys, slots);
+            freeSlots = Arrays.copyOf(freeSlots, slots);
+            // 앞 번호 slot 부터 사용하도록 뒤에서부터 넣는다
+            for (int slot = slots - 1; slot >= first; slot--) {
+                freeSlots[freeCount++] = slot;
+            }
+        }
+
+        private int takeFree() {
+            return freeCount == 0 ? -1 : freeSlots[--freeCount];
+        }
+
+        private void free(int slot) {
+            slotKeys[slot] = 0;
+            freeSlots[freeCount++] = slot;
+        }
+
+        private void write(int slot, byte[] value) {
+            ByteBuffer buffer = slabs.get(slot / slotsPerSlab).duplicate();
+            int position = (slot % slotsPerSlab) * slotSize;
+            buffer.putInt(position, value.length);
+            buffer.position(position + LENGTH_SIZE);
+            buffer.put(value);
+        }
+
+        private byte[] read(int slot) {
+            ByteBuffer buffer = slabs.get(slot / slotsPerSlab).duplicate();
+            int position = (slot % slotsPerSlab) * slotSize;
+            byte[] value = new byte[buffer.getInt(position)];
+            buffer.position(position + LENGTH_SIZE);
+            buffer.get(value);
+            return value;
+        }
+
+        private void linkFirst(int slot) {
+            prev[slot] = -1;
+            next[slot] = head;
+            if (head >= 0) {
+                prev[head] = slot;
+            }
+            head = slot;
+            if (tail < 0) {
+                tail = slot;
+            }
+        }
+
+        private void unlink(int slot) {
+            int p = prev[slot];
+            int n = next[slot];
+            if (p >= 0) {
+                next[p] = n;
+            } else {
+                head = n;
+            }
+            if (n >= 0) {
+                prev[n] = p;
+            } else {
+                tail = p;
+            }
+        }
+
+        private void moveToFront(int slot) {
+            if (head != slot) {
+                unlink(slot);
+                linkFirst(slot);
+            }
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.messenger.codec;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdDictTrainer;
+import com.github.luben.zstd.ZstdException;
+import com.messenger.exception.ErrorCode;
+import com.messenger.exception.MyException;
+import com.messenger.repository.ContentDictionaryRepository;
+import com.messenger.util.Pair;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 메시지 본문 저장 형식 (repository 에서 저장할 때 encode, 읽을 때 decode)
+ *
+ * enabled 이면 UTF-8 로 min-bytes 이상인 본문을 zstd 로 압축해서 content_z 칼럼에 저장한다
+ * - 짧은 메시지는 혼자서는 잘 압축되지 않으므로 최근 메시지로 학습한 dictionary 를 함께 사용한다
+ * - 압축한 결과가 원래보다 작지 않으면 그대로 저장한다
+ * - 읽을 때는 MessageContent 로 감싸서 본문을 실제로 사용할 때 압축을 푼다
+ * enabled 와 관계없이 압축해서 저장한 메시지는 항상 읽을 수 있다 (꺼도 이미 저장한 메시지는 그대로 둔다)
+ * dictionary 는 메시지가 참조하므로 지우지 않고, 새로 학습하면 그 뒤에 저장하는 메시지부터 사용한다
+ */
+@Slf4j
+@Component
+public class ContentCodec {
+
+    public static final int PLAIN = 0;
+    public static final int ZSTD = 1;
+
+    private final ContentDictionaryRepository contentDictionaryRepository;
+    private final boolean enabled;
+    private final int minBytes;
+    private final int level;
+    private final int dictSize;
+    private final int dictSamples;
+    private final int dictMinSamples;
+    private final ConcurrentHashMap<Integer, ZstdDictDecompress> decompressDictionaries = new ConcurrentHashMap<>();
+    private final Counter rawBytesCounter;
+    private final Counter storedBytesCounter;
+    private final Timer compressTimer;
+    private final Timer decompressTimer;
+
+    // 압축에 사용할 dictionary, 처음 압축할 때 가장 최근 dictionary 를 읽는다
+    private volatile CompressDictionary current;
+    private volatile boolean currentLoaded;
+
+    public ContentCodec(ContentDictionaryRepository contentDictionaryRepository,
+                        @Value("${chat.content-codec.enabled:false}") boolean enabled,
+                        @Value("${chat.content-codec.min-bytes:64}") int minBytes,
+                        @Value("${chat.content-codec.level:3}") int level,
+                        @Value("${chat.content-codec.dict-size:32768}") int dictSize,
+                        @Value("${chat.content-codec.dict-samples:20000}") int dictSamples,
+                        @Value("${chat.content-codec.dict-min-samples:1000}") int dictMinSamples,
+                        MeterRegistry meterRegistry) {
+        this.contentDictionaryRepository = contentDictionaryRepository;
+        this.enabled = enabled;
+        this.minBytes = minBytes;
+        this.level = level;
+        this.dictSize = dictSize;
+        this.dictSamples = dictSamples;
+        this.dictMinSamples = dictMinSamples;
+
+        this.rawBytesCounter = Counter.builder("chat.content_codec.raw_bytes")
+                .description("압축 대상 메시지 본문의 UTF-8 크기 합")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.storedBytesCounter = Counter.builder("chat.content_codec.stored_bytes")
+                .description("압축 대상 메시지 본문을 실제로 저장한 크기 합")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.compressTimer = Timer.builder("chat.content_codec.compress")
+                .description("메시지 본문 하나를 압축하는 시간")
+                .register(meterRegistry);
+        this.decompressTimer = Timer.builder("chat.content_codec.decompress")
+                .description("메시지 본문 하나의 압축을 푸는 시간")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 저장할 형태로 본문을 바꾼다
+     * @param content (Nullable) 메시지 본문
+     * @return 저장할 본문
+     */
+    public EncodedContent encode(String content) {
+        if (!enabled || content == null) {
+            return EncodedContent.plain(content);
+        }
+        byte[] raw = content.getBytes(StandardCharsets.UTF_8);
+        if (raw.length < minBytes) {
+            return EncodedContent.plain(content);
+        }
+
+        CompressDictionary dictionary = currentDictionary();
+        long startedAt = System.nanoTime();
+        byte[] compressed = dictionary == null ? Zstd.compress(raw, level) : Zstd.compress(raw, dictionary.compress);
+        compressTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+
+        rawBytesCounter.increment(raw.length);
+        if (compressed.length >= raw.length) {
+            storedBytesCounter.increment(raw.length);
+            return EncodedContent.plain(content);
+        }
+        storedBytesCounter.increment(compressed.length);
+        return EncodedContent.zstd(dictionary == null ? null : dictionary.id, compressed);
+    }
+
+    /**
+     * 저장된 본문을 읽는다, 압축한 본문은 MessageContent.get() 할 때 압축을 푼다
+     * @param codec content_codec 칼럼
+     * @param dictId (Nullable) content_dict_id 칼럼
+     * @param content content 칼럼
+     * @param data (Nullable) content_z 칼럼
+     * @return 메시지 본문
+     */
+    public MessageContent decode(int codec, Integer dictId, String content, byte[] data) {
+        if (codec == PLAIN) {
+            return MessageContent.of(content);
+        }
+        if (codec != ZSTD || data == null) {
+            log.error("unknown content codec: codec = {}, dictId = {}", codec, dictId);
+            throw new MyException(ErrorCode.FAIL_DECODE_CHAT);
+        }
+        return MessageContent.lazy(() -> decompress(dictId, data));
+    }
+
+    public MessageContent decode(EncodedContent encoded) {
+        return decode(encoded.getCodec(), encoded.getDictId(), encoded.getText(), encoded.getData());
+    }
+
+    private String decompress(Integer dictId, byte[] data) {
+        ZstdDictDecompress dictionary = dictId == null ? null : decompressDictionary(dictId);
+        long startedAt = System.nanoTime();
+        try {
+            // 압축할 때 frame 에 원래 크기를 기록한다
+            long size = Zstd.decompressedSize(data);
+            if (size <= 0 || size > Integer.MAX_VALUE) {
+                log.error("unknown decompressed size: dictId = {}, size = {}", dictId, size);
+                throw new MyException(ErrorCode.FAIL_DECODE_CHAT);
+            }
+            byte[] raw = dictionary == null
+                    ? Zstd.decompress(data, (int) size)
+                    : Zstd.decompress(data, dictionary, (int) size);
+            return new String(raw, StandardCharsets.UTF_8);
+        } catch (ZstdException e) {
+            log.error("decompress content failed: dictId = {}, exception = {}", dictId, e.getMessage());
+            throw new MyException(ErrorCode.FAIL_DECODE_CHAT);
+        } finally {
+            decompressTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private ZstdDictDecompress decompressDictionary(int dictId) {
+        return decompressDictionaries.computeIfAbsent(dictId, id -> {
+            byte[] dict = contentDictionaryRepository.findById(id).orElseThrow(() -> {
+                log.error("content dictionary not found: dictId = {}", id);
+                return new MyException(ErrorCode.FAIL_DECODE_CHAT);
+            });
+            return new ZstdDictDecompress(dict);
+        });
+    }
+
+    private CompressDictionary currentDictionary() {
+        if (!currentLoaded) {
+            synchronized (this) {
+                if (!currentLoaded) {
+                    Optional<Pair<Integer, byte[]>> latest = contentDictionaryRepository.findLatest();
+                    latest.ifPresent(pair -> use(pair.getFirst(), pair.getSecond()));
+                    currentLoaded = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    private void use(int id, byte[] dict) {
+        decompressDictionaries.putIfAbsent(id, new ZstdDictDecompress(dict));
+        current = new CompressDictionary(id, new ZstdDictCompress(dict, level));
+        log.info("content dictionary in use: id={}, size={}", id, dict.length);
+    }
+
+    /**
+     * 최근 메시지 본문으로 dictionary 를 새로 학습해서 저장하고, 이후 압축에 사용한다
+     * 학습할 메시지가 dict-min-samples 보다 적으면 학습하지 않는다
+     * @return 학습한 dictionary id, 학습하지 않았으면 empty
+     */
+    @Scheduled(fixedDelayString = "${chat.content-codec.dict-train-interval-ms:86400000}",
+            initialDelayString = "${chat.content-codec.dict-train-initial-delay-ms:600000}")
+    public synchronized Optional<Integer> trainDictionary() {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        List<EncodedContent> samples = contentDictionaryRepository.sampleRecentContents(dictSamples);
+        // 학습 데이터 크기는 dictionary 의 100 배 정도가 적당하다
+        ZstdDictTrainer trainer = new ZstdDictTrainer(dictSize * 100, dictSize);
+        int added = 0;
+        for (EncodedContent sample : samples) {
+            String content;
+            try {
+                content = decode(sample).get();
+            } catch (MyException e) {
+                continue;
+            }
+            if (content == null || content.isEmpty()) {
+                continue;
+            }
+            if (!trainer.addSample(content.getBytes(StandardCharsets.UTF_8))) {
+                break;
+            }
+            added++;
+        }
+        if (added < dictMinSamples) {
+            log.info("content dictionary training skipped: samples={}, required={}", added, dictMinSamples);
+            return Optional.empty();
+        }
+
+        byte[] dict;
+        try {
+            dict = trainer.trainSamples();
+        } catch (ZstdException e) {
+            log.error("content dictionary training failed: samples = {}, exception = {}", added, e.getMessage());
+            return Optional.empty();
+        }
+        int id = contentDictionaryRepository.save(dict);
+        currentLoaded = true;
+        use(id, dict);
+        log.info("content dictionary trained: id={}, samples={}", id, added);
+        return Optional.of(id);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    private static final class CompressDictionary {
+        private final int id;
+        private final ZstdDictCompress compress;
+
+        private CompressDictionary(int id, ZstdDictCompress compress) {
+            this.id = id;
+            this.compress = compress;
+        }
+    }
+}
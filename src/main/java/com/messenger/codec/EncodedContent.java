@@ -0,0 +1,30 @@
+package com.messenger.codec;
+
+import lombok.Value;
+
+/**
+ * 저장할 형태로 바꾼 메시지 본문 (메시지 테이블의 content, content_codec, content_dict_id, content_z 칼럼)
+ * codec 이 PLAIN 이면 text 에 본문이 그대로, ZSTD 이면 data 에 압축한 본문이 있고 text 는 빈 문자열이다
+ */
+@Value
+public class EncodedContent {
+
+    int codec;
+    // (Nullable) 압축에 사용한 dictionary id
+    Integer dictId;
+    String text;
+    // (Nullable) 압축한 본문
+    byte[] data;
+
+    public static EncodedContent plain(String text) {
+        return new EncodedContent(ContentCodec.PLAIN, null, text, null);
+    }
+
+    public static EncodedContent zstd(Integer dictId, byte[] data) {
+        return new EncodedContent(ContentCodec.ZSTD, dictId, "", data);
+    }
+
+    public boolean isCompressed() {
+        return codec != ContentCodec.PLAIN;
+    }
+}
@@ -0,0 +1,82 @@
+package com.messenger.codec;
+
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * 메시지 본문, 압축해서 저장한 본문은 처음 get() 할 때 압축을 푼다
+ *
+ * 목록 조회에서 id, 순번 등만 사용하고 본문을 읽지 않으면 압축을 풀지 않는다
+ * 압축을 푼 결과는 기억해 두고 다시 풀지 않는다 (여러 thread 가 동시에 처음 읽으면 각자 풀 수 있다)
+ */
+public final class MessageContent {
+
+    private static final MessageContent EMPTY = new MessageContent(null, null);
+
+    private volatile String value;
+    private volatile Supplier<String> decoder;
+
+    private MessageContent(String value, Supplier<String> decoder) {
+        this.value = value;
+        this.decoder = decoder;
+    }
+
+    /**
+     * 이미 풀려 있는 본문
+     */
+    public static MessageContent of(String value) {
+        return value == null ? EMPTY : new MessageContent(value, null);
+    }
+
+    /**
+     * 처음 get() 할 때 decoder 로 푸는 본문
+     */
+    public static MessageContent lazy(Supplier<String> decoder) {
+        return new MessageContent(null, Objects.requireNonNull(decoder));
+    }
+
+    public String get() {
+        Supplier<String> pending = decoder;
+        if (pending == null) {
+            return value;
+        }
+        String decoded = pending.get();
+        value = decoded;
+        decoder = null;
+        return decoded;
+    }
+
+    /**
+     * 본문을 이미 풀었는지 (압축하지 않은 본문은 항상 true)
+     */
+    public boolean isDecoded() {
+        return decoder == null;
+    }
+
+    /**
+     * 풀린 본문으로 비교한다 (압축한 본문은 비교할 때 압축을 푼다)
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MessageContent)) {
+            return false;
+        }
+        return Objects.equals(get(), ((MessageContent) o).get());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(get());
+    }
+
+    /**
+     * 로그 등에서 압축을 풀지 않도록, 아직 풀지 않은 본문은 내용 대신 표시만 한다
+     */
+    @Override
+    public String toString() {
+        return isDecoded() ? String.valueOf(value) : "(compressed)";
+    }
+}
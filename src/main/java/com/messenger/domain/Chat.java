@@ -1,7 +1,10 @@
 package com.messenger.domain;
 
+import com.messenger.codec.MessageContent;
 import com.messenger.dto.pagination.Pageable;
+import lombok.AccessLevel;
 import lombok.Builder;
+import lombok.Getter;
 import lombok.Value;
 
 import java.sql.Timestamp;
@@ -14,18 +17,30 @@ public class Chat implements Pageable {
     String senderUserId;
     String receiverUserId;
     String groupId;
-    String content;
+    // 압축해서 저장한 본문은 getContent() 할 때 압축을 푼다
+    @Getter(AccessLevel.NONE)
+    MessageContent content;
     Timestamp read_at;
     Timestamp created_at;
+    // 1:1 채팅방 안에서 1 부터 빈틈없이 증가하는 순번 (순번 도입 전에 저장된 메시지는 null)
+    Long seq;
+    // (Nullable) 첨부 파일 또는 긴 본문의 blob id, 있으면 content 는 미리보기
+    String blobId;
 
     @Builder
-    private Chat(long id, String senderUserId, String receiverUserId, String groupId, String content, Timestamp read_at, Timestamp created_at) {
+    private Chat(long id, String senderUserId, String receiverUserId, String groupId, String content, Timestamp read_at, Timestamp created_at, Long seq, String blobId, MessageContent lazyContent) {
         this.id = id;
         this.senderUserId = senderUserId;
         this.receiverUserId = receiverUserId;
         this.groupId = groupId;
-        this.content = content;
+        this.content = lazyContent != null ? lazyContent : MessageContent.of(content);
         this.read_at = read_at;
         this.created_at = created_at;
+        this.seq = seq;
+        this.blobId = blobId;
+    }
+
+    public String getContent() {
+        return content.get();
     }
 }
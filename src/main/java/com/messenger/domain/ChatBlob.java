@@ -0,0 +1,27 @@
+package com.messenger.domain;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.sql.Timestamp;
+
+/**
+ * 큰 메시지 본문, 첨부 파일의 정보 (내용은 디스크의 blob 저장소에 있다)
+ * id 는 내용의 SHA-256 hex
+ */
+@Value
+public class ChatBlob {
+
+    String id;
+    long size;
+    String contentType;
+    Timestamp created_at;
+
+    @Builder
+    private ChatBlob(String id, long size, String contentType, Timestamp created_at) {
+        this.id = id;
+        this.size = size;
+        this.contentType = contentType;
+        this.created_at = created_at;
+    }
+}
@@ -0,0 +1,7 @@
+package com.messenger.domain;
+
+public enum ChatRoomType {
+
+    PERSONAL,
+    GROUP
+}
@@ -0,0 +1,27 @@
+package com.messenger.domain;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.sql.Timestamp;
+
+/**
+ * 채팅방별 메시지 보관 정책
+ * roomKey 는 1:1 채팅이면 group_id, 그룹 채팅이면 room_id
+ */
+@Value
+public class RetentionPolicy {
+
+    ChatRoomType roomType;
+    String roomKey;
+    int retentionDays;
+    Timestamp updated_at;
+
+    @Builder
+    private RetentionPolicy(ChatRoomType roomType, String roomKey, int retentionDays, Timestamp updated_at) {
+        this.roomType = roomType;
+        this.roomKey = roomKey;
+        this.retentionDays = retentionDays;
+        this.updated_at = updated_at;
+    }
+}
@@ -0,0 +1,18 @@
+package com.messenger.dto.chat;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Getter;
+import lombok.ToString;
+
+@Schema(description = "메시지 일괄 삭제 ResponseDTO")
+@Getter
+@ToString
+public class BulkDeleteResponse {
+
+    @Schema(description = "삭제한 메시지 개수", defaultValue = "0")
+    private final long deletedCount;
+
+    public BulkDeleteResponse(long deletedCount) {
+        this.deletedCount = deletedCount;
+    }
+}
@@ -0,0 +1,37 @@
+package com.messenger.dto.chat;
+
+import com.messenger.domain.ChatRoomType;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.sql.Timestamp;
+
+@Schema(description = "읽음 표시 이벤트 (SSE read)")
+@Getter
+@ToString
+public class ReadReceiptEvent {
+
+    @Schema(description = "채팅방 종류")
+    private final ChatRoomType type;
+
+    @Schema(description = "읽음 표시한 메시지 id")
+    private final long chatId;
+
+    @Schema(description = "그룹 채팅방 id (그룹 채팅만)")
+    private final Long roomId;
+
+    @Schema(description = "읽은 사용자 id")
+    private final String userId;
+
+    @Schema(description = "읽은 시간")
+    private final Timestamp readAt;
+
+    public ReadReceiptEvent(ChatRoomType type, long chatId, Long roomId, String userId, Timestamp readAt) {
+        this.type = type;
+        this.chatId = chatId;
+        this.roomId = roomId;
+        this.userId = userId;
+        this.readAt = readAt;
+    }
+}
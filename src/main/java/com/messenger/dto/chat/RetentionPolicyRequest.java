@@ -0,0 +1,14 @@
+package com.messenger.dto.chat;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+@Schema(description = "채팅방 메시지 보관 정책 RequestDTO")
+@Getter
+@ToString
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class RetentionPolicyRequest {
+
+    @Schema(description = "보관 기간 (일), 이 기간보다 오래된 메시지는 자동으로 삭제된다", defaultValue = "30")
+    private Integer retentionDays;
+}
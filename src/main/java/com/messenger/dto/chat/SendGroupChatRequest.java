@@ -16,6 +16,14 @@ public class SendGroupChatRequest {
     private Long roomId;
 
     @NotBlank
-    @Schema(description = "메시지 내용", defaultValue = "messageContent")
+    @Schema(description = "메시지 내용 (최대 100000자), 길면 blob 으로 저장하고 메시지에는 앞부분만 저장", defaultValue = "messageContent")
     private String content;
+
+    @Schema(description = "(선택) 클라이언트가 만든 메시지 id, 같은 id 로 다시 보내면 저장하지 않고 처음 저장한 메시지를 반환 (최대 64자)",
+            nullable = true)
+    private String clientMessageId;
+
+    @Schema(description = "(선택) 첨부 파일 id, POST /api/v1/blobs 로 업로드해서 받은 blobId (첨부하면 content 는 " +
+            "chat.blob.inline-max-chars 이하)", nullable = true)
+    private String attachmentId;
 }
@@ -0,0 +1,37 @@
+package com.messenger.dto.chat;
+
+import com.messenger.dto.pagination.Pageable;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+@Schema(description = "대화별 순번 범위 조회 ResponseDTO")
+@Getter
+@ToString
+public class SeqRangeResponse<T extends Pageable> {
+
+    @Schema(description = "조회한 시작 순번")
+    private final long fromSeq;
+
+    @Schema(description = "조회한 끝 순번, 다음 요청은 toSeq + 1 부터 (lastSeq 보다 크지 않다)")
+    private final long toSeq;
+
+    @Schema(description = "대화에서 마지막으로 붙인 순번, 메시지가 없으면 0")
+    private final long lastSeq;
+
+    @Schema(description = "List의 크기")
+    private final int size;
+
+    @Schema(description = "순번 순으로 정렬한 메시지 목록, 범위 안에서 빠진 순번은 삭제된 메시지")
+    private final List<T> list;
+
+    public SeqRangeResponse(long fromSeq, long toSeq, long lastSeq, List<T> list) {
+        this.fromSeq = fromSeq;
+        this.toSeq = toSeq;
+        this.lastSeq = lastSeq;
+        this.size = list.size();
+        this.list = list;
+    }
+}
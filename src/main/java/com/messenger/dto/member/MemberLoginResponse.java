@@ -25,6 +25,9 @@ public class MemberLoginResponse {
     @Schema(description = "jwt 토큰", defaultValue = "token")
     private String token;
 
+    @Schema(description = "refresh token, access token 이 만료되면 /api/v1/members/refresh 로 다시 발급", defaultValue = "refreshToken")
+    private String refreshToken;
+
     private MemberLoginResponse(String id, String name, String statusMessage) {
         this.id = id;
         this.name = name;
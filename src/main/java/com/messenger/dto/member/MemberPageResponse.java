@@ -0,0 +1,34 @@
+package com.messenger.dto.member;
+
+import com.messenger.domain.Member;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+import java.util.List;
+
+@Schema(description = "회원 목록 페이지네이션 ResponseDTO")
+@Getter
+@ToString
+public class MemberPageResponse {
+
+    @Schema(description = "마지막 회원 id, 다음 페이지 조회시 nextId 로 사용")
+    private final String nextId;
+
+    @Schema(description = "회원 리스트의 크기")
+    private final int size;
+
+    @Schema(description = "회원 리스트")
+    private final List<MemberResponse> list;
+
+    private MemberPageResponse(List<MemberResponse> list) {
+        this.list = list;
+        this.size = list.size();
+        this.nextId = list.isEmpty() ? null : list.get(list.size() - 1).getId();
+    }
+
+    public static MemberPageResponse of(@NonNull List<Member> members) {
+        return new MemberPageResponse(MemberResponse.newList(members));
+    }
+}
@@ -0,0 +1,14 @@
+package com.messenger.dto.member;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+@Schema(description = "토큰 재발급 RequestDTO")
+@Getter
+@ToString
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class MemberRefreshRequest {
+
+    @Schema(description = "refresh token (없으면 쿠키의 refresh token 사용)", defaultValue = "refreshToken")
+    private String refreshToken;
+}
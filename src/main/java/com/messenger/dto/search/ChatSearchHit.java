@@ -0,0 +1,51 @@
+package com.messenger.dto.search;
+
+import com.messenger.domain.ChatRoomType;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.sql.Timestamp;
+
+@Schema(description = "메시지 검색 결과 항목")
+@Getter
+@ToString
+public class ChatSearchHit {
+
+    @Schema(description = "채팅 종류 (PERSONAL, GROUP)")
+    private final ChatRoomType type;
+
+    @Schema(description = "메시지 id")
+    private final long chatId;
+
+    @Schema(description = "전송 사용자 id")
+    private final String senderUserId;
+
+    @Schema(description = "(1:1 채팅) 수신 사용자 id")
+    private final String receiverUserId;
+
+    @Schema(description = "(그룹 채팅) 채팅방 id")
+    private final Long roomId;
+
+    @Schema(description = "메시지 내용")
+    private final String content;
+
+    @Schema(description = "메시지 생성 시각")
+    private final Timestamp created_at;
+
+    @Schema(description = "검색 점수")
+    private final float score;
+
+    @Builder
+    private ChatSearchHit(ChatRoomType type, long chatId, String senderUserId, String receiverUserId, Long roomId, String content, Timestamp created_at, float score) {
+        this.type = type;
+        this.chatId = chatId;
+        this.senderUserId = senderUserId;
+        this.receiverUserId = receiverUserId;
+        this.roomId = roomId;
+        this.content = content;
+        this.created_at = created_at;
+        this.score = score;
+    }
+}
@@ -0,0 +1,32 @@
+package com.messenger.dto.search;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+@Schema(description = "메시지 검색 ResponseDTO")
+@Getter
+@ToString
+public class ChatSearchResponse {
+
+    @Schema(description = "다음 페이지 커서, 다음 페이지가 없으면 null")
+    private final String nextCursor;
+
+    @Schema(description = "검색 결과 리스트의 크기")
+    private final int size;
+
+    @Schema(description = "검색 결과 리스트")
+    private final List<ChatSearchHit> list;
+
+    private ChatSearchResponse(List<ChatSearchHit> list, String nextCursor) {
+        this.list = list;
+        this.size = list.size();
+        this.nextCursor = nextCursor;
+    }
+
+    public static ChatSearchResponse of(List<ChatSearchHit> list, String nextCursor) {
+        return new ChatSearchResponse(list, nextCursor);
+    }
+}
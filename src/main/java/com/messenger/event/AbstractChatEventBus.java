@@ -0,0 +1,28 @@
+package com.messenger.event;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+
+/**
+ * listener 호출, listener 의 예외는 다른 listener 나 발행한 요청에 영향을 주지 않는다
+ */
+@Slf4j
+public abstract class AbstractChatEventBus implements ChatEventBus {
+
+    private final List<ChatEventListener> listeners;
+
+    protected AbstractChatEventBus(List<ChatEventListener> listeners) {
+        this.listeners = listeners;
+    }
+
+    protected void dispatch(ChatEvent event, boolean remote) {
+        for (ChatEventListener listener : listeners) {
+            try {
+                listener.onEvent(event, remote);
+            } catch (Exception e) {
+                log.error("chat event listener failed: event = {}, exception = {}", event.getType(), e.getMessage());
+            }
+        }
+    }
+}
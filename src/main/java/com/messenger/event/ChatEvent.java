@@ -0,0 +1,205 @@
+package com.messenger.event;
+
+import com.messenger.domain.Chat;
+import com.messenger.domain.ChatRoomType;
+import com.messenger.domain.GroupChat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.jackson.Jacksonized;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * 서버 간에 전달하는 이벤트 (outbox 에는 JSON 으로 저장)
+ * 종류별로 사용하는 필드만 채운다
+ *
+ * MESSAGE_SENT    : roomType, chatId, senderUserId, receiverUserId, groupId(1:1) 또는 roomId(그룹), content, createdAt, seq, blobId
+ * MESSAGE_DELETED : roomType, chatIds, 한 대화의 메시지이면 senderUserId, receiverUserId 또는 roomId
+ *                   (보관 기간 만료처럼 여러 대화가 한 번에 바뀌면 대화 정보 없이 chatIds 만)
+ * READ_MARKED     : roomType, chatId, userId(읽은 사용자), senderUserId(1:1) 또는 roomId(그룹), readAt
+ * MEMBER_UPDATED  : userId
+ * TOKEN_REVOKED   : tokenId(토큰 id 또는 family id), expiresAt
+ */
+@Getter
+@ToString(exclude = "content")
+public class ChatEvent {
+
+    private final ChatEventType type;
+    private final ChatRoomType roomType;
+    private final Long chatId;
+    private final List<Long> chatIds;
+    private final Long roomId;
+    private final String senderUserId;
+    private final String receiverUserId;
+    private final String groupId;
+    private final String userId;
+    private final String content;
+    private final Timestamp createdAt;
+    private final Timestamp readAt;
+    private final String tokenId;
+    private final Long expiresAt;
+    private final Long seq;
+    private final String blobId;
+
+    @Builder
+    @Jacksonized
+    private ChatEvent(ChatEventType type, ChatRoomType roomType, Long chatId, List<Long> chatIds, Long roomId,
+                      String senderUserId, String receiverUserId, String groupId, String userId, String content,
+                      Timestamp createdAt, Timestamp readAt, String tokenId, Long expiresAt, Long seq, String blobId) {
+        this.type = type;
+        this.roomType = roomType;
+        this.chatId = chatId;
+        this.chatIds = chatIds;
+        this.roomId = roomId;
+        this.senderUserId = senderUserId;
+        this.receiverUserId = receiverUserId;
+        this.groupId = groupId;
+        this.userId = userId;
+        this.content = content;
+        this.createdAt = createdAt;
+        this.readAt = readAt;
+        this.tokenId = tokenId;
+        this.expiresAt = expiresAt;
+        this.seq = seq;
+        this.blobId = blobId;
+    }
+
+    public static ChatEvent messageSent(Chat chat) {
+        return ChatEvent.builder()
+                .type(ChatEventType.MESSAGE_SENT)
+                .roomType(ChatRoomType.PERSONAL)
+                .chatId(chat.getId())
+                .senderUserId(chat.getSenderUserId())
+                .receiverUserId(chat.getReceiverUserId())
+                .groupId(chat.getGroupId())
+                .content(chat.getContent())
+                .createdAt(chat.getCreated_at())
+                .seq(chat.getSeq())
+                .blobId(chat.getBlobId())
+                .build();
+    }
+
+    public static ChatEvent messageSent(GroupChat chat) {
+        return ChatEvent.builder()
+                .type(ChatEventType.MESSAGE_SENT)
+                .roomType(ChatRoomType.GROUP)
+                .chatId(chat.getId())
+                .roomId(chat.getRoomId())
+                .senderUserId(chat.getSenderUserId())
+                .content(chat.getContent())
+                .createdAt(chat.getCreated_at())
+                .seq(chat.getSeq())
+                .blobId(chat.getBlobId())
+                .build();
+    }
+
+    public static ChatEvent messageDeleted(Chat chat) {
+        return ChatEvent.builder()
+                .type(ChatEventType.MESSAGE_DELETED)
+                .roomType(ChatRoomType.PERSONAL)
+                .chatIds(List.of(chat.getId()))
+                .senderUserId(chat.getSenderUserId())
+                .receiverUserId(chat.getReceiverUserId())
+                .build();
+    }
+
+    public static ChatEvent messageDeleted(GroupChat chat) {
+        return ChatEvent.builder()
+                .type(ChatEventType.MESSAGE_DELETED)
+                .roomType(ChatRoomType.GROUP)
+                .chatIds(List.of(chat.getId()))
+                .roomId(chat.getRoomId())
+                .build();
+    }
+
+    /**
+     * 여러 대화의 메시지를 한 번에 삭제 (일괄 삭제, 보관 기간 만료)
+     */
+    public static ChatEvent messagesDeleted(ChatRoomType roomType, List<Long> chatIds) {
+        return ChatEvent.builder()
+                .type(ChatEventType.MESSAGE_DELETED)
+                .roomType(roomType)
+                .chatIds(List.copyOf(chatIds))
+                .build();
+    }
+
+    /**
+     * @param chat 읽음 표시한 1:1 메시지
+     */
+    public static ChatEvent readMarked(Chat chat) {
+        return ChatEvent.builder()
+                .type(ChatEventType.READ_MARKED)
+                .roomType(ChatRoomType.PERSONAL)
+                .chatId(chat.getId())
+                .userId(chat.getReceiverUserId())
+                .senderUserId(chat.getSenderUserId())
+                .readAt(chat.getRead_at())
+                .build();
+    }
+
+    /**
+     * @param chat 읽음 표시한 그룹 메시지
+     * @param userId 읽은 사용자
+     */
+    public static ChatEvent readMarked(GroupChat chat, String userId, Timestamp readAt) {
+        return ChatEvent.builder()
+                .type(ChatEventType.READ_MARKED)
+                .roomType(ChatRoomType.GROUP)
+                .chatId(chat.getId())
+                .roomId(chat.getRoomId())
+                .userId(userId)
+                .readAt(readAt)
+                .build();
+    }
+
+    public static ChatEvent memberUpdated(String userId) {
+        return ChatEvent.builder()
+                .type(ChatEventType.MEMBER_UPDATED)
+                .userId(userId)
+                .build();
+    }
+
+    public static ChatEvent tokenRevoked(String tokenId, long expiresAtMillis) {
+        return ChatEvent.builder()
+                .type(ChatEventType.TOKEN_REVOKED)
+                .tokenId(tokenId)
+                .expiresAt(expiresAtMillis)
+                .build();
+    }
+
+    /**
+     * 한 대화에 속한 변경이면 true, 여러 대화가 한 번에 바뀌었으면 false
+     */
+    @JsonIgnore
+    public boolean isConversation() {
+        return receiverUserId != null || roomId != null;
+    }
+
+    public Chat toChat() {
+        return Chat.builder()
+                .id(chatId)
+                .senderUserId(senderUserId)
+                .receiverUserId(receiverUserId)
+                .groupId(groupId)
+                .content(content)
+                .created_at(createdAt)
+                .seq(seq)
+                .blobId(blobId)
+                .build();
+    }
+
+    public GroupChat toGroupChat() {
+        return GroupChat.builder()
+                .id(chatId)
+                .senderUserId(senderUserId)
+                .roomId(roomId)
+                .content(content)
+                .created_at(createdAt)
+                .seq(seq)
+                .blobId(blobId)
+                .build();
+    }
+}
@@ -0,0 +1,14 @@
+package com.messenger.event;
+
+/**
+ * 메시지 전송, 삭제, 읽음 표시, 회원 정보 변경처럼 서버 메모리의 상태(long polling 대기, SSE 연결,
+ * 조건부 GET 버전, 검색 색인, 토큰 폐기 목록)를 바꿔야 하는 이벤트를 모든 서버에 전달
+ *
+ * 발행한 서버의 listener 는 publish() 안에서 바로 호출되고,
+ * 다른 서버에는 구현에 따라 전달된다 (local : 전달하지 않음, outbox : DB outbox 테이블을 통해 전달)
+ * chat.event-bus.type 으로 구현을 선택한다
+ */
+public interface ChatEventBus {
+
+    void publish(ChatEvent event);
+}
@@ -0,0 +1,14 @@
+package com.messenger.event;
+
+/**
+ * ChatEventBus 로 발행된 이벤트를 받는다
+ */
+public interface ChatEventListener {
+
+    /**
+     * @param event 이벤트
+     * @param remote 다른 서버에서 발행한 이벤트이면 true
+     *               (발행한 서버에서 이미 처리한 일, 예를 들어 검색 색인 갱신은 remote 일 때만 하면 된다)
+     */
+    void onEvent(ChatEvent event, boolean remote);
+}
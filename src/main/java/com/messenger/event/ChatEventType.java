@@ -0,0 +1,5 @@
+package com.messenger.event;
+
+public enum ChatEventType {
+    MESSAGE_SENT, MESSAGE_DELETED, READ_MARKED, MEMBER_UPDATED, TOKEN_REVOKED
+}
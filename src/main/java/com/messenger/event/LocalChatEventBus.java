@@ -0,0 +1,23 @@
+package com.messenger.event;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 서버 한 대 (기본값), 발행한 서버의 listener 만 호출한다
+ */
+@Component
+@ConditionalOnProperty(name = "chat.event-bus.type", havingValue = "local", matchIfMissing = true)
+public class LocalChatEventBus extends AbstractChatEventBus {
+
+    public LocalChatEventBus(List<ChatEventListener> listeners) {
+        super(listeners);
+    }
+
+    @Override
+    public void publish(ChatEvent event) {
+        dispatch(event, false);
+    }
+}
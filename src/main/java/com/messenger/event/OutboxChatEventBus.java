@@ -0,0 +1,252 @@
+package com.messenger.event;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.messenger.repository.ChatEventOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 서버 여러 대, DB 의 chat_event_outbox 테이블을 통해 이벤트를 전달
+ *
+ * 발행 : 이 서버의 listener 를 바로 호출하고 outbox 대기열에 넣는다
+ *        대기열은 flush-interval-ms 마다 batch insert 로 한 번에 저장한다
+ * 수신 : poll-interval-ms 마다 마지막으로 처리한 id 이후의 이벤트를 batch-size 개씩 읽어서
+ *        다른 서버가 발행한 이벤트만 listener 에 전달하고, 처리한 id 를 chat_event_consumer 에 기록(ack)한다
+ * 정리 : 살아 있는 모든 서버가 ack 한 이벤트를 retention-ms 가 지나면 삭제한다
+ *
+ * id 는 AUTO_INCREMENT 이므로 먼저 발급된 id 가 늦게 commit 되면 중간이 비어 보인다
+ * 비어 있는 id 는 gap-wait-ms 동안 기다렸다가 (rollback 된 것으로 보고) 건너뛴다
+ * 서버가 시작할 때는 그때까지의 이벤트를 건너뛴다 (메모리 상태가 비어 있으므로 반영할 것이 없다)
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "chat.event-bus.type", havingValue = "outbox")
+public class OutboxChatEventBus extends AbstractChatEventBus implements ApplicationRunner, DisposableBean {
+
+    private final ChatEventOutboxRepository chatEventOutboxRepository;
+    private final ObjectMapper objectMapper;
+    private final String nodeId;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final long pollIntervalMillis;
+    private final long gapWaitMillis;
+    private final long retentionMillis;
+    private final long consumerTtlMillis;
+    private final BlockingQueue<ChatEvent> outbound;
+    private final ScheduledExecutorService scheduler;
+    private final Counter sentCounter;
+    private final Counter droppedCounter;
+    private final Counter receivedCounter;
+
+    // flush() 안에서만 사용, 저장에 실패한 이벤트는 다음 flush 에서 다시 저장한다
+    private final List<String> unsent = new ArrayList<>();
+    // poll() 안에서만 사용
+    private long cursor;
+    private long gapSince;
+
+    public OutboxChatEventBus(List<ChatEventListener> listeners,
+                              ChatEventOutboxRepository chatEventOutboxRepository,
+                              ObjectMapper objectMapper,
+                              MeterRegistry meterRegistry,
+                              @Value("${chat.event-bus.node-id:}") String nodeId,
+                              @Value("${chat.event-bus.batch-size:500}") int batchSize,
+                              @Value("${chat.event-bus.queue-capacity:10000}") int queueCapacity,
+                              @Value("${chat.event-bus.flush-interval-ms:50}") long flushIntervalMillis,
+                              @Value("${chat.event-bus.poll-interval-ms:200}") long pollIntervalMillis,
+                              @Value("${chat.event-bus.gap-wait-ms:2000}") long gapWaitMillis,
+                              @Value("${chat.event-bus.retention-ms:600000}") long retentionMillis,
+                              @Value("${chat.event-bus.consumer-ttl-ms:600000}") long consumerTtlMillis) {
+        super(listeners);
+        this.chatEventOutboxRepository = chatEventOutboxRepository;
+        this.objectMapper = objectMapper;
+        this.nodeId = StringUtils.hasText(nodeId) ? nodeId : UUID.randomUUID().toString();
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.pollIntervalMillis = pollIntervalMillis;
+        this.gapWaitMillis = gapWaitMillis;
+        this.retentionMillis = retentionMillis;
+        this.consumerTtlMillis = consumerTtlMillis;
+        this.outbound = new ArrayBlockingQueue<>(queueCapacity);
+
+        // 저장(flush)과 수신(poll)이 서로 기다리지 않도록 thread 2개
+        this.scheduler = Executors.newScheduledThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "chat-event-outbox");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.sentCounter = Counter.builder("chat.event_bus.sent")
+                .description("outbox 에 저장한 이벤트 수")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("chat.event_bus.dropped")
+                .description("대기열이 가득 찼거나 직렬화하지 못해서 다른 서버에 전달하지 못한 이벤트 수")
+                .register(meterRegistry);
+        this.receivedCounter = Counter.builder("chat.event_bus.received")
+                .description("다른 서버에서 받은 이벤트 수")
+                .register(meterRegistry);
+        Gauge.builder("chat.event_bus.pending", outbound::size)
+                .description("outbox 에 저장하기를 기다리는 이벤트 수")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void publish(ChatEvent event) {
+        dispatch(event, false);
+        if (outbound.offer(event)) {
+            return;
+        }
+        // 대기열이 가득 차면 발행한 요청 thread 에서 저장
+        flush();
+        if (!outbound.offer(event)) {
+            droppedCounter.increment();
+            log.warn("chat event dropped: type = {}", event.getType());
+        }
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        cursor = chatEventOutboxRepository.findMaxId();
+        chatEventOutboxRepository.acknowledge(nodeId, cursor);
+        log.info("chat event bus started: nodeId = {}, cursor = {}", nodeId, cursor);
+
+        scheduler.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::poll, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 대기열의 이벤트를 batch-size 개씩 저장
+     * 직렬화하지 못한 이벤트는 그 이벤트만 버리고 나머지는 저장한다
+     */
+    private synchronized void flush() {
+        try {
+            while (true) {
+                if (unsent.isEmpty()) {
+                    List<ChatEvent> events = new ArrayList<>(Math.min(batchSize, outbound.size()));
+                    outbound.drainTo(events, batchSize);
+                    if (events.isEmpty()) {
+                        return;
+                    }
+                    for (ChatEvent event : events) {
+                        serialize(event);
+                    }
+                    if (unsent.isEmpty()) {
+                        continue;
+                    }
+                }
+                chatEventOutboxRepository.saveAll(nodeId, unsent);
+                sentCounter.increment(unsent.size());
+                unsent.clear();
+            }
+        } catch (Exception e) {
+            // scheduler 가 멈추지 않도록, unsent 는 다음 flush 에서 다시 저장
+            log.error("cannot save chat events: size = {}, exception = {}", unsent.size(), e.getMessage());
+        }
+    }
+
+    private void serialize(ChatEvent event) {
+        try {
+            unsent.add(objectMapper.writeValueAsString(event));
+        } catch (JsonProcessingException e) {
+            droppedCounter.increment();
+            log.error("cannot serialize chat event, dropped: type = {}, exception = {}", event.getType(), e.getMessage());
+        }
+    }
+
+    /**
+     * 다른 서버가 저장한 이벤트를 받아서 listener 에 전달하고 ack
+     */
+    private void poll() {
+        try {
+            while (true) {
+                List<OutboxEntry> entries = chatEventOutboxRepository.findAfter(cursor, batchSize);
+                long next = cursor;
+                boolean waiting = false;
+                for (OutboxEntry entry : entries) {
+                    if (entry.getId() != next + 1 && !gapExpired()) {
+                        waiting = true;
+                        break;
+                    }
+                    gapSince = 0;
+                    if (!nodeId.equals(entry.getNodeId())) {
+                        receive(entry);
+                    }
+                    next = entry.getId();
+                }
+                if (next > cursor) {
+                    cursor = next;
+                    chatEventOutboxRepository.acknowledge(nodeId, cursor);
+                }
+                if (waiting || entries.size() < batchSize) {
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            log.error("cannot poll chat events: cursor = {}, exception = {}", cursor, e.getMessage());
+        }
+    }
+
+    private boolean gapExpired() {
+        long now = System.currentTimeMillis();
+        if (gapSince == 0) {
+            gapSince = now;
+        }
+        return now - gapSince >= gapWaitMillis;
+    }
+
+    private void receive(OutboxEntry entry) {
+        ChatEvent event;
+        try {
+            event = objectMapper.readValue(entry.getPayload(), ChatEvent.class);
+        } catch (JsonProcessingException e) {
+            log.error("cannot read chat event: id = {}, exception = {}", entry.getId(), e.getMessage());
+            return;
+        }
+        receivedCounter.increment();
+        dispatch(event, true);
+    }
+
+    /**
+     * 모든 서버가 ack 한 오래된 이벤트를 삭제
+     */
+    @Scheduled(fixedDelayString = "${chat.event-bus.cleanup-interval-ms:60000}")
+    public void cleanup() {
+        long now = System.currentTimeMillis();
+        try {
+            chatEventOutboxRepository.deleteAcknowledged(new Timestamp(now - consumerTtlMillis), new Timestamp(now - retentionMillis));
+        } catch (Exception e) {
+            log.error("cannot clean up chat event outbox: {}", e.getMessage());
+        }
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+        // 종료 전에 남은 이벤트를 저장
+        flush();
+    }
+}
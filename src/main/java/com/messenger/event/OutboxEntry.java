@@ -0,0 +1,14 @@
+package com.messenger.event;
+
+import lombok.Value;
+
+/**
+ * chat_event_outbox 의 한 행
+ */
+@Value
+public class OutboxEntry {
+
+    long id;
+    String nodeId;
+    String payload;
+}
@@ -14,11 +14,21 @@ public enum ErrorCode {
     UNAUTHORIZED("권한이 없음", HttpStatus.UNAUTHORIZED),
     INTERNAL_SERVER_ERROR("서버 내부 에러", HttpStatus.INTERNAL_SERVER_ERROR),
     OK("정상", HttpStatus.OK),
+    TOO_MANY_REQUESTS("요청 횟수 제한을 초과함", HttpStatus.TOO_MANY_REQUESTS),
+    SERVER_BUSY("요청이 많아 잠시 후 다시 시도해야 함", HttpStatus.SERVICE_UNAVAILABLE),
 
 
     FAIL_SAVE_CHAT("채팅 메시지 저장 실패", HttpStatus.INTERNAL_SERVER_ERROR),
     FAIL_DELETE_CHAT("잘못된 요청으로 메시지를 삭제할 수 없음", HttpStatus.BAD_REQUEST),
     NOT_FOUND_CHAT("채팅 메시지를 찾을 수 없음", HttpStatus.NOT_FOUND),
+    CHAT_RATE_LIMITED("메시지 전송 횟수 제한을 초과함", HttpStatus.TOO_MANY_REQUESTS),
+    FAIL_DECODE_CHAT("저장된 메시지 본문을 읽을 수 없음", HttpStatus.INTERNAL_SERVER_ERROR),
+
+
+    FAIL_SAVE_BLOB("첨부 파일 저장 실패", HttpStatus.INTERNAL_SERVER_ERROR),
+    NOT_FOUND_BLOB("첨부 파일을 찾을 수 없음", HttpStatus.NOT_FOUND),
+    BLOB_TOO_LARGE("첨부 파일 크기 제한을 초과함", HttpStatus.PAYLOAD_TOO_LARGE),
+    RANGE_NOT_SATISFIABLE("요청한 범위가 파일 크기를 벗어남", HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE),
     ;
 
     public final String message;
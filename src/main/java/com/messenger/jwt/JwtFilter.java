@@ -2,6 +2,7 @@ package com.messenger.jwt;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.core.Authentication;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.util.StringUtils;
 import org.springframework.web.filter.GenericFilterBean;
@@ -10,12 +11,16 @@ import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
+import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
 
 @Slf4j
 public class JwtFilter extends GenericFilterBean {
 
+    // 쿠키로 인증할 수 있는 GET 경로 (SSE 구독, 첨부 파일 다운로드), 상태를 바꾸지 않는 요청만 둔다
+    private static final String[] COOKIE_AUTH_PATHS = {"/api/v1/events", "/api/v1/blobs/"};
+
     private final TokenProvider tokenProvider;
 
     public JwtFilter(TokenProvider tokenProvider) {
@@ -43,11 +48,30 @@ public class JwtFilter extends GenericFilterBean {
     }
 
     // Header에서 token을 꺼내옴
+    // 헤더를 보낼 수 없는 브라우저 EventSource, 태그(img 등)를 위해 COOKIE_AUTH_PATHS 의 GET 요청은 쿠키도 확인
+    // (CSRF 보호를 사용하지 않으므로 읽음 표시처럼 상태를 바꾸는 GET 을 포함해 다른 요청은 쿠키로 인증하지 않는다)
     private String resolveToken(HttpServletRequest request) {
         String bearerToken = request.getHeader(JwtSecurityConfig.AUTHORIZATION_HEADER);
         if (StringUtils.hasText(bearerToken) && bearerToken.startsWith(JwtSecurityConfig.TOKEN_PREFIX)) {
             return bearerToken.substring(JwtSecurityConfig.TOKEN_PREFIX.length());
         }
+        if (HttpMethod.GET.matches(request.getMethod()) && allowsCookie(request) && request.getCookies() != null) {
+            for (Cookie cookie : request.getCookies()) {
+                if (JwtSecurityConfig.AUTHORIZATION_COOKIE.equals(cookie.getName())) {
+                    return cookie.getValue();
+                }
+            }
+        }
         return null;
     }
+
+    private static boolean allowsCookie(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (String allowed : COOKIE_AUTH_PATHS) {
+            if (allowed.endsWith("/") ? path.startsWith(allowed) : path.equals(allowed)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -12,6 +12,8 @@ public class JwtSecurityConfig extends SecurityConfigurerAdapter<DefaultSecurity
 
     public static final String AUTHORIZATION_HEADER = "Authorization";
     public static final String AUTHORIZATION_COOKIE = "jwt-access-token";
+    public static final String REFRESH_COOKIE = "jwt-refresh-token";
+    public static final String REFRESH_COOKIE_PATH = "/api/v1/members";
     public static final String TOKEN_PREFIX = "Bearer ";
     private final TokenProvider tokenProvider;
 
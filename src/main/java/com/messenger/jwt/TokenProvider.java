@@ -2,6 +2,8 @@ package com.messenger.jwt;
 
 import com.messenger.domain.Member;
 import com.messenger.domain.TokenInfo;
+import com.messenger.event.ChatEvent;
+import com.messenger.event.ChatEventBus;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
@@ -18,6 +20,8 @@ import java.security.Key;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
+import java.util.Optional;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -25,16 +29,29 @@ import java.util.stream.Collectors;
 public class TokenProvider implements InitializingBean {
 
     private static final String AUTHORITIES_KEY = "auth";
+    private static final String TOKEN_TYPE_KEY = "typ";
+    private static final String FAMILY_KEY = "fam";
+    private static final String ACCESS_TOKEN_TYPE = "access";
+    private static final String REFRESH_TOKEN_TYPE = "refresh";
     private static final String GRANT_TYPE = "Bearer";
     private final String secret;
     private final long tokenValidityInMilliseconds;
+    private final long refreshTokenValidityInMilliseconds;
+    private final TokenRevocationList tokenRevocationList;
+    private final ChatEventBus chatEventBus;
     private Key key;
 
     // application.properties 의 설정값을 가져옴
     public TokenProvider(@Value("${jwt.secret}") String secret,
-                         @Value("${jwt.token-validity-in-seconds}") long tokenValiditySeconds) {
+                         @Value("${jwt.token-validity-in-seconds}") long tokenValiditySeconds,
+                         @Value("${jwt.refresh-token-validity-in-seconds:1209600}") long refreshTokenValiditySeconds,
+                         TokenRevocationList tokenRevocationList,
+                         ChatEventBus chatEventBus) {
         this.secret = secret;
         this.tokenValidityInMilliseconds = tokenValiditySeconds * 1000;
+        this.refreshTokenValidityInMilliseconds = refreshTokenValiditySeconds * 1000;
+        this.tokenRevocationList = tokenRevocationList;
+        this.chatEventBus = chatEventBus;
     }
     
     // 문자열을 바이트 배열로 Base64 decode 후, 비밀키로 설정
@@ -46,34 +63,118 @@ public class TokenProvider implements InitializingBean {
         log.debug("keyBytes : {} bytes ({} bits)", keyBytes.length, keyBytes.length * 8);
     }
 
+    /**
+     * 로그인 성공 시 access token, refresh token 을 새로 발급 (새 token family 시작)
+     */
     public TokenInfo createToken(Authentication authentication) {
-        String authorities = authentication.getAuthorities().stream()
+        return createToken(authentication.getName(), authentication.getAuthorities(), UUID.randomUUID().toString());
+    }
+
+    /**
+     * 같은 token family 로 access token, refresh token 을 발급
+     * family 는 로그인 한 번에서 이어지는 refresh token 들을 묶는 id 로, 로그아웃이나 재사용 감지 시 한 번에 폐기한다
+     */
+    public TokenInfo createToken(String subject, Collection<? extends GrantedAuthority> grantedAuthorities, String family) {
+        String authorities = grantedAuthorities.stream()
                 .map(GrantedAuthority::getAuthority)
                 .collect(Collectors.joining(","));
 
         long now = (new Date()).getTime();
         Date validity = new Date(now + this.tokenValidityInMilliseconds);
+        Date refreshValidity = new Date(now + this.refreshTokenValidityInMilliseconds);
 
         String accessToken = Jwts.builder()
-                .setSubject(authentication.getName())
+                .setId(UUID.randomUUID().toString())
+                .setSubject(subject)
                 .claim(AUTHORITIES_KEY, authorities)
+                .claim(TOKEN_TYPE_KEY, ACCESS_TOKEN_TYPE)
+                .claim(FAMILY_KEY, family)
                 .signWith(key, SignatureAlgorithm.HS512)
                 .setExpiration(validity)
                 .compact();
 
+        String refreshToken = Jwts.builder()
+                .setId(UUID.randomUUID().toString())
+                .setSubject(subject)
+                .claim(TOKEN_TYPE_KEY, REFRESH_TOKEN_TYPE)
+                .claim(FAMILY_KEY, family)
+                .signWith(key, SignatureAlgorithm.HS512)
+                .setExpiration(refreshValidity)
+                .compact();
+
         return TokenInfo.builder()
                 .grantType(GRANT_TYPE)
                 .accessToken(accessToken)
+                .refreshToken(refreshToken)
                 .build();
     }
 
-    public Authentication getAuthentication(String token) {
-        Claims claims = Jwts
+    /**
+     * refresh token 을 검증하고 사용 처리 (rotation)
+     * 이미 사용한 refresh token 이 다시 들어오면 탈취된 것으로 보고 family 전체를 폐기한다
+     * @param refreshToken refresh token
+     * @return 유효하면 refresh token 의 claims, 아니면 empty
+     */
+    public Optional<Claims> useRefreshToken(String refreshToken) {
+        Claims claims;
+        try {
+            claims = parseClaims(refreshToken);
+        } catch (JwtException | IllegalArgumentException e) {
+            log.debug("유효하지 않은 refresh token 입니다: {}", e.getMessage());
+            return Optional.empty();
+        }
+        if (!REFRESH_TOKEN_TYPE.equals(claims.get(TOKEN_TYPE_KEY)) || claims.getId() == null) {
+            return Optional.empty();
+        }
+        String family = claims.get(FAMILY_KEY, String.class);
+        if (family == null || tokenRevocationList.isRevoked(family)) {
+            return Optional.empty();
+        }
+        if (!tokenRevocationList.revokeIfAbsent(claims.getId(), claims.getExpiration().getTime())) {
+            log.debug("이미 사용한 refresh token 입니다, family 를 폐기합니다: subject = {}", claims.getSubject());
+            revokeFamily(family);
+            return Optional.empty();
+        }
+        // 다른 서버의 메모리에도 사용한 refresh token 으로 기록 (전달되기 전의 재사용은 DB 에 저장한 기록으로 감지한다)
+        chatEventBus.publish(ChatEvent.tokenRevoked(claims.getId(), claims.getExpiration().getTime()));
+        return Optional.of(claims);
+    }
+
+    public String getFamily(Claims claims) {
+        return claims.get(FAMILY_KEY, String.class);
+    }
+
+    /**
+     * 토큰의 family 를 폐기 (로그아웃), 같은 family 의 access token, refresh token 이 모두 무효가 된다
+     * @param token access token 또는 refresh token
+     */
+    public void revoke(String token) {
+        try {
+            String family = parseClaims(token).get(FAMILY_KEY, String.class);
+            if (family != null) {
+                revokeFamily(family);
+            }
+        } catch (JwtException | IllegalArgumentException e) {
+            log.debug("폐기할 토큰이 유효하지 않습니다: {}", e.getMessage());
+        }
+    }
+
+    private void revokeFamily(String family) {
+        // family 의 마지막 refresh token 이 만료될 때까지 유지, 모든 서버의 폐기 목록에 반영된다 (ChatEventHandler)
+        chatEventBus.publish(ChatEvent.tokenRevoked(family, System.currentTimeMillis() + refreshTokenValidityInMilliseconds));
+    }
+
+    private Claims parseClaims(String token) {
+        return Jwts
                 .parserBuilder()
                 .setSigningKey(key)
                 .build()
                 .parseClaimsJws(token)
                 .getBody();
+    }
+
+    public Authentication getAuthentication(String token) {
+        Claims claims = parseClaims(token);
 
         Collection<? extends GrantedAuthority> authorities =
                 Arrays.stream(claims.get(AUTHORITIES_KEY).toString().split(","))
@@ -91,7 +192,18 @@ public class TokenProvider implements InitializingBean {
 
     public boolean validateToken(String token) {
         try {
-            Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token);
+            Claims claims = parseClaims(token);
+            if (!ACCESS_TOKEN_TYPE.equals(claims.get(TOKEN_TYPE_KEY))) {
+                log.debug("access token 이 아닙니다");
+                return false;
+            }
+            // 폐기 여부는 메모리에서만 확인 (DB 조회 없음)
+            String family = claims.get(FAMILY_KEY, String.class);
+            if ((claims.getId() != null && tokenRevocationList.isRevoked(claims.getId()))
+                    || (family != null && tokenRevocationList.isRevoked(family))) {
+                log.debug("폐기된 JWT 토큰입니다");
+                return false;
+            }
             return true;
         } catch (io.jsonwebtoken.security.SecurityException | MalformedJwtException e) {
             log.debug("잘못된 JWT 서명입니다");
@@ -0,0 +1,92 @@
+package com.messenger.jwt;
+
+import com.messenger.repository.TokenRevocationRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 폐기된 토큰 id(jti) 와 토큰 family id 를 만료 시각까지 메모리에 보관
+ * 요청마다 hash 조회만 하므로 DB 를 조회하지 않는다
+ * 폐기할 때 DB(token_revocation)에도 저장하고, 서버를 시작할 때 다시 불러와서 재시작 뒤에도 폐기 상태를 유지한다
+ * 만료 시각이 지난 항목은 토큰 자체가 만료되어 검증에 실패하므로 주기적으로 제거한다
+ */
+@Slf4j
+@Component
+public class TokenRevocationList implements SmartInitializingSingleton {
+
+    private final ConcurrentHashMap<String, Long> revoked = new ConcurrentHashMap<>();
+    private final TokenRevocationRepository tokenRevocationRepository;
+
+    public TokenRevocationList(TokenRevocationRepository tokenRevocationRepository, MeterRegistry meterRegistry) {
+        this.tokenRevocationRepository = tokenRevocationRepository;
+        Gauge.builder("auth.token.revoked", revoked, ConcurrentHashMap::size)
+                .description("메모리에 보관 중인 폐기된 토큰 수")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 웹 서버가 요청을 받기 전에 저장된 폐기 항목을 불러온다
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        Map<String, Long> saved = tokenRevocationRepository.findNotExpired(System.currentTimeMillis());
+        saved.forEach((id, expiresAt) -> revoked.merge(id, expiresAt, Math::max));
+        log.info("revoked tokens loaded: {}", saved.size());
+    }
+
+    /**
+     * @param id 토큰 id 또는 family id
+     * @param expiresAtMillis 이 시각까지 폐기 상태를 유지
+     */
+    public void revoke(String id, long expiresAtMillis) {
+        Long before = revoked.get(id);
+        revoked.merge(id, expiresAtMillis, Math::max);
+        if (before != null && before >= expiresAtMillis) {
+            return;
+        }
+        try {
+            tokenRevocationRepository.save(id, expiresAtMillis);
+        } catch (DataAccessException e) {
+            // 메모리에는 반영했으므로 이 서버는 계속 거부한다, 다른 서버는 이벤트로 반영한다
+            log.error("failed to save revoked token, id = {}", id, e);
+        }
+    }
+
+    /**
+     * 아직 폐기되지 않은 경우에만 폐기 (refresh token 을 한 번만 사용하도록 하기 위함)
+     * 서버를 다시 시작했거나 다른 서버에서 먼저 사용한 경우도 DB 로 확인한다
+     * @return 이번 호출로 폐기했으면 true, 이미 폐기되어 있었으면 false
+     */
+    public boolean revokeIfAbsent(String id, long expiresAtMillis) {
+        if (revoked.containsKey(id)) {
+            return false;
+        }
+        if (!tokenRevocationRepository.saveIfAbsent(id, expiresAtMillis)) {
+            revoked.merge(id, expiresAtMillis, Math::max);
+            return false;
+        }
+        return revoked.putIfAbsent(id, expiresAtMillis) == null;
+    }
+
+    public boolean isRevoked(String id) {
+        Long expiresAt = revoked.get(id);
+        return expiresAt != null && expiresAt > System.currentTimeMillis();
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.revocation.purge-interval-ms:60000}")
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        int before = revoked.size();
+        revoked.values().removeIf(expiresAt -> expiresAt <= now);
+        int deleted = tokenRevocationRepository.deleteExpired(now);
+        log.debug("revoked tokens purged: {} -> {}, deleted from db = {}", before, revoked.size(), deleted);
+    }
+}
@@ -0,0 +1,477 @@
+package com.messenger.logstore;
+
+import com.messenger.exception.ErrorCode;
+import com.messenger.exception.MyException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * SegmentedLog 에 메시지를 저장하고 메모리 색인으로 조회하는 저장소
+ *
+ * 로그에는 메시지, 삭제 표시, 읽음 표시, 사용자별 읽음 표시 레코드를 순서대로 추가만 하고, 열 때 replay 해서 색인을 다시 만든다
+ * - id 는 1 부터 빈틈없이 붙이므로 id → offset 은 배열 하나이다
+ * - 대화(conversation key), 전송 사용자, 수신 사용자, blob id 별로 id 목록을 오름차순으로 가진다
+ *   커서 페이지는 id 목록에서 이진 탐색으로 시작 위치를 찾고, 순번은 대화 id 목록의 위치 + 1 이다
+ * - 본문은 메모리에 두지 않고 조회할 때 mmap 된 segment 에서 읽는다
+ * 쓰기는 하나씩, 읽기는 동시에 한다 (ReentrantReadWriteLock)
+ */
+@Slf4j
+public class LogMessageStore implements Closeable {
+
+    public enum Index {
+        // 모든 메시지
+        ALL,
+        // 대화 (1:1 group_id, 그룹 채팅방 id)
+        CONVERSATION,
+        SENDER,
+        // 1:1 메시지의 수신 사용자
+        RECEIVER,
+        // 첨부 파일, 긴 본문의 blob id
+        BLOB
+    }
+
+    private static final byte MESSAGE = 1;
+    private static final byte DELETE = 2;
+    private static final byte READ = 3;
+    // 그룹 메시지를 읽은 사용자별 읽음 표시
+    private static final byte READ_BY = 4;
+    private static final LongList EMPTY = new LongList(1);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final LongList offsets = new LongList(1024);
+    private final Map<String, LongList> conversations = new HashMap<>();
+    private final Map<String, LongList> senders = new HashMap<>();
+    private final Map<String, LongList> receivers = new HashMap<>();
+    private final Map<String, LongList> blobs = new HashMap<>();
+    private final Map<String, Long> clientMessageIds = new HashMap<>();
+    private final Map<Long, Long> deletedAt = new HashMap<>();
+    private final Map<Long, Long> readAt = new HashMap<>();
+    // 그룹 메시지 id → 읽은 사용자 → 읽은 시각
+    private final Map<Long, Map<String, Long>> readBy = new HashMap<>();
+    // 1:1 대화 상대방 목록
+    private final Map<String, Set<String>> partners = new HashMap<>();
+    private final SegmentedLog segmentedLog;
+
+    private LogMessageStore(Path dir, int segmentSize) throws IOException {
+        this.segmentedLog = SegmentedLog.open(dir, segmentSize, this::replay);
+        log.info("log message store opened: dir={}, messages={}, deleted={}", dir.toAbsolutePath(), offsets.size(), deletedAt.size());
+    }
+
+    public static LogMessageStore open(Path dir, int segmentSize) throws IOException {
+        return new LogMessageStore(dir, segmentSize);
+    }
+
+    /**
+     * 메시지 id 가 빈틈없이 이어지지 않으면 손상된 로그로 보고 열지 않는다
+     * (건너뛰면 뒤의 메시지를 모두 버리고, 이미 있는 id 를 다시 붙여서 삭제, 읽음 표시가 다른 메시지에 적용된다)
+     */
+    private void replay(long offset, byte type, ByteBuffer payload) throws IOException {
+        switch (type) {
+            case MESSAGE:
+                MessageRecord record = MessageRecord.decode(payload);
+                if (record.getId() != offsets.size() + 1) {
+                    throw new IOException("unexpected message id in log: id = " + record.getId()
+                            + ", expected = " + (offsets.size() + 1) + ", offset = " + offset);
+                }
+                index(record, offset);
+                break;
+            case DELETE:
+                deletedAt.putIfAbsent(payload.getLong(0), payload.getLong(8));
+                break;
+            case READ:
+                readAt.putIfAbsent(payload.getLong(0), payload.getLong(8));
+                break;
+            case READ_BY:
+                byte[] userId = new byte[payload.remaining() - Long.BYTES * 2];
+                payload.duplicate().position(Long.BYTES * 2).get(userId);
+                readBy.computeIfAbsent(payload.getLong(0), k -> new HashMap<>())
+                        .putIfAbsent(new String(userId, StandardCharsets.UTF_8), payload.getLong(8));
+                break;
+            default:
+                log.error("unknown record type in log: type = {}, offset = {}", type, offset);
+        }
+    }
+
+    private void index(MessageRecord record, long offset) {
+        offsets.add(offset);
+        long id = record.getId();
+        conversations.computeIfAbsent(record.getConversationKey(), k -> new LongList()).add(id);
+        senders.computeIfAbsent(record.getSenderUserId(), k -> new LongList()).add(id);
+        if (record.getReceiverUserId() != null) {
+            receivers.computeIfAbsent(record.getReceiverUserId(), k -> new LongList()).add(id);
+            partners.computeIfAbsent(record.getSenderUserId(), k -> new HashSet<>()).add(record.getReceiverUserId());
+            partners.computeIfAbsent(record.getReceiverUserId(), k -> new HashSet<>()).add(record.getSenderUserId());
+        }
+        if (record.getBlobId() != null) {
+            blobs.computeIfAbsent(record.getBlobId(), k -> new LongList()).add(id);
+        }
+        if (record.getClientMessageId() != null) {
+            clientMessageIds.put(clientKey(record.getSenderUserId(), record.getClientMessageId()), id);
+        }
+    }
+
+    /**
+     * 메시지를 추가, id 와 대화 안의 순번을 붙인다
+     * @param clientMessageId (Nullable) 클라이언트가 만든 메시지 id, 같은 전송 사용자의 같은 id 는 한 번만 저장된다
+     * @return 저장한 메시지
+     * @throws DuplicateKeyException 이미 같은 clientMessageId 로 저장한 메시지가 있는 경우
+     */
+    public MessageRecord append(String conversationKey, String senderUserId, String receiverUserId, long roomId,
+                                String content, String blobId, String clientMessageId) {
+        lock.writeLock().lock();
+        try {
+            if (clientMessageId != null && clientMessageIds.containsKey(clientKey(senderUserId, clientMessageId))) {
+                throw new DuplicateKeyException("duplicate client message id: " + senderUserId + ", " + clientMessageId);
+            }
+            LongList conversation = conversations.get(conversationKey);
+            MessageRecord record = MessageRecord.builder()
+                    .id(offsets.size() + 1)
+                    .seq(conversation == null ? 1 : conversation.size() + 1)
+                    .createdAt(System.currentTimeMillis())
+                    .conversationKey(conversationKey)
+                    .senderUserId(senderUserId)
+                    .receiverUserId(receiverUserId)
+                    .roomId(roomId)
+                    .content(content)
+                    .blobId(blobId)
+                    .clientMessageId(clientMessageId)
+                    .build();
+            long offset = write(MESSAGE, record.encode());
+            index(record, offset);
+            return record;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 삭제 표시
+     * @param senderUserId (Nullable) 있으면 전송 사용자가 같은 메시지만 삭제한다
+     * @return 삭제 표시했으면 true, 없거나 이미 삭제된 메시지이면 false
+     */
+    public boolean markDeleted(long id, String senderUserId) {
+        lock.writeLock().lock();
+        try {
+            if (id < 1 || id > offsets.size() || deletedAt.containsKey(id)) {
+                return false;
+            }
+            if (senderUserId != null && !senderUserId.equals(read(id).getSenderUserId())) {
+                return false;
+            }
+            long now = System.currentTimeMillis();
+            write(DELETE, idAndTime(id, now));
+            deletedAt.put(id, now);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 읽음 표시
+     * @return 읽음 표시했으면 true, 없거나 삭제됐거나 이미 읽은 메시지이면 false
+     */
+    public boolean markRead(long id) {
+        lock.writeLock().lock();
+        try {
+            if (id < 1 || id > offsets.size() || deletedAt.containsKey(id) || readAt.containsKey(id)) {
+                return false;
+            }
+            long now = System.currentTimeMillis();
+            write(READ, idAndTime(id, now));
+            readAt.put(id, now);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 사용자별 읽음 표시 (그룹 메시지)
+     * @return 읽음 표시했으면 true, 없거나 삭제됐거나 그 사용자가 이미 읽은 메시지이면 false
+     */
+    public boolean markReadBy(long id, String userId) {
+        lock.writeLock().lock();
+        try {
+            if (id < 1 || id > offsets.size() || deletedAt.containsKey(id)
+                    || readBy.getOrDefault(id, Collections.emptyMap()).containsKey(userId)) {
+                return false;
+            }
+            long now = System.currentTimeMillis();
+            write(READ_BY, idTimeAndUser(id, now, userId));
+            readBy.computeIfAbsent(id, k -> new HashMap<>()).put(userId, now);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private long write(byte type, byte[] payload) {
+        try {
+            return segmentedLog.append(type, payload);
+        } catch (IOException e) {
+            log.error("log append failed: type = {}, exception = {}", type, e.getMessage());
+            throw new MyException(ErrorCode.FAIL_SAVE_CHAT);
+        }
+    }
+
+    /**
+     * 삭제되지 않은 메시지
+     */
+    public Optional<MessageRecord> find(long id) {
+        lock.readLock().lock();
+        try {
+            if (id < 1 || id > offsets.size() || deletedAt.containsKey(id)) {
+                return Optional.empty();
+            }
+            return Optional.of(read(id));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 클라이언트가 만든 메시지 id 로 저장한 메시지 (삭제 표시된 메시지 포함)
+     */
+    public Optional<MessageRecord> findByClientMessageId(String senderUserId, String clientMessageId) {
+        lock.readLock().lock();
+        try {
+            Long id = clientMessageIds.get(clientKey(senderUserId, clientMessageId));
+            return id == null ? Optional.empty() : Optional.of(read(id));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 색인에서 beforeId 보다 작은 삭제되지 않은 메시지를 최신 순으로 검색
+     * @param beforeId 이전 조회한 마지막 메시지 id (처음이면 Long.MAX_VALUE)
+     * @param filter 조건에 맞는 메시지만 size 개까지 모은다
+     */
+    public List<MessageRecord> findBefore(Index index, String key, long beforeId, int size, Predicate<MessageRecord> filter) {
+        lock.readLock().lock();
+        try {
+            LongList ids = ids(index, key);
+            List<MessageRecord> result = new ArrayList<>(Math.min(size, 64));
+            for (int i = lowerBound(index, ids, beforeId) - 1; i >= 0 && result.size() < size; i--) {
+                collect(idAt(index, ids, i), filter, result);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 색인에서 afterId 보다 큰 삭제되지 않은 메시지를 오래된 순으로 검색
+     */
+    public List<MessageRecord> findAfter(Index index, String key, long afterId, int size, Predicate<MessageRecord> filter) {
+        lock.readLock().lock();
+        try {
+            LongList ids = ids(index, key);
+            int count = count(index, ids);
+            List<MessageRecord> result = new ArrayList<>(Math.min(size, 64));
+            long from = afterId == Long.MAX_VALUE ? afterId : afterId + 1;
+            for (int i = lowerBound(index, ids, from); i < count && result.size() < size; i++) {
+                collect(idAt(index, ids, i), filter, result);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 대화에서 순번이 fromSeq 이상 toSeq 이하인 삭제되지 않은 메시지를 순번 순으로 검색
+     */
+    public List<MessageRecord> findSeqRange(String conversationKey, long fromSeq, long toSeq) {
+        lock.readLock().lock();
+        try {
+            LongList ids = conversations.get(conversationKey);
+            if (ids == null) {
+                return Collections.emptyList();
+            }
+            List<MessageRecord> result = new ArrayList<>();
+            long last = Math.min(toSeq, ids.size());
+            for (long seq = Math.max(1, fromSeq); seq <= last; seq++) {
+                collect(ids.get((int) seq - 1), record -> true, result);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 대화에서 마지막으로 붙인 순번, 메시지가 없으면 0
+     */
+    public long lastSeq(String conversationKey) {
+        lock.readLock().lock();
+        try {
+            LongList ids = conversations.get(conversationKey);
+            return ids == null ? 0 : ids.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 대화의 삭제되지 않은 마지막 메시지 id, 없으면 0
+     */
+    public long lastId(String conversationKey) {
+        lock.readLock().lock();
+        try {
+            LongList ids = conversations.get(conversationKey);
+            if (ids == null) {
+                return 0;
+            }
+            for (int i = ids.size() - 1; i >= 0; i--) {
+                if (!deletedAt.containsKey(ids.get(i))) {
+                    return ids.get(i);
+                }
+            }
+            return 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * (Nullable) 읽음 표시한 시각 (epoch ms)
+     */
+    public Long readAt(long id) {
+        lock.readLock().lock();
+        try {
+            return readAt.get(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 메시지를 읽은 사용자별 읽음 표시한 시각 (epoch ms)
+     */
+    public Map<String, Long> readBy(long id) {
+        lock.readLock().lock();
+        try {
+            return new HashMap<>(readBy.getOrDefault(id, Collections.emptyMap()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 1:1 메시지를 주고받은 상대방 사용자 id
+     */
+    public Set<String> partners(String userId) {
+        lock.readLock().lock();
+        try {
+            return new HashSet<>(partners.getOrDefault(userId, Collections.emptySet()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 저장한 메시지 수 (삭제 표시 포함)
+     */
+    public int count() {
+        lock.readLock().lock();
+        try {
+            return offsets.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 추가한 레코드를 디스크에 내린다 (fsync), 쓰기와 동시에 호출해도 된다
+     */
+    public void flush() {
+        segmentedLog.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            segmentedLog.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void collect(long id, Predicate<MessageRecord> filter, List<MessageRecord> result) {
+        if (deletedAt.containsKey(id)) {
+            return;
+        }
+        MessageRecord record = read(id);
+        if (filter.test(record)) {
+            result.add(record);
+        }
+    }
+
+    private MessageRecord read(long id) {
+        return MessageRecord.decode(segmentedLog.read(offsets.get((int) id - 1)));
+    }
+
+    private LongList ids(Index index, String key) {
+        switch (index) {
+            case CONVERSATION:
+                return conversations.getOrDefault(key, EMPTY);
+            case SENDER:
+                return senders.getOrDefault(key, EMPTY);
+            case RECEIVER:
+                return receivers.getOrDefault(key, EMPTY);
+            case BLOB:
+                return blobs.getOrDefault(key, EMPTY);
+            default:
+                return null;
+        }
+    }
+
+    // Index.ALL 은 id 가 1 부터 빈틈없으므로 위치 i 의 id 는 i + 1 이다
+    private long idAt(Index index, LongList ids, int i) {
+        return index == Index.ALL ? i + 1 : ids.get(i);
+    }
+
+    private int count(Index index, LongList ids) {
+        return index == Index.ALL ? offsets.size() : ids.size();
+    }
+
+    private int lowerBound(Index index, LongList ids, long id) {
+        if (index == Index.ALL) {
+            return (int) Math.max(0, Math.min(id - 1, offsets.size()));
+        }
+        return ids.lowerBound(id);
+    }
+
+    private static byte[] idAndTime(long id, long time) {
+        return ByteBuffer.allocate(Long.BYTES * 2).putLong(id).putLong(time).array();
+    }
+
+    private static byte[] idTimeAndUser(long id, long time, String userId) {
+        byte[] user = userId.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(Long.BYTES * 2 + user.length).putLong(id).putLong(time).put(user).array();
+    }
+
+    private static String clientKey(String senderUserId, String clientMessageId) {
+        return senderUserId + "\n" + clientMessageId;
+    }
+}
@@ -0,0 +1,56 @@
+package com.messenger.logstore;
+
+import java.util.Arrays;
+
+/**
+ * 오름차순으로 추가되는 long 값 목록 (메시지 id, offset 색인)
+ * thread-safe 하지 않다
+ */
+public class LongList {
+
+    private long[] values;
+    private int size;
+
+    public LongList() {
+        this(8);
+    }
+
+    public LongList(int capacity) {
+        this.values = new long[Math.max(1, capacity)];
+    }
+
+    public void add(long value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    public long get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException(index + " >= " + size);
+        }
+        return values[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * value 이상인 첫 위치 (모두 작으면 size), 오름차순으로 추가된 경우에만 사용한다
+     */
+    public int lowerBound(long value) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
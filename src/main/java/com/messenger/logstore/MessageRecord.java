@@ -0,0 +1,101 @@
+package com.messenger.logstore;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 로그에 저장하는 메시지 (1:1, 그룹 공통)
+ * 1:1 메시지는 receiverUserId, 그룹 메시지는 roomId 를 사용한다
+ */
+@Value
+public class MessageRecord {
+
+    long id;
+    // 대화 안의 순번
+    long seq;
+    long createdAt;
+    // 대화 key (1:1 은 group_id, 그룹은 채팅방 id)
+    String conversationKey;
+    String senderUserId;
+    // (Nullable) 1:1 메시지의 수신 사용자
+    String receiverUserId;
+    long roomId;
+    String content;
+    // (Nullable) 첨부 파일 또는 긴 본문의 blob id
+    String blobId;
+    // (Nullable) 클라이언트가 만든 메시지 id
+    String clientMessageId;
+
+    @Builder
+    private MessageRecord(long id, long seq, long createdAt, String conversationKey, String senderUserId, String receiverUserId,
+                          long roomId, String content, String blobId, String clientMessageId) {
+        this.id = id;
+        this.seq = seq;
+        this.createdAt = createdAt;
+        this.conversationKey = conversationKey;
+        this.senderUserId = senderUserId;
+        this.receiverUserId = receiverUserId;
+        this.roomId = roomId;
+        this.content = content;
+        this.blobId = blobId;
+        this.clientMessageId = clientMessageId;
+    }
+
+    public byte[] encode() {
+        byte[][] strings = {
+                bytes(conversationKey), bytes(senderUserId), bytes(receiverUserId),
+                bytes(content), bytes(blobId), bytes(clientMessageId)
+        };
+        int size = Long.BYTES * 4;
+        for (byte[] string : strings) {
+            size += Integer.BYTES + (string == null ? 0 : string.length);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putLong(id).putLong(seq).putLong(createdAt).putLong(roomId);
+        for (byte[] string : strings) {
+            if (string == null) {
+                buffer.putInt(-1);
+            } else {
+                buffer.putInt(string.length).put(string);
+            }
+        }
+        return buffer.array();
+    }
+
+    public static MessageRecord decode(ByteBuffer payload) {
+        ByteBuffer buffer = payload.duplicate();
+        long id = buffer.getLong();
+        long seq = buffer.getLong();
+        long createdAt = buffer.getLong();
+        long roomId = buffer.getLong();
+        return MessageRecord.builder()
+                .id(id)
+                .seq(seq)
+                .createdAt(createdAt)
+                .roomId(roomId)
+                .conversationKey(string(buffer))
+                .senderUserId(string(buffer))
+                .receiverUserId(string(buffer))
+                .content(string(buffer))
+                .blobId(string(buffer))
+                .clientMessageId(string(buffer))
+                .build();
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
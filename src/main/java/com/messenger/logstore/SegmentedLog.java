@@ -0,0 +1,278 @@
+package com.messenger.logstore;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * 로컬 디스크의 append-only 로그, 고정 크기 segment 파일을 memory-mapped 로 읽고 쓴다
+ *
+ * 레코드 형식: [payload 길이 int][CRC32(type + payload) int][type byte][payload]
+ * - segment 파일은 만들 때 0 으로 채워진 크기로 잡히고, 길이가 0 이면 그 segment 의 끝이다
+ * - 레코드는 segment 를 넘어가지 않는다 (남은 공간이 부족하면 다음 segment 에 쓴다)
+ * - offset 은 (segment 번호 << 32 | segment 안의 위치) 이다
+ * 쓰기는 page cache 에만 하므로 프로세스가 죽어도 남지만, OS 가 죽으면 마지막 flush() 이후의 레코드는 사라질 수 있다
+ * 다시 열 때 마지막 segment 에서 CRC 가 맞지 않는 레코드(쓰다 중단된 레코드)부터 끝까지 0 으로 지우고 이어서 쓴다
+ *
+ * thread-safe 하지 않다, append 와 read 의 동기화는 사용하는 쪽에서 한다 (flush 는 다른 thread 에서 호출해도 된다)
+ */
+@Slf4j
+public class SegmentedLog implements Closeable {
+
+    public static final int HEADER_SIZE = 9;
+    private static final String SUFFIX = ".log";
+
+    /**
+     * 다시 열 때 저장된 레코드를 순서대로 받는다
+     * 레코드가 손상되어 이어서 replay 할 수 없으면 IOException 을 던져서 open 을 실패시킨다
+     */
+    public interface RecordConsumer {
+        void accept(long offset, byte type, ByteBuffer payload) throws IOException;
+    }
+
+    private final Path dir;
+    private final int segmentSize;
+    private final List<Segment> segments = new ArrayList<>();
+    // flush() 는 다른 thread 에서 호출한다
+    private volatile Segment active;
+    private int position;
+    // append 한 크기 합, flush() 는 바뀐 것이 없으면 건너뛴다
+    private volatile long written;
+    private long flushed;
+
+    private SegmentedLog(Path dir, int segmentSize) {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * 로그를 열고 저장된 레코드를 replay 한다
+     * @param dir segment 파일 디렉터리 (없으면 만든다)
+     * @param segmentSize segment 파일 크기 (byte, 8 의 배수)
+     * @param consumer 저장된 레코드를 받을 함수
+     */
+    public static SegmentedLog open(Path dir, int segmentSize, RecordConsumer consumer) throws IOException {
+        if (segmentSize < 4096 || segmentSize % 8 != 0) {
+            throw new IllegalArgumentException("segment size must be a multiple of 8 and at least 4096: " + segmentSize);
+        }
+        Files.createDirectories(dir);
+        SegmentedLog log = new SegmentedLog(dir, segmentSize);
+        try {
+            log.recover(consumer);
+        } catch (IOException e) {
+            // 이미 연 segment 를 닫는다 (replay 를 끝내지 못했으므로 flush 하지 않는다)
+            for (Segment segment : log.segments) {
+                segment.channel.close();
+            }
+            throw e;
+        }
+        return log;
+    }
+
+    private void recover(RecordConsumer consumer) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        files.sort(null);
+        for (int i = 0; i < files.size(); i++) {
+            Path expected = dir.resolve(fileName(i));
+            if (!files.get(i).equals(expected)) {
+                throw new IOException("missing log segment: " + expected);
+            }
+        }
+
+        if (files.isEmpty()) {
+            active = openSegment(0);
+            segments.add(active);
+            position = 0;
+            return;
+        }
+
+        for (int i = 0; i < files.size(); i++) {
+            Segment segment = openSegment(i);
+            segments.add(segment);
+            int end = replay(segment, consumer);
+            if (i == files.size() - 1) {
+                active = segment;
+                position = end;
+                clearTail(segment, end);
+            }
+        }
+        log.info("log opened: dir={}, segments={}, position={}", dir.toAbsolutePath(), segments.size(), position);
+    }
+
+    /**
+     * segment 의 레코드를 replay 하고 마지막 정상 레코드의 끝 위치를 반환
+     */
+    private int replay(Segment segment, RecordConsumer consumer) throws IOException {
+        ByteBuffer buffer = segment.buffer.duplicate();
+        CRC32 crc = new CRC32();
+        int pos = 0;
+        while (pos + HEADER_SIZE <= segmentSize) {
+            int length = buffer.getInt(pos);
+            if (length <= 0 || length > segmentSize - pos - HEADER_SIZE) {
+                break;
+            }
+            int checksum = buffer.getInt(pos + 4);
+            byte type = buffer.get(pos + 8);
+            ByteBuffer payload = slice(buffer, pos + HEADER_SIZE, length);
+            crc.reset();
+            crc.update(type);
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                log.warn("torn record discarded: segment={}, position={}", segment.index, pos);
+                break;
+            }
+            consumer.accept(offset(segment.index, pos), type, payload);
+            pos += HEADER_SIZE + length;
+        }
+        return pos;
+    }
+
+    private void clearTail(Segment segment, int from) {
+        // OS 가 죽으면 page 단위로 내려가므로 중단된 레코드 뒤에 이전 레코드가 남아 있을 수 있다
+        // 새 레코드의 경계가 남은 레코드와 맞아서 다시 살아나지 않도록 끝까지 0 이 아닌 곳을 지운다
+        ByteBuffer buffer = segment.buffer;
+        int cleared = 0;
+        int pos = from;
+        for (; pos < segmentSize && (pos & 7) != 0; pos++) {
+            if (buffer.get(pos) != 0) {
+                buffer.put(pos, (byte) 0);
+                cleared++;
+            }
+        }
+        for (; pos + 8 <= segmentSize; pos += 8) {
+            if (buffer.getLong(pos) != 0) {
+                buffer.putLong(pos, 0);
+                cleared += 8;
+            }
+        }
+        if (cleared > 0) {
+            segment.buffer.force();
+            log.warn("log tail cleared: segment={}, from={}, bytes={}", segment.index, from, cleared);
+        }
+    }
+
+    /**
+     * 레코드를 추가하고 offset 을 반환
+     */
+    public long append(byte type, byte[] payload) throws IOException {
+        int recordSize = HEADER_SIZE + payload.length;
+        if (recordSize > segmentSize) {
+            throw new IOException("record larger than segment: " + recordSize);
+        }
+        if (position + recordSize > segmentSize) {
+            roll();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+
+        // payload 를 먼저 쓰고 길이를 마지막에 써서, 중간에 멈추면 길이 0 또는 CRC 불일치가 되도록 한다
+        ByteBuffer buffer = active.buffer.duplicate();
+        buffer.position(position + HEADER_SIZE);
+        buffer.put(payload);
+        buffer.put(position + 8, type);
+        buffer.putInt(position + 4, (int) crc.getValue());
+        buffer.putInt(position, payload.length);
+
+        long offset = offset(active.index, position);
+        position += recordSize;
+        written += recordSize;
+        return offset;
+    }
+
+    private void roll() throws IOException {
+        // 다음 segment 로 넘어가기 전에 이전 segment 는 디스크에 내린다
+        active.buffer.force();
+        active = openSegment(segments.size());
+        segments.add(active);
+        position = 0;
+        log.info("log segment rolled: dir={}, segment={}", dir.toAbsolutePath(), active.index);
+    }
+
+    /**
+     * offset 의 레코드 payload (read-only, 복사하지 않는다)
+     */
+    public ByteBuffer read(long offset) {
+        Segment segment = segments.get((int) (offset >>> 32));
+        int pos = (int) offset;
+        ByteBuffer buffer = segment.buffer;
+        int length = buffer.getInt(pos);
+        return slice(buffer, pos + HEADER_SIZE, length).asReadOnlyBuffer();
+    }
+
+    /**
+     * 쓴 레코드를 디스크에 내린다 (fsync)
+     * 이미 다 쓴 이전 segment 는 roll 할 때 내렸으므로 현재 segment 만 내린다
+     */
+    public synchronized void flush() {
+        long target = written;
+        if (target == flushed) {
+            return;
+        }
+        active.buffer.force();
+        flushed = target;
+    }
+
+    /**
+     * 지금까지 쓴 크기 (byte)
+     */
+    public long size() {
+        return (long) (segments.size() - 1) * segmentSize + position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        for (Segment segment : segments) {
+            segment.channel.close();
+        }
+    }
+
+    private Segment openSegment(int index) throws IOException {
+        FileChannel channel = FileChannel.open(dir.resolve(fileName(index)),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        return new Segment(index, channel, buffer);
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int from, int length) {
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(from);
+        duplicate.limit(from + length);
+        return duplicate.slice();
+    }
+
+    private static long offset(int segment, int position) {
+        return ((long) segment << 32) | position;
+    }
+
+    private static String fileName(int index) {
+        return String.format("%08d%s", index, SUFFIX);
+    }
+
+    private static final class Segment {
+        private final int index;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+
+        private Segment(int index, FileChannel channel, MappedByteBuffer buffer) {
+            this.index = index;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+}
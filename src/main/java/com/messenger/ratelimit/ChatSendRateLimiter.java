@@ -0,0 +1,113 @@
+package com.messenger.ratelimit;
+
+import com.messenger.exception.ErrorCode;
+import com.messenger.exception.MyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * 채팅 메시지 전송 횟수 제한
+ * 사용자 별 quota 는 1:1 채팅과 그룹 채팅이 함께 사용하고, 그룹 채팅은 채팅방 별 quota 도 확인한다
+ * repository 호출 전에 메모리에서만 확인하므로 초과한 요청은 DB 에 닿지 않는다
+ */
+@Slf4j
+@Component
+public class ChatSendRateLimiter {
+
+    private final boolean enabled;
+    private final StripedTokenBucketLimiter userLimiter;
+    private final StripedTokenBucketLimiter roomLimiter;
+    private final Counter rejectedByUserCounter;
+    private final Counter rejectedByRoomCounter;
+
+    @Autowired
+    public ChatSendRateLimiter(@Value("${chat.rate-limit.enabled:true}") boolean enabled,
+                               @Value("${chat.rate-limit.user.capacity:20}") long userCapacity,
+                               @Value("${chat.rate-limit.user.refill-tokens:5}") long userRefillTokens,
+                               @Value("${chat.rate-limit.user.refill-period-ms:1000}") long userRefillPeriodMillis,
+                               @Value("${chat.rate-limit.room.capacity:100}") long roomCapacity,
+                               @Value("${chat.rate-limit.room.refill-tokens:30}") long roomRefillTokens,
+                               @Value("${chat.rate-limit.room.refill-period-ms:1000}") long roomRefillPeriodMillis,
+                               @Value("${chat.rate-limit.stripes:64}") int stripes,
+                               @Value("${chat.rate-limit.max-keys-per-stripe:4096}") int maxKeysPerStripe,
+                               MeterRegistry meterRegistry) {
+        this(enabled, userCapacity, userRefillTokens, userRefillPeriodMillis,
+                roomCapacity, roomRefillTokens, roomRefillPeriodMillis,
+                stripes, maxKeysPerStripe, meterRegistry, System::nanoTime);
+    }
+
+    ChatSendRateLimiter(boolean enabled,
+                        long userCapacity, long userRefillTokens, long userRefillPeriodMillis,
+                        long roomCapacity, long roomRefillTokens, long roomRefillPeriodMillis,
+                        int stripes, int maxKeysPerStripe, MeterRegistry meterRegistry, LongSupplier nanoClock) {
+        this.enabled = enabled;
+        this.userLimiter = new StripedTokenBucketLimiter(userCapacity, userRefillTokens,
+                Duration.ofMillis(userRefillPeriodMillis), stripes, maxKeysPerStripe, nanoClock);
+        this.roomLimiter = new StripedTokenBucketLimiter(roomCapacity, roomRefillTokens,
+                Duration.ofMillis(roomRefillPeriodMillis), stripes, maxKeysPerStripe, nanoClock);
+
+        this.rejectedByUserCounter = Counter.builder("chat.rate_limit.rejected")
+                .tag("key", "user")
+                .description("전송 횟수 제한으로 거절된 메시지 수")
+                .register(meterRegistry);
+        this.rejectedByRoomCounter = Counter.builder("chat.rate_limit.rejected")
+                .tag("key", "room")
+                .description("전송 횟수 제한으로 거절된 메시지 수")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 1:1 채팅 메시지 전송 허용 여부 확인, 초과하면 CHAT_RATE_LIMITED 예외
+     * @param userId 보내는 사용자 id
+     */
+    public void checkPersonal(String userId) {
+        if (!enabled) {
+            return;
+        }
+        checkUser(userId);
+    }
+
+    /**
+     * 그룹 채팅 메시지 전송 허용 여부 확인, 초과하면 CHAT_RATE_LIMITED 예외
+     * 사용자와 채팅방 quota 가 모두 남아 있을 때만 토큰을 사용한다 (채팅방 참여 여부는 호출 전에 확인)
+     * @param userId 보내는 사용자 id
+     * @param roomId 채팅방 id
+     */
+    public void checkGroup(String userId, Long roomId) {
+        if (!enabled) {
+            return;
+        }
+        checkUser(userId);
+        if (roomId != null && !roomLimiter.tryAcquire(roomId.toString())) {
+            // 보내지 못한 메시지는 사용자 quota 를 사용하지 않는다
+            if (userId != null) {
+                userLimiter.release(userId, 1);
+            }
+            rejectedByRoomCounter.increment();
+            log.debug("chat rate limited: roomId = {}", roomId);
+            throw new MyException(ErrorCode.CHAT_RATE_LIMITED);
+        }
+    }
+
+    private void checkUser(String userId) {
+        if (userId != null && !userLimiter.tryAcquire(userId)) {
+            rejectedByUserCounter.increment();
+            log.debug("chat rate limited: userId = {}", userId);
+            throw new MyException(ErrorCode.CHAT_RATE_LIMITED);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${chat.rate-limit.evict-interval-ms:60000}")
+    public void evictIdle() {
+        userLimiter.evictIdle();
+        roomLimiter.evictIdle();
+    }
+}
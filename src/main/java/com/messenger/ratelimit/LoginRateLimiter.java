@@ -0,0 +1,95 @@
+package com.messenger.ratelimit;
+
+import com.messenger.exception.ErrorCode;
+import com.messenger.exception.MyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 로그인 시도 횟수 제한 (사용자 id 별, 클라이언트 IP 별)
+ * 인증(비밀번호 해시 검증, 회원 조회) 전에 호출해서 brute-force 시도를 DB, CPU 에 닿기 전에 거절한다
+ */
+@Slf4j
+@Component
+public class LoginRateLimiter {
+
+    private final boolean enabled;
+    private final StripedTokenBucketLimiter userLimiter;
+    private final StripedTokenBucketLimiter ipLimiter;
+    private final Counter allowedCounter;
+    private final Counter rejectedByUserCounter;
+    private final Counter rejectedByIpCounter;
+
+    public LoginRateLimiter(@Value("${login.rate-limit.enabled:true}") boolean enabled,
+                            @Value("${login.rate-limit.user.capacity:5}") long userCapacity,
+                            @Value("${login.rate-limit.user.refill-tokens:5}") long userRefillTokens,
+                            @Value("${login.rate-limit.user.refill-period-ms:60000}") long userRefillPeriodMillis,
+                            @Value("${login.rate-limit.ip.capacity:30}") long ipCapacity,
+                            @Value("${login.rate-limit.ip.refill-tokens:30}") long ipRefillTokens,
+                            @Value("${login.rate-limit.ip.refill-period-ms:60000}") long ipRefillPeriodMillis,
+                            @Value("${login.rate-limit.stripes:64}") int stripes,
+                            @Value("${login.rate-limit.max-keys-per-stripe:4096}") int maxKeysPerStripe,
+                            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.userLimiter = new StripedTokenBucketLimiter(userCapacity, userRefillTokens,
+                Duration.ofMillis(userRefillPeriodMillis), stripes, maxKeysPerStripe);
+        this.ipLimiter = new StripedTokenBucketLimiter(ipCapacity, ipRefillTokens,
+                Duration.ofMillis(ipRefillPeriodMillis), stripes, maxKeysPerStripe);
+
+        this.allowedCounter = Counter.builder("login.rate_limit.allowed")
+                .description("rate limit 을 통과한 로그인 시도 수")
+                .register(meterRegistry);
+        this.rejectedByUserCounter = Counter.builder("login.rate_limit.rejected")
+                .tag("key", "user")
+                .description("rate limit 으로 거절된 로그인 시도 수")
+                .register(meterRegistry);
+        this.rejectedByIpCounter = Counter.builder("login.rate_limit.rejected")
+                .tag("key", "ip")
+                .description("rate limit 으로 거절된 로그인 시도 수")
+                .register(meterRegistry);
+        Gauge.builder("login.rate_limit.keys", () -> userLimiter.size() + ipLimiter.size())
+                .description("rate limit 버킷을 가진 사용자 id, IP 의 수")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 로그인 시도 허용 여부를 확인하고, 초과하면 TOO_MANY_REQUESTS 예외
+     * @param userId 로그인 요청의 사용자 id
+     * @param clientIp 클라이언트 IP
+     */
+    public void check(String userId, String clientIp) {
+        if (!enabled) {
+            return;
+        }
+        if (clientIp != null && !ipLimiter.tryAcquire(clientIp)) {
+            rejectedByIpCounter.increment();
+            log.debug("login rate limited: ip = {}", clientIp);
+            throw new MyException(ErrorCode.TOO_MANY_REQUESTS);
+        }
+        if (userId != null && !userLimiter.tryAcquire(userId)) {
+            // 거절된 시도는 IP quota 를 사용하지 않는다
+            if (clientIp != null) {
+                ipLimiter.release(clientIp, 1);
+            }
+            rejectedByUserCounter.increment();
+            log.debug("login rate limited: userId = {}", userId);
+            throw new MyException(ErrorCode.TOO_MANY_REQUESTS);
+        }
+        allowedCounter.increment();
+    }
+
+    @Scheduled(fixedDelayString = "${login.rate-limit.evict-interval-ms:60000}")
+    public void evictIdle() {
+        int evicted = userLimiter.evictIdle() + ipLimiter.evictIdle();
+        if (evicted > 0) {
+            log.debug("login rate limit buckets evicted: {}", evicted);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.messenger.ratelimit;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * key 별 토큰 버킷 rate limiter
+ * key 의 hash 로 stripe 를 골라 stripe 단위로만 lock 을 잡으므로 서로 다른 key 는 거의 경합하지 않는다
+ * 버킷은 key 당 한 번만 생성하고 이후에는 값만 갱신한다
+ * 가득 찬 버킷은 기본값과 같으므로 evictIdle() 에서 제거해도 동작이 달라지지 않는다
+ * stripe 의 key 수는 maxKeysPerStripe 를 넘지 않고, 넘으면 가장 오래 사용하지 않은 key 부터 제거한다
+ */
+public class StripedTokenBucketLimiter {
+
+    private final long capacity;
+    private final long nanosPerToken;
+    private final int maxKeysPerStripe;
+    private final LongSupplier nanoClock;
+    private final Stripe[] stripes;
+    private final int mask;
+
+    /**
+     * @param capacity 버킷 크기 (허용하는 burst)
+     * @param refillTokens refillPeriod 동안 채워지는 토큰 수
+     * @param refillPeriod 토큰이 채워지는 주기
+     * @param stripes stripe 수 (2의 거듭제곱으로 올림)
+     * @param maxKeysPerStripe stripe 당 보관하는 key 의 최대 수, 넘으면 가장 오래 사용하지 않은 key 부터 제거
+     */
+    public StripedTokenBucketLimiter(long capacity, long refillTokens, Duration refillPeriod,
+                                     int stripes, int maxKeysPerStripe) {
+        this(capacity, refillTokens, refillPeriod, stripes, maxKeysPerStripe, System::nanoTime);
+    }
+
+    StripedTokenBucketLimiter(long capacity, long refillTokens, Duration refillPeriod,
+                              int stripes, int maxKeysPerStripe, LongSupplier nanoClock) {
+        if (capacity < 1 || refillTokens < 1 || refillPeriod.isNegative() || refillPeriod.isZero() || stripes < 1
+                || maxKeysPerStripe < 1) {
+            throw new IllegalArgumentException("invalid rate limit configuration");
+        }
+        this.capacity = capacity;
+        this.nanosPerToken = Math.max(1L, refillPeriod.toNanos() / refillTokens);
+        this.maxKeysPerStripe = maxKeysPerStripe;
+        this.nanoClock = nanoClock;
+
+        int size = 1;
+        while (size < stripes) {
+            size <<= 1;
+        }
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new Stripe();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * 토큰 1개를 사용
+     * @param key 제한 단위 (사용자 id, IP 등)
+     * @return 허용되면 true, 토큰이 없으면 false
+     */
+    public boolean tryAcquire(String key) {
+        return tryAcquire(key, 1);
+    }
+
+    public boolean tryAcquire(String key, int permits) {
+        Stripe stripe = stripeOf(key);
+        long now = nanoClock.getAsLong();
+        stripe.lock.lock();
+        try {
+            Bucket bucket = stripe.buckets.get(key);
+            if (bucket == null) {
+                stripe.evictEldest();
+                bucket = new Bucket(capacity, now);
+                stripe.buckets.put(key, bucket);
+            } else {
+                bucket.refill(now);
+            }
+            if (bucket.tokens < permits) {
+                return false;
+            }
+            bucket.tokens -= permits;
+            return true;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * tryAcquire 로 사용한 토큰을 되돌림 (여러 limiter 중 다른 쪽에서 거절된 경우)
+     * 버킷이 이미 제거되었으면 가득 찬 상태와 같으므로 아무것도 하지 않는다
+     */
+    public void release(String key, int permits) {
+        Stripe stripe = stripeOf(key);
+        long now = nanoClock.getAsLong();
+        stripe.lock.lock();
+        try {
+            Bucket bucket = stripe.buckets.get(key);
+            if (bucket == null) {
+                return;
+            }
+            bucket.refill(now);
+            bucket.tokens = Math.min(capacity, bucket.tokens + permits);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * 남은 토큰 수 (버킷이 없으면 capacity)
+     */
+    public long available(String key) {
+        Stripe stripe = stripeOf(key);
+        long now = nanoClock.getAsLong();
+        stripe.lock.lock();
+        try {
+            Bucket bucket = stripe.buckets.get(key);
+            if (bucket == null) {
+                return capacity;
+            }
+            bucket.refill(now);
+            return bucket.tokens;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * 다시 가득 찬 버킷을 제거 (주기적으로 호출)
+     * @return 제거한 버킷 수
+     */
+    public int evictIdle() {
+        long now = nanoClock.getAsLong();
+        int evicted = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                evicted += stripe.evictIdle(now);
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return evicted;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                size += stripe.buckets.size();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    private Stripe stripeOf(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return stripes[h & mask];
+    }
+
+    private final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        // 접근 순서로 정렬해서 가장 오래 사용하지 않은 key 가 맨 앞에 온다
+        private final LinkedHashMap<String, Bucket> buckets = new LinkedHashMap<>(16, 0.75f, true);
+
+        /**
+         * 새 key 를 넣기 전에 maxKeysPerStripe 미만이 될 때까지 가장 오래 사용하지 않은 버킷을 제거
+         * 제거된 key 는 다음 요청에서 가득 찬 버킷으로 다시 시작한다
+         */
+        private void evictEldest() {
+            Iterator<Map.Entry<String, Bucket>> iterator = buckets.entrySet().iterator();
+            while (buckets.size() >= maxKeysPerStripe && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+
+        private int evictIdle(long now) {
+            int evicted = 0;
+            Iterator<Bucket> iterator = buckets.values().iterator();
+            while (iterator.hasNext()) {
+                Bucket bucket = iterator.next();
+                bucket.refill(now);
+                if (bucket.tokens >= capacity) {
+                    iterator.remove();
+                    evicted++;
+                }
+            }
+            return evicted;
+        }
+    }
+
+    private final class Bucket {
+        private long tokens;
+        private long lastRefillNanos;
+
+        private Bucket(long tokens, long now) {
+            this.tokens = tokens;
+            this.lastRefillNanos = now;
+        }
+
+        private void refill(long now) {
+            long elapsed = now - lastRefillNanos;
+            if (elapsed < nanosPerToken) {
+                return;
+            }
+            long add = elapsed / nanosPerToken;
+            if (tokens + add >= capacity) {
+                tokens = capacity;
+                lastRefillNanos = now;
+            } else {
+                tokens += add;
+                // 채우고 남은 시간은 다음 refill 에 반영
+                lastRefillNanos += add * nanosPerToken;
+            }
+        }
+    }
+}
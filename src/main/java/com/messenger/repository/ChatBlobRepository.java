@@ -0,0 +1,15 @@
+package com.messenger.repository;
+
+import com.messenger.domain.ChatBlob;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface ChatBlobRepository {
+
+     ChatBlob save(String id, long size, String contentType, String uploaderUserId);
+     Optional<ChatBlob> findById(String id);
+     boolean isUploader(String id, String userId);
+     List<String> findIdsCreatedBefore(long minutes, String afterId, int size);
+     boolean deleteIfCreatedBefore(String id, long minutes);
+}
@@ -0,0 +1,15 @@
+package com.messenger.repository;
+
+import com.messenger.event.OutboxEntry;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+public interface ChatEventOutboxRepository {
+
+     void saveAll(String nodeId, List<String> payloads);
+     List<OutboxEntry> findAfter(long afterId, int size);
+     long findMaxId();
+     void acknowledge(String nodeId, long lastId);
+     int deleteAcknowledged(Timestamp aliveAfter, Timestamp createdBefore);
+}
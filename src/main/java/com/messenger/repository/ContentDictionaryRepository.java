@@ -0,0 +1,15 @@
+package com.messenger.repository;
+
+import com.messenger.codec.EncodedContent;
+import com.messenger.util.Pair;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface ContentDictionaryRepository {
+
+     int save(byte[] dict);
+     Optional<byte[]> findById(int id);
+     Optional<Pair<Integer, byte[]>> findLatest();
+     List<EncodedContent> sampleRecentContents(int size);
+}
@@ -7,18 +7,35 @@ import java.sql.Timestamp;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface GroupChatRepository {
 
-     GroupChat save(GroupChat chat);
+     GroupChat save(GroupChat chat, String clientMessageId);
+     Optional<GroupChat> findByClientMessageId(String senderUserId, String clientMessageId);
      void deleteOne(long chatId, String userId);
      Optional<GroupChat> findById(long chatId);
      List<GroupChat> findByReceiver(String receiverUserId, Integer prevId, Integer size);
+     List<GroupChat> findByReceiverAfter(String receiverUserId, long afterId, int size);
      List<GroupChat> findByGroup(String userId, long roomId, Integer prevId, Integer size);
+     List<GroupChat> findBySeqRange(long roomId, long fromSeq, long toSeq);
+     long findLastSeq(long roomId);
      Optional<GroupChat> findLastReceivedByGroup(String userId, long roomId);
      Map<String, Timestamp> getReadStatusById(long chatId);
      Optional<GroupChat> markReadById(long chatId, String userId);
      List<Pair<Long, Long>> listGroupByUser(String userId);
+     List<String> findUserIdsByRoom(long roomId);
      boolean belongToRoom(long roomId, String userId);
-     List<String> makeNewGroup(List<String> memberList);
+     List<String> makeNewGroup(List<String> memberList, boolean inboxFanout);
+     int archiveOlderThan(long days, int batchSize);
+     int purgeDeleted(int batchSize);
+     List<Pair<Long, Timestamp>> findIdsBySender(String senderUserId, long afterId, int size);
+     List<Pair<Long, Timestamp>> findIdsBySenderInRoom(String senderUserId, long roomId, long afterId, int size);
+     List<Pair<Long, Timestamp>> findIdsByRoom(long roomId, long afterId, int size);
+     int deleteByIds(List<Long> chatIds);
+     List<GroupChat> findAllAfter(long afterId, int size);
+     List<Long> findRoomIdsByUser(String userId);
+     void streamByUser(String userId, int fetchSize, Consumer<GroupChat> consumer);
+     boolean canReadBlob(String blobId, String userId);
+     boolean referencesBlob(String blobId);
 }
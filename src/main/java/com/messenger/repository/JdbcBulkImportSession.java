@@ -0,0 +1,151 @@
+package com.messenger.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 대량 import 용 DB 세션
+ * 커넥션 하나를 계속 사용하면서 세션 변수(unique_checks, foreign_key_checks)를 끄고 batch insert 한다
+ * batch 는 JDBC URL 의 rewriteBatchedStatements=true 설정으로 multi-row INSERT 로 바뀌어 전송된다
+ * 이미 있는 id 는 INSERT IGNORE 로 건너뛰므로 checkpoint 이후 일부가 다시 들어와도 중복되지 않는다
+ */
+@Slf4j
+public class JdbcBulkImportSession implements AutoCloseable {
+
+    private final SingleConnectionDataSource singleConnectionDataSource;
+    private final JdbcTemplate jdbcTemplate;
+
+    public JdbcBulkImportSession(DataSource dataSource) throws SQLException {
+        Connection connection = dataSource.getConnection();
+        this.singleConnectionDataSource = new SingleConnectionDataSource(connection, true);
+        this.jdbcTemplate = new JdbcTemplate(singleConnectionDataSource);
+
+        // 가져오는 데이터는 이미 정합성이 맞다고 보고 세션 단위로 검사를 끈다
+        jdbcTemplate.execute("SET SESSION unique_checks = 0");
+        jdbcTemplate.execute("SET SESSION foreign_key_checks = 0");
+    }
+
+    /**
+     * @param rows (id, pw, display_name, status_message, role, join_time)
+     */
+    public int insertMembers(List<Object[]> rows) {
+        String sql = "INSERT IGNORE INTO member(id, pw, display_name, status_message, role, join_time) " +
+                "values(?, ?, ?, ?, ?, COALESCE(?, CURRENT_TIMESTAMP))";
+        return sum(jdbcTemplate.batchUpdate(sql, rows));
+    }
+
+    /**
+     * @param rows (id, sender_user_id, receiver_user_id, content, read_at, created_at)
+     */
+    public int insertPersonalChats(List<Object[]> rows) {
+        String sql = "INSERT IGNORE INTO personal_chat(id, sender_user_id, receiver_user_id, group_id, content, read_at, created_at) " +
+                "values(?, ?, ?, FUNC_CONCAT_ID(?, ?), ?, ?, COALESCE(?, CURRENT_TIMESTAMP))";
+        List<Object[]> args = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            args.add(new Object[]{row[0], row[1], row[2], row[1], row[2], row[3], row[4], row[5]});
+        }
+        return sum(jdbcTemplate.batchUpdate(sql, args));
+    }
+
+    /**
+     * @param rows (id, sender_user_id, room_id, content, created_at)
+     */
+    public int insertGroupChats(List<Object[]> rows) {
+        String sql = "INSERT IGNORE INTO group_chat(id, sender_user_id, room_id, content, created_at) " +
+                "values(?, ?, ?, ?, COALESCE(?, CURRENT_TIMESTAMP))";
+        return sum(jdbcTemplate.batchUpdate(sql, rows));
+    }
+
+    public int insertGroupRooms(List<Long> roomIds) {
+        String sql = "INSERT IGNORE INTO group_room(id) values(?)";
+        List<Object[]> args = new ArrayList<>(roomIds.size());
+        for (Long roomId : roomIds) {
+            args.add(new Object[]{roomId});
+        }
+        return sum(jdbcTemplate.batchUpdate(sql, args));
+    }
+
+    /**
+     * @param rows (room_id, user_id)
+     */
+    public int insertGroupRoomMembers(List<Object[]> rows) {
+        String sql = "INSERT IGNORE INTO group_room_members(room_id, user_id) values(?, ?)";
+        return sum(jdbcTemplate.batchUpdate(sql, rows));
+    }
+
+    /**
+     * 고유하지 않은 보조 인덱스를 삭제 (적재가 끝난 뒤 한 번에 다시 만드는 것이 행마다 갱신하는 것보다 빠르다)
+     * 외래 키가 사용하는 인덱스는 삭제할 수 없으므로 그대로 둔다
+     * @param table 테이블 이름
+     * @return 삭제한 인덱스 이름과 컬럼 목록 (rebuildIndexes 에 전달)
+     */
+    public Map<String, String> dropSecondaryIndexes(String table) {
+        String sql = "SELECT INDEX_NAME, GROUP_CONCAT(COLUMN_NAME ORDER BY SEQ_IN_INDEX) AS COLUMNS " +
+                "FROM information_schema.STATISTICS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND NON_UNIQUE = 1 " +
+                "GROUP BY INDEX_NAME";
+        Map<String, String> indexes = new LinkedHashMap<>();
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs -> indexes.put(rs.getString("INDEX_NAME"), rs.getString("COLUMNS")), table);
+
+        Map<String, String> dropped = new LinkedHashMap<>();
+        for (Map.Entry<String, String> index : indexes.entrySet()) {
+            try {
+                jdbcTemplate.execute("ALTER TABLE " + table + " DROP INDEX " + index.getKey());
+                dropped.put(index.getKey(), index.getValue());
+            } catch (Exception e) {
+                log.debug("cannot drop index {}.{}: {}", table, index.getKey(), e.getMessage());
+            }
+        }
+        log.info("secondary indexes dropped: table = {}, indexes = {}", table, dropped.keySet());
+        return dropped;
+    }
+
+    /**
+     * 삭제했던 인덱스를 ALTER TABLE 한 번으로 다시 생성
+     * @param table 테이블 이름
+     * @param indexes 인덱스 이름과 쉼표로 구분한 컬럼 목록
+     */
+    public void rebuildIndexes(String table, Map<String, String> indexes) {
+        if (indexes.isEmpty()) {
+            return;
+        }
+        List<String> clauses = new ArrayList<>();
+        for (Map.Entry<String, String> index : indexes.entrySet()) {
+            clauses.add("ADD INDEX " + index.getKey() + " (" + index.getValue() + ")");
+        }
+        long start = System.currentTimeMillis();
+        jdbcTemplate.execute("ALTER TABLE " + table + " " + String.join(", ", clauses));
+        jdbcTemplate.execute("ANALYZE TABLE " + table);
+        log.info("secondary indexes rebuilt: table = {}, indexes = {}, {}ms",
+                table, indexes.keySet(), System.currentTimeMillis() - start);
+    }
+
+    private static int sum(int[] counts) {
+        int total = 0;
+        for (int count : counts) {
+            // rewriteBatchedStatements 를 사용하면 행 수 대신 SUCCESS_NO_INFO(-2)가 올 수 있다
+            total += Math.max(count, 0);
+        }
+        return total;
+    }
+
+    @Override
+    public void close() {
+        try {
+            jdbcTemplate.execute("SET SESSION unique_checks = 1");
+            jdbcTemplate.execute("SET SESSION foreign_key_checks = 1");
+        } finally {
+            singleConnectionDataSource.destroy();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.messenger.repository;
+
+import com.messenger.domain.ChatBlob;
+import com.messenger.exception.ErrorCode;
+import com.messenger.exception.MyException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+@Slf4j
+public class JdbcTemplateChatBlobRepository implements ChatBlobRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public JdbcTemplateChatBlobRepository(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    private RowMapper<ChatBlob> blobRowMapper() {
+        return (rs, rowNum) -> ChatBlob.builder()
+                .id(rs.getString("id"))
+                .size(rs.getLong("size"))
+                .contentType(rs.getString("content_type"))
+                .created_at(rs.getTimestamp("created_at"))
+                .build();
+    }
+
+    /**
+     * 파일 정보와 올린 사용자를 저장, 같은 내용이 이미 있으면 처음 저장한 정보를 유지한다
+     * 다시 올린 파일을 정리 작업이 바로 지우지 않도록 created_at 은 갱신한다
+     * @param id 내용의 SHA-256 hex
+     * @param size 파일 크기 (byte)
+     * @param contentType 파일 형식
+     * @param uploaderUserId (Nullable) 올린 사용자 id
+     * @return 저장된 파일 정보
+     */
+    @Override
+    public ChatBlob save(String id, long size, String contentType, String uploaderUserId) {
+        String sql = "INSERT INTO chat_blob(id, size, content_type) VALUES (?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE size = VALUES(size), created_at = CURRENT_TIMESTAMP";
+        String sqlUploader = "INSERT IGNORE INTO chat_blob_uploader(blob_id, user_id) VALUES (?, ?)";
+        log.debug("save blob id={}, size={}, contentType={}, uploader={}", id, size, contentType, uploaderUserId);
+        jdbcTemplate.update(sql, id, size, contentType);
+        if (uploaderUserId != null) {
+            jdbcTemplate.update(sqlUploader, id, uploaderUserId);
+        }
+        return findById(id).orElseThrow(() -> new MyException(ErrorCode.FAIL_SAVE_BLOB));
+    }
+
+    @Override
+    public Optional<ChatBlob> findById(String id) {
+        String sql = "SELECT * FROM chat_blob WHERE id = ?";
+        List<ChatBlob> result = jdbcTemplate.query(sql, blobRowMapper(), id);
+        return result.stream().findAny();
+    }
+
+    @Override
+    public boolean isUploader(String id, String userId) {
+        String sql = "SELECT 1 FROM chat_blob_uploader WHERE blob_id = ? AND user_id = ?";
+        return !jdbcTemplate.queryForList(sql, Integer.class, id, userId).isEmpty();
+    }
+
+    /**
+     * 저장(또는 다시 올린) 뒤 minutes 분이 지난 파일 id 를 id 순으로 조회 (DB 시각 기준)
+     * @param afterId 이전 조회한 마지막 id (처음이면 빈 문자열)
+     */
+    @Override
+    public List<String> findIdsCreatedBefore(long minutes, String afterId, int size) {
+        String sql = "SELECT id FROM chat_blob WHERE id > ? AND created_at < TIMESTAMPADD(MINUTE, ?, CURRENT_TIMESTAMP) " +
+                "ORDER BY id LIMIT ?";
+        return jdbcTemplate.queryForList(sql, String.class, afterId, -minutes, size);
+    }
+
+    /**
+     * 그 사이 다시 올리지 않았으면 파일 정보와 올린 사용자를 삭제
+     * @return 삭제했으면 true
+     */
+    @Override
+    public boolean deleteIfCreatedBefore(String id, long minutes) {
+        String sql = "DELETE FROM chat_blob WHERE id = ? AND created_at < TIMESTAMPADD(MINUTE, ?, CURRENT_TIMESTAMP)";
+        String sqlUploader = "DELETE FROM chat_blob_uploader WHERE blob_id = ?";
+        if (jdbcTemplate.update(sql, id, -minutes) == 0) {
+            return false;
+        }
+        jdbcTemplate.update(sqlUploader, id);
+        return true;
+    }
+}
@@ -0,0 +1,87 @@
+package com.messenger.repository;
+
+import com.messenger.event.OutboxEntry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Repository
+@Slf4j
+public class JdbcTemplateChatEventOutboxRepository implements ChatEventOutboxRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public JdbcTemplateChatEventOutboxRepository(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    private RowMapper<OutboxEntry> outboxRowMapper() {
+        return (rs, rowNum) -> new OutboxEntry(
+                rs.getLong("id"),
+                rs.getString("node_id"),
+                rs.getString("payload"));
+    }
+
+    /**
+     * 이벤트를 한 번의 batch insert 로 저장
+     * @param nodeId 발행한 서버 id
+     * @param payloads JSON 으로 변환한 이벤트
+     */
+    @Override
+    public void saveAll(String nodeId, List<String> payloads) {
+        String sql = "INSERT INTO chat_event_outbox(node_id, payload) VALUES (?, ?)";
+        jdbcTemplate.batchUpdate(sql, payloads.stream()
+                .map(payload -> new Object[]{nodeId, payload})
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * afterId 이후의 이벤트를 오래된 순으로 조회
+     */
+    @Override
+    public List<OutboxEntry> findAfter(long afterId, int size) {
+        String sql = "SELECT id, node_id, payload FROM chat_event_outbox WHERE id > ? ORDER BY id LIMIT ?";
+        return jdbcTemplate.query(sql, outboxRowMapper(), afterId, size);
+    }
+
+    @Override
+    public long findMaxId() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM chat_event_outbox", Long.class);
+        return maxId != null ? maxId : 0;
+    }
+
+    /**
+     * 서버가 lastId 까지 처리했음을 기록
+     */
+    @Override
+    public void acknowledge(String nodeId, long lastId) {
+        String sql = "INSERT INTO chat_event_consumer(node_id, last_id, acked_at) VALUES (?, ?, CURRENT_TIMESTAMP) " +
+                "ON DUPLICATE KEY UPDATE last_id = VALUES(last_id), acked_at = CURRENT_TIMESTAMP";
+        jdbcTemplate.update(sql, nodeId, lastId);
+    }
+
+    /**
+     * 살아 있는 모든 서버가 처리한 이벤트 중 createdBefore 전에 저장된 이벤트를 삭제
+     * @param aliveAfter 이 시각 이후에 처리 기록을 남긴 서버만 살아 있는 것으로 본다 (그 전 기록은 함께 삭제)
+     * @param createdBefore 이 시각 전에 저장된 이벤트만 삭제
+     * @return 삭제한 이벤트 수
+     */
+    @Override
+    public int deleteAcknowledged(Timestamp aliveAfter, Timestamp createdBefore) {
+        jdbcTemplate.update("DELETE FROM chat_event_consumer WHERE acked_at < ?", aliveAfter);
+        Long ackedId = jdbcTemplate.queryForObject("SELECT MIN(last_id) FROM chat_event_consumer", Long.class);
+        if (ackedId == null) {
+            return 0;
+        }
+        String sql = "DELETE FROM chat_event_outbox WHERE id <= ? AND created_at < ?";
+        int deleted = jdbcTemplate.update(sql, ackedId, createdBefore);
+        log.debug("chat event outbox deleted: ackedId = {}, deleted = {}", ackedId, deleted);
+        return deleted;
+    }
+}
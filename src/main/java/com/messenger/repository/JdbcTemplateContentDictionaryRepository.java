@@ -0,0 +1,90 @@
+package com.messenger.repository;
+
+import com.messenger.codec.EncodedContent;
+import com.messenger.util.Pair;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+@Repository
+@Slf4j
+public class JdbcTemplateContentDictionaryRepository implements ContentDictionaryRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public JdbcTemplateContentDictionaryRepository(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    private RowMapper<EncodedContent> encodedContentRowMapper() {
+        return (rs, rowNum) -> new EncodedContent(
+                rs.getInt("content_codec"),
+                rs.getObject("content_dict_id", Integer.class),
+                rs.getString("content"),
+                rs.getBytes("content_z"));
+    }
+
+    /**
+     * 학습한 dictionary 를 저장
+     * @param dict zstd dictionary
+     * @return dictionary id
+     */
+    @Override
+    public int save(byte[] dict) {
+        String sql = "INSERT INTO content_dictionary(dict) VALUES (?)";
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(conn -> {
+            PreparedStatement ps = conn.prepareStatement(sql, new String[] {"id"});
+            ps.setBytes(1, dict);
+            return ps;
+        }, keyHolder);
+        int id = Objects.requireNonNull(keyHolder.getKey()).intValue();
+        log.debug("save content dictionary id={}, size={}", id, dict.length);
+        return id;
+    }
+
+    @Override
+    public Optional<byte[]> findById(int id) {
+        String sql = "SELECT dict FROM content_dictionary WHERE id = ?";
+        List<byte[]> result = jdbcTemplate.query(sql, (rs, rowNum) -> rs.getBytes("dict"), id);
+        return result.stream().findAny();
+    }
+
+    /**
+     * 가장 최근에 학습한 dictionary 를 검색
+     * @return (Nullable) (dictionary id, dictionary)
+     */
+    @Override
+    public Optional<Pair<Integer, byte[]>> findLatest() {
+        String sql = "SELECT id, dict FROM content_dictionary ORDER BY id DESC LIMIT 1";
+        List<Pair<Integer, byte[]>> result = jdbcTemplate.query(sql,
+                (rs, rowNum) -> new Pair<>(rs.getInt("id"), rs.getBytes("dict")));
+        return result.stream().findAny();
+    }
+
+    /**
+     * dictionary 학습에 사용할 최근 1:1, 그룹 메시지 본문을 저장된 형태 그대로 검색
+     * @param size 각 테이블에서 조회할 메시지 개수
+     * @return 저장된 본문 리스트
+     */
+    @Override
+    public List<EncodedContent> sampleRecentContents(int size) {
+        String sqlPersonal = "SELECT content, content_codec, content_dict_id, content_z FROM personal_chat " +
+                "WHERE deleted_at IS NULL AND blob_id IS NULL ORDER BY id DESC LIMIT ?";
+        String sqlGroup = "SELECT content, content_codec, content_dict_id, content_z FROM group_chat " +
+                "WHERE deleted_at IS NULL AND blob_id IS NULL ORDER BY id DESC LIMIT ?";
+        List<EncodedContent> result = new ArrayList<>(jdbcTemplate.query(sqlPersonal, encodedContentRowMapper(), size));
+        result.addAll(jdbcTemplate.query(sqlGroup, encodedContentRowMapper(), size));
+        return result;
+    }
+}
@@ -1,5 +1,7 @@
 package com.messenger.repository;
 
+import com.messenger.codec.ContentCodec;
+import com.messenger.codec.EncodedContent;
 import com.messenger.domain.GroupChat;
 import com.messenger.exception.ErrorCode;
 import com.messenger.exception.MyException;
@@ -7,24 +9,34 @@ import com.messenger.util.Pair;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.sql.DataSource;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.Timestamp;
+import java.sql.Types;
 import java.util.*;
+import java.util.function.Consumer;
 
 @Repository
 @Slf4j
 public class JdbcTemplateGroupChatRepository implements GroupChatRepository {
 
     private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ContentCodec contentCodec;
 
-    public JdbcTemplateGroupChatRepository(DataSource dataSource) {
+    public JdbcTemplateGroupChatRepository(DataSource dataSource, PlatformTransactionManager transactionManager, ContentCodec contentCodec) {
         this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.contentCodec = contentCodec;
     }
 
     private RowMapper<GroupChat> chatRowMapper() {
@@ -32,8 +44,11 @@ public class JdbcTemplateGroupChatRepository implements GroupChatRepository {
                 .id(rs.getLong("id"))
                 .senderUserId(rs.getString("sender_user_id"))
                 .roomId(rs.getLong("room_id"))
-                .content(rs.getString("content"))
+                .lazyContent(contentCodec.decode(rs.getInt("content_codec"), rs.getObject("content_dict_id", Integer.class),
+                        rs.getString("content"), rs.getBytes("content_z")))
                 .created_at(rs.getTimestamp("created_at"))
+                .seq(rs.getObject("seq", Long.class))
+                .blobId(rs.getString("blob_id"))
                 .build();
     }
 
@@ -43,6 +58,12 @@ public class JdbcTemplateGroupChatRepository implements GroupChatRepository {
                 rs.getLong("max_id"));
     }
 
+    private RowMapper<Pair<Long, Timestamp>> idCreatedAtRowMapper() {
+        return (rs, rowNum) -> new Pair<>(
+                rs.getLong("id"),
+                rs.getTimestamp("created_at"));
+    }
+
     private RowMapper<Pair<String, Timestamp>> readStatusRowMapper() {
         return (rs, rowNum) -> new Pair<>(
                 rs.getString("user_id"),
@@ -56,24 +77,66 @@ public class JdbcTemplateGroupChatRepository implements GroupChatRepository {
     /**
      * 1:1 메시지를 저장소에 저장
      * @param chat 저장할 메시지 객체
+     * @param clientMessageId (Nullable) 클라이언트가 만든 메시지 id, 같은 전송 사용자의 같은 id 는 한 번만 저장된다
      * @return 저장한 메시지 객체
+     * @throws org.springframework.dao.DuplicateKeyException 이미 같은 clientMessageId 로 저장한 메시지가 있는 경우
      */
     @Override
-    public GroupChat save(GroupChat chat) {
-        String sql = "INSERT INTO group_chat(sender_user_id, room_id, content) VALUES(?, ?, ?)";
+    public GroupChat save(GroupChat chat, String clientMessageId) {
+        // 채팅방의 순번 행만 잠그고 증가시킨다, 같은 채팅방의 다른 저장은 커밋까지 기다리므로 순번 순서와 id 순서가 같다
+        String sqlSeq = "INSERT INTO conversation_sequence(room_type, room_key, last_seq) VALUES ('GROUP', ?, 1) " +
+                "ON DUPLICATE KEY UPDATE last_seq = last_seq + 1";
+        String sqlLastSeq = "SELECT last_seq FROM conversation_sequence WHERE room_type = 'GROUP' AND room_key = ?";
+        String sql = "INSERT INTO group_chat(sender_user_id, room_id, content, client_message_id, seq, blob_id, content_codec, content_dict_id, content_z) " +
+                "VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        // inbox_fanout 채팅방이면 모든 참여자의 inbox 에 추가 (fan-out-on-write)
+        String sqlInbox = "INSERT INTO group_chat_inbox(user_id, chat_id) " +
+                "SELECT m.user_id, ? FROM group_room_members m JOIN group_room r ON r.id = m.room_id " +
+                "WHERE m.room_id = ? AND r.inbox_fanout = 1";
         KeyHolder keyHolder = new GeneratedKeyHolder();
 
-        log.debug("chat={}", chat);
-        jdbcTemplate.update(conn -> {
-            PreparedStatement ps = conn.prepareStatement(sql, new String[] {"id"});
-            ps.setString(1, chat.getSenderUserId());
-            ps.setLong(2, chat.getRoomId());
-            ps.setString(3, chat.getContent());
-            return ps;
-        }, keyHolder);
+        log.debug("chat={}, clientMessageId={}", chat, clientMessageId);
+        // 순번 행을 잠그기 전에 압축한다
+        EncodedContent content = contentCodec.encode(chat.getContent());
+        // 메시지 저장이 실패하면(clientMessageId 중복 등) 순번 증가도 롤백되어 빈 순번이 생기지 않는다
+        String roomKey = String.valueOf(chat.getRoomId());
+        Long id = transactionTemplate.execute(status -> {
+            jdbcTemplate.update(sqlSeq, roomKey);
+            Long seq = jdbcTemplate.queryForObject(sqlLastSeq, Long.class, roomKey);
+            jdbcTemplate.update(conn -> {
+                PreparedStatement ps = conn.prepareStatement(sql, new String[] {"id"});
+                ps.setString(1, chat.getSenderUserId());
+                ps.setLong(2, chat.getRoomId());
+                ps.setString(3, content.getText());
+                ps.setString(4, clientMessageId);
+                ps.setLong(5, Objects.requireNonNull(seq));
+                ps.setString(6, chat.getBlobId());
+                ps.setInt(7, content.getCodec());
+                ps.setObject(8, content.getDictId(), Types.INTEGER);
+                ps.setBytes(9, content.getData());
+                return ps;
+            }, keyHolder);
+
+            long chatId = Objects.requireNonNull(keyHolder.getKey()).longValue();
+            int fanout = jdbcTemplate.update(sqlInbox, chatId, chat.getRoomId());
+            log.debug("inbox fan-out chatId={}, fanout={}", chatId, fanout);
+            return chatId;
+        });
 
-        long id = Objects.requireNonNull(keyHolder.getKey()).longValue();
-        return findById(id).orElseThrow(() -> new MyException(ErrorCode.NOT_FOUND_CHAT));
+        return findById(Objects.requireNonNull(id)).orElseThrow(() -> new MyException(ErrorCode.NOT_FOUND_CHAT));
+    }
+
+    /**
+     * 클라이언트가 만든 메시지 id 로 저장한 메시지를 검색 (삭제 표시된 메시지 포함)
+     * @param senderUserId 전송 사용자 id
+     * @param clientMessageId 클라이언트가 만든 메시지 id
+     * @return (Nullable) 메시지 객체
+     */
+    @Override
+    public Optional<GroupChat> findByClientMessageId(String senderUserId, String clientMessageId) {
+        String sql = "SELECT * FROM group_chat WHERE sender_user_id = ? AND client_message_id = ?";
+        List<GroupChat> result = jdbcTemplate.query(sql, chatRowMapper(), senderUserId, clientMessageId);
+        return result.stream().findAny();
     }
 
     /**
@@ -84,16 +147,39 @@ public class JdbcTemplateGroupChatRepository implements GroupChatRepository {
     @Override
     public void deleteOne(long chatId, String userId) {
         // 전송 사용자 id가 일치해야만 삭제 처리
-        String sql = "DELETE FROM group_chat WHERE id = ? AND sender_user_id = ?";
+        String sql = "UPDATE group_chat SET deleted_at = CURRENT_TIMESTAMP WHERE id = ? AND sender_user_id = ? AND deleted_at IS NULL";
         Object[] args = {chatId, userId};
         log.debug("delete chat chatId={}, userId={}", chatId, userId);
         int update = jdbcTemplate.update(sql, args);
+        if (update == 0) {
+            // 아카이브로 옮겨진 메시지도 조회되므로 같은 조건으로 삭제한다
+            update = deleteArchived("id = ? AND sender_user_id = ?", args);
+        }
         log.debug("update={}", update);
         if (update == 0) {
             throw new MyException(ErrorCode.FAIL_DELETE_CHAT);
         }
     }
 
+    /**
+     * 아카이브 테이블의 메시지를 삭제 시각과 함께 백업 테이블로 옮기고, 아카이브된 읽음 시간을 제거한다
+     * (아카이브 테이블에는 삭제 표시 칼럼이 없으므로 purge 를 기다리지 않고 바로 옮긴다)
+     * @param where 아카이브 테이블 조건
+     * @param args 조건의 인자
+     * @return 옮긴 메시지 개수
+     */
+    private int deleteArchived(String where, Object... args) {
+        Integer deleted = transactionTemplate.execute(status -> {
+            jdbcTemplate.update("DELETE FROM group_chat_read_time_archive WHERE chat_id IN (SELECT id FROM group_chat_archive WHERE " + where + ")", args);
+            String sqlBackup = "INSERT INTO group_chat_backup(id, sender_user_id, target_room_id, content, content_codec, content_dict_id, content_z, created_at, deleted_at) " +
+                    "SELECT id, sender_user_id, room_id, content, content_codec, content_dict_id, content_z, created_at, CURRENT_TIMESTAMP FROM group_chat_archive " +
+                    "WHERE " + where;
+            jdbcTemplate.update(sqlBackup, args);
+            return jdbcTemplate.update("DELETE FROM group_chat_archive WHERE " + where, args);
+        });
+        return deleted == null ? 0 : deleted;
+    }
+
     /**
      * 메시지 id 기반으로 메시지를 검색
      * @param chatId 검색할 메시지 id
@@ -101,8 +187,13 @@ public class JdbcTemplateGroupChatRepository implements GroupChatRepository {
      */
     @Override
     public Optional<GroupChat> findById(long chatId) {
-        String sql = "SELECT * FROM group_chat WHERE id = ?";
+        String sql = "SELECT * FROM group_chat WHERE deleted_at IS NULL AND id = ?";
         List<GroupChat> result = jdbcTemplate.query(sql, chatRowMapper(), chatId);
+        if (result.isEmpty()) {
+            // 아카이브로 옮겨진 메시지
+            String sqlArchive = "SELECT * FROM group_chat_archive WHERE id = ?";
+            result = jdbcTemplate.query(sqlArchive, chatRowMapper(), chatId);
+        }
         return result.stream().findAny();
     }
 
@@ -110,6 +201,8 @@ public class JdbcTemplateGroupChatRepository implements GroupChatRepository {
     /**
      * 수신 사용자 id 기반으로 삭제되지 않은 메시지를 검색
      * (커서 기반 페이지네이션)
+     * inbox_fanout 채팅방의 메시지는 사용자 inbox 에서 (user_id, chat_id) 범위 하나로 읽고,
+     * 참여자가 많아 inbox 에 쓰지 않는 채팅방의 메시지는 채팅방 별로 읽어서 합친다
      * @param receiverUserId  메시지 수신 사용자 id
      * @param prevId 이전 조회한 마지막 메시지 id
      * @param size 조회할 메시지 개수
@@ -117,12 +210,61 @@ public class JdbcTemplateGroupChatRepository implements GroupChatRepository {
      */
     @Override
     public List<GroupChat> findByReceiver(String receiverUserId, Integer prevId, Integer size) {
-        if (prevId == null) {
-            String sql = "SELECT * FROM group_chat WHERE room_id IN (SELECT room_id FROM group_room_members WHERE user_id = ?) AND id >= 0 ORDER BY id DESC LIMIT ?";
-            return jdbcTemplate.query(sql, chatRowMapper(), receiverUserId, size);
+        long beforeId = prevId == null ? Long.MAX_VALUE : prevId;
+
+        String sqlInbox = "SELECT c.* FROM group_chat_inbox i JOIN group_chat c ON c.id = i.chat_id " +
+                "WHERE i.user_id = ? AND i.chat_id < ? AND c.deleted_at IS NULL ORDER BY i.chat_id DESC LIMIT ?";
+        List<GroupChat> inbox = jdbcTemplate.query(sqlInbox, chatRowMapper(), receiverUserId, beforeId, size);
+
+        String sqlRooms = "SELECT * FROM group_chat WHERE deleted_at IS NULL AND room_id IN " +
+                "(SELECT m.room_id FROM group_room_members m JOIN group_room r ON r.id = m.room_id " +
+                "WHERE m.user_id = ? AND r.inbox_fanout = 0) AND id < ? ORDER BY id DESC LIMIT ?";
+        List<GroupChat> rooms = jdbcTemplate.query(sqlRooms, chatRowMapper(), receiverUserId, beforeId, size);
+
+        if (rooms.isEmpty()) {
+            return inbox;
         }
-        String sql = "SELECT * FROM group_chat WHERE room_id IN (SELECT room_id FROM group_room_members WHERE user_id = ?) AND id < ? ORDER BY id DESC LIMIT ?";
-        return jdbcTemplate.query(sql, chatRowMapper(), receiverUserId, prevId, size);
+        if (inbox.isEmpty()) {
+            return rooms;
+        }
+        List<GroupChat> result = new ArrayList<>(inbox.size() + rooms.size());
+        result.addAll(inbox);
+        result.addAll(rooms);
+        result.sort(Comparator.comparingLong(GroupChat::getId).reversed());
+        return result.size() > size ? new ArrayList<>(result.subList(0, size)) : result;
+    }
+
+
+    /**
+     * 수신 사용자 id 기반으로 afterId 이후에 받은 삭제되지 않은 메시지를 오래된 순으로 검색 (long polling)
+     * findByReceiver 와 같이 inbox 와 inbox_fanout 이 아닌 채팅방의 메시지를 합친다
+     * @param receiverUserId 메시지 수신 사용자 id
+     * @param afterId 클라이언트가 마지막으로 받은 메시지 id
+     * @param size 조회할 메시지 개수
+     * @return 메시지 객체 리스트
+     */
+    @Override
+    public List<GroupChat> findByReceiverAfter(String receiverUserId, long afterId, int size) {
+        String sqlInbox = "SELECT c.* FROM group_chat_inbox i JOIN group_chat c ON c.id = i.chat_id " +
+                "WHERE i.user_id = ? AND i.chat_id > ? AND c.deleted_at IS NULL ORDER BY i.chat_id LIMIT ?";
+        List<GroupChat> inbox = jdbcTemplate.query(sqlInbox, chatRowMapper(), receiverUserId, afterId, size);
+
+        String sqlRooms = "SELECT * FROM group_chat WHERE deleted_at IS NULL AND room_id IN " +
+                "(SELECT m.room_id FROM group_room_members m JOIN group_room r ON r.id = m.room_id " +
+                "WHERE m.user_id = ? AND r.inbox_fanout = 0) AND id > ? ORDER BY id LIMIT ?";
+        List<GroupChat> rooms = jdbcTemplate.query(sqlRooms, chatRowMapper(), receiverUserId, afterId, size);
+
+        if (rooms.isEmpty()) {
+            return inbox;
+        }
+        if (inbox.isEmpty()) {
+            return rooms;
+        }
+        List<GroupChat> result = new ArrayList<>(inbox.size() + rooms.size());
+        result.addAll(inbox);
+        result.addAll(rooms);
+        result.sort(Comparator.comparingLong(GroupChat::getId));
+        return result.size() > size ? new ArrayList<>(result.subList(0, size)) : result;
     }
 
 
@@ -136,12 +278,70 @@ public class JdbcTemplateGroupChatRepository implements GroupChatRepository {
      */
     @Override
     public List<GroupChat> findByGroup(String userId, long roomId, Integer prevId, Integer size) {
+        List<GroupChat> result;
         if (prevId == null) {
-            String sql = "SELECT * FROM group_chat WHERE room_id = ? AND id >= 0 ORDER BY id DESC LIMIT ?";
-            return jdbcTemplate.query(sql, chatRowMapper(), roomId, size);
+            String sql = "SELECT * FROM group_chat WHERE deleted_at IS NULL AND room_id = ? AND id >= 0 ORDER BY id DESC LIMIT ?";
+            result = jdbcTemplate.query(sql, chatRowMapper(), roomId, size);
+        } else {
+            String sql = "SELECT * FROM group_chat WHERE deleted_at IS NULL AND room_id = ? AND id < ? ORDER BY id DESC LIMIT ?";
+            result = jdbcTemplate.query(sql, chatRowMapper(), roomId, prevId, size);
+        }
+        if (result.size() >= size) {
+            return result;
         }
-        String sql = "SELECT * FROM group_chat WHERE room_id = ? AND id < ? ORDER BY id DESC LIMIT ?";
-        return jdbcTemplate.query(sql, chatRowMapper(), roomId, prevId, size);
+
+        // hot 테이블의 메시지를 모두 읽은 경우 아카이브 테이블에서 이어서 검색
+        Long archivePrevId = result.isEmpty() ? (prevId == null ? null : prevId.longValue()) : result.get(result.size() - 1).getId();
+        int remaining = size - result.size();
+        List<GroupChat> archived;
+        if (archivePrevId == null) {
+            String sql = "SELECT * FROM group_chat_archive WHERE room_id = ? AND id >= 0 ORDER BY id DESC LIMIT ?";
+            archived = jdbcTemplate.query(sql, chatRowMapper(), roomId, remaining);
+        } else {
+            String sql = "SELECT * FROM group_chat_archive WHERE room_id = ? AND id < ? ORDER BY id DESC LIMIT ?";
+            archived = jdbcTemplate.query(sql, chatRowMapper(), roomId, archivePrevId, remaining);
+        }
+        if (archived.isEmpty()) {
+            return result;
+        }
+        List<GroupChat> merged = new ArrayList<>(result);
+        merged.addAll(archived);
+        return merged;
+    }
+
+    /**
+     * 그룹 채팅방에서 순번이 fromSeq 이상 toSeq 이하인 삭제되지 않은 메시지를 순번 순으로 검색 (아카이브 포함)
+     * 범위 안에서 빠진 순번은 삭제된 메시지이다
+     * @param roomId 그룹 채팅방 id
+     * @param fromSeq 시작 순번
+     * @param toSeq 끝 순번
+     * @return 메시지 객체 리스트
+     */
+    @Override
+    public List<GroupChat> findBySeqRange(long roomId, long fromSeq, long toSeq) {
+        String sqlArchive = "SELECT * FROM group_chat_archive WHERE room_id = ? AND seq BETWEEN ? AND ? ORDER BY seq";
+        String sql = "SELECT * FROM group_chat WHERE deleted_at IS NULL AND room_id = ? AND seq BETWEEN ? AND ? ORDER BY seq";
+        // 아카이브의 id 는 항상 hot 테이블의 id 보다 작고, 같은 채팅방 안에서는 순번 순서와 id 순서가 같다
+        List<GroupChat> archived = jdbcTemplate.query(sqlArchive, chatRowMapper(), roomId, fromSeq, toSeq);
+        List<GroupChat> hot = jdbcTemplate.query(sql, chatRowMapper(), roomId, fromSeq, toSeq);
+        if (archived.isEmpty()) {
+            return hot;
+        }
+        List<GroupChat> merged = new ArrayList<>(archived);
+        merged.addAll(hot);
+        return merged;
+    }
+
+    /**
+     * 그룹 채팅방에서 마지막으로 붙인 순번을 검색
+     * @param roomId 그룹 채팅방 id
+     * @return 마지막 순번, 메시지가 없으면 0
+     */
+    @Override
+    public long findLastSeq(long roomId) {
+        String sql = "SELECT last_seq FROM conversation_sequence WHERE room_type = 'GROUP' AND room_key = ?";
+        List<Long> result = jdbcTemplate.queryForList(sql, Long.class, String.valueOf(roomId));
+        return result.isEmpty() ? 0 : result.get(0);
     }
 
     /**
@@ -152,15 +352,25 @@ public class JdbcTemplateGroupChatRepository implements GroupChatRepository {
      */
     @Override
     public Optional<GroupChat> findLastReceivedByGroup(String userId, long roomId) {
-        String sqlSelect = "SELECT * FROM group_chat WHERE sender_user_id <> ? AND room_id = ? AND id >= 0 ORDER BY id DESC LIMIT 1";
+        String sqlSelect = "SELECT * FROM group_chat WHERE deleted_at IS NULL AND sender_user_id <> ? AND room_id = ? AND id >= 0 ORDER BY id DESC LIMIT 1";
         List<GroupChat> result = jdbcTemplate.query(sqlSelect, chatRowMapper(), userId, roomId);
+        if (result.isEmpty()) {
+            // 최근 메시지가 없는 채팅방은 아카이브의 마지막 메시지
+            String sqlArchive = "SELECT * FROM group_chat_archive WHERE sender_user_id <> ? AND room_id = ? ORDER BY id DESC LIMIT 1";
+            result = jdbcTemplate.query(sqlArchive, chatRowMapper(), userId, roomId);
+        }
         return result.stream().findAny();
     }
 
+    /**
+     * 메시지를 읽은 사용자별 읽은 시간
+     * 아카이브한 메시지의 읽은 시간은 group_chat_read_time_archive 로 함께 옮겨지므로 두 테이블을 모두 조회한다
+     */
     @Override
     public Map<String, Timestamp> getReadStatusById(long chatId) {
-        String sqlSelect = "SELECT * FROM group_chat_read_time WHERE chat_id = ?";
-        List<Pair<String, Timestamp>> list = jdbcTemplate.query(sqlSelect, readStatusRowMapper(), chatId);
+        String sqlSelect = "SELECT user_id, read_at FROM group_chat_read_time WHERE chat_id = ? " +
+                "UNION ALL SELECT user_id, read_at FROM group_chat_read_time_archive WHERE chat_id = ?";
+        List<Pair<String, Timestamp>> list = jdbcTemplate.query(sqlSelect, readStatusRowMapper(), chatId, chatId);
         Map<String, Timestamp> result = new HashMap<>();
         for (Pair<String, Timestamp> t : list) {
             result.put(t.getFirst(), t.getSecond());
@@ -171,6 +381,7 @@ public class JdbcTemplateGroupChatRepository implements GroupChatRepository {
     /**
      * 메시지를 읽음 표시
      * Chat 테이블의 read_at 칼럼을 현재 시간으로 업데이트함으로써 읽음 표시
+     * 아카이브로 옮겨진 메시지는 group_chat_read_time_archive 에 기록 (group_chat_read_time 은 group_chat(id) 를 참조한다)
      * @param chatId 읽음 표시할 메시지 id
      * @return (Nullable) 메시지 객체
      */
@@ -178,8 +389,13 @@ public class JdbcTemplateGroupChatRepository implements GroupChatRepository {
     public Optional<GroupChat> markReadById(long chatId, String userId) {
         log.debug("mark as read by id, chatId = {}", chatId);
         String sqlInsert = "INSERT INTO group_chat_read_time(chat_id, user_id) VALUES (?, ?)";
+        String sqlArchiveInsert = "INSERT INTO group_chat_read_time_archive(chat_id, user_id, read_at) VALUES (?, ?, CURRENT_TIMESTAMP)";
         try {
-            jdbcTemplate.update(sqlInsert, chatId, userId);
+            if (exists("SELECT 1 FROM group_chat WHERE id = ?", chatId)) {
+                jdbcTemplate.update(sqlInsert, chatId, userId);
+            } else if (exists("SELECT 1 FROM group_chat_archive WHERE id = ?", chatId)) {
+                jdbcTemplate.update(sqlArchiveInsert, chatId, userId);
+            }
         } catch (DuplicateKeyException e) {
             log.error("cannot insert read status: {}", e.getMessage());
         }
@@ -189,8 +405,19 @@ public class JdbcTemplateGroupChatRepository implements GroupChatRepository {
     @Override
     public List<Pair<Long, Long>> listGroupByUser(String userId) {
         // TODO: 성능 개선 필요
-        String sqlSelect = "SELECT room_id, max(id) max_id FROM group_chat WHERE room_id IN (SELECT room_id FROM group_room_members WHERE user_id = ?) GROUP BY room_id ORDER BY max_id DESC";
-        return jdbcTemplate.query(sqlSelect, groupLastMessageRowMapper(), userId);
+        // 최근 메시지가 모두 아카이브로 옮겨진 채팅방도 목록에 남도록 아카이브의 마지막 id 도 함께 구한다
+        String sqlSelect = "SELECT room_id, max(id) max_id FROM " +
+                "(SELECT room_id, max(id) id FROM group_chat WHERE deleted_at IS NULL AND room_id IN (SELECT room_id FROM group_room_members WHERE user_id = ?) GROUP BY room_id " +
+                "UNION ALL " +
+                "SELECT room_id, max(id) id FROM group_chat_archive WHERE room_id IN (SELECT room_id FROM group_room_members WHERE user_id = ?) GROUP BY room_id) temp_table " +
+                "GROUP BY room_id ORDER BY max_id DESC";
+        return jdbcTemplate.query(sqlSelect, groupLastMessageRowMapper(), userId, userId);
+    }
+
+    @Override
+    public List<String> findUserIdsByRoom(long roomId) {
+        String sql = "SELECT user_id FROM group_room_members WHERE room_id = ?";
+        return jdbcTemplate.query(sql, groupMemberRowMapper(), roomId);
     }
 
     @Override
@@ -201,14 +428,18 @@ public class JdbcTemplateGroupChatRepository implements GroupChatRepository {
     }
 
     @Override
-    public List<String> makeNewGroup(List<String> memberList) {
+    public List<String> makeNewGroup(List<String> memberList, boolean inboxFanout) {
 
         List<String> resultList = new ArrayList<>();
 
-        String sqlGroupInsert = "INSERT INTO group_room() VALUES ()";
+        String sqlGroupInsert = "INSERT INTO group_room(inbox_fanout) VALUES (?)";
         KeyHolder keyHolder = new GeneratedKeyHolder();
 
-        jdbcTemplate.update(conn -> conn.prepareStatement(sqlGroupInsert, new String[] {"id"}), keyHolder);
+        jdbcTemplate.update(conn -> {
+            PreparedStatement ps = conn.prepareStatement(sqlGroupInsert, new String[] {"id"});
+            ps.setBoolean(1, inboxFanout);
+            return ps;
+        }, keyHolder);
 
         long roomId = Objects.requireNonNull(keyHolder.getKey()).longValue();
 
@@ -226,4 +457,256 @@ public class JdbcTemplateGroupChatRepository implements GroupChatRepository {
         }
         return resultList;
     }
+
+    /**
+     * days 일보다 오래전에 생성된 가장 오래된 메시지들을 아카이브 테이블로 옮긴다
+     * 기준 시각은 created_at 과 같은 DB 시계로 계산한다 (서버와 DB 의 시계, 시간대가 달라도 경계가 밀리지 않는다)
+     * 해당 메시지의 읽음 시간도 함께 아카이브 테이블로 옮기고, 삭제 표시된 메시지는 백업 테이블로 옮긴다
+     * @param days hot 테이블에 남길 일 수
+     * @param batchSize 한 번에 옮길 최대 메시지 개수
+     * @return 옮긴 메시지 개수
+     */
+    @Override
+    public int archiveOlderThan(long days, int batchSize) {
+        String sqlSelect = "SELECT id, created_at < TIMESTAMPADD(DAY, ?, CURRENT_TIMESTAMP) AS expired FROM group_chat ORDER BY id LIMIT ?";
+        List<Pair<Long, Boolean>> head = jdbcTemplate.query(sqlSelect,
+                (rs, rowNum) -> new Pair<>(rs.getLong("id"), rs.getBoolean("expired")), -days, batchSize);
+
+        // 기준 시각 이후의 메시지가 나오면 그 앞까지만 옮긴다
+        long fromId = -1;
+        long toId = -1;
+        for (Pair<Long, Boolean> row : head) {
+            if (!row.getSecond()) {
+                break;
+            }
+            if (fromId < 0) {
+                fromId = row.getFirst();
+            }
+            toId = row.getFirst();
+        }
+        if (fromId < 0) {
+            return 0;
+        }
+
+        long from = fromId;
+        long to = toId;
+        Integer moved = transactionTemplate.execute(status -> {
+            String sqlReadTimeInsert = "INSERT INTO group_chat_read_time_archive(chat_id, user_id, read_at) " +
+                    "SELECT chat_id, user_id, read_at FROM group_chat_read_time WHERE chat_id BETWEEN ? AND ?";
+            jdbcTemplate.update(sqlReadTimeInsert, from, to);
+            jdbcTemplate.update("DELETE FROM group_chat_read_time WHERE chat_id BETWEEN ? AND ?", from, to);
+            jdbcTemplate.update("DELETE FROM group_chat_inbox WHERE chat_id BETWEEN ? AND ?", from, to);
+
+            String sqlBackup = "INSERT INTO group_chat_backup(id, sender_user_id, target_room_id, content, content_codec, content_dict_id, content_z, created_at, deleted_at) " +
+                    "SELECT id, sender_user_id, room_id, content, content_codec, content_dict_id, content_z, created_at, deleted_at FROM group_chat " +
+                    "WHERE id BETWEEN ? AND ? AND deleted_at IS NOT NULL";
+            jdbcTemplate.update(sqlBackup, from, to);
+            String sqlInsert = "INSERT INTO group_chat_archive(id, sender_user_id, room_id, content, content_codec, content_dict_id, content_z, created_at, seq, blob_id) " +
+                    "SELECT id, sender_user_id, room_id, content, content_codec, content_dict_id, content_z, created_at, seq, blob_id FROM group_chat " +
+                    "WHERE id BETWEEN ? AND ? AND deleted_at IS NULL";
+            jdbcTemplate.update(sqlInsert, from, to);
+            return jdbcTemplate.update("DELETE FROM group_chat WHERE id BETWEEN ? AND ?", from, to);
+        });
+        log.debug("archive group chat fromId={}, toId={}, moved={}", from, to, moved);
+        return moved == null ? 0 : moved;
+    }
+
+    /**
+     * 삭제 표시된 메시지를 백업 테이블로 옮기고 원본 테이블에서 제거
+     * 삭제된 메시지의 읽음 시간은 함께 제거한다
+     * @param batchSize 한 번에 옮길 최대 메시지 개수
+     * @return 옮긴 메시지 개수
+     */
+    @Override
+    public int purgeDeleted(int batchSize) {
+        String sqlSelect = "SELECT id FROM group_chat WHERE deleted_at IS NOT NULL ORDER BY deleted_at LIMIT ?";
+        List<Long> ids = jdbcTemplate.queryForList(sqlSelect, Long.class, batchSize);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+        Object[] args = ids.toArray();
+        Integer purged = transactionTemplate.execute(status -> {
+            jdbcTemplate.update("DELETE FROM group_chat_read_time WHERE chat_id IN (" + placeholders + ")", args);
+            jdbcTemplate.update("DELETE FROM group_chat_inbox WHERE chat_id IN (" + placeholders + ")", args);
+            String sqlBackup = "INSERT INTO group_chat_backup(id, sender_user_id, target_room_id, content, content_codec, content_dict_id, content_z, created_at, deleted_at) " +
+                    "SELECT id, sender_user_id, room_id, content, content_codec, content_dict_id, content_z, created_at, deleted_at FROM group_chat " +
+                    "WHERE id IN (" + placeholders + ") AND deleted_at IS NOT NULL";
+            jdbcTemplate.update(sqlBackup, args);
+            String sqlDelete = "DELETE FROM group_chat WHERE id IN (" + placeholders + ") AND deleted_at IS NOT NULL";
+            return jdbcTemplate.update(sqlDelete, args);
+        });
+        log.debug("purge deleted group chat, purged={}", purged);
+        return purged == null ? 0 : purged;
+    }
+
+    /**
+     * 전송 사용자의 삭제되지 않은 그룹 메시지 id를 아카이브를 포함해서 오래된 순으로 검색
+     * @param senderUserId 메시지 전송 사용자 id
+     * @param afterId 이전 조회한 마지막 메시지 id
+     * @param size 조회할 메시지 개수
+     * @return (메시지 id, 생성 시각) 리스트
+     */
+    @Override
+    public List<Pair<Long, Timestamp>> findIdsBySender(String senderUserId, long afterId, int size) {
+        return findIdsAfter("sender_user_id = ?", new Object[] {senderUserId}, afterId, size);
+    }
+
+    /**
+     * 그룹 채팅방 안에서 전송 사용자의 삭제되지 않은 메시지 id를 아카이브를 포함해서 오래된 순으로 검색
+     * @param senderUserId 메시지 전송 사용자 id
+     * @param roomId 그룹 채팅방 id
+     * @param afterId 이전 조회한 마지막 메시지 id
+     * @param size 조회할 메시지 개수
+     * @return (메시지 id, 생성 시각) 리스트
+     */
+    @Override
+    public List<Pair<Long, Timestamp>> findIdsBySenderInRoom(String senderUserId, long roomId, long afterId, int size) {
+        return findIdsAfter("room_id = ? AND sender_user_id = ?", new Object[] {roomId, senderUserId}, afterId, size);
+    }
+
+    /**
+     * 그룹 채팅방의 삭제되지 않은 메시지 id를 아카이브를 포함해서 오래된 순으로 검색
+     * @param roomId 그룹 채팅방 id
+     * @param afterId 이전 조회한 마지막 메시지 id
+     * @param size 조회할 메시지 개수
+     * @return (메시지 id, 생성 시각) 리스트
+     */
+    @Override
+    public List<Pair<Long, Timestamp>> findIdsByRoom(long roomId, long afterId, int size) {
+        return findIdsAfter("room_id = ?", new Object[] {roomId}, afterId, size);
+    }
+
+    /**
+     * 여러 메시지를 한 번에 삭제 표시
+     * @param chatIds 삭제할 메시지 id 리스트
+     * @return 삭제 표시한 메시지 개수
+     */
+    @Override
+    public int deleteByIds(List<Long> chatIds) {
+        if (chatIds.isEmpty()) {
+            return 0;
+        }
+        String placeholders = String.join(",", Collections.nCopies(chatIds.size(), "?"));
+        String sql = "UPDATE group_chat SET deleted_at = CURRENT_TIMESTAMP WHERE id IN (" + placeholders + ") AND deleted_at IS NULL";
+        int deleted = jdbcTemplate.update(sql, chatIds.toArray());
+        if (deleted < chatIds.size()) {
+            // 아카이브로 옮겨진 메시지
+            deleted += deleteArchived("id IN (" + placeholders + ")", chatIds.toArray());
+        }
+        return deleted;
+    }
+
+    /**
+     * 아카이브와 hot 테이블에서 조건에 맞는 삭제되지 않은 메시지 id를 오래된 순으로 검색
+     * 아카이브의 id는 항상 hot 테이블의 id보다 작으므로 아카이브를 먼저 읽는다
+     * @param where 두 테이블에 공통인 조건
+     * @param args 조건의 인자
+     * @param afterId 이전 조회한 마지막 메시지 id
+     * @param size 조회할 메시지 개수
+     * @return (메시지 id, 생성 시각) 리스트
+     */
+    private List<Pair<Long, Timestamp>> findIdsAfter(String where, Object[] args, long afterId, int size) {
+        String sqlArchive = "SELECT id, created_at FROM group_chat_archive WHERE " + where + " AND id > ? ORDER BY id LIMIT ?";
+        List<Pair<Long, Timestamp>> result = jdbcTemplate.query(sqlArchive, idCreatedAtRowMapper(), withPage(args, afterId, size));
+        if (result.size() >= size) {
+            return result;
+        }
+        long hotAfterId = result.isEmpty() ? afterId : result.get(result.size() - 1).getFirst();
+        String sql = "SELECT id, created_at FROM group_chat WHERE deleted_at IS NULL AND " + where + " AND id > ? ORDER BY id LIMIT ?";
+        List<Pair<Long, Timestamp>> hot = jdbcTemplate.query(sql, idCreatedAtRowMapper(), withPage(args, hotAfterId, size - result.size()));
+        if (result.isEmpty()) {
+            return hot;
+        }
+        List<Pair<Long, Timestamp>> merged = new ArrayList<>(result);
+        merged.addAll(hot);
+        return merged;
+    }
+
+    private static Object[] withPage(Object[] args, long afterId, int size) {
+        Object[] result = Arrays.copyOf(args, args.length + 2);
+        result[args.length] = afterId;
+        result[args.length + 1] = size;
+        return result;
+    }
+
+    /**
+     * 아카이브와 hot 테이블의 삭제되지 않은 모든 메시지를 오래된 순으로 검색 (검색 색인 재생성용)
+     * 아카이브의 id는 항상 hot 테이블의 id보다 작으므로 아카이브를 먼저 읽는다
+     * @param afterId 이전 조회한 마지막 메시지 id
+     * @param size 조회할 메시지 개수
+     * @return 메시지 객체 리스트
+     */
+    @Override
+    public List<GroupChat> findAllAfter(long afterId, int size) {
+        String sqlArchive = "SELECT * FROM group_chat_archive WHERE id > ? ORDER BY id LIMIT ?";
+        List<GroupChat> result = jdbcTemplate.query(sqlArchive, chatRowMapper(), afterId, size);
+        if (result.size() >= size) {
+            return result;
+        }
+        long hotAfterId = result.isEmpty() ? afterId : result.get(result.size() - 1).getId();
+        String sql = "SELECT * FROM group_chat WHERE deleted_at IS NULL AND id > ? ORDER BY id LIMIT ?";
+        List<GroupChat> hot = jdbcTemplate.query(sql, chatRowMapper(), hotAfterId, size - result.size());
+        if (result.isEmpty()) {
+            return hot;
+        }
+        List<GroupChat> merged = new ArrayList<>(result);
+        merged.addAll(hot);
+        return merged;
+    }
+
+    @Override
+    public List<Long> findRoomIdsByUser(String userId) {
+        String sql = "SELECT room_id FROM group_room_members WHERE user_id = ?";
+        return jdbcTemplate.queryForList(sql, Long.class, userId);
+    }
+
+    /**
+     * 사용자가 속한 그룹 채팅방의 메시지를 모두 스트리밍으로 조회 (보관 테이블 → 최근 테이블 순서)
+     * 결과를 메모리에 모으지 않고 한 행씩 consumer 에 전달한다
+     * @param userId 사용자 id
+     * @param fetchSize JDBC fetch size (MySQL 은 Integer.MIN_VALUE 이면 한 행씩 스트리밍)
+     * @param consumer 메시지를 받을 함수
+     */
+    @Override
+    public void streamByUser(String userId, int fetchSize, Consumer<GroupChat> consumer) {
+        String sqlArchive = "SELECT * FROM group_chat_archive WHERE room_id IN (SELECT room_id FROM group_room_members WHERE user_id = ?)";
+        String sql = "SELECT * FROM group_chat WHERE deleted_at IS NULL AND room_id IN (SELECT room_id FROM group_room_members WHERE user_id = ?)";
+        RowMapper<GroupChat> rowMapper = chatRowMapper();
+        for (String query : List.of(sqlArchive, sql)) {
+            jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(fetchSize);
+                ps.setString(1, userId);
+                return ps;
+            }, (RowCallbackHandler) rs -> consumer.accept(rowMapper.mapRow(rs, 0)));
+        }
+    }
+
+    /**
+     * 사용자가 참여한 채팅방의 삭제되지 않은 메시지(최근, 아카이브)가 blob 을 참조하는지
+     */
+    @Override
+    public boolean canReadBlob(String blobId, String userId) {
+        String sql = "SELECT 1 FROM group_chat c JOIN group_room_members m ON m.room_id = c.room_id " +
+                "WHERE c.blob_id = ? AND c.deleted_at IS NULL AND m.user_id = ? LIMIT 1";
+        String sqlArchive = "SELECT 1 FROM group_chat_archive c JOIN group_room_members m ON m.room_id = c.room_id " +
+                "WHERE c.blob_id = ? AND m.user_id = ? LIMIT 1";
+        return exists(sql, blobId, userId) || exists(sqlArchive, blobId, userId);
+    }
+
+    /**
+     * 삭제되지 않은 메시지(최근, 아카이브)가 blob 을 참조하는지 (삭제 표시된 메시지는 정리되면 blob id 가 남지 않는다)
+     */
+    @Override
+    public boolean referencesBlob(String blobId) {
+        String sql = "SELECT 1 FROM group_chat WHERE blob_id = ? AND deleted_at IS NULL LIMIT 1";
+        String sqlArchive = "SELECT 1 FROM group_chat_archive WHERE blob_id = ? LIMIT 1";
+        return exists(sql, blobId) || exists(sqlArchive, blobId);
+    }
+
+    private boolean exists(String sql, Object... args) {
+        return !jdbcTemplate.queryForList(sql, Integer.class, args).isEmpty();
+    }
 }
@@ -11,6 +11,7 @@ import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 
 import javax.sql.DataSource;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
@@ -69,6 +70,46 @@ public class JdbcTemplateMemberRepository implements MemberRepository {
         return jdbcTemplate.query(sql, memberRowMapper());
     }
 
+    /**
+     * 회원 목록을 id 순으로 조회 (커서 기반 페이지네이션)
+     * @param prevId (Nullable) 이전 조회한 마지막 회원 id
+     * @param size 조회할 회원 수
+     * @return 회원 리스트
+     */
+    @Override
+    public List<Member> findAll(String prevId, Integer size) {
+        if (prevId == null) {
+            String sql = "SELECT * FROM member ORDER BY id LIMIT ?";
+            return jdbcTemplate.query(sql, memberRowMapper(), size);
+        }
+        String sql = "SELECT * FROM member WHERE id > ? ORDER BY id LIMIT ?";
+        return jdbcTemplate.query(sql, memberRowMapper(), prevId, size);
+    }
+
+    @Override
+    public List<Member> findByIds(List<String> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+        String sql = "SELECT * FROM member WHERE id IN (" + placeholders + ") ORDER BY id";
+        return jdbcTemplate.query(sql, memberRowMapper(), ids.toArray());
+    }
+
+    /**
+     * id 또는 이름의 접두어로 회원을 검색 (메모리 색인이 준비되기 전에 사용)
+     * @param prefix 접두어
+     * @param prevId (Nullable) 이전 조회한 마지막 회원 id
+     * @param size 조회할 회원 수
+     * @return 회원 리스트
+     */
+    @Override
+    public List<Member> findByPrefix(String prefix, String prevId, Integer size) {
+        String pattern = prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        String sql = "SELECT * FROM member WHERE (id LIKE ? OR display_name LIKE ?) AND id > ? ORDER BY id LIMIT ?";
+        return jdbcTemplate.query(sql, memberRowMapper(), pattern, pattern, prevId == null ? "" : prevId, size);
+    }
+
     @Override
     public Optional<Member> findByIdAndPw(String id, String password) {
         String sql = "SELECT * FROM member WHERE id = ? AND pw = ?";
@@ -1,5 +1,7 @@
 package com.messenger.repository;
 
+import com.messenger.codec.ContentCodec;
+import com.messenger.codec.EncodedContent;
 import com.messenger.domain.Chat;
 import com.messenger.exception.ErrorCode;
 import com.messenger.exception.MyException;
@@ -7,25 +9,40 @@ import com.messenger.util.Pair;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.sql.DataSource;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Repository
 @Slf4j
 public class JdbcTemplatePersonalChatRepository implements PersonalChatRepository {
 
     private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ContentCodec contentCodec;
 
-    public JdbcTemplatePersonalChatRepository(DataSource dataSource) {
+    public JdbcTemplatePersonalChatRepository(DataSource dataSource, PlatformTransactionManager transactionManager, ContentCodec contentCodec) {
         this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.contentCodec = contentCodec;
     }
 
     private RowMapper<Chat> chatRowMapper() {
@@ -34,12 +51,21 @@ public class JdbcTemplatePersonalChatRepository implements PersonalChatRepositor
                 .senderUserId(rs.getString("sender_user_id"))
                 .receiverUserId(rs.getString("receiver_user_id"))
                 .groupId(rs.getString("group_id"))
-                .content(rs.getString("content"))
+                .lazyContent(contentCodec.decode(rs.getInt("content_codec"), rs.getObject("content_dict_id", Integer.class),
+                        rs.getString("content"), rs.getBytes("content_z")))
                 .read_at(rs.getTimestamp("read_at"))
                 .created_at(rs.getTimestamp("created_at"))
+                .seq(rs.getObject("seq", Long.class))
+                .blobId(rs.getString("blob_id"))
                 .build();
     }
 
+    private RowMapper<Pair<Long, Timestamp>> idCreatedAtRowMapper() {
+        return (rs, rowNum) -> new Pair<>(
+                rs.getLong("id"),
+                rs.getTimestamp("created_at"));
+    }
+
     private RowMapper<Pair<String, Long>> groupLastMessageRowMapper() {
         return (rs, rowNum) -> new Pair<>(
                 rs.getString("sender_user_id"),
@@ -49,24 +75,57 @@ public class JdbcTemplatePersonalChatRepository implements PersonalChatRepositor
     /**
      * 1:1 메시지를 저장소에 저장
      * @param chat 저장할 메시지 객체
+     * @param clientMessageId (Nullable) 클라이언트가 만든 메시지 id, 같은 전송 사용자의 같은 id 는 한 번만 저장된다
      * @return 저장한 메시지 객체
+     * @throws org.springframework.dao.DuplicateKeyException 이미 같은 clientMessageId 로 저장한 메시지가 있는 경우
      */
     @Override
-    public Chat save(Chat chat) {
-        String sql = "INSERT INTO personal_chat(sender_user_id, receiver_user_id, content, group_id) values(?, ?, ?, FUNC_CONCAT_ID(sender_user_id, receiver_user_id))";
+    public Chat save(Chat chat, String clientMessageId) {
+        // 1:1 채팅방의 순번 행만 잠그고 증가시킨다, 같은 채팅방의 다른 저장은 커밋까지 기다리므로 순번 순서와 id 순서가 같다
+        String sqlSeq = "INSERT INTO conversation_sequence(room_type, room_key, last_seq) VALUES ('PERSONAL', FUNC_CONCAT_ID(?, ?), 1) " +
+                "ON DUPLICATE KEY UPDATE last_seq = last_seq + 1";
+        String sqlLastSeq = "SELECT last_seq FROM conversation_sequence WHERE room_type = 'PERSONAL' AND room_key = FUNC_CONCAT_ID(?, ?)";
+        String sql = "INSERT INTO personal_chat(sender_user_id, receiver_user_id, content, group_id, client_message_id, seq, blob_id, content_codec, content_dict_id, content_z) " +
+                "values(?, ?, ?, FUNC_CONCAT_ID(sender_user_id, receiver_user_id), ?, ?, ?, ?, ?, ?)";
         KeyHolder keyHolder = new GeneratedKeyHolder();
 
-        log.debug("chat={}", chat);
-        jdbcTemplate.update(conn -> {
-            PreparedStatement ps = conn.prepareStatement(sql, new String[] {"id"});
-            ps.setString(1, chat.getSenderUserId());
-            ps.setString(2, chat.getReceiverUserId());
-            ps.setString(3, chat.getContent());
-            return ps;
-        }, keyHolder);
+        log.debug("chat={}, clientMessageId={}", chat, clientMessageId);
+        // 순번 행을 잠그기 전에 압축한다
+        EncodedContent content = contentCodec.encode(chat.getContent());
+        // 메시지 저장이 실패하면(clientMessageId 중복 등) 순번 증가도 롤백되어 빈 순번이 생기지 않는다
+        Long id = transactionTemplate.execute(status -> {
+            jdbcTemplate.update(sqlSeq, chat.getSenderUserId(), chat.getReceiverUserId());
+            Long seq = jdbcTemplate.queryForObject(sqlLastSeq, Long.class, chat.getSenderUserId(), chat.getReceiverUserId());
+            jdbcTemplate.update(conn -> {
+                PreparedStatement ps = conn.prepareStatement(sql, new String[] {"id"});
+                ps.setString(1, chat.getSenderUserId());
+                ps.setString(2, chat.getReceiverUserId());
+                ps.setString(3, content.getText());
+                ps.setString(4, clientMessageId);
+                ps.setLong(5, Objects.requireNonNull(seq));
+                ps.setString(6, chat.getBlobId());
+                ps.setInt(7, content.getCodec());
+                ps.setObject(8, content.getDictId(), Types.INTEGER);
+                ps.setBytes(9, content.getData());
+                return ps;
+            }, keyHolder);
+            return Objects.requireNonNull(keyHolder.getKey()).longValue();
+        });
 
-        long id = Objects.requireNonNull(keyHolder.getKey()).longValue();
-        return findById(id).orElseThrow(() -> new MyException(ErrorCode.NOT_FOUND_CHAT));
+        return findById(Objects.requireNonNull(id)).orElseThrow(() -> new MyException(ErrorCode.NOT_FOUND_CHAT));
+    }
+
+    /**
+     * 클라이언트가 만든 메시지 id 로 저장한 메시지를 검색 (삭제 표시된 메시지 포함)
+     * @param senderUserId 전송 사용자 id
+     * @param clientMessageId 클라이언트가 만든 메시지 id
+     * @return (Nullable) 메시지 객체
+     */
+    @Override
+    public Optional<Chat> findByClientMessageId(String senderUserId, String clientMessageId) {
+        String sql = "SELECT * FROM personal_chat WHERE sender_user_id = ? AND client_message_id = ?";
+        List<Chat> result = jdbcTemplate.query(sql, chatRowMapper(), senderUserId, clientMessageId);
+        return result.stream().findAny();
     }
 
     /**
@@ -77,16 +136,38 @@ public class JdbcTemplatePersonalChatRepository implements PersonalChatRepositor
     @Override
     public void deleteOne(long chatId, String userId) {
         // 전송 사용자 id가 일치해야만 삭제 처리
-        String sql = "DELETE FROM personal_chat WHERE id = ? AND sender_user_id = ?";
+        String sql = "UPDATE personal_chat SET deleted_at = CURRENT_TIMESTAMP WHERE id = ? AND sender_user_id = ? AND deleted_at IS NULL";
         Object[] args = {chatId, userId};
         log.debug("delete chat chatId={}, userId={}", chatId, userId);
         int update = jdbcTemplate.update(sql, args);
+        if (update == 0) {
+            // 아카이브로 옮겨진 메시지도 조회되므로 같은 조건으로 삭제한다
+            update = deleteArchived("id = ? AND sender_user_id = ?", args);
+        }
         log.debug("update={}", update);
         if (update == 0) {
             throw new MyException(ErrorCode.FAIL_DELETE_CHAT);
         }
     }
 
+    /**
+     * 아카이브 테이블의 메시지를 삭제 시각과 함께 백업 테이블로 옮긴다
+     * (아카이브 테이블에는 삭제 표시 칼럼이 없으므로 purge 를 기다리지 않고 바로 옮긴다)
+     * @param where 아카이브 테이블 조건
+     * @param args 조건의 인자
+     * @return 옮긴 메시지 개수
+     */
+    private int deleteArchived(String where, Object... args) {
+        Integer deleted = transactionTemplate.execute(status -> {
+            String sqlBackup = "INSERT INTO personal_chat_backup(id, sender_user_id, receiver_user_id, group_id, content, content_codec, content_dict_id, content_z, read_at, created_at, deleted_at) " +
+                    "SELECT id, sender_user_id, receiver_user_id, group_id, content, content_codec, content_dict_id, content_z, read_at, created_at, CURRENT_TIMESTAMP FROM personal_chat_archive " +
+                    "WHERE " + where;
+            jdbcTemplate.update(sqlBackup, args);
+            return jdbcTemplate.update("DELETE FROM personal_chat_archive WHERE " + where, args);
+        });
+        return deleted == null ? 0 : deleted;
+    }
+
     /**
      * 메시지 id 기반으로 메시지를 검색
      * @param chatId 검색할 메시지 id
@@ -94,8 +175,13 @@ public class JdbcTemplatePersonalChatRepository implements PersonalChatRepositor
      */
     @Override
     public Optional<Chat> findById(long chatId) {
-        String sql = "SELECT * FROM personal_chat WHERE id = ?";
+        String sql = "SELECT * FROM personal_chat WHERE deleted_at IS NULL AND id = ?";
         List<Chat> result = jdbcTemplate.query(sql, chatRowMapper(), chatId);
+        if (result.isEmpty()) {
+            // 아카이브로 옮겨진 메시지
+            String sqlArchive = "SELECT * FROM personal_chat_archive WHERE id = ?";
+            result = jdbcTemplate.query(sqlArchive, chatRowMapper(), chatId);
+        }
         return result.stream().findAny();
     }
 
@@ -109,10 +195,10 @@ public class JdbcTemplatePersonalChatRepository implements PersonalChatRepositor
     @Override
     public List<Chat> findAll(Integer prevId, Integer size) {
         if (prevId == null) {
-            String sql = "SELECT * FROM personal_chat WHERE id >= 0 ORDER BY id DESC LIMIT ?";
+            String sql = "SELECT * FROM personal_chat WHERE deleted_at IS NULL AND id >= 0 ORDER BY id DESC LIMIT ?";
             return jdbcTemplate.query(sql, chatRowMapper(), size);
         }
-        String sql = "SELECT * FROM personal_chat WHERE id < ? ORDER BY id DESC LIMIT ?";
+        String sql = "SELECT * FROM personal_chat WHERE deleted_at IS NULL AND id < ? ORDER BY id DESC LIMIT ?";
         return jdbcTemplate.query(sql, chatRowMapper(), prevId, size);
     }
 
@@ -128,10 +214,10 @@ public class JdbcTemplatePersonalChatRepository implements PersonalChatRepositor
     @Override
     public List<Chat> findBySender(String senderUserId, Integer prevId, Integer size) {
         if (prevId == null) {
-            String sql = "SELECT * FROM personal_chat WHERE sender_user_id = ? AND id >= 0 ORDER BY id DESC LIMIT ?";
+            String sql = "SELECT * FROM personal_chat WHERE deleted_at IS NULL AND sender_user_id = ? AND id >= 0 ORDER BY id DESC LIMIT ?";
             return jdbcTemplate.query(sql, chatRowMapper(), senderUserId, size);
         }
-        String sql = "SELECT * FROM personal_chat WHERE sender_user_id = ? AND id < ? ORDER BY id DESC LIMIT ?";
+        String sql = "SELECT * FROM personal_chat WHERE deleted_at IS NULL AND sender_user_id = ? AND id < ? ORDER BY id DESC LIMIT ?";
         return jdbcTemplate.query(sql, chatRowMapper(), senderUserId, prevId, size);
     }
 
@@ -146,14 +232,28 @@ public class JdbcTemplatePersonalChatRepository implements PersonalChatRepositor
     @Override
     public List<Chat> findByReceiver(String receiverUserId, Integer prevId, Integer size) {
         if (prevId == null) {
-            String sql = "SELECT * FROM personal_chat WHERE receiver_user_id = ? AND id >= 0 ORDER BY id DESC LIMIT ?";
+            String sql = "SELECT * FROM personal_chat WHERE deleted_at IS NULL AND receiver_user_id = ? AND id >= 0 ORDER BY id DESC LIMIT ?";
             return jdbcTemplate.query(sql, chatRowMapper(), receiverUserId, size);
         }
-        String sql = "SELECT * FROM personal_chat WHERE receiver_user_id = ? AND id < ? ORDER BY id DESC LIMIT ?";
+        String sql = "SELECT * FROM personal_chat WHERE deleted_at IS NULL AND receiver_user_id = ? AND id < ? ORDER BY id DESC LIMIT ?";
         return jdbcTemplate.query(sql, chatRowMapper(), receiverUserId, prevId, size);
     }
 
 
+    /**
+     * 수신 사용자 id 기반으로 afterId 이후에 받은 삭제되지 않은 메시지를 오래된 순으로 검색 (long polling)
+     * @param receiverUserId 메시지 수신 사용자 id
+     * @param afterId 클라이언트가 마지막으로 받은 메시지 id
+     * @param size 조회할 메시지 개수
+     * @return 메시지 객체 리스트
+     */
+    @Override
+    public List<Chat> findByReceiverAfter(String receiverUserId, long afterId, int size) {
+        String sql = "SELECT * FROM personal_chat WHERE deleted_at IS NULL AND receiver_user_id = ? AND id > ? ORDER BY id LIMIT ?";
+        return jdbcTemplate.query(sql, chatRowMapper(), receiverUserId, afterId, size);
+    }
+
+
     /**
      * 자신과 상대방 사용자 id 기반으로 1:1 그룹의 메시지를 검색
      * @param userId 자신의 사용자 id
@@ -164,12 +264,72 @@ public class JdbcTemplatePersonalChatRepository implements PersonalChatRepositor
      */
     @Override
     public List<Chat> findByGroup(String userId, String oppositeUserId, Integer prevId, Integer size) {
+        List<Chat> result;
         if (prevId == null) {
-            String sql = "SELECT * FROM personal_chat WHERE group_id = FUNC_CONCAT_ID(?, ?) AND id >= 0 ORDER BY id DESC LIMIT ?";
-            return jdbcTemplate.query(sql, chatRowMapper(), userId, oppositeUserId, size);
+            String sql = "SELECT * FROM personal_chat WHERE deleted_at IS NULL AND group_id = FUNC_CONCAT_ID(?, ?) AND id >= 0 ORDER BY id DESC LIMIT ?";
+            result = jdbcTemplate.query(sql, chatRowMapper(), userId, oppositeUserId, size);
+        } else {
+            String sql = "SELECT * FROM personal_chat WHERE deleted_at IS NULL AND group_id = FUNC_CONCAT_ID(?, ?) AND id < ? ORDER BY id DESC LIMIT ?";
+            result = jdbcTemplate.query(sql, chatRowMapper(), userId, oppositeUserId, prevId, size);
+        }
+        if (result.size() >= size) {
+            return result;
+        }
+
+        // hot 테이블의 메시지를 모두 읽은 경우 아카이브 테이블에서 이어서 검색
+        Long archivePrevId = result.isEmpty() ? (prevId == null ? null : prevId.longValue()) : result.get(result.size() - 1).getId();
+        int remaining = size - result.size();
+        List<Chat> archived;
+        if (archivePrevId == null) {
+            String sql = "SELECT * FROM personal_chat_archive WHERE group_id = FUNC_CONCAT_ID(?, ?) AND id >= 0 ORDER BY id DESC LIMIT ?";
+            archived = jdbcTemplate.query(sql, chatRowMapper(), userId, oppositeUserId, remaining);
+        } else {
+            String sql = "SELECT * FROM personal_chat_archive WHERE group_id = FUNC_CONCAT_ID(?, ?) AND id < ? ORDER BY id DESC LIMIT ?";
+            archived = jdbcTemplate.query(sql, chatRowMapper(), userId, oppositeUserId, archivePrevId, remaining);
+        }
+        if (archived.isEmpty()) {
+            return result;
+        }
+        List<Chat> merged = new ArrayList<>(result);
+        merged.addAll(archived);
+        return merged;
+    }
+
+    /**
+     * 1:1 그룹에서 순번이 fromSeq 이상 toSeq 이하인 삭제되지 않은 메시지를 순번 순으로 검색 (아카이브 포함)
+     * 범위 안에서 빠진 순번은 삭제된 메시지이다
+     * @param userId 자신의 사용자 id
+     * @param oppositeUserId 상대방 사용자 id
+     * @param fromSeq 시작 순번
+     * @param toSeq 끝 순번
+     * @return 메시지 객체 리스트
+     */
+    @Override
+    public List<Chat> findByGroupSeqRange(String userId, String oppositeUserId, long fromSeq, long toSeq) {
+        String sqlArchive = "SELECT * FROM personal_chat_archive WHERE group_id = FUNC_CONCAT_ID(?, ?) AND seq BETWEEN ? AND ? ORDER BY seq";
+        String sql = "SELECT * FROM personal_chat WHERE deleted_at IS NULL AND group_id = FUNC_CONCAT_ID(?, ?) AND seq BETWEEN ? AND ? ORDER BY seq";
+        // 아카이브의 id 는 항상 hot 테이블의 id 보다 작고, 같은 그룹 안에서는 순번 순서와 id 순서가 같다
+        List<Chat> archived = jdbcTemplate.query(sqlArchive, chatRowMapper(), userId, oppositeUserId, fromSeq, toSeq);
+        List<Chat> hot = jdbcTemplate.query(sql, chatRowMapper(), userId, oppositeUserId, fromSeq, toSeq);
+        if (archived.isEmpty()) {
+            return hot;
         }
-        String sql = "SELECT * FROM personal_chat WHERE group_id = FUNC_CONCAT_ID(?, ?) AND id < ? ORDER BY id DESC LIMIT ?";
-        return jdbcTemplate.query(sql, chatRowMapper(), userId, oppositeUserId, prevId, size);
+        List<Chat> merged = new ArrayList<>(archived);
+        merged.addAll(hot);
+        return merged;
+    }
+
+    /**
+     * 1:1 그룹에서 마지막으로 붙인 순번을 검색
+     * @param userId 자신의 사용자 id
+     * @param oppositeUserId 상대방 사용자 id
+     * @return 마지막 순번, 메시지가 없으면 0
+     */
+    @Override
+    public long findLastSeq(String userId, String oppositeUserId) {
+        String sql = "SELECT last_seq FROM conversation_sequence WHERE room_type = 'PERSONAL' AND room_key = FUNC_CONCAT_ID(?, ?)";
+        List<Long> result = jdbcTemplate.queryForList(sql, Long.class, userId, oppositeUserId);
+        return result.isEmpty() ? 0 : result.get(0);
     }
 
     /**
@@ -180,22 +340,32 @@ public class JdbcTemplatePersonalChatRepository implements PersonalChatRepositor
      */
     @Override
     public Optional<Chat> findLastReceivedByGroup(String userId, String oppositeUserId) {
-        String sqlSelect = "SELECT * FROM personal_chat WHERE receiver_user_id = ? AND sender_user_id = ? AND id >= 0 ORDER BY id DESC LIMIT 1";
+        String sqlSelect = "SELECT * FROM personal_chat WHERE deleted_at IS NULL AND receiver_user_id = ? AND sender_user_id = ? AND id >= 0 ORDER BY id DESC LIMIT 1";
         List<Chat> result = jdbcTemplate.query(sqlSelect, chatRowMapper(), userId, oppositeUserId);
+        if (result.isEmpty()) {
+            // 최근 메시지가 없는 대화는 아카이브의 마지막 메시지
+            String sqlArchive = "SELECT * FROM personal_chat_archive WHERE receiver_user_id = ? AND sender_user_id = ? ORDER BY id DESC LIMIT 1";
+            result = jdbcTemplate.query(sqlArchive, chatRowMapper(), userId, oppositeUserId);
+        }
         return result.stream().findAny();
     }
 
     /**
      * 메시지를 읽음 표시
      * Chat 테이블의 read_at 칼럼을 현재 시간으로 업데이트함으로써 읽음 표시
+     * 아카이브로 옮겨진 메시지는 아카이브 테이블의 read_at 을 업데이트
      * @param chatId 읽음 표시할 메시지 id
      * @return (Nullable) 메시지 객체
      */
     @Override
     public Optional<Chat> markReadById(long chatId) {
         log.debug("mark as read by id, chatId = {}", chatId);
-        String sqlUpdate = "UPDATE personal_chat SET read_at = CURRENT_TIMESTAMP WHERE id = ? AND read_at IS NULL";
+        String sqlUpdate = "UPDATE personal_chat SET read_at = CURRENT_TIMESTAMP WHERE id = ? AND read_at IS NULL AND deleted_at IS NULL";
+        String sqlArchiveUpdate = "UPDATE personal_chat_archive SET read_at = CURRENT_TIMESTAMP WHERE id = ? AND read_at IS NULL";
         int update = jdbcTemplate.update(sqlUpdate, chatId);
+        if (update == 0) {
+            update = jdbcTemplate.update(sqlArchiveUpdate, chatId);
+        }
         if (update == 0) {
             throw new NullPointerException("cannot update chat");
         }
@@ -205,14 +375,266 @@ public class JdbcTemplatePersonalChatRepository implements PersonalChatRepositor
     @Override
     public List<Pair<String, Long>> listGroupByUser(String userId) {
         // TODO: 성능 개선 필요
+        // 최근 메시지가 모두 아카이브로 옮겨진 대화도 목록에 남도록 아카이브의 마지막 id 도 함께 구한다
         String sqlSelect =
                 "SELECT sender_user_id, max(id) max_id " +
                 "FROM " +
-                "(SELECT sender_user_id, max(id) id FROM personal_chat WHERE receiver_user_id = ? GROUP BY sender_user_id " +
+                "(SELECT sender_user_id, max(id) id FROM personal_chat WHERE deleted_at IS NULL AND receiver_user_id = ? GROUP BY sender_user_id " +
+                "UNION ALL " +
+                "SELECT receiver_user_id, max(id) id FROM personal_chat WHERE deleted_at IS NULL AND sender_user_id = ? GROUP BY receiver_user_id " +
+                "UNION ALL " +
+                "SELECT sender_user_id, max(id) id FROM personal_chat_archive WHERE receiver_user_id = ? GROUP BY sender_user_id " +
                 "UNION ALL " +
-                "SELECT receiver_user_id, max(id) id FROM personal_chat WHERE sender_user_id = ? GROUP BY receiver_user_id) temp_table " +
+                "SELECT receiver_user_id, max(id) id FROM personal_chat_archive WHERE sender_user_id = ? GROUP BY receiver_user_id) temp_table " +
                 "GROUP BY sender_user_id " +
                 "ORDER BY max_id DESC";
-        return jdbcTemplate.query(sqlSelect, groupLastMessageRowMapper(), userId, userId);
+        return jdbcTemplate.query(sqlSelect, groupLastMessageRowMapper(), userId, userId, userId, userId);
+    }
+
+    /**
+     * days 일보다 오래전에 생성된 가장 오래된 메시지들을 아카이브 테이블로 옮긴다
+     * 기준 시각은 created_at 과 같은 DB 시계로 계산한다 (서버와 DB 의 시계, 시간대가 달라도 경계가 밀리지 않는다)
+     * id 순서대로 앞에서부터 연속된 구간만 옮기므로, 아카이브의 id는 항상 hot 테이블의 id보다 작다
+     * 구간 안의 삭제 표시된 메시지는 백업 테이블로 옮긴다
+     * @param days hot 테이블에 남길 일 수
+     * @param batchSize 한 번에 옮길 최대 메시지 개수
+     * @return 옮긴 메시지 개수
+     */
+    @Override
+    public int archiveOlderThan(long days, int batchSize) {
+        String sqlSelect = "SELECT id, created_at < TIMESTAMPADD(DAY, ?, CURRENT_TIMESTAMP) AS expired FROM personal_chat ORDER BY id LIMIT ?";
+        List<Pair<Long, Boolean>> head = jdbcTemplate.query(sqlSelect,
+                (rs, rowNum) -> new Pair<>(rs.getLong("id"), rs.getBoolean("expired")), -days, batchSize);
+
+        // 기준 시각 이후의 메시지가 나오면 그 앞까지만 옮긴다
+        long fromId = -1;
+        long toId = -1;
+        for (Pair<Long, Boolean> row : head) {
+            if (!row.getSecond()) {
+                break;
+            }
+            if (fromId < 0) {
+                fromId = row.getFirst();
+            }
+            toId = row.getFirst();
+        }
+        if (fromId < 0) {
+            return 0;
+        }
+
+        long from = fromId;
+        long to = toId;
+        Integer moved = transactionTemplate.execute(status -> {
+            String sqlBackup = "INSERT INTO personal_chat_backup(id, sender_user_id, receiver_user_id, group_id, content, content_codec, content_dict_id, content_z, read_at, created_at, deleted_at) " +
+                    "SELECT id, sender_user_id, receiver_user_id, group_id, content, content_codec, content_dict_id, content_z, read_at, created_at, deleted_at FROM personal_chat " +
+                    "WHERE id BETWEEN ? AND ? AND deleted_at IS NOT NULL";
+            jdbcTemplate.update(sqlBackup, from, to);
+            String sqlInsert = "INSERT INTO personal_chat_archive(id, sender_user_id, receiver_user_id, group_id, content, content_codec, content_dict_id, content_z, read_at, created_at, seq, blob_id) " +
+                    "SELECT id, sender_user_id, receiver_user_id, group_id, content, content_codec, content_dict_id, content_z, read_at, created_at, seq, blob_id FROM personal_chat " +
+                    "WHERE id BETWEEN ? AND ? AND deleted_at IS NULL";
+            jdbcTemplate.update(sqlInsert, from, to);
+            return jdbcTemplate.update("DELETE FROM personal_chat WHERE id BETWEEN ? AND ?", from, to);
+        });
+        log.debug("archive personal chat fromId={}, toId={}, moved={}", from, to, moved);
+        return moved == null ? 0 : moved;
+    }
+
+    /**
+     * 삭제 표시된 메시지를 백업 테이블로 옮기고 원본 테이블에서 제거
+     * @param batchSize 한 번에 옮길 최대 메시지 개수
+     * @return 옮긴 메시지 개수
+     */
+    @Override
+    public int purgeDeleted(int batchSize) {
+        String sqlSelect = "SELECT id FROM personal_chat WHERE deleted_at IS NOT NULL ORDER BY deleted_at LIMIT ?";
+        List<Long> ids = jdbcTemplate.queryForList(sqlSelect, Long.class, batchSize);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+        Object[] args = ids.toArray();
+        Integer purged = transactionTemplate.execute(status -> {
+            String sqlBackup = "INSERT INTO personal_chat_backup(id, sender_user_id, receiver_user_id, group_id, content, content_codec, content_dict_id, content_z, read_at, created_at, deleted_at) " +
+                    "SELECT id, sender_user_id, receiver_user_id, group_id, content, content_codec, content_dict_id, content_z, read_at, created_at, deleted_at FROM personal_chat " +
+                    "WHERE id IN (" + placeholders + ") AND deleted_at IS NOT NULL";
+            jdbcTemplate.update(sqlBackup, args);
+            String sqlDelete = "DELETE FROM personal_chat WHERE id IN (" + placeholders + ") AND deleted_at IS NOT NULL";
+            return jdbcTemplate.update(sqlDelete, args);
+        });
+        log.debug("purge deleted personal chat, purged={}", purged);
+        return purged == null ? 0 : purged;
+    }
+
+    /**
+     * 전송 사용자의 삭제되지 않은 메시지 id를 아카이브를 포함해서 오래된 순으로 검색
+     * @param senderUserId 메시지 전송 사용자 id
+     * @param afterId 이전 조회한 마지막 메시지 id
+     * @param size 조회할 메시지 개수
+     * @return (메시지 id, 생성 시각) 리스트
+     */
+    @Override
+    public List<Pair<Long, Timestamp>> findIdsBySender(String senderUserId, long afterId, int size) {
+        return findIdsAfter("sender_user_id = ?", new Object[] {senderUserId}, afterId, size);
+    }
+
+    /**
+     * 1:1 그룹 안에서 전송 사용자의 삭제되지 않은 메시지 id를 아카이브를 포함해서 오래된 순으로 검색
+     * @param senderUserId 메시지 전송 사용자 id
+     * @param oppositeUserId 상대방 사용자 id
+     * @param afterId 이전 조회한 마지막 메시지 id
+     * @param size 조회할 메시지 개수
+     * @return (메시지 id, 생성 시각) 리스트
+     */
+    @Override
+    public List<Pair<Long, Timestamp>> findIdsBySenderInGroup(String senderUserId, String oppositeUserId, long afterId, int size) {
+        return findIdsAfter("group_id = FUNC_CONCAT_ID(?, ?) AND sender_user_id = ?", new Object[] {senderUserId, oppositeUserId, senderUserId}, afterId, size);
+    }
+
+    /**
+     * 1:1 그룹의 삭제되지 않은 메시지 id를 아카이브를 포함해서 오래된 순으로 검색
+     * @param groupId 1:1 그룹 id
+     * @param afterId 이전 조회한 마지막 메시지 id
+     * @param size 조회할 메시지 개수
+     * @return (메시지 id, 생성 시각) 리스트
+     */
+    @Override
+    public List<Pair<Long, Timestamp>> findIdsByGroupId(String groupId, long afterId, int size) {
+        return findIdsAfter("group_id = ?", new Object[] {groupId}, afterId, size);
+    }
+
+    /**
+     * 여러 메시지를 한 번에 삭제 표시
+     * @param chatIds 삭제할 메시지 id 리스트
+     * @return 삭제 표시한 메시지 개수
+     */
+    @Override
+    public int deleteByIds(List<Long> chatIds) {
+        if (chatIds.isEmpty()) {
+            return 0;
+        }
+        String placeholders = String.join(",", Collections.nCopies(chatIds.size(), "?"));
+        String sql = "UPDATE personal_chat SET deleted_at = CURRENT_TIMESTAMP WHERE id IN (" + placeholders + ") AND deleted_at IS NULL";
+        int deleted = jdbcTemplate.update(sql, chatIds.toArray());
+        if (deleted < chatIds.size()) {
+            // 아카이브로 옮겨진 메시지
+            deleted += deleteArchived("id IN (" + placeholders + ")", chatIds.toArray());
+        }
+        return deleted;
+    }
+
+    /**
+     * 아카이브와 hot 테이블에서 조건에 맞는 삭제되지 않은 메시지 id를 오래된 순으로 검색
+     * 아카이브의 id는 항상 hot 테이블의 id보다 작으므로 아카이브를 먼저 읽는다
+     * @param where 두 테이블에 공통인 조건
+     * @param args 조건의 인자
+     * @param afterId 이전 조회한 마지막 메시지 id
+     * @param size 조회할 메시지 개수
+     * @return (메시지 id, 생성 시각) 리스트
+     */
+    private List<Pair<Long, Timestamp>> findIdsAfter(String where, Object[] args, long afterId, int size) {
+        String sqlArchive = "SELECT id, created_at FROM personal_chat_archive WHERE " + where + " AND id > ? ORDER BY id LIMIT ?";
+        List<Pair<Long, Timestamp>> result = jdbcTemplate.query(sqlArchive, idCreatedAtRowMapper(), withPage(args, afterId, size));
+        if (result.size() >= size) {
+            return result;
+        }
+        long hotAfterId = result.isEmpty() ? afterId : result.get(result.size() - 1).getFirst();
+        String sql = "SELECT id, created_at FROM personal_chat WHERE deleted_at IS NULL AND " + where + " AND id > ? ORDER BY id LIMIT ?";
+        List<Pair<Long, Timestamp>> hot = jdbcTemplate.query(sql, idCreatedAtRowMapper(), withPage(args, hotAfterId, size - result.size()));
+        if (result.isEmpty()) {
+            return hot;
+        }
+        List<Pair<Long, Timestamp>> merged = new ArrayList<>(result);
+        merged.addAll(hot);
+        return merged;
+    }
+
+    private static Object[] withPage(Object[] args, long afterId, int size) {
+        Object[] result = Arrays.copyOf(args, args.length + 2);
+        result[args.length] = afterId;
+        result[args.length + 1] = size;
+        return result;
+    }
+
+    /**
+     * 아카이브와 hot 테이블의 삭제되지 않은 모든 메시지를 오래된 순으로 검색 (검색 색인 재생성용)
+     * 아카이브의 id는 항상 hot 테이블의 id보다 작으므로 아카이브를 먼저 읽는다
+     * @param afterId 이전 조회한 마지막 메시지 id
+     * @param size 조회할 메시지 개수
+     * @return 메시지 객체 리스트
+     */
+    @Override
+    public List<Chat> findAllAfter(long afterId, int size) {
+        String sqlArchive = "SELECT * FROM personal_chat_archive WHERE id > ? ORDER BY id LIMIT ?";
+        List<Chat> result = jdbcTemplate.query(sqlArchive, chatRowMapper(), afterId, size);
+        if (result.size() >= size) {
+            return result;
+        }
+        long hotAfterId = result.isEmpty() ? afterId : result.get(result.size() - 1).getId();
+        String sql = "SELECT * FROM personal_chat WHERE deleted_at IS NULL AND id > ? ORDER BY id LIMIT ?";
+        List<Chat> hot = jdbcTemplate.query(sql, chatRowMapper(), hotAfterId, size - result.size());
+        if (result.isEmpty()) {
+            return hot;
+        }
+        List<Chat> merged = new ArrayList<>(result);
+        merged.addAll(hot);
+        return merged;
+    }
+
+    /**
+     * 사용자가 보내거나 받은 1:1 메시지를 모두 스트리밍으로 조회 (보관 테이블 → 최근 테이블 순서)
+     * 결과를 메모리에 모으지 않고 한 행씩 consumer 에 전달한다
+     * @param userId 사용자 id
+     * @param fetchSize JDBC fetch size (MySQL 은 Integer.MIN_VALUE 이면 한 행씩 스트리밍)
+     * @param consumer 메시지를 받을 함수
+     */
+    @Override
+    public void streamByUser(String userId, int fetchSize, Consumer<Chat> consumer) {
+        String sqlArchive = "SELECT * FROM personal_chat_archive WHERE sender_user_id = ? " +
+                "UNION ALL SELECT * FROM personal_chat_archive WHERE receiver_user_id = ? AND sender_user_id <> ?";
+        String sql = "SELECT * FROM personal_chat WHERE deleted_at IS NULL AND sender_user_id = ? " +
+                "UNION ALL SELECT * FROM personal_chat WHERE deleted_at IS NULL AND receiver_user_id = ? AND sender_user_id <> ?";
+        RowMapper<Chat> rowMapper = chatRowMapper();
+        for (String query : List.of(sqlArchive, sql)) {
+            jdbcTemplate.query(streamingStatement(query, fetchSize, userId, userId, userId),
+                    (RowCallbackHandler) rs -> consumer.accept(rowMapper.mapRow(rs, 0)));
+        }
+    }
+
+    private PreparedStatementCreator streamingStatement(String sql, int fetchSize, Object... args) {
+        return con -> {
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            for (int i = 0; i < args.length; i++) {
+                ps.setObject(i + 1, args[i]);
+            }
+            return ps;
+        };
+    }
+
+    /**
+     * 사용자가 주고받은 삭제되지 않은 메시지(최근, 아카이브)가 blob 을 참조하는지
+     */
+    @Override
+    public boolean canReadBlob(String blobId, String userId) {
+        String sql = "SELECT 1 FROM personal_chat WHERE blob_id = ? AND deleted_at IS NULL " +
+                "AND (sender_user_id = ? OR receiver_user_id = ?) LIMIT 1";
+        String sqlArchive = "SELECT 1 FROM personal_chat_archive WHERE blob_id = ? " +
+                "AND (sender_user_id = ? OR receiver_user_id = ?) LIMIT 1";
+        return exists(sql, blobId, userId, userId) || exists(sqlArchive, blobId, userId, userId);
+    }
+
+    /**
+     * 삭제되지 않은 메시지(최근, 아카이브)가 blob 을 참조하는지 (삭제 표시된 메시지는 정리되면 blob id 가 남지 않는다)
+     */
+    @Override
+    public boolean referencesBlob(String blobId) {
+        String sql = "SELECT 1 FROM personal_chat WHERE blob_id = ? AND deleted_at IS NULL LIMIT 1";
+        String sqlArchive = "SELECT 1 FROM personal_chat_archive WHERE blob_id = ? LIMIT 1";
+        return exists(sql, blobId) || exists(sqlArchive, blobId);
+    }
+
+    private boolean exists(String sql, Object... args) {
+        return !jdbcTemplate.queryForList(sql, Integer.class, args).isEmpty();
     }
 }
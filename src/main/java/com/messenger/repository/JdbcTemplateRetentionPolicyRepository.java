@@ -0,0 +1,97 @@
+package com.messenger.repository;
+
+import com.messenger.domain.ChatRoomType;
+import com.messenger.domain.RetentionPolicy;
+import com.messenger.exception.ErrorCode;
+import com.messenger.exception.MyException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+@Slf4j
+public class JdbcTemplateRetentionPolicyRepository implements RetentionPolicyRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public JdbcTemplateRetentionPolicyRepository(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    private RowMapper<RetentionPolicy> policyRowMapper() {
+        return (rs, rowNum) -> RetentionPolicy.builder()
+                .roomType(ChatRoomType.valueOf(rs.getString("room_type")))
+                .roomKey(rs.getString("room_key"))
+                .retentionDays(rs.getInt("retention_days"))
+                .updated_at(rs.getTimestamp("updated_at"))
+                .build();
+    }
+
+    /**
+     * 1:1 채팅방의 보관 정책을 저장 (이미 있으면 변경)
+     * @param userId 자신의 사용자 id
+     * @param oppositeUserId 상대방 사용자 id
+     * @param retentionDays 보관 기간 (일)
+     * @return 저장한 보관 정책
+     */
+    @Override
+    public RetentionPolicy savePersonalPolicy(String userId, String oppositeUserId, int retentionDays) {
+        String sql = "INSERT INTO chat_retention_policy(room_type, room_key, retention_days) VALUES ('PERSONAL', FUNC_CONCAT_ID(?, ?), ?) " +
+                "ON DUPLICATE KEY UPDATE retention_days = VALUES(retention_days), updated_at = CURRENT_TIMESTAMP";
+        log.debug("save personal retention policy userId={}, oppositeUserId={}, retentionDays={}", userId, oppositeUserId, retentionDays);
+        jdbcTemplate.update(sql, userId, oppositeUserId, retentionDays);
+        return findPersonalPolicy(userId, oppositeUserId).orElseThrow(() -> new MyException(ErrorCode.INTERNAL_SERVER_ERROR));
+    }
+
+    /**
+     * 그룹 채팅방의 보관 정책을 저장 (이미 있으면 변경)
+     * @param roomId 그룹 채팅방 id
+     * @param retentionDays 보관 기간 (일)
+     * @return 저장한 보관 정책
+     */
+    @Override
+    public RetentionPolicy saveGroupPolicy(long roomId, int retentionDays) {
+        String sql = "INSERT INTO chat_retention_policy(room_type, room_key, retention_days) VALUES ('GROUP', ?, ?) " +
+                "ON DUPLICATE KEY UPDATE retention_days = VALUES(retention_days), updated_at = CURRENT_TIMESTAMP";
+        log.debug("save group retention policy roomId={}, retentionDays={}", roomId, retentionDays);
+        jdbcTemplate.update(sql, String.valueOf(roomId), retentionDays);
+        return findGroupPolicy(roomId).orElseThrow(() -> new MyException(ErrorCode.INTERNAL_SERVER_ERROR));
+    }
+
+    @Override
+    public void deletePersonalPolicy(String userId, String oppositeUserId) {
+        String sql = "DELETE FROM chat_retention_policy WHERE room_type = 'PERSONAL' AND room_key = FUNC_CONCAT_ID(?, ?)";
+        jdbcTemplate.update(sql, userId, oppositeUserId);
+    }
+
+    @Override
+    public void deleteGroupPolicy(long roomId) {
+        String sql = "DELETE FROM chat_retention_policy WHERE room_type = 'GROUP' AND room_key = ?";
+        jdbcTemplate.update(sql, String.valueOf(roomId));
+    }
+
+    @Override
+    public Optional<RetentionPolicy> findPersonalPolicy(String userId, String oppositeUserId) {
+        String sql = "SELECT * FROM chat_retention_policy WHERE room_type = 'PERSONAL' AND room_key = FUNC_CONCAT_ID(?, ?)";
+        List<RetentionPolicy> result = jdbcTemplate.query(sql, policyRowMapper(), userId, oppositeUserId);
+        return result.stream().findAny();
+    }
+
+    @Override
+    public Optional<RetentionPolicy> findGroupPolicy(long roomId) {
+        String sql = "SELECT * FROM chat_retention_policy WHERE room_type = 'GROUP' AND room_key = ?";
+        List<RetentionPolicy> result = jdbcTemplate.query(sql, policyRowMapper(), String.valueOf(roomId));
+        return result.stream().findAny();
+    }
+
+    @Override
+    public List<RetentionPolicy> findAll() {
+        String sql = "SELECT * FROM chat_retention_policy";
+        return jdbcTemplate.query(sql, policyRowMapper());
+    }
+}
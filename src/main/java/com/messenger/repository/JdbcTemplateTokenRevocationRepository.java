@@ -0,0 +1,68 @@
+package com.messenger.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+@Repository
+@Slf4j
+public class JdbcTemplateTokenRevocationRepository implements TokenRevocationRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public JdbcTemplateTokenRevocationRepository(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * 폐기한 토큰 id 또는 family id 를 저장, 이미 있으면 만료 시각이 늦은 쪽을 유지한다
+     * @param expiresAtMillis 이 시각까지 폐기 상태를 유지 (epoch ms)
+     */
+    @Override
+    public void save(String id, long expiresAtMillis) {
+        String sql = "INSERT INTO token_revocation(id, expires_at) VALUES (?, ?) " +
+                "ON DUPLICATE KEY UPDATE expires_at = GREATEST(expires_at, VALUES(expires_at))";
+        jdbcTemplate.update(sql, id, expiresAtMillis);
+    }
+
+    /**
+     * 아직 저장되지 않은 경우에만 저장 (여러 서버에서 같은 refresh token 을 사용하면 한 곳만 성공한다)
+     * @return 이번 호출로 저장했으면 true, 이미 있었으면 false
+     */
+    @Override
+    public boolean saveIfAbsent(String id, long expiresAtMillis) {
+        String sql = "INSERT INTO token_revocation(id, expires_at) VALUES (?, ?)";
+        try {
+            jdbcTemplate.update(sql, id, expiresAtMillis);
+            return true;
+        } catch (DuplicateKeyException e) {
+            log.debug("token already revoked, id = {}", id);
+            return false;
+        }
+    }
+
+    /**
+     * 아직 만료되지 않은 폐기 항목 (서버를 시작할 때 메모리에 불러온다)
+     * @return id → 만료 시각 (epoch ms)
+     */
+    @Override
+    public Map<String, Long> findNotExpired(long nowMillis) {
+        String sql = "SELECT id, expires_at FROM token_revocation WHERE expires_at > ?";
+        Map<String, Long> result = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            result.put(rs.getString("id"), rs.getLong("expires_at"));
+        }, nowMillis);
+        return result;
+    }
+
+    @Override
+    public int deleteExpired(long nowMillis) {
+        String sql = "DELETE FROM token_revocation WHERE expires_at <= ?";
+        return jdbcTemplate.update(sql, nowMillis);
+    }
+}
@@ -0,0 +1,295 @@
+package com.messenger.repository;
+
+import com.messenger.domain.GroupChat;
+import com.messenger.exception.ErrorCode;
+import com.messenger.exception.MyException;
+import com.messenger.logstore.LogMessageStore;
+import com.messenger.logstore.LogMessageStore.Index;
+import com.messenger.logstore.MessageRecord;
+import com.messenger.util.Pair;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * logstore 프로필: 그룹 메시지를 MySQL 대신 로컬 디스크의 append-only 로그(LogMessageStore)에 저장
+ *
+ * 메시지와 사용자별 읽음 시간은 로그에 저장하고, 채팅방과 참여자는 그대로 DB(JdbcTemplateGroupChatRepository)를 사용한다
+ * 채팅방 별 색인이 있으므로 inbox fan-out 을 하지 않고 수신 메시지는 참여한 채팅방의 색인을 합쳐서 읽는다
+ * 저장, fsync, 아카이브에 대한 동작은 LogStorePersonalChatRepository 와 같다
+ */
+@Slf4j
+@Primary
+@Profile("logstore")
+@Repository
+public class LogStoreGroupChatRepository implements GroupChatRepository, DisposableBean {
+
+    private static final Predicate<MessageRecord> ANY = record -> true;
+    private static final int STREAM_BATCH_SIZE = 1000;
+
+    private final LogMessageStore store;
+    private final JdbcTemplateGroupChatRepository roomRepository;
+    private final Timer flushTimer;
+
+    public LogStoreGroupChatRepository(JdbcTemplateGroupChatRepository roomRepository,
+                                       @Value("${chat.logstore.dir:./data/logstore}") String dir,
+                                       @Value("${chat.logstore.segment-size:268435456}") int segmentSize,
+                                       MeterRegistry meterRegistry) throws IOException {
+        this.roomRepository = roomRepository;
+        this.store = LogMessageStore.open(Paths.get(dir, "group"), segmentSize);
+        this.flushTimer = Timer.builder("chat.logstore.flush")
+                .description("로그를 디스크에 내리는(fsync) 시간")
+                .tag("store", "group")
+                .register(meterRegistry);
+    }
+
+    private GroupChat toChat(MessageRecord record) {
+        return GroupChat.builder()
+                .id(record.getId())
+                .senderUserId(record.getSenderUserId())
+                .roomId(record.getRoomId())
+                .content(record.getContent())
+                .created_at(new Timestamp(record.getCreatedAt()))
+                .seq(record.getSeq())
+                .blobId(record.getBlobId())
+                .build();
+    }
+
+    private List<GroupChat> toChats(List<MessageRecord> records) {
+        return records.stream().map(this::toChat).collect(Collectors.toList());
+    }
+
+    private static List<Pair<Long, Timestamp>> toIds(List<MessageRecord> records) {
+        return records.stream()
+                .map(record -> new Pair<>(record.getId(), new Timestamp(record.getCreatedAt())))
+                .collect(Collectors.toList());
+    }
+
+    private static long beforeId(Integer prevId) {
+        return prevId == null ? Long.MAX_VALUE : prevId;
+    }
+
+    private static String conversationKey(long roomId) {
+        return String.valueOf(roomId);
+    }
+
+    @Scheduled(fixedDelayString = "${chat.logstore.flush-interval-ms:50}")
+    public void flush() {
+        flushTimer.record(store::flush);
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        store.close();
+    }
+
+    @Override
+    public GroupChat save(GroupChat chat, String clientMessageId) {
+        log.debug("chat={}, clientMessageId={}", chat, clientMessageId);
+        MessageRecord record = store.append(conversationKey(chat.getRoomId()), chat.getSenderUserId(), null, chat.getRoomId(),
+                chat.getContent(), chat.getBlobId(), clientMessageId);
+        return toChat(record);
+    }
+
+    @Override
+    public Optional<GroupChat> findByClientMessageId(String senderUserId, String clientMessageId) {
+        return store.findByClientMessageId(senderUserId, clientMessageId).map(this::toChat);
+    }
+
+    @Override
+    public void deleteOne(long chatId, String userId) {
+        log.debug("delete chat chatId={}, userId={}", chatId, userId);
+        if (!store.markDeleted(chatId, userId)) {
+            throw new MyException(ErrorCode.FAIL_DELETE_CHAT);
+        }
+    }
+
+    @Override
+    public Optional<GroupChat> findById(long chatId) {
+        return store.find(chatId).map(this::toChat);
+    }
+
+    /**
+     * 참여한 채팅방마다 prevId 이전 메시지를 size 개까지 읽어서 최신 순으로 합친다
+     */
+    @Override
+    public List<GroupChat> findByReceiver(String receiverUserId, Integer prevId, Integer size) {
+        List<MessageRecord> result = new ArrayList<>();
+        for (long roomId : roomRepository.findRoomIdsByUser(receiverUserId)) {
+            result.addAll(store.findBefore(Index.CONVERSATION, conversationKey(roomId), beforeId(prevId), size, ANY));
+        }
+        result.sort(Comparator.comparingLong(MessageRecord::getId).reversed());
+        return toChats(result.size() > size ? result.subList(0, size) : result);
+    }
+
+    @Override
+    public List<GroupChat> findByReceiverAfter(String receiverUserId, long afterId, int size) {
+        List<MessageRecord> result = new ArrayList<>();
+        for (long roomId : roomRepository.findRoomIdsByUser(receiverUserId)) {
+            result.addAll(store.findAfter(Index.CONVERSATION, conversationKey(roomId), afterId, size, ANY));
+        }
+        result.sort(Comparator.comparingLong(MessageRecord::getId));
+        return toChats(result.size() > size ? result.subList(0, size) : result);
+    }
+
+    @Override
+    public List<GroupChat> findByGroup(String userId, long roomId, Integer prevId, Integer size) {
+        return toChats(store.findBefore(Index.CONVERSATION, conversationKey(roomId), beforeId(prevId), size, ANY));
+    }
+
+    @Override
+    public List<GroupChat> findBySeqRange(long roomId, long fromSeq, long toSeq) {
+        return toChats(store.findSeqRange(conversationKey(roomId), fromSeq, toSeq));
+    }
+
+    @Override
+    public long findLastSeq(long roomId) {
+        return store.lastSeq(conversationKey(roomId));
+    }
+
+    @Override
+    public Optional<GroupChat> findLastReceivedByGroup(String userId, long roomId) {
+        List<MessageRecord> result = store.findBefore(Index.CONVERSATION, conversationKey(roomId), Long.MAX_VALUE, 1,
+                record -> !userId.equals(record.getSenderUserId()));
+        return result.stream().findAny().map(this::toChat);
+    }
+
+    @Override
+    public Map<String, Timestamp> getReadStatusById(long chatId) {
+        return store.readBy(chatId).entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> new Timestamp(e.getValue())));
+    }
+
+    /**
+     * 읽음 시간은 로그에 기록한다
+     * group_chat_read_time 은 group_chat(id) 를 참조하므로 로그에 저장한 메시지 id 를 넣을 수 없다
+     */
+    @Override
+    public Optional<GroupChat> markReadById(long chatId, String userId) {
+        store.markReadBy(chatId, userId);
+        return findById(chatId);
+    }
+
+    @Override
+    public List<Pair<Long, Long>> listGroupByUser(String userId) {
+        List<Pair<Long, Long>> result = new ArrayList<>();
+        for (long roomId : roomRepository.findRoomIdsByUser(userId)) {
+            long lastId = store.lastId(conversationKey(roomId));
+            if (lastId > 0) {
+                result.add(new Pair<>(roomId, lastId));
+            }
+        }
+        result.sort(Comparator.comparing((Pair<Long, Long> pair) -> pair.getSecond()).reversed());
+        return result;
+    }
+
+    @Override
+    public List<String> findUserIdsByRoom(long roomId) {
+        return roomRepository.findUserIdsByRoom(roomId);
+    }
+
+    @Override
+    public boolean belongToRoom(long roomId, String userId) {
+        return roomRepository.belongToRoom(roomId, userId);
+    }
+
+    @Override
+    public List<String> makeNewGroup(List<String> memberList, boolean inboxFanout) {
+        return roomRepository.makeNewGroup(memberList, inboxFanout);
+    }
+
+    @Override
+    public int archiveOlderThan(long days, int batchSize) {
+        return 0;
+    }
+
+    @Override
+    public int purgeDeleted(int batchSize) {
+        return 0;
+    }
+
+    @Override
+    public List<Pair<Long, Timestamp>> findIdsBySender(String senderUserId, long afterId, int size) {
+        return toIds(store.findAfter(Index.SENDER, senderUserId, afterId, size, ANY));
+    }
+
+    @Override
+    public List<Pair<Long, Timestamp>> findIdsBySenderInRoom(String senderUserId, long roomId, long afterId, int size) {
+        return toIds(store.findAfter(Index.CONVERSATION, conversationKey(roomId), afterId, size,
+                record -> senderUserId.equals(record.getSenderUserId())));
+    }
+
+    @Override
+    public List<Pair<Long, Timestamp>> findIdsByRoom(long roomId, long afterId, int size) {
+        return toIds(store.findAfter(Index.CONVERSATION, conversationKey(roomId), afterId, size, ANY));
+    }
+
+    @Override
+    public int deleteByIds(List<Long> chatIds) {
+        int deleted = 0;
+        for (long chatId : chatIds) {
+            if (store.markDeleted(chatId, null)) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public List<GroupChat> findAllAfter(long afterId, int size) {
+        return toChats(store.findAfter(Index.ALL, null, afterId, size, ANY));
+    }
+
+    @Override
+    public List<Long> findRoomIdsByUser(String userId) {
+        return roomRepository.findRoomIdsByUser(userId);
+    }
+
+    /**
+     * 참여한 채팅방 순서대로 fetchSize 개씩 읽어서 전달한다
+     */
+    @Override
+    public void streamByUser(String userId, int fetchSize, Consumer<GroupChat> consumer) {
+        int batchSize = fetchSize > 0 ? fetchSize : STREAM_BATCH_SIZE;
+        for (long roomId : roomRepository.findRoomIdsByUser(userId)) {
+            long afterId = 0;
+            while (true) {
+                List<MessageRecord> batch = store.findAfter(Index.CONVERSATION, conversationKey(roomId), afterId, batchSize, ANY);
+                if (batch.isEmpty()) {
+                    break;
+                }
+                batch.forEach(record -> consumer.accept(toChat(record)));
+                afterId = batch.get(batch.size() - 1).getId();
+            }
+        }
+    }
+
+    @Override
+    public boolean canReadBlob(String blobId, String userId) {
+        List<Long> roomIds = roomRepository.findRoomIdsByUser(userId);
+        return !store.findAfter(Index.BLOB, blobId, 0, 1, record -> roomIds.contains(record.getRoomId())).isEmpty();
+    }
+
+    @Override
+    public boolean referencesBlob(String blobId) {
+        return !store.findAfter(Index.BLOB, blobId, 0, 1, ANY).isEmpty();
+    }
+}
@@ -0,0 +1,278 @@
+package com.messenger.repository;
+
+import com.messenger.domain.Chat;
+import com.messenger.exception.ErrorCode;
+import com.messenger.exception.MyException;
+import com.messenger.logstore.LogMessageStore;
+import com.messenger.logstore.LogMessageStore.Index;
+import com.messenger.logstore.MessageRecord;
+import com.messenger.util.H2Functions;
+import com.messenger.util.Pair;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * logstore 프로필: 1:1 메시지를 MySQL 대신 로컬 디스크의 append-only 로그(LogMessageStore)에 저장
+ *
+ * - 저장은 mmap 된 segment 에 쓰고 바로 응답하며, flush-interval-ms 마다 모아서 fsync 한다
+ *   (프로세스가 죽어도 쓴 메시지는 남고, OS 가 죽으면 마지막 fsync 이후 메시지는 사라질 수 있다)
+ * - 대화 목록, 커서 페이지, 순번 조회는 메모리 색인으로 처리한다
+ * - 아카이브 테이블로 옮기거나 삭제 표시된 메시지를 지우지 않는다 (로그는 추가만 한다)
+ * 서버 한 대에서만 사용할 수 있다 (다른 서버는 같은 로그를 읽지 못한다)
+ */
+@Slf4j
+@Primary
+@Profile("logstore")
+@Repository
+public class LogStorePersonalChatRepository implements PersonalChatRepository, DisposableBean {
+
+    private static final Predicate<MessageRecord> ANY = record -> true;
+    // MySQL 스트리밍 fetch size(Integer.MIN_VALUE) 처럼 양수가 아니면 이 크기로 나눠 읽는다
+    private static final int STREAM_BATCH_SIZE = 1000;
+
+    private final LogMessageStore store;
+    private final Timer flushTimer;
+
+    public LogStorePersonalChatRepository(@Value("${chat.logstore.dir:./data/logstore}") String dir,
+                                          @Value("${chat.logstore.segment-size:268435456}") int segmentSize,
+                                          MeterRegistry meterRegistry) throws IOException {
+        this.store = LogMessageStore.open(Paths.get(dir, "personal"), segmentSize);
+        this.flushTimer = Timer.builder("chat.logstore.flush")
+                .description("로그를 디스크에 내리는(fsync) 시간")
+                .tag("store", "personal")
+                .register(meterRegistry);
+    }
+
+    private Chat toChat(MessageRecord record) {
+        Long readAt = store.readAt(record.getId());
+        return Chat.builder()
+                .id(record.getId())
+                .senderUserId(record.getSenderUserId())
+                .receiverUserId(record.getReceiverUserId())
+                .groupId(record.getConversationKey())
+                .content(record.getContent())
+                .read_at(readAt == null ? null : new Timestamp(readAt))
+                .created_at(new Timestamp(record.getCreatedAt()))
+                .seq(record.getSeq())
+                .blobId(record.getBlobId())
+                .build();
+    }
+
+    private List<Chat> toChats(List<MessageRecord> records) {
+        return records.stream().map(this::toChat).collect(Collectors.toList());
+    }
+
+    private static List<Pair<Long, Timestamp>> toIds(List<MessageRecord> records) {
+        return records.stream()
+                .map(record -> new Pair<>(record.getId(), new Timestamp(record.getCreatedAt())))
+                .collect(Collectors.toList());
+    }
+
+    private static long beforeId(Integer prevId) {
+        return prevId == null ? Long.MAX_VALUE : prevId;
+    }
+
+    // DB 의 group_id 와 같은 값
+    private static String conversationKey(String userId, String oppositeUserId) {
+        return H2Functions.concatId(userId, oppositeUserId);
+    }
+
+    @Scheduled(fixedDelayString = "${chat.logstore.flush-interval-ms:50}")
+    public void flush() {
+        flushTimer.record(store::flush);
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        store.close();
+    }
+
+    @Override
+    public Chat save(Chat chat, String clientMessageId) {
+        log.debug("chat={}, clientMessageId={}", chat, clientMessageId);
+        MessageRecord record = store.append(conversationKey(chat.getSenderUserId(), chat.getReceiverUserId()),
+                chat.getSenderUserId(), chat.getReceiverUserId(), 0, chat.getContent(), chat.getBlobId(), clientMessageId);
+        return toChat(record);
+    }
+
+    @Override
+    public Optional<Chat> findByClientMessageId(String senderUserId, String clientMessageId) {
+        return store.findByClientMessageId(senderUserId, clientMessageId).map(this::toChat);
+    }
+
+    @Override
+    public void deleteOne(long chatId, String userId) {
+        log.debug("delete chat chatId={}, userId={}", chatId, userId);
+        if (!store.markDeleted(chatId, userId)) {
+            throw new MyException(ErrorCode.FAIL_DELETE_CHAT);
+        }
+    }
+
+    @Override
+    public Optional<Chat> findById(long chatId) {
+        return store.find(chatId).map(this::toChat);
+    }
+
+    @Override
+    public List<Chat> findAll(Integer prevId, Integer size) {
+        return toChats(store.findBefore(Index.ALL, null, beforeId(prevId), size, ANY));
+    }
+
+    @Override
+    public List<Chat> findBySender(String senderUserId, Integer prevId, Integer size) {
+        return toChats(store.findBefore(Index.SENDER, senderUserId, beforeId(prevId), size, ANY));
+    }
+
+    @Override
+    public List<Chat> findByReceiver(String receiverUserId, Integer prevId, Integer size) {
+        return toChats(store.findBefore(Index.RECEIVER, receiverUserId, beforeId(prevId), size, ANY));
+    }
+
+    @Override
+    public List<Chat> findByReceiverAfter(String receiverUserId, long afterId, int size) {
+        return toChats(store.findAfter(Index.RECEIVER, receiverUserId, afterId, size, ANY));
+    }
+
+    @Override
+    public List<Chat> findByGroup(String userId, String oppositeUserId, Integer prevId, Integer size) {
+        return toChats(store.findBefore(Index.CONVERSATION, conversationKey(userId, oppositeUserId), beforeId(prevId), size, ANY));
+    }
+
+    @Override
+    public List<Chat> findByGroupSeqRange(String userId, String oppositeUserId, long fromSeq, long toSeq) {
+        return toChats(store.findSeqRange(conversationKey(userId, oppositeUserId), fromSeq, toSeq));
+    }
+
+    @Override
+    public long findLastSeq(String userId, String oppositeUserId) {
+        return store.lastSeq(conversationKey(userId, oppositeUserId));
+    }
+
+    @Override
+    public Optional<Chat> findLastReceivedByGroup(String userId, String oppositeUserId) {
+        List<MessageRecord> result = store.findBefore(Index.CONVERSATION, conversationKey(userId, oppositeUserId), Long.MAX_VALUE, 1,
+                record -> userId.equals(record.getReceiverUserId()) && oppositeUserId.equals(record.getSenderUserId()));
+        return result.stream().findAny().map(this::toChat);
+    }
+
+    @Override
+    public Optional<Chat> markReadById(long chatId) {
+        log.debug("mark as read by id, chatId = {}", chatId);
+        if (!store.markRead(chatId)) {
+            throw new NullPointerException("cannot update chat");
+        }
+        return findById(chatId);
+    }
+
+    @Override
+    public List<Pair<String, Long>> listGroupByUser(String userId) {
+        List<Pair<String, Long>> result = new ArrayList<>();
+        for (String partner : store.partners(userId)) {
+            long lastId = store.lastId(conversationKey(userId, partner));
+            if (lastId > 0) {
+                result.add(new Pair<>(partner, lastId));
+            }
+        }
+        result.sort(Comparator.comparing((Pair<String, Long> pair) -> pair.getSecond()).reversed());
+        return result;
+    }
+
+    /**
+     * 로그는 아카이브 테이블로 나누지 않는다 (오래된 segment 는 읽을 때만 page cache 에 올라온다)
+     */
+    @Override
+    public int archiveOlderThan(long days, int batchSize) {
+        return 0;
+    }
+
+    /**
+     * 삭제 표시는 로그에 남고 색인에서만 빠진다 (segment compaction 은 하지 않는다)
+     */
+    @Override
+    public int purgeDeleted(int batchSize) {
+        return 0;
+    }
+
+    @Override
+    public List<Pair<Long, Timestamp>> findIdsBySender(String senderUserId, long afterId, int size) {
+        return toIds(store.findAfter(Index.SENDER, senderUserId, afterId, size, ANY));
+    }
+
+    @Override
+    public List<Pair<Long, Timestamp>> findIdsBySenderInGroup(String senderUserId, String oppositeUserId, long afterId, int size) {
+        return toIds(store.findAfter(Index.CONVERSATION, conversationKey(senderUserId, oppositeUserId), afterId, size,
+                record -> senderUserId.equals(record.getSenderUserId())));
+    }
+
+    @Override
+    public List<Pair<Long, Timestamp>> findIdsByGroupId(String groupId, long afterId, int size) {
+        return toIds(store.findAfter(Index.CONVERSATION, groupId, afterId, size, ANY));
+    }
+
+    @Override
+    public int deleteByIds(List<Long> chatIds) {
+        int deleted = 0;
+        for (long chatId : chatIds) {
+            if (store.markDeleted(chatId, null)) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public List<Chat> findAllAfter(long afterId, int size) {
+        return toChats(store.findAfter(Index.ALL, null, afterId, size, ANY));
+    }
+
+    /**
+     * 보낸 메시지 → 받은 메시지 순서로 fetchSize 개씩 읽어서 전달한다
+     */
+    @Override
+    public void streamByUser(String userId, int fetchSize, Consumer<Chat> consumer) {
+        int batchSize = fetchSize > 0 ? fetchSize : STREAM_BATCH_SIZE;
+        stream(Index.SENDER, userId, batchSize, ANY, consumer);
+        stream(Index.RECEIVER, userId, batchSize, record -> !userId.equals(record.getSenderUserId()), consumer);
+    }
+
+    private void stream(Index index, String userId, int batchSize, Predicate<MessageRecord> filter, Consumer<Chat> consumer) {
+        long afterId = 0;
+        while (true) {
+            List<MessageRecord> batch = store.findAfter(index, userId, afterId, batchSize, filter);
+            if (batch.isEmpty()) {
+                return;
+            }
+            batch.forEach(record -> consumer.accept(toChat(record)));
+            afterId = batch.get(batch.size() - 1).getId();
+        }
+    }
+
+    @Override
+    public boolean canReadBlob(String blobId, String userId) {
+        return !store.findAfter(Index.BLOB, blobId, 0, 1,
+                record -> userId.equals(record.getSenderUserId()) || userId.equals(record.getReceiverUserId())).isEmpty();
+    }
+
+    @Override
+    public boolean referencesBlob(String blobId) {
+        return !store.findAfter(Index.BLOB, blobId, 0, 1, ANY).isEmpty();
+    }
+}
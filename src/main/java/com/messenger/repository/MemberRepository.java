@@ -9,6 +9,9 @@ public interface MemberRepository {
 
     Member save(Member member);
     List<Member> findAll();
+    List<Member> findAll(String prevId, Integer size);
+    List<Member> findByIds(List<String> ids);
+    List<Member> findByPrefix(String prefix, String prevId, Integer size);
     Optional<Member> findById(String id);
     List<Member> findByName(String name);
     Optional<Member> findByIdAndPw(String id, String password);
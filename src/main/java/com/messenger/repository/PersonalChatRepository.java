@@ -3,19 +3,35 @@ package com.messenger.repository;
 import com.messenger.domain.Chat;
 import com.messenger.util.Pair;
 
+import java.sql.Timestamp;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface PersonalChatRepository {
 
-     Chat save(Chat chat);
+     Chat save(Chat chat, String clientMessageId);
+     Optional<Chat> findByClientMessageId(String senderUserId, String clientMessageId);
      void deleteOne(long chatId, String userId);
      Optional<Chat> findById(long chatId);
      List<Chat> findAll(Integer prevId, Integer size);
      List<Chat> findBySender(String senderUserId, Integer prevId, Integer size);
      List<Chat> findByReceiver(String receiverUserId, Integer prevId, Integer size);
+     List<Chat> findByReceiverAfter(String receiverUserId, long afterId, int size);
      List<Chat> findByGroup(String userId, String oppositeUserId, Integer prevId, Integer size);
+     List<Chat> findByGroupSeqRange(String userId, String oppositeUserId, long fromSeq, long toSeq);
+     long findLastSeq(String userId, String oppositeUserId);
      Optional<Chat> findLastReceivedByGroup(String userId, String oppositeUserId);
      Optional<Chat> markReadById(long chatId);
      List<Pair<String, Long>> listGroupByUser(String userId);
+     int archiveOlderThan(long days, int batchSize);
+     int purgeDeleted(int batchSize);
+     List<Pair<Long, Timestamp>> findIdsBySender(String senderUserId, long afterId, int size);
+     List<Pair<Long, Timestamp>> findIdsBySenderInGroup(String senderUserId, String oppositeUserId, long afterId, int size);
+     List<Pair<Long, Timestamp>> findIdsByGroupId(String groupId, long afterId, int size);
+     int deleteByIds(List<Long> chatIds);
+     List<Chat> findAllAfter(long afterId, int size);
+     void streamByUser(String userId, int fetchSize, Consumer<Chat> consumer);
+     boolean canReadBlob(String blobId, String userId);
+     boolean referencesBlob(String blobId);
 }
@@ -0,0 +1,17 @@
+package com.messenger.repository;
+
+import com.messenger.domain.RetentionPolicy;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface RetentionPolicyRepository {
+
+     RetentionPolicy savePersonalPolicy(String userId, String oppositeUserId, int retentionDays);
+     RetentionPolicy saveGroupPolicy(long roomId, int retentionDays);
+     void deletePersonalPolicy(String userId, String oppositeUserId);
+     void deleteGroupPolicy(long roomId);
+     Optional<RetentionPolicy> findPersonalPolicy(String userId, String oppositeUserId);
+     Optional<RetentionPolicy> findGroupPolicy(long roomId);
+     List<RetentionPolicy> findAll();
+}
@@ -0,0 +1,11 @@
+package com.messenger.repository;
+
+import java.util.Map;
+
+public interface TokenRevocationRepository {
+
+     void save(String id, long expiresAtMillis);
+     boolean saveIfAbsent(String id, long expiresAtMillis);
+     Map<String, Long> findNotExpired(long nowMillis);
+     int deleteExpired(long nowMillis);
+}
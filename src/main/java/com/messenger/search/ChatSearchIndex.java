@@ -0,0 +1,271 @@
+package com.messenger.search;
+
+import com.messenger.domain.Chat;
+import com.messenger.domain.ChatRoomType;
+import com.messenger.domain.GroupChat;
+import com.messenger.dto.search.ChatSearchHit;
+import com.messenger.util.Pair;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.ko.KoreanAnalyzer;
+import org.apache.lucene.document.*;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.*;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 메시지 내용 전문 검색을 위한 Lucene 역색인 (로컬 디스크)
+ * 메시지 저장/삭제 시 증분으로 반영되고, 검색은 near-real-time searcher 로 처리한다
+ */
+@Slf4j
+@Component
+public class ChatSearchIndex {
+
+    private static final String FIELD_KEY = "key";
+    private static final String FIELD_TYPE = "type";
+    private static final String FIELD_ID = "id";
+    private static final String FIELD_SENDER = "sender";
+    private static final String FIELD_RECEIVER = "receiver";
+    private static final String FIELD_ROOM = "room";
+    private static final String FIELD_CONTENT = "content";
+    private static final String FIELD_CREATED_AT = "created_at";
+
+    private static final Sort SORT = new Sort(
+            SortField.FIELD_SCORE,
+            new SortField(FIELD_ID, SortField.Type.LONG, true),
+            new SortField(FIELD_TYPE, SortField.Type.STRING));
+
+    private final Analyzer analyzer;
+    private final FSDirectory directory;
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+
+    public ChatSearchIndex(@Value("${chat.search.index-dir:./data/search-index}") String indexDir) throws IOException {
+        Path path = Paths.get(indexDir);
+        Files.createDirectories(path);
+        this.analyzer = new KoreanAnalyzer();
+        this.directory = FSDirectory.open(path);
+        IndexWriterConfig config = new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        this.writer = new IndexWriter(directory, config);
+        this.searcherManager = new SearcherManager(writer, null);
+        log.info("chat search index opened: dir={}, docs={}", path.toAbsolutePath(), writer.getDocStats().numDocs);
+    }
+
+    public void index(Chat chat) {
+        Document doc = newDocument(ChatRoomType.PERSONAL, chat.getId(), chat.getSenderUserId(), chat.getContent(), chat.getCreated_at());
+        doc.add(new StringField(FIELD_RECEIVER, chat.getReceiverUserId(), Field.Store.YES));
+        update(key(ChatRoomType.PERSONAL, chat.getId()), doc);
+    }
+
+    public void index(GroupChat chat) {
+        Document doc = newDocument(ChatRoomType.GROUP, chat.getId(), chat.getSenderUserId(), chat.getContent(), chat.getCreated_at());
+        doc.add(new StringField(FIELD_ROOM, String.valueOf(chat.getRoomId()), Field.Store.YES));
+        update(key(ChatRoomType.GROUP, chat.getId()), doc);
+    }
+
+    public void delete(ChatRoomType type, Collection<Long> chatIds) {
+        if (chatIds.isEmpty()) {
+            return;
+        }
+        Term[] terms = chatIds.stream().map(chatId -> new Term(FIELD_KEY, key(type, chatId))).toArray(Term[]::new);
+        try {
+            writer.deleteDocuments(terms);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void deleteAll() {
+        try {
+            writer.deleteAll();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public long numDocs() {
+        return writer.getDocStats().numDocs;
+    }
+
+    /**
+     * 사용자가 볼 수 있는 메시지 중에서 내용을 검색
+     * 정렬: 점수 내림차순, 같은 점수면 메시지 id 내림차순
+     * @param text 검색어
+     * @param userId 검색하는 사용자 id (1:1 메시지의 전송/수신자)
+     * @param roomIds 사용자가 속한 그룹 채팅방 id 리스트
+     * @param cursor (Nullable) 이전 검색 결과의 다음 페이지 커서
+     * @param size 조회할 메시지 개수
+     * @return (검색 결과, 다음 페이지 커서) 다음 페이지가 없으면 커서는 null
+     */
+    public Pair<List<ChatSearchHit>, String> search(String text, String userId, List<Long> roomIds, String cursor, int size) {
+        Query contentQuery;
+        try {
+            contentQuery = new QueryParser(FIELD_CONTENT, analyzer).parse(QueryParser.escape(text));
+        } catch (ParseException e) {
+            throw new IllegalArgumentException(e);
+        }
+
+        BooleanQuery.Builder personal = new BooleanQuery.Builder()
+                .add(new TermQuery(new Term(FIELD_TYPE, ChatRoomType.PERSONAL.name())), BooleanClause.Occur.FILTER)
+                .add(new BooleanQuery.Builder()
+                        .add(new TermQuery(new Term(FIELD_SENDER, userId)), BooleanClause.Occur.SHOULD)
+                        .add(new TermQuery(new Term(FIELD_RECEIVER, userId)), BooleanClause.Occur.SHOULD)
+                        .build(), BooleanClause.Occur.FILTER);
+        BooleanQuery.Builder visible = new BooleanQuery.Builder()
+                .add(personal.build(), BooleanClause.Occur.SHOULD);
+        if (!roomIds.isEmpty()) {
+            List<BytesRef> rooms = roomIds.stream().map(roomId -> new BytesRef(String.valueOf(roomId))).collect(Collectors.toList());
+            visible.add(new BooleanQuery.Builder()
+                    .add(new TermQuery(new Term(FIELD_TYPE, ChatRoomType.GROUP.name())), BooleanClause.Occur.FILTER)
+                    .add(new TermInSetQuery(FIELD_ROOM, rooms), BooleanClause.Occur.FILTER)
+                    .build(), BooleanClause.Occur.SHOULD);
+        }
+
+        Query query = new BooleanQuery.Builder()
+                .add(contentQuery, BooleanClause.Occur.MUST)
+                .add(visible.build(), BooleanClause.Occur.FILTER)
+                .build();
+
+        IndexSearcher searcher;
+        try {
+            searcher = searcherManager.acquire();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            TopFieldDocs topDocs = searcher.searchAfter(decodeCursor(cursor), query, size, SORT, true);
+            List<ChatSearchHit> hits = new ArrayList<>(topDocs.scoreDocs.length);
+            for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                hits.add(toHit(searcher.doc(scoreDoc.doc), scoreDoc.score));
+            }
+            String nextCursor = null;
+            if (topDocs.scoreDocs.length == size) {
+                nextCursor = encodeCursor((FieldDoc) topDocs.scoreDocs[topDocs.scoreDocs.length - 1]);
+            }
+            return new Pair<>(hits, nextCursor);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            try {
+                searcherManager.release(searcher);
+            } catch (IOException e) {
+                log.error("cannot release searcher: {}", e.getMessage());
+            }
+        }
+    }
+
+    // 새로 색인한 문서가 검색되도록 searcher 갱신
+    @Scheduled(fixedDelayString = "${chat.search.refresh-interval-ms:500}")
+    public void refresh() {
+        try {
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            log.error("cannot refresh search index: {}", e.getMessage());
+        }
+    }
+
+    // 색인 변경 사항을 디스크에 반영
+    @Scheduled(fixedDelayString = "${chat.search.commit-interval-ms:30000}")
+    public void commit() {
+        try {
+            if (writer.hasUncommittedChanges()) {
+                writer.commit();
+            }
+        } catch (IOException e) {
+            log.error("cannot commit search index: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        commit();
+        searcherManager.close();
+        writer.close();
+        directory.close();
+        analyzer.close();
+    }
+
+    private Document newDocument(ChatRoomType type, long chatId, String senderUserId, String content, Timestamp createdAt) {
+        long createdAtMillis = createdAt == null ? System.currentTimeMillis() : createdAt.getTime();
+        Document doc = new Document();
+        doc.add(new StringField(FIELD_KEY, key(type, chatId), Field.Store.NO));
+        doc.add(new StringField(FIELD_TYPE, type.name(), Field.Store.YES));
+        doc.add(new SortedDocValuesField(FIELD_TYPE, new BytesRef(type.name())));
+        doc.add(new StoredField(FIELD_ID, chatId));
+        doc.add(new NumericDocValuesField(FIELD_ID, chatId));
+        doc.add(new StringField(FIELD_SENDER, senderUserId, Field.Store.YES));
+        doc.add(new TextField(FIELD_CONTENT, content == null ? "" : content, Field.Store.YES));
+        doc.add(new LongPoint(FIELD_CREATED_AT, createdAtMillis));
+        doc.add(new StoredField(FIELD_CREATED_AT, createdAtMillis));
+        return doc;
+    }
+
+    private void update(String key, Document doc) {
+        try {
+            writer.updateDocument(new Term(FIELD_KEY, key), doc);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ChatSearchHit toHit(Document doc, float score) {
+        String room = doc.get(FIELD_ROOM);
+        return ChatSearchHit.builder()
+                .type(ChatRoomType.valueOf(doc.get(FIELD_TYPE)))
+                .chatId(doc.getField(FIELD_ID).numericValue().longValue())
+                .senderUserId(doc.get(FIELD_SENDER))
+                .receiverUserId(doc.get(FIELD_RECEIVER))
+                .roomId(room == null ? null : Long.valueOf(room))
+                .content(doc.get(FIELD_CONTENT))
+                .created_at(new Timestamp(doc.getField(FIELD_CREATED_AT).numericValue().longValue()))
+                .score(score)
+                .build();
+    }
+
+    private static String key(ChatRoomType type, long chatId) {
+        return type.name() + ":" + chatId;
+    }
+
+    // 커서 = base64("점수:메시지id:타입")
+    private static String encodeCursor(FieldDoc last) {
+        Object[] fields = last.fields;
+        String raw = fields[0] + ":" + fields[1] + ":" + ((BytesRef) fields[2]).utf8ToString();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static FieldDoc decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("invalid cursor");
+        }
+        float score = Float.parseFloat(parts[0]);
+        Object[] fields = {score, Long.parseLong(parts[1]), new BytesRef(parts[2])};
+        return new FieldDoc(Integer.MAX_VALUE, score, fields);
+    }
+}
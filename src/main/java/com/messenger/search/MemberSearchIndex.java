@@ -0,0 +1,261 @@
+package com.messenger.search;
+
+import com.messenger.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 회원 id, 이름의 접두어(prefix)/부분 문자열(infix) 검색을 위한 메모리 n-gram 색인
+ *
+ * 각 회원에 정수 번호(ordinal)를 붙이고, n-gram 마다 회원 id 순으로 정렬된 번호 배열(posting list)을 유지한다
+ * - 3-gram : 부분 문자열 검색용 ("abcd" -> abc, bcd)
+ * - 시작 1,2-gram : 짧은 접두어 검색용 ("abcd" -> ^a, ^ab)
+ * 검색어의 n-gram 들의 posting list 교집합을 구한 뒤 실제 문자열로 한 번 더 확인한다
+ * 가장 짧은 posting list 를 prevId 다음 위치부터 id 순으로 읽고 size 개를 찾으면 멈추므로, 매번 전체 결과를 정렬하지 않는다
+ */
+@Slf4j
+@Component
+public class MemberSearchIndex {
+
+    private static final int GRAM = 3;
+    private static final char ANCHOR = '^';
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> ordinalById = new HashMap<>();
+    private final List<String> ids = new ArrayList<>();
+    private final List<String> lowerIds = new ArrayList<>();
+    private final List<String> lowerNames = new ArrayList<>();
+    private final Map<String, PostingList> postings = new HashMap<>();
+    private volatile boolean ready = false;
+
+    /**
+     * 회원을 색인에 추가하거나, 이미 있으면 이름을 갱신
+     */
+    public void put(Member member) {
+        put(member, true);
+    }
+
+    /**
+     * 색인에 없는 회원만 추가 (초기 적재용, 적재 중에 갱신된 이름을 덮어쓰지 않는다)
+     */
+    public void putIfAbsent(Member member) {
+        put(member, false);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void markReady() {
+        ready = true;
+        lock.readLock().lock();
+        try {
+            log.info("member search index ready: members={}, grams={}", ids.size(), postings.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ids.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 회원 id 또는 이름으로 검색
+     * @param query 검색어
+     * @param infix true 면 부분 문자열 검색, false 면 접두어 검색
+     * @param prevId (Nullable) 이전 조회한 마지막 회원 id
+     * @param size 조회할 회원 수
+     * @return id 순으로 정렬된 회원 id 리스트
+     */
+    public List<String> search(String query, boolean infix, String prevId, int size) {
+        String q = query.trim().toLowerCase(Locale.ROOT);
+        if (q.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // 3글자 미만은 3-gram 을 만들 수 없으므로 접두어 검색으로 처리
+        boolean useInfix = infix && q.length() >= GRAM;
+
+        List<String> matched = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            List<PostingList> lists = new ArrayList<>();
+            for (String gram : queryGrams(q, useInfix)) {
+                PostingList list = postings.get(gram);
+                if (list == null) {
+                    return Collections.emptyList();
+                }
+                lists.add(list);
+            }
+            lists.sort(Comparator.comparingInt(list -> list.size));
+
+            PostingList smallest = lists.get(0);
+            int start = prevId == null ? 0 : smallest.upperBound(prevId);
+            for (int i = start; i < smallest.size && matched.size() < size; i++) {
+                int ordinal = smallest.values[i];
+                boolean inAll = true;
+                for (int j = 1; j < lists.size() && inAll; j++) {
+                    inAll = lists.get(j).contains(ordinal);
+                }
+                if (!inAll) {
+                    continue;
+                }
+                String lowerId = lowerIds.get(ordinal);
+                String lowerName = lowerNames.get(ordinal);
+                boolean match = useInfix
+                        ? lowerId.contains(q) || lowerName.contains(q)
+                        : lowerId.startsWith(q) || lowerName.startsWith(q);
+                if (match) {
+                    matched.add(ids.get(ordinal));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return matched;
+    }
+
+    private void put(Member member, boolean overwrite) {
+        String id = member.getId();
+        String lowerId = id.toLowerCase(Locale.ROOT);
+        String lowerName = member.getName() == null ? "" : member.getName().toLowerCase(Locale.ROOT);
+
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinalById.get(id);
+            if (ordinal == null) {
+                ordinal = ids.size();
+                ordinalById.put(id, ordinal);
+                ids.add(id);
+                lowerIds.add(lowerId);
+                lowerNames.add(lowerName);
+                for (String gram : indexGrams(lowerId, lowerName)) {
+                    postings.computeIfAbsent(gram, k -> new PostingList()).add(ordinal);
+                }
+                return;
+            }
+            if (!overwrite || lowerNames.get(ordinal).equals(lowerName)) {
+                return;
+            }
+
+            // 이름이 바뀐 경우 이전 n-gram 을 제거하고 새 n-gram 을 추가
+            Set<String> oldGrams = indexGrams(lowerId, lowerNames.get(ordinal));
+            Set<String> newGrams = indexGrams(lowerId, lowerName);
+            for (String gram : oldGrams) {
+                if (!newGrams.contains(gram)) {
+                    PostingList list = postings.get(gram);
+                    list.remove(ordinal);
+                    if (list.size == 0) {
+                        postings.remove(gram);
+                    }
+                }
+            }
+            for (String gram : newGrams) {
+                if (!oldGrams.contains(gram)) {
+                    postings.computeIfAbsent(gram, k -> new PostingList()).add(ordinal);
+                }
+            }
+            lowerNames.set(ordinal, lowerName);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static Set<String> indexGrams(String lowerId, String lowerName) {
+        Set<String> grams = new HashSet<>();
+        addGrams(grams, lowerId);
+        addGrams(grams, lowerName);
+        return grams;
+    }
+
+    private static void addGrams(Set<String> grams, String text) {
+        if (text.isEmpty()) {
+            return;
+        }
+        grams.add(ANCHOR + text.substring(0, 1));
+        if (text.length() >= 2) {
+            grams.add(ANCHOR + text.substring(0, 2));
+        }
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM));
+        }
+    }
+
+    private static List<String> queryGrams(String q, boolean infix) {
+        List<String> grams = new ArrayList<>();
+        if (!infix) {
+            grams.add(ANCHOR + q.substring(0, Math.min(2, q.length())));
+        }
+        for (int i = 0; i + GRAM <= q.length(); i++) {
+            grams.add(q.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    // 회원 id 순으로 정렬된 회원 번호 배열 (회원 번호의 id 는 바뀌지 않으므로 순서가 유지된다), lock 안에서만 사용
+    private class PostingList {
+
+        private int[] values = new int[4];
+        private int size = 0;
+
+        void add(int ordinal) {
+            int index = indexOf(ids.get(ordinal));
+            if (index >= 0) {
+                return;
+            }
+            index = -index - 1;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            System.arraycopy(values, index, values, index + 1, size - index);
+            values[index] = ordinal;
+            size++;
+        }
+
+        void remove(int ordinal) {
+            int index = indexOf(ids.get(ordinal));
+            if (index < 0) {
+                return;
+            }
+            System.arraycopy(values, index + 1, values, index, size - index - 1);
+            size--;
+        }
+
+        boolean contains(int ordinal) {
+            return indexOf(ids.get(ordinal)) >= 0;
+        }
+
+        // id 의 위치, 없으면 (-(들어갈 위치) - 1)
+        int indexOf(String id) {
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = ids.get(values[mid]).compareTo(id);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+
+        // id 보다 큰 첫 위치
+        int upperBound(String id) {
+            int index = indexOf(id);
+            return index >= 0 ? index + 1 : -index - 1;
+        }
+    }
+}
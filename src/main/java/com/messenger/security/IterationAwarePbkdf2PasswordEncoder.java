@@ -0,0 +1,77 @@
+package com.messenger.security;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 반복 횟수를 해시 앞에 저장하는 PBKDF2-HMAC-SHA256 encoder (형식: 반복횟수$hex(salt + hash))
+ *
+ * Pbkdf2PasswordEncoder 는 반복 횟수를 해시에 남기지 않아 upgradeEncoding() 이 항상 false 이다
+ * 저장된 반복 횟수로 검증하고, 설정과 다르면 upgradeEncoding() 이 true 를 반환해 로그인할 때 다시 해시되도록 한다
+ * 반복 횟수가 없는 이전 형식의 해시는 현재 설정으로 검증하고 새 형식으로 다시 해시한다
+ */
+public class IterationAwarePbkdf2PasswordEncoder implements PasswordEncoder {
+
+    private static final char SEPARATOR = '$';
+    private static final int SALT_LENGTH = 16;
+    private static final int HASH_WIDTH = 256;
+
+    private final int iterations;
+    private final ConcurrentHashMap<Integer, Pbkdf2PasswordEncoder> encoders = new ConcurrentHashMap<>();
+
+    public IterationAwarePbkdf2PasswordEncoder(int iterations) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("iterations = " + iterations);
+        }
+        this.iterations = iterations;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return iterations + String.valueOf(SEPARATOR) + encoder(iterations).encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+        int separator = encodedPassword.indexOf(SEPARATOR);
+        if (separator < 0) {
+            return encoder(iterations).matches(rawPassword, encodedPassword);
+        }
+        int storedIterations = parseIterations(encodedPassword, separator);
+        if (storedIterations < 1) {
+            return false;
+        }
+        return encoder(storedIterations).matches(rawPassword, encodedPassword.substring(separator + 1));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+        int separator = encodedPassword.indexOf(SEPARATOR);
+        return separator < 0 || parseIterations(encodedPassword, separator) != iterations;
+    }
+
+    private Pbkdf2PasswordEncoder encoder(int iterations) {
+        return encoders.computeIfAbsent(iterations, count -> {
+            Pbkdf2PasswordEncoder encoder = new Pbkdf2PasswordEncoder("", SALT_LENGTH, count, HASH_WIDTH);
+            encoder.setAlgorithm(Pbkdf2PasswordEncoder.SecretKeyFactoryAlgorithm.PBKDF2WithHmacSHA256);
+            return encoder;
+        });
+    }
+
+    // 숫자가 아니면 -1
+    private static int parseIterations(String encodedPassword, int separator) {
+        try {
+            return Integer.parseInt(encodedPassword.substring(0, separator));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,504 @@
+package com.messenger.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.messenger.repository.JdbcBulkImportSession;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 명령행 대량 import 모드
+ * NDJSON 또는 CSV 파일(내보내기 파일, 테이블 덤프)을 읽어 member, personal_chat, group_chat, group_room_members 테이블에 적재하고 종료한다
+ *
+ * 사용법
+ *   java -jar messenger.jar --spring.main.web-application-type=none \
+ *        --import.file=chat-export.ndjson.gz [--import.type=chat] [--import.format=ndjson] \
+ *        [--import.chunk-size=5000] [--import.rebuild-indexes] [--import.checkpoint=path]
+ *
+ * import.type
+ *   member, personal_chat, group_chat, group_room_members : 모든 행을 해당 테이블로
+ *   chat (기본값) : 행의 type 컬럼(personal, group, group_member)에 따라 나눠서 적재 (내보내기 파일 형식)
+ *
+ * 그룹 채팅방은 group_chat, group_room_members 행의 room_id 로 만든다
+ * 참여자 행이 없는 채팅방의 메시지는 아무도 조회할 수 없으므로 참여 정보도 함께 가져와야 한다
+ *
+ * chunk 를 적재할 때마다 처리한 행 수를 checkpoint 파일에 기록하고, 다시 실행하면 그 다음 행부터 이어서 적재한다
+ * 끝까지 적재하면 checkpoint 파일을 삭제한다
+ * 컬럼 이름은 테이블 컬럼 이름(sender_user_id)과 내보내기 필드 이름(senderUserId)을 모두 인식한다
+ */
+@Slf4j
+@Service
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class BulkImportService implements ApplicationRunner {
+
+    private static final String TABLE_MEMBER = "member";
+    private static final String TABLE_PERSONAL_CHAT = "personal_chat";
+    private static final String TABLE_GROUP_CHAT = "group_chat";
+    private static final String TABLE_GROUP_ROOM_MEMBERS = "group_room_members";
+    private static final String CHECKPOINT_RECORDS = "records";
+    private static final String CHECKPOINT_INDEX_PREFIX = "index.";
+
+    private final DataSource dataSource;
+    private final ApplicationContext applicationContext;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public BulkImportService(DataSource dataSource, ApplicationContext applicationContext) {
+        this.dataSource = dataSource;
+        this.applicationContext = applicationContext;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!args.containsOption("import.file")) {
+            return;
+        }
+        int exitCode = runImport(args);
+        System.exit(SpringApplication.exit(applicationContext, () -> exitCode));
+    }
+
+    private int runImport(ApplicationArguments args) {
+        try {
+            Path file = Paths.get(option(args, "import.file", null));
+            String type = option(args, "import.type", "chat");
+            String fileName = file.getFileName().toString();
+            String format = option(args, "import.format", fileName.contains(".csv") ? "csv" : "ndjson");
+            int chunkSize = Integer.parseInt(option(args, "import.chunk-size", "5000"));
+            boolean rebuildIndexes = args.containsOption("import.rebuild-indexes");
+            Path checkpointFile = Paths.get(option(args, "import.checkpoint", file + ".checkpoint"));
+
+            importFile(file, type, format, chunkSize, rebuildIndexes, checkpointFile);
+            return 0;
+        } catch (Exception e) {
+            log.error("import failed: {}", e.getMessage(), e);
+            return 1;
+        }
+    }
+
+    private void importFile(Path file, String type, String format, int chunkSize,
+                            boolean rebuildIndexes, Path checkpointFile) throws Exception {
+
+        List<String> tables = tablesOf(type);
+        Properties checkpoint = loadCheckpoint(checkpointFile);
+        long skip = Long.parseLong(checkpoint.getProperty(CHECKPOINT_RECORDS, "0"));
+        if (skip > 0) {
+            log.info("resume import from checkpoint: records = {}", skip);
+        }
+
+        try (JdbcBulkImportSession session = new JdbcBulkImportSession(dataSource);
+             RecordReader reader = openReader(file, format)) {
+
+            // 이전 실행에서 삭제한 인덱스는 checkpoint 에 기록되어 있다
+            if (rebuildIndexes) {
+                for (String table : tables) {
+                    session.dropSecondaryIndexes(table).forEach((name, columns) ->
+                            checkpoint.setProperty(CHECKPOINT_INDEX_PREFIX + table + "." + name, columns));
+                }
+                saveCheckpoint(checkpointFile, checkpoint);
+            }
+
+            Chunk chunk = new Chunk();
+            long start = System.currentTimeMillis();
+            long records = 0;
+            long imported = 0;
+            Map<String, String> record;
+            while ((record = reader.next()) != null) {
+                records++;
+                if (records <= skip) {
+                    continue;
+                }
+                chunk.add(type, record);
+                if (chunk.size() >= chunkSize) {
+                    imported += chunk.flush(session);
+                    checkpoint.setProperty(CHECKPOINT_RECORDS, Long.toString(records));
+                    saveCheckpoint(checkpointFile, checkpoint);
+                    logProgress(records, imported, start);
+                }
+            }
+            imported += chunk.flush(session);
+            checkpoint.setProperty(CHECKPOINT_RECORDS, Long.toString(records));
+            saveCheckpoint(checkpointFile, checkpoint);
+            logProgress(records, imported, start);
+
+            for (String table : tables) {
+                Map<String, String> indexes = indexesOf(checkpoint, table);
+                if (!indexes.isEmpty()) {
+                    session.rebuildIndexes(table, indexes);
+                }
+            }
+        }
+
+        Files.deleteIfExists(checkpointFile);
+        log.info("import finished: file = {}, search index is not updated until --search.rebuild", file);
+    }
+
+    private void logProgress(long records, long imported, long start) {
+        long elapsed = Math.max(1, System.currentTimeMillis() - start);
+        log.info("import progress: records = {}, imported = {}, {} rows/sec", records, imported, imported * 1000 / elapsed);
+    }
+
+    private static List<String> tablesOf(String type) {
+        switch (type) {
+            case TABLE_MEMBER:
+            case TABLE_PERSONAL_CHAT:
+            case TABLE_GROUP_CHAT:
+            case TABLE_GROUP_ROOM_MEMBERS:
+                return List.of(type);
+            case "chat":
+                return List.of(TABLE_PERSONAL_CHAT, TABLE_GROUP_CHAT);
+            default:
+                throw new IllegalArgumentException("unknown import.type: " + type);
+        }
+    }
+
+    /**
+     * 적재 전 행을 테이블별로 모아두는 버퍼
+     */
+    private final class Chunk {
+        private final List<Object[]> members = new ArrayList<>();
+        private final List<Object[]> personalChats = new ArrayList<>();
+        private final List<Object[]> groupChats = new ArrayList<>();
+        private final List<Object[]> groupRoomMembers = new ArrayList<>();
+        private final List<Long> newRoomIds = new ArrayList<>();
+        private final Set<Long> knownRoomIds = new HashSet<>();
+
+        private void add(String type, Map<String, String> record) {
+            String table = type;
+            if ("chat".equals(type)) {
+                String recordType = field(record, "type");
+                if ("group".equals(recordType)) {
+                    table = TABLE_GROUP_CHAT;
+                } else if ("group_member".equals(recordType)) {
+                    table = TABLE_GROUP_ROOM_MEMBERS;
+                } else {
+                    table = TABLE_PERSONAL_CHAT;
+                }
+            }
+
+            switch (table) {
+                case TABLE_MEMBER:
+                    members.add(new Object[]{
+                            required(record, "id"),
+                            required(record, "pw", "password"),
+                            required(record, "display_name", "name"),
+                            field(record, "status_message", "statusMessage"),
+                            orDefault(field(record, "role"), "USER"),
+                            timestamp(field(record, "join_time", "joinTime"))
+                    });
+                    break;
+                case TABLE_PERSONAL_CHAT:
+                    personalChats.add(new Object[]{
+                            Long.parseLong(required(record, "id")),
+                            required(record, "sender_user_id", "senderUserId"),
+                            required(record, "receiver_user_id", "receiverUserId"),
+                            orDefault(field(record, "content"), ""),
+                            timestamp(field(record, "read_at", "readAt")),
+                            timestamp(field(record, "created_at", "createdAt"))
+                    });
+                    break;
+                case TABLE_GROUP_ROOM_MEMBERS:
+                    long memberRoomId = addRoom(record);
+                    groupRoomMembers.add(new Object[]{
+                            memberRoomId,
+                            required(record, "user_id", "userId")
+                    });
+                    break;
+                default:
+                    long roomId = addRoom(record);
+                    groupChats.add(new Object[]{
+                            Long.parseLong(required(record, "id")),
+                            required(record, "sender_user_id", "senderUserId"),
+                            roomId,
+                            orDefault(field(record, "content"), ""),
+                            timestamp(field(record, "created_at", "createdAt"))
+                    });
+                    break;
+            }
+        }
+
+        private long addRoom(Map<String, String> record) {
+            long roomId = Long.parseLong(required(record, "room_id", "roomId"));
+            if (knownRoomIds.add(roomId)) {
+                newRoomIds.add(roomId);
+            }
+            return roomId;
+        }
+
+        private int size() {
+            return members.size() + personalChats.size() + groupChats.size() + groupRoomMembers.size();
+        }
+
+        private long flush(JdbcBulkImportSession session) {
+            long count = size();
+            if (!members.isEmpty()) {
+                session.insertMembers(members);
+            }
+            if (!newRoomIds.isEmpty()) {
+                session.insertGroupRooms(newRoomIds);
+            }
+            if (!groupRoomMembers.isEmpty()) {
+                session.insertGroupRoomMembers(groupRoomMembers);
+            }
+            if (!personalChats.isEmpty()) {
+                session.insertPersonalChats(personalChats);
+            }
+            if (!groupChats.isEmpty()) {
+                session.insertGroupChats(groupChats);
+            }
+            members.clear();
+            personalChats.clear();
+            groupChats.clear();
+            groupRoomMembers.clear();
+            newRoomIds.clear();
+            return count;
+        }
+    }
+
+    private static String field(Map<String, String> record, String... names) {
+        for (String name : names) {
+            String value = record.get(name);
+            if (value != null && !value.isEmpty()) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    private static String required(Map<String, String> record, String... names) {
+        String value = field(record, names);
+        if (value == null) {
+            throw new IllegalArgumentException("missing column " + names[0] + ": " + record);
+        }
+        return value;
+    }
+
+    private static String orDefault(String value, String defaultValue) {
+        return value == null ? defaultValue : value;
+    }
+
+    /**
+     * ISO-8601 (내보내기 파일) 또는 yyyy-MM-dd HH:mm:ss (테이블 덤프) 형식
+     */
+    private static Timestamp timestamp(String value) {
+        if (value == null) {
+            return null;
+        }
+        if (value.indexOf('T') > 0) {
+            return Timestamp.from(Instant.parse(value));
+        }
+        return Timestamp.valueOf(value);
+    }
+
+    // ##################### checkpoint #####################
+
+    private static Properties loadCheckpoint(Path checkpointFile) throws IOException {
+        Properties properties = new Properties();
+        if (Files.exists(checkpointFile)) {
+            try (Reader reader = Files.newBufferedReader(checkpointFile, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * 임시 파일에 쓴 뒤 이름을 바꿔서, 쓰는 도중에 중단되어도 이전 checkpoint 가 남도록 한다
+     */
+    private static void saveCheckpoint(Path checkpointFile, Properties properties) throws IOException {
+        Path absolute = checkpointFile.toAbsolutePath();
+        Path temp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            properties.store(writer, "bulk import checkpoint");
+        }
+        Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Map<String, String> indexesOf(Properties checkpoint, String table) {
+        String prefix = CHECKPOINT_INDEX_PREFIX + table + ".";
+        Map<String, String> indexes = new LinkedHashMap<>();
+        for (String name : checkpoint.stringPropertyNames()) {
+            if (name.startsWith(prefix)) {
+                indexes.put(name.substring(prefix.length()), checkpoint.getProperty(name));
+            }
+        }
+        return indexes;
+    }
+
+    // ##################### 파일 읽기 #####################
+
+    private RecordReader openReader(Path file, String format) throws IOException {
+        InputStream in = Files.newInputStream(file);
+        if (file.getFileName().toString().endsWith(".gz")) {
+            in = new GZIPInputStream(in, 64 * 1024);
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024);
+        switch (format) {
+            case "ndjson":
+                return new NdjsonRecordReader(reader);
+            case "csv":
+                return new CsvRecordReader(reader);
+            default:
+                reader.close();
+                throw new IllegalArgumentException("unknown import.format: " + format);
+        }
+    }
+
+    private interface RecordReader extends Closeable {
+        /**
+         * @return 다음 행 (컬럼 이름 → 값), 파일 끝이면 null
+         */
+        Map<String, String> next() throws IOException;
+    }
+
+    private final class NdjsonRecordReader implements RecordReader {
+        private final BufferedReader reader;
+
+        private NdjsonRecordReader(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public Map<String, String> next() throws IOException {
+            String line;
+            do {
+                line = reader.readLine();
+                if (line == null) {
+                    return null;
+                }
+            } while (line.isBlank());
+
+            JsonNode node = objectMapper.readTree(line);
+            Map<String, String> record = new HashMap<>();
+            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                if (!field.getValue().isNull()) {
+                    record.put(field.getKey(), field.getValue().asText());
+                }
+            }
+            return record;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    /**
+     * RFC 4180 CSV, 첫 행은 컬럼 이름
+     * 따옴표로 감싼 값 안의 쉼표, 줄바꿈, 두 번 쓴 따옴표("")를 처리한다
+     */
+    private static final class CsvRecordReader implements RecordReader {
+        private final BufferedReader reader;
+        private final List<String> header;
+
+        private CsvRecordReader(BufferedReader reader) throws IOException {
+            this.reader = reader;
+            List<String> columns = readRow();
+            if (columns == null) {
+                throw new IllegalArgumentException("empty csv file");
+            }
+            this.header = columns;
+        }
+
+        @Override
+        public Map<String, String> next() throws IOException {
+            List<String> values;
+            do {
+                values = readRow();
+                if (values == null) {
+                    return null;
+                }
+            } while (values.size() == 1 && values.get(0).isEmpty());
+
+            Map<String, String> record = new HashMap<>();
+            for (int i = 0; i < header.size() && i < values.size(); i++) {
+                record.put(header.get(i), values.get(i));
+            }
+            return record;
+        }
+
+        private List<String> readRow() throws IOException {
+            int c = reader.read();
+            if (c == -1) {
+                return null;
+            }
+            List<String> values = new ArrayList<>();
+            StringBuilder value = new StringBuilder();
+            boolean quoted = false;
+            while (true) {
+                if (quoted) {
+                    if (c == -1) {
+                        throw new IllegalArgumentException("unterminated quoted value");
+                    }
+                    if (c == '"') {
+                        reader.mark(1);
+                        int next = reader.read();
+                        if (next == '"') {
+                            value.append('"');
+                        } else {
+                            quoted = false;
+                            reader.reset();
+                        }
+                    } else {
+                        value.append((char) c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    values.add(value.toString());
+                    value.setLength(0);
+                } else if (c == '\r' || c == '\n' || c == -1) {
+                    if (c == '\r') {
+                        reader.mark(1);
+                        if (reader.read() != '\n') {
+                            reader.reset();
+                        }
+                    }
+                    values.add(value.toString());
+                    return values;
+                } else {
+                    value.append((char) c);
+                }
+                c = reader.read();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.messenger.service;
+
+import com.messenger.repository.GroupChatRepository;
+import com.messenger.repository.PersonalChatRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * 오래된 메시지를 아카이브 테이블로 옮기는 배치 작업
+ * hot 테이블에는 최근 chat.archive.hot-days 일 동안의 메시지만 남긴다
+ */
+@Slf4j
+@Service
+public class ChatArchiveService {
+
+    private final PersonalChatRepository personalChatRepository;
+    private final GroupChatRepository groupChatRepository;
+    private final boolean enabled;
+    private final long hotDays;
+    private final int batchSize;
+    private final long maxBatchesPerRun;
+
+    public ChatArchiveService(PersonalChatRepository personalChatRepository,
+                              GroupChatRepository groupChatRepository,
+                              @Value("${chat.archive.enabled:true}") boolean enabled,
+                              @Value("${chat.archive.hot-days:180}") long hotDays,
+                              @Value("${chat.archive.batch-size:1000}") int batchSize,
+                              @Value("${chat.archive.max-batches-per-run:1000}") long maxBatchesPerRun) {
+        this.personalChatRepository = personalChatRepository;
+        this.groupChatRepository = groupChatRepository;
+        this.enabled = enabled;
+        this.hotDays = hotDays;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+    }
+
+    @Scheduled(cron = "${chat.archive.cron:0 0 4 * * *}")
+    public void archive() {
+        if (!enabled) {
+            return;
+        }
+        long personal = archiveInBatches(size -> personalChatRepository.archiveOlderThan(hotDays, size));
+        long group = archiveInBatches(size -> groupChatRepository.archiveOlderThan(hotDays, size));
+        log.info("chat archive finished: hotDays={}, personal={}, group={}", hotDays, personal, group);
+    }
+
+    // 한 트랜잭션이 오래 잠금을 잡지 않도록 작은 단위로 나누어 옮긴다
+    private long archiveInBatches(IntUnaryOperator archiveBatch) {
+        long total = 0;
+        for (long i = 0; i < maxBatchesPerRun; i++) {
+            int moved = archiveBatch.applyAsInt(batchSize);
+            if (moved == 0) {
+                break;
+            }
+            total += moved;
+        }
+        return total;
+    }
+}
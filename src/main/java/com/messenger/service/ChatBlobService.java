@@ -0,0 +1,177 @@
+package com.messenger.service;
+
+import com.messenger.blob.ContentBlobStore;
+import com.messenger.blob.StoredBlob;
+import com.messenger.domain.ChatBlob;
+import com.messenger.exception.ErrorCode;
+import com.messenger.exception.MyException;
+import com.messenger.repository.ChatBlobRepository;
+import com.messenger.repository.GroupChatRepository;
+import com.messenger.repository.PersonalChatRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * 큰 메시지 본문과 첨부 파일
+ *
+ * inline-max-chars 보다 긴 본문은 blob 저장소에 저장하고, 메시지에는 blob id 와 앞부분 preview-chars 글자만 저장한다
+ * 메시지 목록 조회가 읽는 행(content 칼럼)이 작아져서 큰 메시지가 섞인 채팅방도 한 페이지에 읽는 데이터가 일정하다
+ * 첨부 파일은 먼저 업로드해서 받은 blob id 를 메시지와 함께 보낸다
+ *
+ * 파일은 올린 사용자와, 그 파일을 참조하는 메시지를 볼 수 있는 사용자만 읽고 첨부할 수 있다
+ * 어떤 메시지도 참조하지 않는 파일은 cleanup.grace-minutes 가 지나면 정리한다 (삭제, 보관 기간 만료, 일괄 삭제된 메시지의 파일 포함)
+ */
+@Slf4j
+@Service
+public class ChatBlobService {
+
+    public static final String TEXT_CONTENT_TYPE = "text/plain;charset=UTF-8";
+    // personal_chat, group_chat 의 content 칼럼 크기
+    private static final int CONTENT_COLUMN_SIZE = 5000;
+
+    private final ContentBlobStore contentBlobStore;
+    private final ChatBlobRepository chatBlobRepository;
+    private final PersonalChatRepository personalChatRepository;
+    private final GroupChatRepository groupChatRepository;
+    private final int inlineMaxChars;
+    private final int previewChars;
+    private final boolean cleanupEnabled;
+    private final long cleanupGraceMinutes;
+    private final int cleanupBatchSize;
+
+    public ChatBlobService(ContentBlobStore contentBlobStore, ChatBlobRepository chatBlobRepository,
+                           PersonalChatRepository personalChatRepository, GroupChatRepository groupChatRepository,
+                           @Value("${chat.blob.inline-max-chars:1000}") int inlineMaxChars,
+                           @Value("${chat.blob.preview-chars:200}") int previewChars,
+                           @Value("${chat.blob.cleanup.enabled:true}") boolean cleanupEnabled,
+                           @Value("${chat.blob.cleanup.grace-minutes:1440}") long cleanupGraceMinutes,
+                           @Value("${chat.blob.cleanup.batch-size:500}") int cleanupBatchSize) {
+        if (inlineMaxChars > CONTENT_COLUMN_SIZE || previewChars > inlineMaxChars) {
+            throw new IllegalArgumentException("chat.blob.preview-chars <= chat.blob.inline-max-chars <= " + CONTENT_COLUMN_SIZE);
+        }
+        this.contentBlobStore = contentBlobStore;
+        this.chatBlobRepository = chatBlobRepository;
+        this.personalChatRepository = personalChatRepository;
+        this.groupChatRepository = groupChatRepository;
+        this.inlineMaxChars = inlineMaxChars;
+        this.previewChars = previewChars;
+        this.cleanupEnabled = cleanupEnabled;
+        this.cleanupGraceMinutes = cleanupGraceMinutes;
+        this.cleanupBatchSize = cleanupBatchSize;
+    }
+
+    /**
+     * 파일을 저장하고 정보를 반환 (같은 내용이 이미 있으면 처음 저장한 정보)
+     * @param userId 올린 사용자 id
+     */
+    public ChatBlob upload(InputStream in, String contentType, String userId) {
+        StoredBlob stored = contentBlobStore.put(in);
+        return chatBlobRepository.save(stored.getId(), stored.getSize(), contentType, userId);
+    }
+
+    public ChatBlob getBlob(String blobId) {
+        if (!ContentBlobStore.isValidId(blobId)) {
+            throw new MyException(ErrorCode.NOT_FOUND_BLOB);
+        }
+        return chatBlobRepository.findById(blobId).orElseThrow(() -> new MyException(ErrorCode.NOT_FOUND_BLOB));
+    }
+
+    /**
+     * 사용자가 올렸거나, 볼 수 있는 메시지가 참조하는 파일 (아니면 있는지 알 수 없도록 NOT_FOUND_BLOB 예외)
+     */
+    public ChatBlob getReadableBlob(String blobId, String userId) {
+        ChatBlob blob = getBlob(blobId);
+        if (chatBlobRepository.isUploader(blobId, userId)
+                || personalChatRepository.canReadBlob(blobId, userId)
+                || groupChatRepository.canReadBlob(blobId, userId)) {
+            return blob;
+        }
+        throw new MyException(ErrorCode.NOT_FOUND_BLOB);
+    }
+
+    public Path getPath(ChatBlob blob) {
+        return contentBlobStore.find(blob.getId()).orElseThrow(() -> {
+            log.error("blob file not found: id = {}", blob.getId());
+            return new MyException(ErrorCode.NOT_FOUND_BLOB);
+        });
+    }
+
+    /**
+     * 메시지 행에 저장할 수 없을 만큼 긴 본문이면 true
+     */
+    public boolean isOffRow(String content) {
+        return content.length() > inlineMaxChars;
+    }
+
+    /**
+     * 본문 전체를 저장하고 blob id 를 반환
+     * @param userId 보내는 사용자 id
+     */
+    public String storeText(String content, String userId) {
+        StoredBlob stored = contentBlobStore.put(content.getBytes(StandardCharsets.UTF_8));
+        return chatBlobRepository.save(stored.getId(), stored.getSize(), TEXT_CONTENT_TYPE, userId).getId();
+    }
+
+    /**
+     * 메시지 행에 저장할 본문 앞부분 (surrogate pair 를 자르지 않는다)
+     */
+    public String preview(String content) {
+        if (content.length() <= previewChars) {
+            return content;
+        }
+        int end = previewChars;
+        if (Character.isHighSurrogate(content.charAt(end - 1))) {
+            end--;
+        }
+        return content.substring(0, end);
+    }
+
+    /**
+     * 어떤 메시지도 참조하지 않고 grace-minutes 동안 다시 올리지 않은 파일을 삭제
+     * 정보를 먼저 지우고 다시 참조를 확인해서, 그 사이 저장된 메시지가 참조하면 정보를 되돌리고 파일은 남긴다
+     * @return 삭제한 파일 수
+     */
+    @Scheduled(cron = "${chat.blob.cleanup.cron:0 0 5 * * *}")
+    public int deleteUnreferenced() {
+        if (!cleanupEnabled) {
+            return 0;
+        }
+        int deleted = 0;
+        String afterId = "";
+        while (true) {
+            List<String> ids = chatBlobRepository.findIdsCreatedBefore(cleanupGraceMinutes, afterId, cleanupBatchSize);
+            if (ids.isEmpty()) {
+                break;
+            }
+            for (String id : ids) {
+                if (isReferenced(id)) {
+                    continue;
+                }
+                ChatBlob blob = chatBlobRepository.findById(id).orElse(null);
+                if (blob == null || !chatBlobRepository.deleteIfCreatedBefore(id, cleanupGraceMinutes)) {
+                    continue;
+                }
+                if (isReferenced(id)) {
+                    chatBlobRepository.save(id, blob.getSize(), blob.getContentType(), null);
+                    continue;
+                }
+                contentBlobStore.delete(id);
+                deleted++;
+            }
+            afterId = ids.get(ids.size() - 1);
+        }
+        log.info("unreferenced blob cleanup finished: deleted = {}", deleted);
+        return deleted;
+    }
+
+    private boolean isReferenced(String blobId) {
+        return personalChatRepository.referencesBlob(blobId) || groupChatRepository.referencesBlob(blobId);
+    }
+}
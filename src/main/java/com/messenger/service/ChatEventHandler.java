@@ -0,0 +1,151 @@
+package com.messenger.service;
+
+import com.messenger.domain.ChatRoomType;
+import com.messenger.dto.chat.ReadReceiptEvent;
+import com.messenger.event.ChatEvent;
+import com.messenger.event.ChatEventListener;
+import com.messenger.jwt.TokenRevocationList;
+import com.messenger.repository.GroupChatRepository;
+import com.messenger.repository.MemberRepository;
+import com.messenger.util.ConversationKey;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * ChatEventBus 로 받은 이벤트를 서버 메모리의 상태에 반영
+ * (조건부 GET 버전, long polling 대기, SSE 연결, 검색 색인, 메시지 캐시, 토큰 폐기 목록)
+ *
+ * 발행한 서버와 다른 서버 모두 같은 경로로 처리하고,
+ * 검색 색인처럼 발행한 서버가 직접 갱신한 것만 remote 일 때 반영한다
+ */
+@Slf4j
+@Component
+public class ChatEventHandler implements ChatEventListener {
+
+    private final GroupChatRepository groupChatRepository;
+    private final MemberRepository memberRepository;
+    private final ConversationVersionTracker conversationVersionTracker;
+    private final ChatReceiveNotifier chatReceiveNotifier;
+    private final ChatEventStreamService chatEventStreamService;
+    private final ChatSearchService chatSearchService;
+    private final MemberSearchService memberSearchService;
+    private final TokenRevocationList tokenRevocationList;
+    private final ChatMessageCache chatMessageCache;
+
+    public ChatEventHandler(GroupChatRepository groupChatRepository, MemberRepository memberRepository, ConversationVersionTracker conversationVersionTracker, ChatReceiveNotifier chatReceiveNotifier, ChatEventStreamService chatEventStreamService, ChatSearchService chatSearchService, MemberSearchService memberSearchService, TokenRevocationList tokenRevocationList, ChatMessageCache chatMessageCache) {
+        this.groupChatRepository = groupChatRepository;
+        this.memberRepository = memberRepository;
+        this.conversationVersionTracker = conversationVersionTracker;
+        this.chatReceiveNotifier = chatReceiveNotifier;
+        this.chatEventStreamService = chatEventStreamService;
+        this.chatSearchService = chatSearchService;
+        this.memberSearchService = memberSearchService;
+        this.tokenRevocationList = tokenRevocationList;
+        this.chatMessageCache = chatMessageCache;
+    }
+
+    @Override
+    public void onEvent(ChatEvent event, boolean remote) {
+        switch (event.getType()) {
+            case MESSAGE_SENT:
+                if (event.getRoomType() == ChatRoomType.PERSONAL) {
+                    onPersonalSent(event, remote);
+                } else {
+                    onGroupSent(event, remote);
+                }
+                break;
+            case MESSAGE_DELETED:
+                onDeleted(event, remote);
+                break;
+            case READ_MARKED:
+                onReadMarked(event);
+                break;
+            case MEMBER_UPDATED:
+                if (remote) {
+                    memberRepository.findById(event.getUserId()).ifPresent(memberSearchService::onSaved);
+                }
+                break;
+            case TOKEN_REVOKED:
+                tokenRevocationList.revoke(event.getTokenId(), event.getExpiresAt());
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void onPersonalSent(ChatEvent event, boolean remote) {
+        String senderUserId = event.getSenderUserId();
+        String receiverUserId = event.getReceiverUserId();
+        if (remote) {
+            chatSearchService.onSaved(event.toChat());
+        }
+        conversationVersionTracker.touch(
+                ConversationKey.personal(senderUserId, receiverUserId),
+                ConversationKey.personalRooms(senderUserId),
+                ConversationKey.personalRooms(receiverUserId));
+        chatReceiveNotifier.notifyReceived(ChatRoomType.PERSONAL, receiverUserId, event.getChatId());
+        chatEventStreamService.publishPersonal(event.toChat());
+    }
+
+    private void onGroupSent(ChatEvent event, boolean remote) {
+        if (remote) {
+            chatSearchService.onSaved(event.toGroupChat());
+        }
+        conversationVersionTracker.touch(ConversationKey.group(event.getRoomId()));
+
+        // 이 서버에 대기 중인 long polling 요청이나 SSE 연결이 있을 때만 채팅방 참여자를 조회해서 알린다
+        if (!chatReceiveNotifier.isTracking() && !chatEventStreamService.isStreaming()) {
+            return;
+        }
+        List<String> memberIds = groupChatRepository.findUserIdsByRoom(event.getRoomId());
+        for (String memberId : memberIds) {
+            chatReceiveNotifier.notifyReceived(ChatRoomType.GROUP, memberId, event.getChatId());
+        }
+        chatEventStreamService.publishGroup(event.toGroupChat(), memberIds);
+    }
+
+    private void onDeleted(ChatEvent event, boolean remote) {
+        chatMessageCache.invalidate(event.getRoomType(), event.getChatIds());
+        if (remote) {
+            chatSearchService.onDeleted(event.getRoomType(), event.getChatIds());
+        }
+        if (!event.isConversation()) {
+            // 여러 대화의 메시지가 한 번에 삭제되므로 조건부 GET 버전을 모두 무효화
+            conversationVersionTracker.invalidateAll();
+        } else if (event.getRoomType() == ChatRoomType.PERSONAL) {
+            conversationVersionTracker.touch(
+                    ConversationKey.personal(event.getSenderUserId(), event.getReceiverUserId()),
+                    ConversationKey.personalRooms(event.getSenderUserId()),
+                    ConversationKey.personalRooms(event.getReceiverUserId()));
+        } else {
+            conversationVersionTracker.touch(ConversationKey.group(event.getRoomId()));
+        }
+    }
+
+    private void onReadMarked(ChatEvent event) {
+        String userId = event.getUserId();
+        if (event.getRoomType() == ChatRoomType.PERSONAL) {
+            // 1:1 메시지는 read_at 이 바뀐다 (그룹 메시지의 읽은 시각은 참여자 행에 있다)
+            chatMessageCache.invalidate(ChatRoomType.PERSONAL, List.of(event.getChatId()));
+            conversationVersionTracker.touch(ConversationKey.personal(userId, event.getSenderUserId()));
+            // 메시지를 보낸 상대방에게 읽음 표시 이벤트
+            chatEventStreamService.publishRead(List.of(event.getSenderUserId()),
+                    new ReadReceiptEvent(ChatRoomType.PERSONAL, event.getChatId(), null, userId, event.getReadAt()));
+            return;
+        }
+
+        Long roomId = event.getRoomId();
+        conversationVersionTracker.touch(ConversationKey.group(roomId));
+        // 채팅방의 다른 참여자에게 읽음 표시 이벤트
+        if (chatEventStreamService.isStreaming()) {
+            List<String> memberIds = groupChatRepository.findUserIdsByRoom(roomId).stream()
+                    .filter(memberId -> !memberId.equals(userId))
+                    .collect(Collectors.toList());
+            chatEventStreamService.publishRead(memberIds,
+                    new ReadReceiptEvent(ChatRoomType.GROUP, event.getChatId(), roomId, userId, event.getReadAt()));
+        }
+    }
+}
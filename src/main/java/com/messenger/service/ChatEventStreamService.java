@@ -0,0 +1,403 @@
+package com.messenger.service;
+
+import com.messenger.domain.Chat;
+import com.messenger.domain.GroupChat;
+import com.messenger.dto.chat.ReadReceiptEvent;
+import com.messenger.exception.ErrorCode;
+import com.messenger.exception.MyException;
+import com.messenger.repository.GroupChatRepository;
+import com.messenger.repository.PersonalChatRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 새 메시지, 읽음 표시를 Server-Sent Events 로 보낸다 (GET /api/v1/events)
+ *
+ * 이벤트
+ *   ready    : 연결 직후 (재연결이면 놓친 메시지를 보낸 뒤)
+ *   personal : 받은 1:1 메시지 (Chat)
+ *   group    : 참여한 그룹 채팅방의 메시지 (GroupChat)
+ *   read     : 내 메시지를 상대방이 읽음 (ReadReceiptEvent)
+ *
+ * 이벤트 id 는 "{1:1 메시지 id}-{그룹 메시지 id}" 로 연결에서 마지막으로 보낸 메시지 id 이다
+ * 브라우저가 재연결할 때 보내는 Last-Event-ID 이후의 메시지를 DB 에서 찾아 먼저 보낸다 (replay-limit 개까지)
+ *
+ * 연결은 servlet async 로 유지되어 thread 를 점유하지 않는다
+ * heartbeat 는 thread 하나가 연결을 heartbeat-buckets 개로 나눠 돌아가며 보낸다 (연결이 많아도 한 번에 몰리지 않도록)
+ * 이벤트 전송은 메시지를 보낸 요청 thread 가 아니라 별도 thread 에서 실행한다
+ * 연결은 서버 메모리에만 있으므로 서버가 여러 대이면 같은 서버로 보낸 메시지만 전달한다
+ */
+@Slf4j
+@Component
+public class ChatEventStreamService implements DisposableBean {
+
+    public static final String EVENT_READY = "ready";
+    public static final String EVENT_PERSONAL = "personal";
+    public static final String EVENT_GROUP = "group";
+    public static final String EVENT_READ = "read";
+
+    private final PersonalChatRepository personalChatRepository;
+    private final GroupChatRepository groupChatRepository;
+    private final ConcurrentHashMap<String, Set<Connection>> connections = new ConcurrentHashMap<>();
+    private final AtomicLong connectionSequence = new AtomicLong();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private final AtomicLong heartbeatTick = new AtomicLong();
+    private final ScheduledExecutorService heartbeatScheduler;
+    private final ThreadPoolExecutor dispatcher;
+    private final long timeoutMillis;
+    private final int heartbeatBuckets;
+    private final int maxConnections;
+    private final int maxConnectionsPerUser;
+    private final int replayLimit;
+    private final Counter eventCounter;
+
+    public ChatEventStreamService(PersonalChatRepository personalChatRepository,
+                                  GroupChatRepository groupChatRepository,
+                                  @Value("${chat.sse.timeout-ms:1800000}") long timeoutMillis,
+                                  @Value("${chat.sse.heartbeat-interval-ms:15000}") long heartbeatIntervalMillis,
+                                  @Value("${chat.sse.heartbeat-buckets:15}") int heartbeatBuckets,
+                                  @Value("${chat.sse.max-connections:50000}") int maxConnections,
+                                  @Value("${chat.sse.max-connections-per-user:10}") int maxConnectionsPerUser,
+                                  @Value("${chat.sse.replay-limit:1000}") int replayLimit,
+                                  @Value("${chat.sse.threads:4}") int threads,
+                                  @Value("${chat.sse.queue-capacity:10000}") int queueCapacity,
+                                  MeterRegistry meterRegistry) {
+        this.personalChatRepository = personalChatRepository;
+        this.groupChatRepository = groupChatRepository;
+        this.timeoutMillis = timeoutMillis;
+        this.heartbeatBuckets = Math.max(1, heartbeatBuckets);
+        this.maxConnections = maxConnections;
+        this.maxConnectionsPerUser = maxConnectionsPerUser;
+        this.replayLimit = replayLimit;
+
+        // 밀리면 메시지를 보낸 요청 thread 에서 전송
+        this.dispatcher = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new ThreadPoolExecutor.CallerRunsPolicy());
+
+        this.heartbeatScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sse-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long tickMillis = Math.max(1, heartbeatIntervalMillis / this.heartbeatBuckets);
+        heartbeatScheduler.scheduleAtFixedRate(this::heartbeat, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+
+        this.eventCounter = Counter.builder("chat.sse.events")
+                .description("SSE 로 보낸 이벤트 수 (heartbeat 제외)")
+                .register(meterRegistry);
+        Gauge.builder("chat.sse.connections", connectionCount::get)
+                .description("열려 있는 SSE 연결 수")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 사용자의 이벤트 스트림을 연다
+     * @param userId 사용자 id
+     * @param lastEventId 재연결이면 마지막으로 받은 이벤트 id, 처음 연결이면 null
+     */
+    public SseEmitter open(String userId, String lastEventId) {
+        long[] cursor = parseEventId(lastEventId);
+
+        if (connectionCount.incrementAndGet() > maxConnections) {
+            connectionCount.decrementAndGet();
+            throw new MyException(ErrorCode.SERVER_BUSY);
+        }
+
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Connection connection = new Connection(connectionSequence.incrementAndGet(), userId, emitter);
+        boolean[] added = new boolean[1];
+        connections.compute(userId, (k, set) -> {
+            if (set == null) {
+                set = ConcurrentHashMap.newKeySet();
+            }
+            if (set.size() < maxConnectionsPerUser) {
+                added[0] = set.add(connection);
+            }
+            return set.isEmpty() ? null : set;
+        });
+        if (!added[0]) {
+            connectionCount.decrementAndGet();
+            throw new MyException(ErrorCode.TOO_MANY_REQUESTS);
+        }
+
+        emitter.onCompletion(() -> close(connection));
+        emitter.onTimeout(() -> close(connection));
+        emitter.onError(e -> close(connection));
+
+        dispatcher.execute(() -> start(connection, cursor));
+        return emitter;
+    }
+
+    /**
+     * 받은 1:1 메시지
+     */
+    public void publishPersonal(Chat chat) {
+        Set<Connection> targets = connections.get(chat.getReceiverUserId());
+        if (targets == null) {
+            return;
+        }
+        dispatcher.execute(() -> {
+            for (Connection connection : targets) {
+                connection.sendMessage(EVENT_PERSONAL, chat.getId(), -1, chat);
+            }
+        });
+    }
+
+    /**
+     * 그룹 채팅방 메시지 (보낸 사용자를 포함한 모든 참여자)
+     */
+    public void publishGroup(GroupChat chat, Collection<String> memberIds) {
+        List<Connection> targets = targetsOf(memberIds);
+        if (targets.isEmpty()) {
+            return;
+        }
+        dispatcher.execute(() -> {
+            for (Connection connection : targets) {
+                connection.sendMessage(EVENT_GROUP, -1, chat.getId(), chat);
+            }
+        });
+    }
+
+    /**
+     * 읽음 표시 (재연결할 때 다시 보내지 않으므로 이벤트 id 가 없다)
+     */
+    public void publishRead(Collection<String> userIds, ReadReceiptEvent event) {
+        List<Connection> targets = targetsOf(userIds);
+        if (targets.isEmpty()) {
+            return;
+        }
+        dispatcher.execute(() -> {
+            for (Connection connection : targets) {
+                connection.sendMessage(EVENT_READ, -1, -1, event);
+            }
+        });
+    }
+
+    /**
+     * 연결된 사용자가 없으면 이벤트를 만들 필요가 없다 (그룹 채팅방 참여자 조회를 생략)
+     */
+    public boolean isStreaming() {
+        return !connections.isEmpty();
+    }
+
+    public int size() {
+        return connectionCount.get();
+    }
+
+    private List<Connection> targetsOf(Collection<String> userIds) {
+        List<Connection> targets = new ArrayList<>();
+        if (connections.isEmpty()) {
+            return targets;
+        }
+        for (String userId : userIds) {
+            Set<Connection> set = connections.get(userId);
+            if (set != null) {
+                targets.addAll(set);
+            }
+        }
+        return targets;
+    }
+
+    /**
+     * 놓친 메시지를 보내고 ready 이벤트를 보낸다
+     * 그 전에 도착한 이벤트는 Connection 에 쌓아두었다가 이어서 보낸다
+     */
+    private void start(Connection connection, long[] cursor) {
+        String userId = connection.userId;
+        try {
+            if (cursor == null) {
+                // 처음 연결이면 지금까지 받은 마지막 메시지 이후부터
+                long personalId = personalChatRepository.findByReceiver(userId, null, 1).stream()
+                        .mapToLong(Chat::getId).findFirst().orElse(0);
+                long groupId = groupChatRepository.findByReceiver(userId, null, 1).stream()
+                        .mapToLong(GroupChat::getId).findFirst().orElse(0);
+                connection.start(personalId, groupId, List.of(), List.of());
+            } else {
+                List<Chat> personalChats = personalChatRepository.findByReceiverAfter(userId, cursor[0], replayLimit);
+                List<GroupChat> groupChats = groupChatRepository.findByReceiverAfter(userId, cursor[1], replayLimit);
+                connection.start(cursor[0], cursor[1], personalChats, groupChats);
+            }
+        } catch (Exception e) {
+            log.error("cannot start event stream: userId = {}, exception = {}", userId, e.getMessage());
+            connection.emitter.completeWithError(e);
+        }
+    }
+
+    private void heartbeat() {
+        long bucket = heartbeatTick.getAndIncrement() % heartbeatBuckets;
+        try {
+            for (Set<Connection> set : connections.values()) {
+                for (Connection connection : set) {
+                    if (connection.id % heartbeatBuckets == bucket) {
+                        connection.send(SseEmitter.event().comment("heartbeat"));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            // 예외로 scheduler 가 멈추지 않도록
+            log.error("sse heartbeat failed: {}", e.getMessage());
+        }
+    }
+
+    private void close(Connection connection) {
+        if (!connection.closed.compareAndSet(false, true)) {
+            return;
+        }
+        connectionCount.decrementAndGet();
+        connections.computeIfPresent(connection.userId, (k, set) -> {
+            set.remove(connection);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    /**
+     * @return [1:1 메시지 id, 그룹 메시지 id], 형식이 맞지 않으면 null (처음 연결로 처리)
+     */
+    static long[] parseEventId(String lastEventId) {
+        if (lastEventId == null) {
+            return null;
+        }
+        int separator = lastEventId.indexOf('-');
+        if (separator < 0) {
+            return null;
+        }
+        try {
+            long personalId = Long.parseLong(lastEventId.substring(0, separator));
+            long groupId = Long.parseLong(lastEventId.substring(separator + 1));
+            if (personalId < 0 || groupId < 0) {
+                return null;
+            }
+            return new long[]{personalId, groupId};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        heartbeatScheduler.shutdownNow();
+        dispatcher.shutdownNow();
+        for (Set<Connection> set : connections.values()) {
+            for (Connection connection : set) {
+                connection.emitter.complete();
+            }
+        }
+    }
+
+    private final class Connection {
+        private final long id;
+        private final String userId;
+        private final SseEmitter emitter;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        // 아래 필드는 synchronized 안에서만 사용
+        private boolean started;
+        private long lastPersonalId;
+        private long lastGroupId;
+        private List<PendingEvent> pending = new ArrayList<>();
+
+        private Connection(long id, String userId, SseEmitter emitter) {
+            this.id = id;
+            this.userId = userId;
+            this.emitter = emitter;
+        }
+
+        private synchronized void start(long personalId, long groupId, List<Chat> personalChats, List<GroupChat> groupChats) {
+            lastPersonalId = personalId;
+            lastGroupId = groupId;
+            started = true;
+            for (Chat chat : personalChats) {
+                sendMessage(EVENT_PERSONAL, chat.getId(), -1, chat);
+            }
+            for (GroupChat chat : groupChats) {
+                sendMessage(EVENT_GROUP, -1, chat.getId(), chat);
+            }
+            send(SseEmitter.event().name(EVENT_READY).id(eventId()).data(eventId()));
+
+            // 시작 전에 도착한 이벤트, 이미 보낸 메시지(놓친 메시지로 보냈거나 연결 전에 받은 메시지)는 건너뛴다
+            long sentPersonalId = lastPersonalId;
+            long sentGroupId = lastGroupId;
+            List<PendingEvent> queued = pending;
+            pending = null;
+            for (PendingEvent event : queued) {
+                if ((event.personalId >= 0 && event.personalId <= sentPersonalId)
+                        || (event.groupId >= 0 && event.groupId <= sentGroupId)) {
+                    continue;
+                }
+                sendMessage(event.name, event.personalId, event.groupId, event.data);
+            }
+        }
+
+        /**
+         * @param personalId 1:1 메시지이면 메시지 id, 아니면 -1
+         * @param groupId 그룹 메시지이면 메시지 id, 아니면 -1
+         */
+        private synchronized void sendMessage(String name, long personalId, long groupId, Object data) {
+            if (!started) {
+                pending.add(new PendingEvent(name, personalId, groupId, data));
+                return;
+            }
+            SseEmitter.SseEventBuilder event = SseEmitter.event().name(name);
+            if (personalId >= 0 || groupId >= 0) {
+                lastPersonalId = Math.max(lastPersonalId, personalId);
+                lastGroupId = Math.max(lastGroupId, groupId);
+                event.id(eventId());
+            }
+            send(event.data(data, MediaType.APPLICATION_JSON));
+        }
+
+        private synchronized void send(SseEmitter.SseEventBuilder event) {
+            // 시작 전 heartbeat 는 보내지 않는다
+            if (!started || closed.get()) {
+                return;
+            }
+            try {
+                emitter.send(event);
+                eventCounter.increment();
+            } catch (IOException | IllegalStateException e) {
+                // 클라이언트가 연결을 끊은 경우, 정리는 onError/onCompletion 에서도 호출된다
+                log.debug("sse send failed: userId = {}, exception = {}", userId, e.getMessage());
+                close(this);
+            }
+        }
+
+        private String eventId() {
+            return lastPersonalId + "-" + lastGroupId;
+        }
+    }
+
+    private static final class PendingEvent {
+        private final String name;
+        private final long personalId;
+        private final long groupId;
+        private final Object data;
+
+        private PendingEvent(String name, long personalId, long groupId, Object data) {
+            this.name = name;
+            this.personalId = personalId;
+            this.groupId = groupId;
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.messenger.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.messenger.domain.Chat;
+import com.messenger.domain.GroupChat;
+import com.messenger.exception.ErrorCode;
+import com.messenger.exception.MyException;
+import com.messenger.repository.GroupChatRepository;
+import com.messenger.repository.PersonalChatRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 사용자의 전체 채팅 기록(1:1, 그룹)을 NDJSON 또는 CSV 로 내보내기
+ * DB 결과를 스트리밍으로 읽으면서 바로 출력 스트림에 쓰므로 메시지 수와 관계없이 메모리 사용량이 일정하다
+ * 내보내는 동안 DB 커넥션을 계속 사용하므로 동시에 실행할 수 있는 내보내기 수를 제한한다
+ * 그룹 채팅방 참여 정보(type=group_member)를 메시지보다 먼저 써서, 가져오기(import)에서 채팅방 참여자도 복원한다
+ */
+@Slf4j
+@Service
+public class ChatExportService {
+
+    public enum Format { NDJSON, CSV }
+
+    private static final String[] CSV_HEADER = {
+            "type", "id", "sender_user_id", "receiver_user_id", "room_id", "content", "read_at", "created_at", "user_id"
+    };
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final PersonalChatRepository personalChatRepository;
+    private final GroupChatRepository groupChatRepository;
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final int fetchSize;
+    private final Semaphore running;
+
+    public ChatExportService(PersonalChatRepository personalChatRepository,
+                             GroupChatRepository groupChatRepository,
+                             @Value("${chat.export.fetch-size:-2147483648}") int fetchSize,
+                             @Value("${chat.export.max-concurrent:2}") int maxConcurrent) {
+        this.personalChatRepository = personalChatRepository;
+        this.groupChatRepository = groupChatRepository;
+        this.fetchSize = fetchSize;
+        this.running = new Semaphore(maxConcurrent);
+    }
+
+    /**
+     * 내보내기 시작 전에 호출, 동시 실행 수를 넘으면 SERVER_BUSY 예외
+     * 성공하면 export() 가 끝날 때 반환된다
+     */
+    public void acquire() {
+        if (!running.tryAcquire()) {
+            throw new MyException(ErrorCode.SERVER_BUSY);
+        }
+    }
+
+    /**
+     * @param userId 사용자 id
+     * @param format 출력 형식
+     * @param gzip gzip 으로 압축해서 쓸지 여부
+     * @param outputStream 응답 출력 스트림
+     */
+    public void export(String userId, Format format, boolean gzip, OutputStream outputStream) throws IOException {
+        long start = System.currentTimeMillis();
+        long[] count = new long[1];
+        try {
+            OutputStream out = gzip ? new GZIPOutputStream(outputStream, BUFFER_SIZE) : outputStream;
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+            RowWriter rowWriter = format == Format.CSV ? new CsvRowWriter(writer) : new NdjsonRowWriter(writer);
+
+            try {
+                for (long roomId : groupChatRepository.findRoomIdsByUser(userId)) {
+                    rowWriter.writeMember(roomId, userId);
+                }
+                personalChatRepository.streamByUser(userId, fetchSize, chat -> {
+                    rowWriter.write(chat);
+                    count[0]++;
+                });
+                groupChatRepository.streamByUser(userId, fetchSize, chat -> {
+                    rowWriter.write(chat);
+                    count[0]++;
+                });
+            } catch (UncheckedIOException e) {
+                // 클라이언트 연결이 끊긴 경우
+                throw e.getCause();
+            }
+            rowWriter.close();
+            log.info("chat export finished: userId = {}, format = {}, rows = {}, {}ms",
+                    userId, format, count[0], System.currentTimeMillis() - start);
+        } finally {
+            running.release();
+        }
+    }
+
+    private interface RowWriter {
+        void write(Chat chat);
+        void write(GroupChat chat);
+        void writeMember(long roomId, String userId);
+        void close() throws IOException;
+    }
+
+    private final class NdjsonRowWriter implements RowWriter {
+
+        private final JsonGenerator generator;
+
+        private NdjsonRowWriter(Writer writer) throws IOException {
+            this.generator = jsonFactory.createGenerator(writer);
+            this.generator.setRootValueSeparator(new SerializedString("\n"));
+        }
+
+        @Override
+        public void write(Chat chat) {
+            try {
+                generator.writeStartObject();
+                generator.writeStringField("type", "personal");
+                generator.writeNumberField("id", chat.getId());
+                generator.writeStringField("senderUserId", chat.getSenderUserId());
+                generator.writeStringField("receiverUserId", chat.getReceiverUserId());
+                generator.writeStringField("content", chat.getContent());
+                if (chat.getBlobId() != null) {
+                    // content 는 미리보기, 전체 본문이나 첨부 파일은 GET /api/v1/blobs/{blobId}
+                    generator.writeStringField("blobId", chat.getBlobId());
+                }
+                writeTimestamp("read_at", chat.getRead_at());
+                writeTimestamp("created_at", chat.getCreated_at());
+                generator.writeEndObject();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void write(GroupChat chat) {
+            try {
+                generator.writeStartObject();
+                generator.writeStringField("type", "group");
+                generator.writeNumberField("id", chat.getId());
+                generator.writeStringField("senderUserId", chat.getSenderUserId());
+                generator.writeNumberField("roomId", chat.getRoomId());
+                generator.writeStringField("content", chat.getContent());
+                if (chat.getBlobId() != null) {
+                    // content 는 미리보기, 전체 본문이나 첨부 파일은 GET /api/v1/blobs/{blobId}
+                    generator.writeStringField("blobId", chat.getBlobId());
+                }
+                writeTimestamp("created_at", chat.getCreated_at());
+                generator.writeEndObject();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void writeMember(long roomId, String userId) {
+            try {
+                generator.writeStartObject();
+                generator.writeStringField("type", "group_member");
+                generator.writeNumberField("roomId", roomId);
+                generator.writeStringField("userId", userId);
+                generator.writeEndObject();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void writeTimestamp(String name, Timestamp timestamp) throws IOException {
+            if (timestamp != null) {
+                generator.writeStringField(name, timestamp.toInstant().toString());
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.writeRaw('\n');
+            generator.close();
+        }
+    }
+
+    private static final class CsvRowWriter implements RowWriter {
+
+        private final Writer writer;
+
+        private CsvRowWriter(Writer writer) throws IOException {
+            this.writer = writer;
+            writeLine(CSV_HEADER);
+        }
+
+        @Override
+        public void write(Chat chat) {
+            writeLine("personal", String.valueOf(chat.getId()), chat.getSenderUserId(), chat.getReceiverUserId(),
+                    null, chat.getContent(), format(chat.getRead_at()), format(chat.getCreated_at()), null);
+        }
+
+        @Override
+        public void write(GroupChat chat) {
+            writeLine("group", String.valueOf(chat.getId()), chat.getSenderUserId(), null,
+                    String.valueOf(chat.getRoomId()), chat.getContent(), null, format(chat.getCreated_at()), null);
+        }
+
+        @Override
+        public void writeMember(long roomId, String userId) {
+            writeLine("group_member", null, null, null, String.valueOf(roomId), null, null, null, userId);
+        }
+
+        private void writeLine(String... values) {
+            try {
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0) {
+                        writer.write(',');
+                    }
+                    writeValue(values[i]);
+                }
+                writer.write("\r\n");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        // RFC 4180 : 구분자, 따옴표, 줄바꿈이 있으면 따옴표로 감싸고 따옴표는 두 번 쓴다
+        private void writeValue(String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            boolean quote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                    || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+            if (!quote) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+
+        private static String format(Timestamp timestamp) {
+            return timestamp == null ? null : timestamp.toInstant().toString();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+}
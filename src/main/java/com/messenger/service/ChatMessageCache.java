@@ -0,0 +1,103 @@
+package com.messenger.service;
+
+import com.messenger.cache.CachedMessageSerializer;
+import com.messenger.cache.OffHeapMessageCache;
+import com.messenger.domain.Chat;
+import com.messenger.domain.ChatRoomType;
+import com.messenger.domain.GroupChat;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * 메시지 단건 조회(id) read-through 캐시
+ *
+ * 메시지는 직렬화해서 JVM heap 밖(OffHeapMessageCache)에 저장하므로, 많이 담아도 GC 대상 객체가 늘지 않는다
+ * 1:1, 그룹 메시지는 id 가 겹치므로 채팅방 종류별로 캐시를 나누고 max-bytes 를 반씩 사용한다
+ * 삭제, 읽음 표시는 ChatEventHandler 가 invalidate() 로 지운다 (다른 서버의 변경도 ChatEventBus 로 받는다)
+ */
+@Component
+public class ChatMessageCache {
+
+    private final boolean enabled;
+    private final OffHeapMessageCache personalCache;
+    private final OffHeapMessageCache groupCache;
+    private final Counter hitCounter;
+    private final Counter missCounter;
+
+    public ChatMessageCache(@Value("${chat.message-cache.enabled:false}") boolean enabled,
+                            @Value("${chat.message-cache.max-bytes:268435456}") long maxBytes,
+                            @Value("${chat.message-cache.slab-size:1048576}") int slabSize,
+                            @Value("${chat.message-cache.shards:16}") int shards,
+                            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        // slab 은 처음 저장할 때 할당하므로 사용하지 않으면 메모리를 잡지 않는다
+        this.personalCache = new OffHeapMessageCache(maxBytes / 2, slabSize, shards);
+        this.groupCache = new OffHeapMessageCache(maxBytes / 2, slabSize, shards);
+
+        this.hitCounter = Counter.builder("chat.message_cache.hits")
+                .description("캐시에서 찾은 메시지 조회 수")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder("chat.message_cache.misses")
+                .description("캐시에 없어서 DB 를 조회한 메시지 조회 수")
+                .register(meterRegistry);
+        Gauge.builder("chat.message_cache.entries", this, c -> c.personalCache.size() + c.groupCache.size())
+                .description("캐시에 저장된 메시지 수")
+                .register(meterRegistry);
+        Gauge.builder("chat.message_cache.allocated_bytes", this, c -> c.personalCache.allocatedBytes() + c.groupCache.allocatedBytes())
+                .description("캐시가 heap 밖에 할당한 메모리 (byte)")
+                .register(meterRegistry);
+        FunctionCounter.builder("chat.message_cache.evictions", this, c -> c.personalCache.evictions() + c.groupCache.evictions())
+                .description("공간이 부족해서 내보낸 메시지 수")
+                .register(meterRegistry);
+    }
+
+    public Optional<Chat> findPersonal(long chatId, Supplier<Optional<Chat>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        byte[] cached = personalCache.get(chatId);
+        if (cached != null) {
+            hitCounter.increment();
+            return Optional.of(CachedMessageSerializer.deserializeChat(cached));
+        }
+        missCounter.increment();
+        long stamp = personalCache.stamp();
+        Optional<Chat> chat = loader.get();
+        chat.ifPresent(c -> personalCache.put(chatId, CachedMessageSerializer.serialize(c), stamp));
+        return chat;
+    }
+
+    public Optional<GroupChat> findGroup(long chatId, Supplier<Optional<GroupChat>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        byte[] cached = groupCache.get(chatId);
+        if (cached != null) {
+            hitCounter.increment();
+            return Optional.of(CachedMessageSerializer.deserializeGroupChat(cached));
+        }
+        missCounter.increment();
+        long stamp = groupCache.stamp();
+        Optional<GroupChat> chat = loader.get();
+        chat.ifPresent(c -> groupCache.put(chatId, CachedMessageSerializer.serialize(c), stamp));
+        return chat;
+    }
+
+    public void invalidate(ChatRoomType type, List<Long> chatIds) {
+        if (!enabled) {
+            return;
+        }
+        OffHeapMessageCache cache = type == ChatRoomType.PERSONAL ? personalCache : groupCache;
+        for (long chatId : chatIds) {
+            cache.invalidate(chatId);
+        }
+    }
+}
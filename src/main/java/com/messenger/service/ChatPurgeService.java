@@ -0,0 +1,61 @@
+package com.messenger.service;
+
+import com.messenger.repository.GroupChatRepository;
+import com.messenger.repository.PersonalChatRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * 삭제 표시(soft delete)된 메시지를 백업 테이블로 옮기는 배치 작업
+ * 삭제 요청은 deleted_at 만 표시하고, 실제 이동은 이 작업이 작은 단위로 나누어 처리한다
+ */
+@Slf4j
+@Service
+public class ChatPurgeService {
+
+    private final PersonalChatRepository personalChatRepository;
+    private final GroupChatRepository groupChatRepository;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long maxBatchesPerRun;
+
+    public ChatPurgeService(PersonalChatRepository personalChatRepository,
+                            GroupChatRepository groupChatRepository,
+                            @Value("${chat.purge.enabled:true}") boolean enabled,
+                            @Value("${chat.purge.batch-size:500}") int batchSize,
+                            @Value("${chat.purge.max-batches-per-run:100}") long maxBatchesPerRun) {
+        this.personalChatRepository = personalChatRepository;
+        this.groupChatRepository = groupChatRepository;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+    }
+
+    @Scheduled(fixedDelayString = "${chat.purge.interval-ms:60000}")
+    public void purge() {
+        if (!enabled) {
+            return;
+        }
+        long personal = purgeInBatches(personalChatRepository::purgeDeleted);
+        long group = purgeInBatches(groupChatRepository::purgeDeleted);
+        if (personal > 0 || group > 0) {
+            log.info("chat purge finished: personal={}, group={}", personal, group);
+        }
+    }
+
+    private long purgeInBatches(IntUnaryOperator purgeBatch) {
+        long total = 0;
+        for (long i = 0; i < maxBatchesPerRun; i++) {
+            int purged = purgeBatch.applyAsInt(batchSize);
+            if (purged == 0) {
+                break;
+            }
+            total += purged;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,240 @@
+package com.messenger.service;
+
+import com.messenger.domain.ChatRoomType;
+import com.messenger.dto.pagination.Pageable;
+import com.messenger.dto.pagination.PaginationResponse;
+import com.messenger.exception.ErrorCode;
+import com.messenger.exception.MyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 받은 메시지 long polling
+ *
+ * 사용자(1:1, 그룹 별)가 받은 마지막 메시지 id 와 대기 중인 요청(DeferredResult)을 메모리에 기록한다
+ * 대기 중인 요청은 servlet async 로 처리되어 요청 thread 를 점유하지 않고,
+ * 메시지를 보낼 때 notifyReceived() 로 수신자의 대기 요청을 깨워 DB 를 조회한다
+ *
+ * afterId 이후 메시지가 없다고 확인된 사용자는 recheck-ms 동안 DB 조회 없이 바로 대기한다
+ * (다른 서버나 대량 import 로 저장된 메시지처럼 알림이 오지 않는 경우도 recheck-ms 안에는 조회된다)
+ * 기록은 서버 메모리에만 있으므로 서버가 여러 대이면 같은 서버로 보낸 메시지만 즉시 알린다
+ */
+@Slf4j
+@Component
+public class ChatReceiveNotifier implements DisposableBean {
+
+    private static final long UNKNOWN = -1;
+
+    private final ConcurrentHashMap<String, UserState> states = new ConcurrentHashMap<>();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final ThreadPoolExecutor executor;
+    private final long maxTimeoutMillis;
+    private final long recheckMillis;
+    private final long idleMillis;
+    private final int maxWaiters;
+    private final Counter queryCounter;
+    private final Counter wakeupCounter;
+
+    public ChatReceiveNotifier(@Value("${chat.long-poll.max-timeout-ms:60000}") long maxTimeoutMillis,
+                               @Value("${chat.long-poll.recheck-ms:300000}") long recheckMillis,
+                               @Value("${chat.long-poll.idle-ms:3600000}") long idleMillis,
+                               @Value("${chat.long-poll.max-waiters:50000}") int maxWaiters,
+                               @Value("${chat.long-poll.threads:4}") int threads,
+                               @Value("${chat.long-poll.queue-capacity:10000}") int queueCapacity,
+                               MeterRegistry meterRegistry) {
+        this.maxTimeoutMillis = maxTimeoutMillis;
+        this.recheckMillis = recheckMillis;
+        this.idleMillis = idleMillis;
+        this.maxWaiters = maxWaiters;
+
+        // 대기 요청을 깨운 뒤 DB 조회는 별도 thread 에서 실행, 밀리면 메시지를 보낸 요청 thread 에서 실행한다
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new ThreadPoolExecutor.CallerRunsPolicy());
+
+        this.queryCounter = Counter.builder("chat.long_poll.queries")
+                .description("long polling 요청이 실행한 DB 조회 수")
+                .register(meterRegistry);
+        this.wakeupCounter = Counter.builder("chat.long_poll.wakeups")
+                .description("새 메시지로 깨운 대기 요청 수")
+                .register(meterRegistry);
+        Gauge.builder("chat.long_poll.waiting", waiting::get)
+                .description("새 메시지를 기다리는 요청 수")
+                .register(meterRegistry);
+    }
+
+    /**
+     * afterId 이후에 받은 메시지가 있으면 바로, 없으면 새 메시지를 받거나 시간이 지날 때까지 기다렸다가 응답
+     * @param type 1:1, 그룹 채팅
+     * @param userId 수신 사용자 id
+     * @param afterId 클라이언트가 마지막으로 받은 메시지 id
+     * @param timeoutMillis 최대 대기 시간, 지나면 빈 목록으로 응답
+     * @param query afterId 이후에 받은 메시지 조회 (요청 thread 밖에서 실행되므로 사용자 id 를 미리 담아야 한다)
+     */
+    public <T extends Pageable> DeferredResult<PaginationResponse<T>> await(ChatRoomType type, String userId, long afterId,
+                                                                         long timeoutMillis, Supplier<List<T>> query) {
+        if (waiting.incrementAndGet() > maxWaiters) {
+            waiting.decrementAndGet();
+            throw new MyException(ErrorCode.SERVER_BUSY);
+        }
+
+        long timeout = Math.min(timeoutMillis, maxTimeoutMillis);
+        DeferredResult<PaginationResponse<T>> deferredResult =
+                new DeferredResult<>(timeout, () -> PaginationResponse.of(Collections.<T>emptyList()));
+        Waiter<T> waiter = new Waiter<>(key(type, userId), afterId, deferredResult, query);
+
+        deferredResult.onCompletion(() -> {
+            waiting.decrementAndGet();
+            states.computeIfPresent(waiter.key, (k, state) -> {
+                state.waiters.remove(waiter);
+                return state;
+            });
+        });
+
+        // 등록한 뒤에 마지막 메시지 id 를 확인해야 그 사이에 온 알림을 놓치지 않는다
+        long now = System.currentTimeMillis();
+        boolean[] needsCheck = new boolean[1];
+        states.compute(waiter.key, (k, state) -> {
+            if (state == null) {
+                state = new UserState();
+            }
+            state.waiters.add(waiter);
+            state.touchedAt = now;
+            needsCheck[0] = state.latestId > afterId || state.verifiedAt < now - recheckMillis;
+            return state;
+        });
+
+        if (needsCheck[0]) {
+            executor.execute(() -> check(waiter));
+        }
+        return deferredResult;
+    }
+
+    /**
+     * 사용자가 메시지를 받았음을 알리고, afterId 가 더 작은 대기 요청을 깨운다
+     */
+    public void notifyReceived(ChatRoomType type, String userId, long chatId) {
+        List<Waiter<?>> woken = new ArrayList<>();
+        states.computeIfPresent(key(type, userId), (k, state) -> {
+            state.latestId = Math.max(state.latestId, chatId);
+            state.touchedAt = System.currentTimeMillis();
+            for (Waiter<?> waiter : state.waiters) {
+                if (waiter.afterId < chatId) {
+                    woken.add(waiter);
+                }
+            }
+            return state;
+        });
+
+        for (Waiter<?> waiter : woken) {
+            wakeupCounter.increment();
+            executor.execute(() -> check(waiter));
+        }
+    }
+
+    /**
+     * 기록된 사용자가 없으면 알림을 보낼 필요가 없다 (그룹 채팅방 참여자 조회를 생략)
+     */
+    public boolean isTracking() {
+        return !states.isEmpty();
+    }
+
+    private <T extends Pageable> void check(Waiter<T> waiter) {
+        if (waiter.deferredResult.isSetOrExpired()) {
+            return;
+        }
+
+        long startedAt = System.currentTimeMillis();
+        List<T> list;
+        try {
+            queryCounter.increment();
+            list = waiter.query.get();
+        } catch (Exception e) {
+            log.error("long poll query failed: key = {}, exception = {}", waiter.key, e.getMessage());
+            waiter.deferredResult.setErrorResult(e);
+            return;
+        }
+
+        if (!list.isEmpty()) {
+            waiter.deferredResult.setResult(PaginationResponse.of(list));
+            return;
+        }
+
+        // afterId 이후 메시지가 없음을 기록, 조회 도중 온 알림은 latestId 를 더 크게 올렸으므로 유지된다
+        states.computeIfPresent(waiter.key, (k, state) -> {
+            state.latestId = Math.max(state.latestId, waiter.afterId);
+            state.verifiedAt = Math.max(state.verifiedAt, startedAt);
+            return state;
+        });
+    }
+
+    /**
+     * 대기 요청이 없고 오랫동안 메시지를 받지 않은 사용자 기록을 정리
+     * 정리된 사용자는 다음 요청에서 DB 를 한 번 조회한다
+     */
+    @Scheduled(fixedDelayString = "${chat.long-poll.evict-interval-ms:600000}")
+    public void evictIdle() {
+        long threshold = System.currentTimeMillis() - idleMillis;
+        int before = states.size();
+        for (String key : states.keySet()) {
+            states.computeIfPresent(key, (k, state) ->
+                    state.waiters.isEmpty() && state.touchedAt < threshold ? null : state);
+        }
+        log.debug("long poll states evicted: {} -> {}", before, states.size());
+    }
+
+    public int size() {
+        return states.size();
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private static String key(ChatRoomType type, String userId) {
+        return type.name() + ":" + userId;
+    }
+
+    /**
+     * 사용자별 기록, states 의 compute 안에서만 읽고 쓴다
+     */
+    private static final class UserState {
+        private final Set<Waiter<?>> waiters = new HashSet<>();
+        private long latestId = UNKNOWN;
+        private long verifiedAt;
+        private long touchedAt;
+    }
+
+    private static final class Waiter<T extends Pageable> {
+        private final String key;
+        private final long afterId;
+        private final DeferredResult<PaginationResponse<T>> deferredResult;
+        private final Supplier<List<T>> query;
+
+        private Waiter(String key, long afterId, DeferredResult<PaginationResponse<T>> deferredResult, Supplier<List<T>> query) {
+            this.key = key;
+            this.afterId = afterId;
+            this.deferredResult = deferredResult;
+            this.query = query;
+        }
+    }
+}
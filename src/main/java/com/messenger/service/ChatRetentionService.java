@@ -0,0 +1,312 @@
+package com.messenger.service;
+
+import com.messenger.domain.ChatRoomType;
+import com.messenger.domain.RetentionPolicy;
+import com.messenger.event.ChatEvent;
+import com.messenger.event.ChatEventBus;
+import com.messenger.exception.ErrorCode;
+import com.messenger.exception.MyException;
+import com.messenger.repository.GroupChatRepository;
+import com.messenger.repository.PersonalChatRepository;
+import com.messenger.repository.RetentionPolicyRepository;
+import com.messenger.util.Pair;
+import com.messenger.util.SpringSecurityUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
+
+/**
+ * 메시지 일괄 삭제와 채팅방별 보관 정책(retention) 처리
+ * 모든 삭제는 작은 단위(chunk)로 나누어 삭제 표시하므로 긴 잠금을 잡지 않는다
+ */
+@Slf4j
+@Service
+public class ChatRetentionService {
+
+    private static final int MAX_RETENTION_DAYS = 3650;
+
+    private final PersonalChatRepository personalChatRepository;
+    private final GroupChatRepository groupChatRepository;
+    private final RetentionPolicyRepository retentionPolicyRepository;
+    private final ChatSearchService chatSearchService;
+    private final ChatEventBus chatEventBus;
+    private final boolean enabled;
+    private final int chunkSize;
+    private final long chunkPauseMillis;
+
+    private final Counter personalBulkDeleted;
+    private final Counter groupBulkDeleted;
+    private final Counter personalExpired;
+    private final Counter groupExpired;
+    private final Timer expireTimer;
+    private final AtomicInteger policiesTotal = new AtomicInteger();
+    private final AtomicInteger policiesRemaining = new AtomicInteger();
+
+    public ChatRetentionService(PersonalChatRepository personalChatRepository,
+                                GroupChatRepository groupChatRepository,
+                                RetentionPolicyRepository retentionPolicyRepository,
+                                ChatSearchService chatSearchService,
+                                ChatEventBus chatEventBus,
+                                MeterRegistry meterRegistry,
+                                @Value("${chat.retention.enabled:true}") boolean enabled,
+                                @Value("${chat.retention.chunk-size:500}") int chunkSize,
+                                @Value("${chat.retention.chunk-pause-ms:50}") long chunkPauseMillis) {
+        this.personalChatRepository = personalChatRepository;
+        this.groupChatRepository = groupChatRepository;
+        this.retentionPolicyRepository = retentionPolicyRepository;
+        this.chatSearchService = chatSearchService;
+        this.chatEventBus = chatEventBus;
+        this.enabled = enabled;
+        this.chunkSize = chunkSize;
+        this.chunkPauseMillis = chunkPauseMillis;
+
+        this.personalBulkDeleted = meterRegistry.counter("chat.bulk_delete.messages", "type", "personal");
+        this.groupBulkDeleted = meterRegistry.counter("chat.bulk_delete.messages", "type", "group");
+        this.personalExpired = meterRegistry.counter("chat.retention.expired.messages", "type", "personal");
+        this.groupExpired = meterRegistry.counter("chat.retention.expired.messages", "type", "group");
+        this.expireTimer = meterRegistry.timer("chat.retention.run");
+        meterRegistry.gauge("chat.retention.policies.total", policiesTotal);
+        meterRegistry.gauge("chat.retention.policies.remaining", policiesRemaining);
+    }
+
+    /**
+     * 1:1 채팅방에서 자신이 전송한 모든 메시지를 삭제
+     * @param oppositeUserId 상대방 사용자 id
+     * @return 삭제한 메시지 개수
+     */
+    public long deletePersonalChatByGroup(@NonNull String oppositeUserId) {
+
+        String userId = SpringSecurityUtil.getAuthenticationName();
+
+        long deleted = deleteInChunks(
+                (afterId, size) -> personalChatRepository.findIdsBySenderInGroup(userId, oppositeUserId, afterId, size),
+                null, this::deletePersonalByIds, 0);
+        personalBulkDeleted.increment(deleted);
+        return deleted;
+    }
+
+    /**
+     * 자신이 전송한 1:1 메시지 중 기준 시각 이전의 메시지를 모두 삭제
+     * @param before 기준 시각
+     * @return 삭제한 메시지 개수
+     */
+    public long deletePersonalChatBefore(@NonNull Timestamp before) {
+
+        String userId = SpringSecurityUtil.getAuthenticationName();
+
+        long deleted = deleteInChunks(
+                (afterId, size) -> personalChatRepository.findIdsBySender(userId, afterId, size),
+                before, this::deletePersonalByIds, 0);
+        personalBulkDeleted.increment(deleted);
+        return deleted;
+    }
+
+    /**
+     * 그룹 채팅방에서 자신이 전송한 모든 메시지를 삭제
+     * @param roomId 그룹 채팅방 id
+     * @return 삭제한 메시지 개수
+     */
+    public long deleteGroupChatByRoom(@NonNull Long roomId) {
+
+        String userId = SpringSecurityUtil.getAuthenticationName();
+        checkRoomMember(roomId, userId);
+
+        long deleted = deleteInChunks(
+                (afterId, size) -> groupChatRepository.findIdsBySenderInRoom(userId, roomId, afterId, size),
+                null, this::deleteGroupByIds, 0);
+        groupBulkDeleted.increment(deleted);
+        return deleted;
+    }
+
+    /**
+     * 자신이 전송한 그룹 메시지 중 기준 시각 이전의 메시지를 모두 삭제
+     * @param before 기준 시각
+     * @return 삭제한 메시지 개수
+     */
+    public long deleteGroupChatBefore(@NonNull Timestamp before) {
+
+        String userId = SpringSecurityUtil.getAuthenticationName();
+
+        long deleted = deleteInChunks(
+                (afterId, size) -> groupChatRepository.findIdsBySender(userId, afterId, size),
+                before, this::deleteGroupByIds, 0);
+        groupBulkDeleted.increment(deleted);
+        return deleted;
+    }
+
+    public RetentionPolicy setPersonalPolicy(@NonNull String oppositeUserId, Integer retentionDays) {
+
+        String userId = SpringSecurityUtil.getAuthenticationName();
+        validateRetentionDays(retentionDays);
+
+        return retentionPolicyRepository.savePersonalPolicy(userId, oppositeUserId, retentionDays);
+    }
+
+    public void removePersonalPolicy(@NonNull String oppositeUserId) {
+
+        String userId = SpringSecurityUtil.getAuthenticationName();
+
+        retentionPolicyRepository.deletePersonalPolicy(userId, oppositeUserId);
+    }
+
+    public RetentionPolicy setGroupPolicy(@NonNull Long roomId, Integer retentionDays) {
+
+        String userId = SpringSecurityUtil.getAuthenticationName();
+        checkRoomMember(roomId, userId);
+        validateRetentionDays(retentionDays);
+
+        return retentionPolicyRepository.saveGroupPolicy(roomId, retentionDays);
+    }
+
+    public void removeGroupPolicy(@NonNull Long roomId) {
+
+        String userId = SpringSecurityUtil.getAuthenticationName();
+        checkRoomMember(roomId, userId);
+
+        retentionPolicyRepository.deleteGroupPolicy(roomId);
+    }
+
+    /**
+     * 보관 기간이 지난 메시지를 채팅방 단위로 삭제 표시
+     * 삭제 표시된 메시지는 ChatPurgeService 가 백업 테이블로 옮긴다
+     * (hot-days 보다 긴 보관 기간도 지나도록 아카이브 테이블의 메시지도 찾고, 아카이브의 메시지는 바로 백업 테이블로 옮긴다)
+     */
+    @Scheduled(cron = "${chat.retention.cron:0 30 3 * * *}")
+    public void expire() {
+        if (!enabled) {
+            return;
+        }
+        expireTimer.record(() -> {
+            List<RetentionPolicy> policies = retentionPolicyRepository.findAll();
+            policiesTotal.set(policies.size());
+            policiesRemaining.set(policies.size());
+
+            long personal = 0;
+            long group = 0;
+            for (RetentionPolicy policy : policies) {
+                Timestamp cutoff = new Timestamp(System.currentTimeMillis() - Duration.ofDays(policy.getRetentionDays()).toMillis());
+                try {
+                    if (policy.getRoomType() == ChatRoomType.PERSONAL) {
+                        String groupId = policy.getRoomKey();
+                        long expired = deleteInChunks(
+                                (afterId, size) -> personalChatRepository.findIdsByGroupId(groupId, afterId, size),
+                                cutoff, this::deletePersonalByIds, chunkPauseMillis);
+                        personalExpired.increment(expired);
+                        personal += expired;
+                    } else {
+                        long roomId = Long.parseLong(policy.getRoomKey());
+                        long expired = deleteInChunks(
+                                (afterId, size) -> groupChatRepository.findIdsByRoom(roomId, afterId, size),
+                                cutoff, this::deleteGroupByIds, chunkPauseMillis);
+                        groupExpired.increment(expired);
+                        group += expired;
+                    }
+                } catch (Exception e) {
+                    log.error("chat retention failed: policy={}, exception={}", policy, e.getMessage());
+                }
+                policiesRemaining.decrementAndGet();
+            }
+            log.info("chat retention finished: policies={}, personal={}, group={}", policies.size(), personal, group);
+        });
+    }
+
+    /**
+     * 오래된 메시지부터 chunk 단위로 id를 찾아 삭제 표시
+     * @param finder (afterId, size) 로 다음 chunk 의 (메시지 id, 생성 시각)을 찾는 함수
+     * @param before (Nullable) 기준 시각, 이 시각 이후의 메시지가 나오면 중단
+     * @param deleter 메시지 id 리스트를 삭제 표시하는 함수
+     * @param pauseMillis chunk 사이에 쉬는 시간
+     * @return 삭제 표시한 메시지 개수
+     */
+    private long deleteInChunks(IdChunkFinder finder, Timestamp before, ToIntFunction<List<Long>> deleter, long pauseMillis) {
+        long total = 0;
+        long afterId = 0;
+        while (true) {
+            List<Pair<Long, Timestamp>> chunk = finder.find(afterId, chunkSize);
+            if (chunk.isEmpty()) {
+                break;
+            }
+
+            List<Long> ids = new ArrayList<>(chunk.size());
+            boolean reachedBefore = false;
+            for (Pair<Long, Timestamp> row : chunk) {
+                if (before != null && (row.getSecond() == null || !row.getSecond().before(before))) {
+                    reachedBefore = true;
+                    break;
+                }
+                ids.add(row.getFirst());
+            }
+            total += deleter.applyAsInt(ids);
+
+            if (reachedBefore || chunk.size() < chunkSize) {
+                break;
+            }
+            afterId = chunk.get(chunk.size() - 1).getFirst();
+            pause(pauseMillis);
+        }
+        return total;
+    }
+
+    private int deletePersonalByIds(List<Long> chatIds) {
+        int deleted = personalChatRepository.deleteByIds(chatIds);
+        chatSearchService.onDeleted(ChatRoomType.PERSONAL, chatIds);
+        invalidateConversations(ChatRoomType.PERSONAL, chatIds, deleted);
+        return deleted;
+    }
+
+    private int deleteGroupByIds(List<Long> chatIds) {
+        int deleted = groupChatRepository.deleteByIds(chatIds);
+        chatSearchService.onDeleted(ChatRoomType.GROUP, chatIds);
+        invalidateConversations(ChatRoomType.GROUP, chatIds, deleted);
+        return deleted;
+    }
+
+    /**
+     * 여러 대화의 메시지가 한 번에 삭제되므로 모든 서버의 조건부 GET 버전을 무효화
+     */
+    private void invalidateConversations(ChatRoomType type, List<Long> chatIds, int deleted) {
+        if (deleted > 0) {
+            chatEventBus.publish(ChatEvent.messagesDeleted(type, chatIds));
+        }
+    }
+
+    private void pause(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void checkRoomMember(long roomId, String userId) {
+        if (!groupChatRepository.belongToRoom(roomId, userId)) {
+            throw new MyException(ErrorCode.UNAUTHORIZED);
+        }
+    }
+
+    private void validateRetentionDays(Integer retentionDays) {
+        if (retentionDays == null || retentionDays < 1 || retentionDays > MAX_RETENTION_DAYS) {
+            throw new MyException(ErrorCode.VALIDATION_FAIL);
+        }
+    }
+
+    @FunctionalInterface
+    private interface IdChunkFinder {
+        List<Pair<Long, Timestamp>> find(long afterId, int size);
+    }
+}
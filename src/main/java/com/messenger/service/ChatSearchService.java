@@ -0,0 +1,206 @@
+package com.messenger.service;
+
+import com.messenger.domain.Chat;
+import com.messenger.domain.ChatRoomType;
+import com.messenger.domain.GroupChat;
+import com.messenger.dto.search.ChatSearchHit;
+import com.messenger.dto.search.ChatSearchResponse;
+import com.messenger.exception.ErrorCode;
+import com.messenger.exception.MyException;
+import com.messenger.repository.GroupChatRepository;
+import com.messenger.repository.PersonalChatRepository;
+import com.messenger.search.ChatSearchIndex;
+import com.messenger.util.Pair;
+import com.messenger.util.SpringSecurityUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 메시지 전문 검색
+ * 메시지 저장/삭제 경로에서 색인을 증분으로 갱신하고, 필요하면 DB 로부터 색인을 다시 만든다
+ *
+ * 색인 재생성 명령: java -jar app.jar --search.rebuild --spring.main.web-application-type=none
+ * (실행 중인 서버에서는 POST /api/v1/search/rebuild 사용, 요청 thread 가 아닌 별도 thread 에서 재생성한다)
+ */
+@Slf4j
+@Service
+public class ChatSearchService implements ApplicationRunner, DisposableBean {
+
+    private static final int MAX_SEARCH_SIZE = 100;
+    private static final int REBUILD_BATCH_SIZE = 1000;
+
+    private final ChatSearchIndex chatSearchIndex;
+    private final PersonalChatRepository personalChatRepository;
+    private final GroupChatRepository groupChatRepository;
+    private final ApplicationContext applicationContext;
+    private final boolean rebuildOnEmpty;
+    private final AtomicBoolean rebuilding = new AtomicBoolean(false);
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "chat-search-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ChatSearchService(ChatSearchIndex chatSearchIndex,
+                             PersonalChatRepository personalChatRepository,
+                             GroupChatRepository groupChatRepository,
+                             ApplicationContext applicationContext,
+                             @Value("${chat.search.rebuild-on-empty:true}") boolean rebuildOnEmpty) {
+        this.chatSearchIndex = chatSearchIndex;
+        this.personalChatRepository = personalChatRepository;
+        this.groupChatRepository = groupChatRepository;
+        this.applicationContext = applicationContext;
+        this.rebuildOnEmpty = rebuildOnEmpty;
+    }
+
+    public ChatSearchResponse search(String text, String cursor, Integer size) {
+
+        if (!StringUtils.hasText(text) || size == null || size < 1 || size > MAX_SEARCH_SIZE) {
+            throw new MyException(ErrorCode.VALIDATION_FAIL);
+        }
+
+        String userId = SpringSecurityUtil.getAuthenticationName();
+        List<Long> roomIds = groupChatRepository.findRoomIdsByUser(userId);
+
+        Pair<List<ChatSearchHit>, String> page;
+        try {
+            page = chatSearchIndex.search(text, userId, roomIds, cursor, size);
+        } catch (IllegalArgumentException e) {
+            log.debug("invalid search request: {}", e.getMessage());
+            throw new MyException(ErrorCode.VALIDATION_FAIL);
+        }
+        return ChatSearchResponse.of(page.getFirst(), page.getSecond());
+    }
+
+    // 색인 실패가 메시지 전송/삭제를 실패시키지 않도록 예외는 기록만 한다
+    public void onSaved(Chat chat) {
+        try {
+            chatSearchIndex.index(chat);
+        } catch (Exception e) {
+            log.error("cannot index personal chat: id={}, exception={}", chat.getId(), e.getMessage());
+        }
+    }
+
+    public void onSaved(GroupChat chat) {
+        try {
+            chatSearchIndex.index(chat);
+        } catch (Exception e) {
+            log.error("cannot index group chat: id={}, exception={}", chat.getId(), e.getMessage());
+        }
+    }
+
+    public void onDeleted(ChatRoomType type, Collection<Long> chatIds) {
+        try {
+            chatSearchIndex.delete(type, chatIds);
+        } catch (Exception e) {
+            log.error("cannot delete chats from search index: type={}, exception={}", type, e.getMessage());
+        }
+    }
+
+    /**
+     * DB 의 모든 메시지로 색인을 다시 만든다 (끝날 때까지 기다린다)
+     * @return 색인한 메시지 개수, 이미 재생성 중이면 -1
+     */
+    public long rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return -1;
+        }
+        try {
+            return rebuildIndex();
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    /**
+     * 별도 thread 에서 색인 재생성을 시작한다
+     * @return 시작했으면 true, 이미 재생성 중이면 false
+     */
+    public boolean startRebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            rebuildExecutor.execute(() -> {
+                try {
+                    rebuildIndex();
+                } catch (Exception e) {
+                    log.error("chat search index rebuild failed: {}", e.getMessage());
+                } finally {
+                    rebuilding.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rebuilding.set(false);
+            throw e;
+        }
+        return true;
+    }
+
+    public boolean isRebuilding() {
+        return rebuilding.get();
+    }
+
+    private long rebuildIndex() {
+        long start = System.currentTimeMillis();
+        chatSearchIndex.deleteAll();
+
+        long count = 0;
+        long afterId = 0;
+        while (true) {
+            List<Chat> chats = personalChatRepository.findAllAfter(afterId, REBUILD_BATCH_SIZE);
+            chats.forEach(chatSearchIndex::index);
+            count += chats.size();
+            if (chats.size() < REBUILD_BATCH_SIZE) {
+                break;
+            }
+            afterId = chats.get(chats.size() - 1).getId();
+        }
+
+        afterId = 0;
+        while (true) {
+            List<GroupChat> chats = groupChatRepository.findAllAfter(afterId, REBUILD_BATCH_SIZE);
+            chats.forEach(chatSearchIndex::index);
+            count += chats.size();
+            if (chats.size() < REBUILD_BATCH_SIZE) {
+                break;
+            }
+            afterId = chats.get(chats.size() - 1).getId();
+        }
+
+        chatSearchIndex.commit();
+        chatSearchIndex.refresh();
+        log.info("chat search index rebuilt: docs={}, elapsed={}ms", count, System.currentTimeMillis() - start);
+        return count;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (args.containsOption("search.rebuild")) {
+            rebuild();
+            System.exit(SpringApplication.exit(applicationContext, () -> 0));
+        }
+        if (rebuildOnEmpty && chatSearchIndex.numDocs() == 0) {
+            startRebuild();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        rebuildExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,198 @@
+package com.messenger.service;
+
+import com.messenger.domain.ChatRoomType;
+import com.messenger.exception.ErrorCode;
+import com.messenger.exception.MyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * 클라이언트가 만든 메시지 id(clientMessageId) 로 재전송된 메시지를 한 번만 저장
+ *
+ * 최근 ttl-ms 동안 보낸 (전송 사용자, clientMessageId) 를 stripe 별 LinkedHashMap 에 기록한다
+ * - 처음 보낸 요청이 저장하는 동안 같은 id 로 온 요청은 그 결과를 기다렸다가 같은 메시지를 반환
+ * - 저장이 끝난 뒤 온 요청은 DB 를 조회하지 않고 기록된 메시지를 반환
+ * - 처음 요청이 실패하면 기록을 지우고, 기다리던 요청 중 하나가 다시 저장한다
+ * 기록은 stripe 별 max-keys 를 넘으면 오래된 것부터 지운다
+ * 기록에서 빠졌거나 다른 서버로 보낸 재전송은 DB 의 unique key (sender_user_id, client_message_id) 로 막고
+ * 저장된 메시지를 조회해서 반환한다
+ */
+@Slf4j
+@Component
+public class ChatSendDeduplicator {
+
+    private final Stripe[] stripes;
+    private final int maxKeysPerStripe;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+    private final Counter memoryHitCounter;
+    private final Counter databaseHitCounter;
+
+    @Autowired
+    public ChatSendDeduplicator(@Value("${chat.dedup.window-size:100000}") int windowSize,
+                                @Value("${chat.dedup.ttl-ms:600000}") long ttlMillis,
+                                @Value("${chat.dedup.stripes:64}") int stripes,
+                                MeterRegistry meterRegistry) {
+        this(windowSize, ttlMillis, stripes, meterRegistry, System::nanoTime);
+    }
+
+    ChatSendDeduplicator(int windowSize, long ttlMillis, int stripes, MeterRegistry meterRegistry, LongSupplier nanoClock) {
+        this.stripes = new Stripe[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new Stripe();
+        }
+        this.maxKeysPerStripe = Math.max(1, windowSize / stripes);
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.nanoClock = nanoClock;
+
+        this.memoryHitCounter = Counter.builder("chat.send.deduplicated")
+                .tag("source", "memory")
+                .description("저장하지 않고 처음 저장한 메시지를 반환한 재전송 수")
+                .register(meterRegistry);
+        this.databaseHitCounter = Counter.builder("chat.send.deduplicated")
+                .tag("source", "database")
+                .description("저장하지 않고 처음 저장한 메시지를 반환한 재전송 수")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param type 1:1, 그룹 채팅
+     * @param userId 전송 사용자 id
+     * @param clientMessageId (Nullable) 클라이언트가 만든 메시지 id, null 이면 중복 검사 없이 저장
+     * @param save 메시지를 저장 (같은 id 가 이미 저장되어 있으면 DuplicateKeyException)
+     * @param findSaved 같은 id 로 저장된 메시지를 조회
+     * @return 저장한 메시지 또는 처음 저장한 메시지
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T send(ChatRoomType type, String userId, String clientMessageId, Supplier<T> save, Supplier<Optional<T>> findSaved) {
+        if (clientMessageId == null) {
+            return save.get();
+        }
+
+        String key = type.name() + ":" + userId + ":" + clientMessageId;
+        Stripe stripe = stripes[Math.floorMod(key.hashCode(), stripes.length)];
+        while (true) {
+            CompletableFuture<Object> mine = new CompletableFuture<>();
+            CompletableFuture<Object> recorded = stripe.putIfAbsent(key, mine, nanoClock.getAsLong());
+            if (recorded == null) {
+                return (T) saveOnce(stripe, key, mine, save, findSaved);
+            }
+            try {
+                Object result = recorded.join();
+                memoryHitCounter.increment();
+                return (T) result;
+            } catch (CompletionException e) {
+                // 먼저 보낸 요청이 실패했으므로 기록이 지워졌다, 다시 시도
+                log.debug("retry after failed send: key = {}", key);
+            }
+        }
+    }
+
+    private <T> T saveOnce(Stripe stripe, String key, CompletableFuture<Object> mine, Supplier<T> save, Supplier<Optional<T>> findSaved) {
+        try {
+            T result;
+            try {
+                result = save.get();
+            } catch (DuplicateKeyException e) {
+                // 기록에서 빠졌거나 다른 서버에서 이미 저장한 경우
+                result = findSaved.get().orElseThrow(() -> new MyException(ErrorCode.FAIL_SAVE_CHAT));
+                databaseHitCounter.increment();
+            }
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            stripe.remove(key, mine);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    private final class Stripe {
+        // 넣은 순서대로 유지되므로 앞쪽이 오래된 기록
+        private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+        /**
+         * @return 이미 기록된 요청의 결과, 없으면 future 를 기록하고 null
+         */
+        private synchronized CompletableFuture<Object> putIfAbsent(String key, CompletableFuture<Object> future, long now) {
+            Entry entry = entries.get(key);
+            if (entry != null && !entry.isExpired(now)) {
+                return entry.future;
+            }
+            if (entry != null) {
+                entries.remove(key);
+            }
+            evict(now);
+            entries.put(key, new Entry(future, now));
+            return null;
+        }
+
+        private synchronized void remove(String key, CompletableFuture<Object> future) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.future == future) {
+                entries.remove(key);
+            }
+        }
+
+        private synchronized int size() {
+            return entries.size();
+        }
+
+        /**
+         * 만료된 기록과 max-keys 를 넘는 오래된 기록을 지운다 (저장 중인 요청의 기록은 남긴다)
+         */
+        private void evict(long now) {
+            Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+            int excess = entries.size() + 1 - maxKeysPerStripe;
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next().getValue();
+                if (!entry.future.isDone()) {
+                    continue;
+                }
+                if (excess > 0 || entry.isExpired(now)) {
+                    iterator.remove();
+                    excess--;
+                } else {
+                    break;
+                }
+            }
+        }
+    }
+
+    private final class Entry {
+        private final CompletableFuture<Object> future;
+        private final long createdAt;
+
+        private Entry(CompletableFuture<Object> future, long createdAt) {
+            this.future = future;
+            this.createdAt = createdAt;
+        }
+
+        private boolean isExpired(long now) {
+            return future.isDone() && now - createdAt > ttlNanos;
+        }
+    }
+}
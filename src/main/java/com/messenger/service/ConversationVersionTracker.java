@@ -0,0 +1,127 @@
+package com.messenger.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 대화(ConversationKey) 별 변경 버전을 메모리에 기록
+ * 메시지 전송, 삭제, 읽음 표시 때 touch() 하고, 조회 API 는 버전으로 ETag/Last-Modified 를 만들어
+ * 바뀐 것이 없으면 메시지 테이블을 조회하지 않고 304 로 응답한다
+ *
+ * 기록이 없는 key 는 missing 버전을 사용한다
+ * 오래된 key 를 정리할 때 missing 을 새 버전으로 올리므로, 정리된 key 의 버전이 예전 값으로 되돌아가지 않는다
+ * 전체 무효화하면 그보다 먼저 기록된 버전은 모두 missing 으로 대체된다
+ * 서버가 재시작하면 epoch 가 바뀌어 이전에 발급한 ETag 는 모두 불일치가 된다
+ */
+@Slf4j
+@Component
+public class ConversationVersionTracker {
+
+    private final long epoch = System.currentTimeMillis();
+    private final AtomicLong sequence = new AtomicLong();
+    private final ConcurrentHashMap<String, Version> versions = new ConcurrentHashMap<>();
+    private final long idleMillis;
+    private volatile Version invalidated;
+    private volatile Version missing;
+
+    public ConversationVersionTracker(@Value("${chat.conditional-get.idle-ms:3600000}") long idleMillis) {
+        this.idleMillis = idleMillis;
+        this.invalidated = new Version(0, toSeconds(epoch));
+        this.missing = invalidated;
+    }
+
+    /**
+     * 대화가 변경되었음을 기록
+     */
+    public void touch(String key) {
+        long now = System.currentTimeMillis();
+        versions.compute(key, (k, prev) -> {
+            // Last-Modified 는 초 단위이므로 같은 초 안의 변경도 구분되도록 1초씩 증가
+            long base = Math.max(prev != null ? prev.lastModified : 0, missing.lastModified);
+            long lastModified = Math.max(toSeconds(now), base + 1000);
+            return new Version(sequence.incrementAndGet(), lastModified);
+        });
+    }
+
+    public void touch(String... keys) {
+        for (String key : keys) {
+            touch(key);
+        }
+    }
+
+    /**
+     * 모든 대화를 변경된 것으로 처리 (대량 삭제, 보관 기간 만료 등 어떤 대화가 바뀌었는지 일일이 알기 어려운 경우)
+     */
+    public void invalidateAll() {
+        Version version = nextMissing();
+        invalidated = version;
+        missing = version;
+        versions.clear();
+    }
+
+    /**
+     * @return 대화의 버전 문자열 (ETag 에 사용)
+     */
+    public String version(String key) {
+        return epoch + "-" + get(key).sequence;
+    }
+
+    /**
+     * @return 대화가 마지막으로 변경된 시각 (epoch millis, 초 단위)
+     */
+    public long lastModified(String key) {
+        return get(key).lastModified;
+    }
+
+    private Version get(String key) {
+        Version version = versions.get(key);
+        if (version == null || version.sequence < invalidated.sequence) {
+            return missing;
+        }
+        return version;
+    }
+
+    /**
+     * 오랫동안 변경되지 않은 key 를 정리
+     */
+    @Scheduled(fixedDelayString = "${chat.conditional-get.evict-interval-ms:600000}")
+    public void evictIdle() {
+        long threshold = System.currentTimeMillis() - idleMillis;
+        if (versions.values().stream().noneMatch(v -> v.lastModified < threshold)) {
+            return;
+        }
+        // missing 을 먼저 올린 뒤 정리해서, 정리된 key 가 이전에 발급한 ETag 와 일치하지 않게 한다
+        missing = nextMissing();
+        int before = versions.size();
+        versions.values().removeIf(v -> v.lastModified < threshold);
+        log.debug("conversation versions evicted: {} -> {}", before, versions.size());
+    }
+
+    private Version nextMissing() {
+        long now = System.currentTimeMillis();
+        return new Version(sequence.incrementAndGet(), Math.max(toSeconds(now), missing.lastModified + 1000));
+    }
+
+    public int size() {
+        return versions.size();
+    }
+
+    private static long toSeconds(long millis) {
+        return millis / 1000 * 1000;
+    }
+
+    private static final class Version {
+        private final long sequence;
+        private final long lastModified;
+
+        private Version(long sequence, long lastModified) {
+            this.sequence = sequence;
+            this.lastModified = lastModified;
+        }
+    }
+}
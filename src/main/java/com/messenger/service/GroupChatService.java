@@ -1,19 +1,27 @@
 package com.messenger.service;
 
 import com.messenger.domain.GroupChat;
+import com.messenger.domain.ChatRoomType;
 import com.messenger.dto.chat.MakeNewGroupRequest;
 import com.messenger.dto.chat.SendGroupChatRequest;
 import com.messenger.dto.chat.GroupChatRoomResponse;
+import com.messenger.dto.chat.SeqRangeResponse;
 import com.messenger.dto.pagination.PaginationRequest;
 import com.messenger.dto.pagination.PaginationResponse;
+import com.messenger.event.ChatEvent;
+import com.messenger.event.ChatEventBus;
 import com.messenger.exception.ErrorCode;
 import com.messenger.exception.MyException;
+import com.messenger.ratelimit.ChatSendRateLimiter;
 import com.messenger.repository.GroupChatRepository;
 import com.messenger.util.Pair;
 import com.messenger.util.SpringSecurityUtil;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import java.sql.Timestamp;
 import java.util.Collections;
@@ -27,45 +35,120 @@ import java.util.stream.Collectors;
 public class GroupChatService {
 
     private final GroupChatRepository groupChatRepository;
-
-    public GroupChatService(GroupChatRepository groupChatRepository) {
+    private final ChatSearchService chatSearchService;
+    private final ChatSendRateLimiter chatSendRateLimiter;
+    private final ChatReceiveNotifier chatReceiveNotifier;
+    private final ChatEventBus chatEventBus;
+    private final ChatSendDeduplicator chatSendDeduplicator;
+    private final ChatBlobService chatBlobService;
+    private final ChatMessageCache chatMessageCache;
+    private final boolean inboxEnabled;
+    private final int inboxMaxRoomSize;
+
+    public GroupChatService(GroupChatRepository groupChatRepository, ChatSearchService chatSearchService, ChatSendRateLimiter chatSendRateLimiter, ChatReceiveNotifier chatReceiveNotifier, ChatEventBus chatEventBus, ChatSendDeduplicator chatSendDeduplicator, ChatBlobService chatBlobService, ChatMessageCache chatMessageCache,
+                            @Value("${chat.inbox.enabled:true}") boolean inboxEnabled,
+                            @Value("${chat.inbox.max-room-size:100}") int inboxMaxRoomSize) {
         this.groupChatRepository = groupChatRepository;
+        this.chatSearchService = chatSearchService;
+        this.chatSendRateLimiter = chatSendRateLimiter;
+        this.chatReceiveNotifier = chatReceiveNotifier;
+        this.chatEventBus = chatEventBus;
+        this.chatSendDeduplicator = chatSendDeduplicator;
+        this.chatBlobService = chatBlobService;
+        this.chatMessageCache = chatMessageCache;
+        this.inboxEnabled = inboxEnabled;
+        this.inboxMaxRoomSize = inboxMaxRoomSize;
     }
 
     public Optional<GroupChat> getGroupChat(@NonNull long chatId) {
-        return groupChatRepository.findById(chatId);
+        return chatMessageCache.findGroup(chatId, () -> groupChatRepository.findById(chatId));
     }
 
     public GroupChat sendGroupChat(SendGroupChatRequest request) {
 
         Long roomId = request.getRoomId();
         String content = request.getContent();
+        String clientMessageId = request.getClientMessageId();
+        String blobId = request.getAttachmentId();
 
         String userId = SpringSecurityUtil.getAuthenticationName();
 
+        // 참여하지 않은 채팅방에는 보낼 수 없고, 채팅방 전송 quota 도 사용하지 않는다
+        if (roomId == null || !groupChatRepository.belongToRoom(roomId, userId)) {
+            throw new MyException(ErrorCode.UNAUTHORIZED);
+        }
+
+        if (blobId != null) {
+            // 올렸거나 볼 수 있는 파일만 첨부할 수 있다
+            chatBlobService.getReadableBlob(blobId, userId);
+            if (chatBlobService.isOffRow(content)) {
+                throw new MyException(ErrorCode.VALIDATION_FAIL);
+            }
+        }
+
         GroupChat chat = GroupChat.builder()
                 .senderUserId(userId)
                 .roomId(roomId)
                 .content(content)
+                .blobId(blobId)
                 .build();
+        // 같은 clientMessageId 로 재전송하면 저장하지 않고 처음 저장한 메시지를 반환
+        return chatSendDeduplicator.send(ChatRoomType.GROUP, userId, clientMessageId,
+                () -> save(chat, clientMessageId),
+                () -> groupChatRepository.findByClientMessageId(userId, clientMessageId));
+    }
+
+    private GroupChat save(GroupChat chat, String clientMessageId) {
+        // DB 에 저장하기 전에 전송 횟수 제한 (재전송은 저장하지 않으므로 제한하지 않음)
+        chatSendRateLimiter.checkGroup(chat.getSenderUserId(), chat.getRoomId());
+
+        GroupChat toSave = storeOffRow(chat);
+
         GroupChat result;
         try {
-            result = groupChatRepository.save(chat);
+            result = groupChatRepository.save(toSave, clientMessageId);
+        } catch (DuplicateKeyException e) {
+            throw e;
         } catch(Exception e) {
             throw new MyException(ErrorCode.FAIL_SAVE_CHAT);
         }
+        chatSearchService.onSaved(result);
+        // 조건부 GET 버전, long polling, SSE 는 ChatEventHandler 가 모든 서버에 반영
+        chatEventBus.publish(ChatEvent.messageSent(result));
         return result;
     }
 
+    /**
+     * 긴 본문은 blob 으로 저장하고 메시지에는 앞부분만 저장
+     * 재전송이나 전송 횟수 제한으로 저장하지 않는 메시지의 blob 이 남지 않도록 전송 횟수 제한 뒤에 호출한다
+     */
+    private GroupChat storeOffRow(GroupChat chat) {
+        String content = chat.getContent();
+        if (chat.getBlobId() != null || !chatBlobService.isOffRow(content)) {
+            return chat;
+        }
+        return GroupChat.builder()
+                .senderUserId(chat.getSenderUserId())
+                .roomId(chat.getRoomId())
+                .content(chatBlobService.preview(content))
+                .blobId(chatBlobService.storeText(content, chat.getSenderUserId()))
+                .build();
+    }
+
     public void deletePersonalChat(@NonNull long chatId) {
 
         String userId = SpringSecurityUtil.getAuthenticationName();
 
+        // 변경된 채팅방을 알기 위해 삭제 전에 조회
+        Optional<GroupChat> chat = groupChatRepository.findById(chatId);
+
         try {
             groupChatRepository.deleteOne(chatId, userId);
         } catch (Exception e) {
             throw new MyException(ErrorCode.FAIL_DELETE_CHAT);
         }
+        chatSearchService.onDeleted(ChatRoomType.GROUP, List.of(chatId));
+        chat.ifPresent(c -> chatEventBus.publish(ChatEvent.messageDeleted(c)));
     }
 
     public List<GroupChat> listPersonalChatByReceiver(PaginationRequest request) {
@@ -75,6 +158,39 @@ public class GroupChatService {
         return groupChatRepository.findByReceiver(userId, request.getNextId(), request.getSize());
     }
 
+    /**
+     * afterId 이후에 받은 메시지를 기다려서 오래된 순으로 조회 (long polling)
+     */
+    public DeferredResult<PaginationResponse<GroupChat>> pollReceivedGroupChat(long afterId, int size, long timeoutMillis) {
+
+        String userId = SpringSecurityUtil.getAuthenticationName();
+
+        return chatReceiveNotifier.await(ChatRoomType.GROUP, userId, afterId, timeoutMillis,
+                () -> groupChatRepository.findByReceiverAfter(userId, afterId, size));
+    }
+
+    /**
+     * 그룹 채팅방에서 순번이 fromSeq 부터 toSeq 까지인 메시지를 조회 (빠진 메시지를 다시 받을 때 사용)
+     * toSeq 는 마지막 순번을 넘지 않도록 줄인다
+     */
+    public SeqRangeResponse<GroupChat> listChatBySeq(@NonNull Long roomId, long fromSeq, long toSeq) {
+
+        String userId = SpringSecurityUtil.getAuthenticationName();
+
+        // 유저가 방에 속하지 않은 경우 빈 리스트 반환
+        if (!groupChatRepository.belongToRoom(roomId, userId)) {
+            return new SeqRangeResponse<>(fromSeq, 0, 0, Collections.emptyList());
+        }
+
+        // 마지막 순번을 먼저 읽어서, 조회 도중 저장된 메시지 때문에 범위가 늘어나지 않게 한다
+        long lastSeq = groupChatRepository.findLastSeq(roomId);
+        long to = Math.min(toSeq, lastSeq);
+        List<GroupChat> list = to < fromSeq
+                ? Collections.emptyList()
+                : groupChatRepository.findBySeqRange(roomId, fromSeq, to);
+        return new SeqRangeResponse<>(fromSeq, to, lastSeq, list);
+    }
+
     public List<GroupChat> listChatByGroup(@NonNull Long roomId, PaginationRequest request) {
 
         String userId = SpringSecurityUtil.getAuthenticationName();
@@ -117,7 +233,10 @@ public class GroupChatService {
         }
 
         // 마지막 메시지를 읽음 표시
-        return groupChatRepository.markReadById(chatId, userId);
+        Optional<GroupChat> markedChat = groupChatRepository.markReadById(chatId, userId);
+        markedChat.ifPresent(c -> chatEventBus.publish(
+                ChatEvent.readMarked(c, userId, new Timestamp(System.currentTimeMillis()))));
+        return markedChat;
     }
 
     public PaginationResponse<GroupChat> enterGroupChat(@NonNull Long roomId, Integer size) {
@@ -151,6 +270,13 @@ public class GroupChatService {
         return listGroupByUser(userId);
     }
 
+    public List<Long> listRoomIdsByUser() {
+
+        String userId = SpringSecurityUtil.getAuthenticationName();
+
+        return groupChatRepository.findRoomIdsByUser(userId);
+    }
+
     public List<String> makeNewGroup(MakeNewGroupRequest request) {
 
         String userId = SpringSecurityUtil.getAuthenticationName();
@@ -159,6 +285,9 @@ public class GroupChatService {
         log.debug("memberList = {}", memberList);
         memberList.add(userId);
 
-        return groupChatRepository.makeNewGroup(memberList);
+        // 참여자가 적은 채팅방만 메시지를 보낼 때 참여자별 inbox 에 복사한다
+        // 참여자가 많은 채팅방은 복사 비용이 커서 조회할 때 채팅방 별로 읽는다
+        boolean inboxFanout = inboxEnabled && memberList.size() <= inboxMaxRoomSize;
+        return groupChatRepository.makeNewGroup(memberList, inboxFanout);
     }
 }
@@ -0,0 +1,78 @@
+package com.messenger.service;
+
+import com.messenger.domain.Member;
+import com.messenger.exception.ErrorCode;
+import com.messenger.exception.MyException;
+import com.messenger.repository.MemberRepository;
+import com.messenger.search.MemberSearchIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.List;
+
+/**
+ * 회원 검색 (id, 이름의 접두어/부분 문자열)
+ * 시작할 때 DB 의 회원을 메모리 색인에 적재하고, 회원 가입/정보 변경 시 색인을 갱신한다
+ * 색인 적재가 끝나기 전에는 DB 접두어 검색으로 대신한다
+ */
+@Slf4j
+@Service
+public class MemberSearchService implements ApplicationRunner {
+
+    private static final int LOAD_BATCH_SIZE = 5000;
+    private static final int MAX_SEARCH_SIZE = 100;
+
+    private final MemberRepository memberRepository;
+    private final MemberSearchIndex memberSearchIndex;
+
+    public MemberSearchService(MemberRepository memberRepository, MemberSearchIndex memberSearchIndex) {
+        this.memberRepository = memberRepository;
+        this.memberSearchIndex = memberSearchIndex;
+    }
+
+    public List<Member> search(String query, boolean infix, String prevId, Integer size) {
+
+        if (!StringUtils.hasText(query) || size == null || size < 1 || size > MAX_SEARCH_SIZE) {
+            throw new MyException(ErrorCode.VALIDATION_FAIL);
+        }
+
+        if (!memberSearchIndex.isReady()) {
+            return memberRepository.findByPrefix(query.trim(), prevId, size);
+        }
+        List<String> ids = memberSearchIndex.search(query, infix, prevId, size);
+        return memberRepository.findByIds(ids);
+    }
+
+    public void onSaved(Member member) {
+        memberSearchIndex.put(member);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Thread thread = new Thread(this::load, "member-search-load");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void load() {
+        long start = System.currentTimeMillis();
+        try {
+            String prevId = null;
+            while (true) {
+                List<Member> members = memberRepository.findAll(prevId, LOAD_BATCH_SIZE);
+                members.forEach(memberSearchIndex::putIfAbsent);
+                if (members.size() < LOAD_BATCH_SIZE) {
+                    break;
+                }
+                prevId = members.get(members.size() - 1).getId();
+            }
+            memberSearchIndex.markReady();
+            log.debug("member search index loaded in {}ms", System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("cannot load member search index: {}", e.getMessage());
+        }
+    }
+}
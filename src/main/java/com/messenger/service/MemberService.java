@@ -6,6 +6,8 @@ import com.messenger.dto.member.MemberLoginRequest;
 import com.messenger.dto.member.MemberSignupRequest;
 import com.messenger.dto.member.MemberUpdateInfoRequest;
 import com.messenger.dto.member.MemberLoginResponse;
+import com.messenger.event.ChatEvent;
+import com.messenger.event.ChatEventBus;
 import com.messenger.exception.ErrorCode;
 import com.messenger.exception.MyException;
 import com.messenger.jwt.JwtSecurityConfig;
@@ -13,6 +15,9 @@ import com.messenger.jwt.TokenProvider;
 import com.messenger.repository.MemberRepository;
 import com.messenger.util.Pair;
 import com.messenger.util.SpringSecurityUtil;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.env.Environment;
@@ -24,6 +29,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -35,16 +41,31 @@ import java.util.Optional;
 
 @Slf4j
 @Service
-public class MemberService implements UserDetailsService {
+public class MemberService implements UserDetailsService, UserDetailsPasswordService {
+
+    private static final int MAX_LIST_SIZE = 1000;
 
     private final MemberRepository memberRepository;
     private final PasswordEncoder passwordEncoder;
     private final AuthenticationManagerBuilder authenticationManagerBuilder;
     private final TokenProvider tokenProvider;
     private final Environment env;
+    private final MemberSearchService memberSearchService;
+    private final ChatEventBus chatEventBus;
+    private final Counter loginCounter;
+    private final Counter refreshCounter;
 
-    public MemberService(MemberRepository memberRepository, PasswordEncoder passwordEncoder, AuthenticationManagerBuilder authenticationManagerBuilder, TokenProvider tokenProvider, Environment env) {
+    public MemberService(MemberRepository memberRepository, PasswordEncoder passwordEncoder, AuthenticationManagerBuilder authenticationManagerBuilder, TokenProvider tokenProvider, Environment env, MemberSearchService memberSearchService, ChatEventBus chatEventBus, MeterRegistry meterRegistry) {
         this.memberRepository = memberRepository;
+        this.memberSearchService = memberSearchService;
+        this.chatEventBus = chatEventBus;
+        // refresh 횟수 = 비밀번호 검증(bcrypt) 없이 토큰을 다시 발급한 횟수
+        this.loginCounter = Counter.builder("auth.login")
+                .description("비밀번호 검증으로 로그인한 횟수")
+                .register(meterRegistry);
+        this.refreshCounter = Counter.builder("auth.refresh")
+                .description("refresh token 으로 토큰을 다시 발급한 횟수")
+                .register(meterRegistry);
         this.passwordEncoder = passwordEncoder;
         this.authenticationManagerBuilder = authenticationManagerBuilder;
         this.tokenProvider = tokenProvider;
@@ -54,15 +75,17 @@ public class MemberService implements UserDetailsService {
     public Member signup(MemberSignupRequest request) {
         Member member = request.toMember();
         member.updatePassword(passwordEncoder.encode(member.getPassword()));
-        return memberRepository.save(member);
+        Member result = memberRepository.save(member);
+        memberSearchService.onSaved(result);
+        chatEventBus.publish(ChatEvent.memberUpdated(result.getId()));
+        return result;
     }
 
-    public List<Member> listAll() {
-        List<Member> members = memberRepository.findAll();
-        if (members.isEmpty()) {
-            throw new MyException(ErrorCode.NOT_FOUND_MEMBER);
+    public List<Member> list(String prevId, Integer size) {
+        if (size == null || size < 1 || size > MAX_LIST_SIZE) {
+            throw new MyException(ErrorCode.VALIDATION_FAIL);
         }
-        return members;
+        return memberRepository.findAll(prevId, size);
     }
 
     public Member findById(@NonNull String id) {
@@ -92,7 +115,7 @@ public class MemberService implements UserDetailsService {
 
         Member findMember = findById(userId);
         if (request.getPassword() != null) {
-            findMember.updatePassword(request.getPassword());
+            findMember.updatePassword(passwordEncoder.encode(request.getPassword()));
         }
         if (request.getName() != null) {
             findMember.updateName(request.getName());
@@ -101,10 +124,14 @@ public class MemberService implements UserDetailsService {
             findMember.updateStatusMessage(request.getStatusMessage());
         }
 
-        return memberRepository.updateMember(findMember);
+        Member result = memberRepository.updateMember(findMember);
+        memberSearchService.onSaved(result);
+        // 다른 서버의 회원 검색 색인 갱신
+        chatEventBus.publish(ChatEvent.memberUpdated(result.getId()));
+        return result;
     }
 
-    public Pair<MemberLoginResponse, Cookie> login(MemberLoginRequest request) {
+    public Pair<MemberLoginResponse, List<Cookie>> login(MemberLoginRequest request) {
 
         String id = request.getId();
         String password = request.getPassword();
@@ -122,6 +149,9 @@ public class MemberService implements UserDetailsService {
 
             tokenInfo = tokenProvider.createToken(authentication);
             log.debug("tokenInfo = {}", tokenInfo);
+        } catch (MyException e) {
+            // 비밀번호 해시 대기열이 가득 찬 경우 (SERVER_BUSY)
+            throw e;
         } catch (DisabledException | LockedException e) {
             // 계정이 disable 이거나 locked 인 경우
             log.debug(e.getMessage());
@@ -135,28 +165,99 @@ public class MemberService implements UserDetailsService {
             throw new MyException(ErrorCode.INTERNAL_SERVER_ERROR);
         }
 
+        loginCounter.increment();
+
         Member findMember = memberRepository.findById(id).orElseThrow(() -> new MyException(ErrorCode.NOT_FOUND_MEMBER));
         MemberLoginResponse memberResponse = MemberLoginResponse.of(findMember);
         memberResponse.setToken(tokenInfo.getAccessToken());
+        memberResponse.setRefreshToken(tokenInfo.getRefreshToken());
 
-        Cookie cookie = new Cookie(JwtSecurityConfig.AUTHORIZATION_COOKIE, tokenInfo.getAccessToken());
-        cookie.setHttpOnly(true);
-        cookie.setPath("/");
-        cookie.setMaxAge(env.getProperty("jwt.token-validity-in-seconds", Integer.class));
+        return new Pair<>(memberResponse, tokenCookies(tokenInfo));
+    }
+
+    /**
+     * refresh token 으로 access token 을 다시 발급 (비밀번호 검증 없이)
+     * 사용한 refresh token 은 폐기하고 새 refresh token 을 함께 발급한다 (rotation)
+     * @param refreshToken refresh token
+     * @return 로그인 응답과 토큰 쿠키
+     */
+    public Pair<MemberLoginResponse, List<Cookie>> refresh(String refreshToken) {
+
+        if (refreshToken == null) {
+            throw new MyException(ErrorCode.UNAUTHORIZED);
+        }
+        Claims claims = tokenProvider.useRefreshToken(refreshToken)
+                .orElseThrow(() -> new MyException(ErrorCode.UNAUTHORIZED));
+
+        // 권한이 바뀌었을 수 있으므로 회원 정보는 다시 조회
+        Member findMember = memberRepository.findById(claims.getSubject())
+                .orElseThrow(() -> new MyException(ErrorCode.UNAUTHORIZED));
+        TokenInfo tokenInfo = tokenProvider.createToken(findMember.getId(), findMember.getAuthorities(),
+                tokenProvider.getFamily(claims));
+        refreshCounter.increment();
+
+        MemberLoginResponse memberResponse = MemberLoginResponse.of(findMember);
+        memberResponse.setToken(tokenInfo.getAccessToken());
+        memberResponse.setRefreshToken(tokenInfo.getRefreshToken());
 
-        return new Pair<>(memberResponse, cookie);
+        return new Pair<>(memberResponse, tokenCookies(tokenInfo));
     }
 
-    public Cookie logout() {
+    public List<Cookie> logout() {
+        // 현재 access token 과 같은 family 의 토큰을 모두 폐기
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getCredentials() instanceof String) {
+            tokenProvider.revoke((String) authentication.getCredentials());
+        }
+
         // 쿠키를 삭제
         Cookie cookie = new Cookie(JwtSecurityConfig.AUTHORIZATION_COOKIE, null);
         cookie.setMaxAge(0);
         cookie.setPath("/");
-        return cookie;
+
+        Cookie refreshCookie = new Cookie(JwtSecurityConfig.REFRESH_COOKIE, null);
+        refreshCookie.setMaxAge(0);
+        refreshCookie.setPath(JwtSecurityConfig.REFRESH_COOKIE_PATH);
+        return List.of(cookie, refreshCookie);
+    }
+
+    private List<Cookie> tokenCookies(TokenInfo tokenInfo) {
+        Cookie cookie = new Cookie(JwtSecurityConfig.AUTHORIZATION_COOKIE, tokenInfo.getAccessToken());
+        cookie.setHttpOnly(true);
+        cookie.setPath("/");
+        cookie.setMaxAge(env.getProperty("jwt.token-validity-in-seconds", Integer.class));
+
+        // refresh token 은 로그인 관련 요청에만 전송
+        Cookie refreshCookie = new Cookie(JwtSecurityConfig.REFRESH_COOKIE, tokenInfo.getRefreshToken());
+        refreshCookie.setHttpOnly(true);
+        refreshCookie.setPath(JwtSecurityConfig.REFRESH_COOKIE_PATH);
+        refreshCookie.setMaxAge(env.getProperty("jwt.refresh-token-validity-in-seconds", Integer.class, 1209600));
+
+        return List.of(cookie, refreshCookie);
     }
 
     @Override
     public UserDetails loadUserByUsername(String id) throws UsernameNotFoundException {
         return findById(id);
     }
+
+    /**
+     * 로그인 성공 후 저장된 해시의 알고리즘이나 cost 가 현재 설정과 다르면 호출된다 (DaoAuthenticationProvider)
+     * @param user 인증된 사용자
+     * @param newPassword 현재 설정으로 다시 해시한 비밀번호
+     * @return 비밀번호가 변경된 사용자
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        Member member = findById(user.getUsername());
+        member.updatePassword(newPassword);
+        try {
+            memberRepository.updateMember(member);
+            log.debug("password rehashed: id = {}", member.getId());
+        } catch (MyException e) {
+            // 다시 해시하지 못해도 로그인은 성공시키고 다음 로그인 때 재시도
+            log.error("cannot rehash password: id = {}", member.getId());
+        }
+        return member;
+    }
 }
\ No newline at end of file
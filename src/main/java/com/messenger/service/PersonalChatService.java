@@ -1,18 +1,26 @@
 package com.messenger.service;
 
 import com.messenger.domain.Chat;
+import com.messenger.domain.ChatRoomType;
 import com.messenger.dto.chat.PersonalChatRoomResponse;
+import com.messenger.dto.chat.SeqRangeResponse;
 import com.messenger.dto.pagination.PaginationRequest;
 import com.messenger.dto.pagination.PaginationResponse;
 import com.messenger.dto.chat.SendPersonalChatRequest;
+import com.messenger.event.ChatEvent;
+import com.messenger.event.ChatEventBus;
 import com.messenger.exception.ErrorCode;
 import com.messenger.exception.MyException;
+import com.messenger.ratelimit.ChatSendRateLimiter;
 import com.messenger.repository.PersonalChatRepository;
 import com.messenger.util.Pair;
 import com.messenger.util.SpringSecurityUtil;
 import lombok.NonNull;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -21,45 +29,109 @@ import java.util.stream.Collectors;
 public class PersonalChatService {
 
     private final PersonalChatRepository personalChatRepository;
-
-    public PersonalChatService(PersonalChatRepository personalChatRepository) {
+    private final ChatSearchService chatSearchService;
+    private final ChatSendRateLimiter chatSendRateLimiter;
+    private final ChatReceiveNotifier chatReceiveNotifier;
+    private final ChatEventBus chatEventBus;
+    private final ChatSendDeduplicator chatSendDeduplicator;
+    private final ChatBlobService chatBlobService;
+    private final ChatMessageCache chatMessageCache;
+
+    public PersonalChatService(PersonalChatRepository personalChatRepository, ChatSearchService chatSearchService, ChatSendRateLimiter chatSendRateLimiter, ChatReceiveNotifier chatReceiveNotifier, ChatEventBus chatEventBus, ChatSendDeduplicator chatSendDeduplicator, ChatBlobService chatBlobService, ChatMessageCache chatMessageCache) {
         this.personalChatRepository = personalChatRepository;
+        this.chatSearchService = chatSearchService;
+        this.chatSendRateLimiter = chatSendRateLimiter;
+        this.chatReceiveNotifier = chatReceiveNotifier;
+        this.chatEventBus = chatEventBus;
+        this.chatSendDeduplicator = chatSendDeduplicator;
+        this.chatBlobService = chatBlobService;
+        this.chatMessageCache = chatMessageCache;
     }
 
     public Optional<Chat> getPersonalChat(@NonNull long chatId) {
-        return personalChatRepository.findById(chatId);
+        return chatMessageCache.findPersonal(chatId, () -> personalChatRepository.findById(chatId));
     }
 
     public Chat sendPersonalChat(SendPersonalChatRequest request) {
 
         String receiverUserId = request.getReceiverUserId();
         String content = request.getContent();
+        String clientMessageId = request.getClientMessageId();
+        String blobId = request.getAttachmentId();
 
         String userId = SpringSecurityUtil.getAuthenticationName();
 
+        if (blobId != null) {
+            // 올렸거나 볼 수 있는 파일만 첨부할 수 있다
+            chatBlobService.getReadableBlob(blobId, userId);
+            if (chatBlobService.isOffRow(content)) {
+                throw new MyException(ErrorCode.VALIDATION_FAIL);
+            }
+        }
+
         Chat chat = Chat.builder()
                 .senderUserId(userId)
                 .receiverUserId(receiverUserId)
                 .content(content)
+                .blobId(blobId)
                 .build();
+        // 같은 clientMessageId 로 재전송하면 저장하지 않고 처음 저장한 메시지를 반환
+        return chatSendDeduplicator.send(ChatRoomType.PERSONAL, userId, clientMessageId,
+                () -> save(chat, clientMessageId),
+                () -> personalChatRepository.findByClientMessageId(userId, clientMessageId));
+    }
+
+    private Chat save(Chat chat, String clientMessageId) {
+        // DB 에 저장하기 전에 전송 횟수 제한 (재전송은 저장하지 않으므로 제한하지 않음)
+        chatSendRateLimiter.checkPersonal(chat.getSenderUserId());
+
+        Chat toSave = storeOffRow(chat);
+
         Chat result;
         try {
-            result = personalChatRepository.save(chat);
+            result = personalChatRepository.save(toSave, clientMessageId);
+        } catch (DuplicateKeyException e) {
+            throw e;
         } catch(Exception e) {
             throw new MyException(ErrorCode.FAIL_SAVE_CHAT);
         }
+        chatSearchService.onSaved(result);
+        // 조건부 GET 버전, long polling, SSE 는 ChatEventHandler 가 모든 서버에 반영
+        chatEventBus.publish(ChatEvent.messageSent(result));
         return result;
     }
 
+    /**
+     * 긴 본문은 blob 으로 저장하고 메시지에는 앞부분만 저장
+     * 재전송이나 전송 횟수 제한으로 저장하지 않는 메시지의 blob 이 남지 않도록 전송 횟수 제한 뒤에 호출한다
+     */
+    private Chat storeOffRow(Chat chat) {
+        String content = chat.getContent();
+        if (chat.getBlobId() != null || !chatBlobService.isOffRow(content)) {
+            return chat;
+        }
+        return Chat.builder()
+                .senderUserId(chat.getSenderUserId())
+                .receiverUserId(chat.getReceiverUserId())
+                .content(chatBlobService.preview(content))
+                .blobId(chatBlobService.storeText(content, chat.getSenderUserId()))
+                .build();
+    }
+
     public void deletePersonalChat(@NonNull long chatId) {
 
         String userId = SpringSecurityUtil.getAuthenticationName();
 
+        // 변경된 대화를 알기 위해 삭제 전에 조회
+        Optional<Chat> chat = personalChatRepository.findById(chatId);
+
         try {
             personalChatRepository.deleteOne(chatId, userId);
         } catch (Exception e) {
             throw new MyException(ErrorCode.FAIL_DELETE_CHAT);
         }
+        chatSearchService.onDeleted(ChatRoomType.PERSONAL, List.of(chatId));
+        chat.ifPresent(c -> chatEventBus.publish(ChatEvent.messageDeleted(c)));
     }
 
     public List<Chat> listAllPersonalChat(PaginationRequest request) {
@@ -80,6 +152,34 @@ public class PersonalChatService {
         return personalChatRepository.findByReceiver(userId, request.getNextId(), request.getSize());
     }
 
+    /**
+     * afterId 이후에 받은 메시지를 기다려서 오래된 순으로 조회 (long polling)
+     */
+    public DeferredResult<PaginationResponse<Chat>> pollReceivedPersonalChat(long afterId, int size, long timeoutMillis) {
+
+        String userId = SpringSecurityUtil.getAuthenticationName();
+
+        return chatReceiveNotifier.await(ChatRoomType.PERSONAL, userId, afterId, timeoutMillis,
+                () -> personalChatRepository.findByReceiverAfter(userId, afterId, size));
+    }
+
+    /**
+     * 1:1 채팅방에서 순번이 fromSeq 부터 toSeq 까지인 메시지를 조회 (빠진 메시지를 다시 받을 때 사용)
+     * toSeq 는 마지막 순번을 넘지 않도록 줄인다
+     */
+    public SeqRangeResponse<Chat> listPersonalChatBySeq(@NonNull String oppositeUserId, long fromSeq, long toSeq) {
+
+        String userId = SpringSecurityUtil.getAuthenticationName();
+
+        // 마지막 순번을 먼저 읽어서, 조회 도중 저장된 메시지 때문에 범위가 늘어나지 않게 한다
+        long lastSeq = personalChatRepository.findLastSeq(userId, oppositeUserId);
+        long to = Math.min(toSeq, lastSeq);
+        List<Chat> list = to < fromSeq
+                ? Collections.emptyList()
+                : personalChatRepository.findByGroupSeqRange(userId, oppositeUserId, fromSeq, to);
+        return new SeqRangeResponse<>(fromSeq, to, lastSeq, list);
+    }
+
     public List<Chat> listPersonalChatByGroup(@NonNull String oppositeUserId, PaginationRequest request) {
 
         String userId = SpringSecurityUtil.getAuthenticationName();
@@ -110,7 +210,9 @@ public class PersonalChatService {
 
         // 마지막 메시지를 읽음 표시
         long chatId = foundChat.get().getId();
-        return personalChatRepository.markReadById(chatId);
+        Optional<Chat> markedChat = personalChatRepository.markReadById(chatId);
+        markedChat.ifPresent(c -> chatEventBus.publish(ChatEvent.readMarked(c)));
+        return markedChat;
     }
 
     public PaginationResponse<Chat> enterPersonalChatGroup(@NonNull String oppositeUserId, Integer size) {
@@ -0,0 +1,29 @@
+package com.messenger.util;
+
+/**
+ * 대화(1:1 채팅, 그룹 채팅방)와 사용자의 채팅방 목록을 구분하는 key
+ * 1:1 채팅은 두 사용자 id 를 정렬해서 이어 붙이므로 누가 보내든 같은 key 가 된다 (DB 의 FUNC_CONCAT_ID 와 같은 방식)
+ * 단, 정렬은 Java 문자열 비교를 사용하므로 DB collation 에 따라 group_id 값과 다를 수 있어 메모리 안에서만 사용한다
+ */
+public class ConversationKey {
+
+    private ConversationKey() {}
+
+    public static String personal(String userId, String oppositeUserId) {
+        if (userId.compareTo(oppositeUserId) < 0) {
+            return "personal:" + userId + "," + oppositeUserId;
+        }
+        return "personal:" + oppositeUserId + "," + userId;
+    }
+
+    public static String group(long roomId) {
+        return "group:" + roomId;
+    }
+
+    /**
+     * 사용자의 1:1 채팅방 목록
+     */
+    public static String personalRooms(String userId) {
+        return "personal-rooms:" + userId;
+    }
+}
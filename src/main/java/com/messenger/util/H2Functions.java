@@ -0,0 +1,24 @@
+package com.messenger.util;
+
+/**
+ * embedded 프로필(H2)에서 MySQL 저장 함수 대신 사용하는 Java 함수
+ * src/main/resources/db/h2/schema.sql 에서 CREATE ALIAS 로 등록한다
+ */
+public class H2Functions {
+
+    private H2Functions() {}
+
+    /**
+     * sql/Function.sql 의 FUNC_CONCAT_ID 와 같은 동작
+     * 두 id 를 정렬해서 쉼표로 이어 붙인다
+     */
+    public static String concatId(String param1, String param2) {
+        if (param1 == null || param2 == null) {
+            return null;
+        }
+        if (param1.compareTo(param2) < 0) {
+            return param1 + "," + param2;
+        }
+        return param2 + "," + param1;
+    }
+}
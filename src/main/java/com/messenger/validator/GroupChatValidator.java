@@ -1,5 +1,6 @@
 package com.messenger.validator;
 
+import com.messenger.blob.ContentBlobStore;
 import com.messenger.dto.chat.MakeNewGroupRequest;
 import com.messenger.dto.chat.SendGroupChatRequest;
 import org.springframework.stereotype.Component;
@@ -21,9 +22,16 @@ public class GroupChatValidator implements Validator {
         if (target instanceof SendGroupChatRequest) {
             SendGroupChatRequest request = (SendGroupChatRequest) target;
             String content =  request.getContent();
-            if (content.length() > 5000) {
+            if (content.length() > PersonalChatValidator.MAX_CONTENT_LENGTH) {
                 errors.rejectValue("content", "string length is too long");
             }
+            if (request.getAttachmentId() != null && !ContentBlobStore.isValidId(request.getAttachmentId())) {
+                errors.rejectValue("attachmentId", "attachment id is not a blob id");
+            }
+            String clientMessageId = request.getClientMessageId();
+            if (clientMessageId != null && (clientMessageId.isBlank() || clientMessageId.length() > 64)) {
+                errors.rejectValue("clientMessageId", "client message id is blank or too long");
+            }
         } else if (target instanceof MakeNewGroupRequest) {
             MakeNewGroupRequest request = (MakeNewGroupRequest) target;
             List<String> memberList = request.getMemberList();
@@ -1,5 +1,6 @@
 package com.messenger.validator;
 
+import com.messenger.blob.ContentBlobStore;
 import com.messenger.dto.chat.SendPersonalChatRequest;
 import org.springframework.stereotype.Component;
 import org.springframework.validation.Errors;
@@ -7,6 +8,10 @@ import org.springframework.validation.Validator;
 
 @Component
 public class PersonalChatValidator implements Validator {
+
+    // 긴 본문은 blob 으로 저장한다 (ChatBlobService)
+    public static final int MAX_CONTENT_LENGTH = 100000;
+
     @Override
     public boolean supports(Class<?> clazz) {
         return clazz.equals(SendPersonalChatRequest.class);
@@ -20,8 +25,15 @@ public class PersonalChatValidator implements Validator {
         if (!MemberValidator.validateId(userId)) {
             errors.rejectValue("id", "id pattern not match");
         }
-        if (content.length() > 5000) {
+        if (content.length() > MAX_CONTENT_LENGTH) {
             errors.rejectValue("content", "string length is too long");
         }
+        if (request.getAttachmentId() != null && !ContentBlobStore.isValidId(request.getAttachmentId())) {
+            errors.rejectValue("attachmentId", "attachment id is not a blob id");
+        }
+        String clientMessageId = request.getClientMessageId();
+        if (clientMessageId != null && (clientMessageId.isBlank() || clientMessageId.length() > 64)) {
+            errors.rejectValue("clientMessageId", "client message id is blank or too long");
+        }
     }
 }
@@ -0,0 +1,155 @@
+package com.messenger.web;
+
+import com.messenger.blob.ByteRange;
+import com.messenger.domain.ChatBlob;
+import com.messenger.exception.ErrorCode;
+import com.messenger.exception.MyException;
+import com.messenger.service.ChatBlobService;
+import com.messenger.util.SpringSecurityUtil;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 큰 메시지 본문, 첨부 파일 업로드와 다운로드
+ *
+ * 다운로드는 파일 내용을 JVM heap 으로 복사하지 않는다
+ * - sendfile-min-size 이상이고 Tomcat 이 sendfile 을 지원하면 요청 속성으로 파일 구간만 넘겨서 Tomcat 이 sendfile 로 보낸다
+ * - 그 밖에는 FileChannel.transferTo 로 응답 스트림에 쓴다
+ * blob id 는 내용의 SHA-256 이므로 내용이 바뀌지 않고, ETag 와 오래 캐시하는 Cache-Control 을 붙인다
+ */
+@Slf4j
+@RestController
+public class ChatBlobController {
+
+    // org.apache.catalina.Globals 의 sendfile 요청 속성
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    private static final String CACHE_CONTROL = "private, max-age=31536000, immutable";
+    private static final int MAX_CONTENT_TYPE_LENGTH = 100;
+
+    private final ChatBlobService chatBlobService;
+    private final long sendfileMinSize;
+
+    public ChatBlobController(ChatBlobService chatBlobService,
+                              @Value("${chat.blob.sendfile-min-size:49152}") long sendfileMinSize) {
+        this.chatBlobService = chatBlobService;
+        this.sendfileMinSize = sendfileMinSize;
+    }
+
+    @PostMapping("/api/v1/blobs")
+    @Operation(summary = "첨부 파일 업로드",
+            description = "요청 본문 전체를 파일로 저장하고 blobId(내용의 SHA-256)를 반환한다. Content-Type 헤더가 파일 형식으로 저장된다. " +
+                    "받은 blobId 를 메시지 전송의 attachmentId 로 보낸다 (같은 내용은 한 번만 저장)",
+            security = {@SecurityRequirement(name = "authorization")})
+    public ChatBlob upload(HttpServletRequest request) throws IOException {
+
+        String contentType = request.getContentType();
+        if (contentType == null) {
+            contentType = MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        }
+        try {
+            MediaType.parseMediaType(contentType);
+        } catch (InvalidMediaTypeException e) {
+            log.error("blob upload validation error: contentType = {}", contentType);
+            throw new MyException(ErrorCode.VALIDATION_FAIL);
+        }
+        if (contentType.length() > MAX_CONTENT_TYPE_LENGTH) {
+            throw new MyException(ErrorCode.VALIDATION_FAIL);
+        }
+
+        return chatBlobService.upload(request.getInputStream(), contentType, SpringSecurityUtil.getAuthenticationName());
+    }
+
+    @GetMapping("/api/v1/blobs/{blobId}")
+    @Operation(summary = "첨부 파일, 긴 메시지 본문 다운로드",
+            description = "Range 요청(bytes=first-last 한 구간)을 지원한다. If-None-Match 가 blobId 와 같으면 304 를 반환한다. " +
+                    "직접 올렸거나, 볼 수 있는 메시지가 참조하는 파일만 받을 수 있다. 브라우저는 jwt-access-token 쿠키로 인증할 수 있다",
+            security = {@SecurityRequirement(name = "authorization")})
+    @Parameter(name = "blobId", description = "blob id (메시지의 blobId)", required = true)
+    public void download(@PathVariable String blobId,
+                         ServletWebRequest webRequest,
+                         HttpServletRequest request,
+                         HttpServletResponse response) throws IOException {
+
+        ChatBlob blob = chatBlobService.getReadableBlob(blobId, SpringSecurityUtil.getAuthenticationName());
+        String etag = "\"" + blob.getId() + "\"";
+        if (webRequest.checkNotModified(etag)) {
+            return;
+        }
+        Path path = chatBlobService.getPath(blob);
+        long size = blob.getSize();
+
+        // If-Range 가 다른 내용을 가리키면 전체를 보낸다
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.equals(etag)) {
+            rangeHeader = null;
+        }
+        ByteRange range;
+        try {
+            range = ByteRange.parse(rangeHeader, size);
+        } catch (MyException e) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+            throw e;
+        }
+
+        long start = range == null ? 0 : range.getFirst();
+        long length = range == null ? size : range.length();
+        if (range != null) {
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + range.getFirst() + "-" + range.getLast() + "/" + size);
+        }
+        response.setContentType(blob.getContentType());
+        response.setContentLengthLong(length);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        // gzip 압축(server.compression)을 하면 Range 의 byte 위치가 맞지 않고 sendfile 도 쓸 수 없다
+        response.setHeader(HttpHeaders.CONTENT_ENCODING, "identity");
+
+        if ("HEAD".equals(request.getMethod()) || length == 0) {
+            return;
+        }
+
+        if (length >= sendfileMinSize && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            request.setAttribute(SENDFILE_FILENAME, path.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + length);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = length;
+            while (remaining > 0) {
+                long written = channel.transferTo(position, remaining, out);
+                if (written <= 0) {
+                    log.error("blob file shorter than expected: id = {}, position = {}", blob.getId(), position);
+                    break;
+                }
+                position += written;
+                remaining -= written;
+            }
+        }
+    }
+}
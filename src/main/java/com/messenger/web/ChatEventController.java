@@ -0,0 +1,44 @@
+package com.messenger.web;
+
+import com.messenger.service.ChatEventStreamService;
+import com.messenger.util.SpringSecurityUtil;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.servlet.http.HttpServletResponse;
+
+@Slf4j
+@RestController
+public class ChatEventController {
+
+    private final ChatEventStreamService chatEventStreamService;
+
+    public ChatEventController(ChatEventStreamService chatEventStreamService) {
+        this.chatEventStreamService = chatEventStreamService;
+    }
+
+    @GetMapping(value = "/api/v1/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "새 메시지, 읽음 표시 이벤트 스트림 (Server-Sent Events)",
+            description = "받은 1:1 메시지(personal), 참여한 그룹 채팅방의 메시지(group), 내 메시지의 읽음 표시(read)를 보낸다. " +
+                    "브라우저 EventSource 는 jwt-access-token 쿠키로 인증하고, 재연결할 때 Last-Event-ID 이후의 메시지를 먼저 보낸다",
+            security = {@SecurityRequirement(name = "authorization")})
+    @Parameter(name = "Last-Event-ID", description = "마지막으로 받은 이벤트 id (재연결)")
+    @Parameter(name = "lastEventId", description = "Last-Event-ID 헤더를 보낼 수 없는 클라이언트용")
+    public SseEmitter stream(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+            @RequestParam(value = "lastEventId", required = false) String lastEventIdParam,
+            HttpServletResponse response) {
+
+        String userId = SpringSecurityUtil.getAuthenticationName();
+        String lastEventId = lastEventIdHeader != null ? lastEventIdHeader : lastEventIdParam;
+
+        // reverse proxy(nginx) 가 이벤트를 모아서 보내지 않도록
+        response.setHeader("X-Accel-Buffering", "no");
+        return chatEventStreamService.open(userId, lastEventId);
+    }
+}
@@ -0,0 +1,66 @@
+package com.messenger.web;
+
+import com.messenger.exception.ErrorCode;
+import com.messenger.exception.MyException;
+import com.messenger.service.ChatExportService;
+import com.messenger.util.SpringSecurityUtil;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+@Slf4j
+@RestController
+public class ChatExportController {
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson;charset=UTF-8");
+    private static final MediaType CSV = MediaType.parseMediaType("text/csv;charset=UTF-8");
+    private static final MediaType GZIP = MediaType.parseMediaType("application/gzip");
+
+    private final ChatExportService chatExportService;
+
+    public ChatExportController(ChatExportService chatExportService) {
+        this.chatExportService = chatExportService;
+    }
+
+    @GetMapping("/api/v1/chat/export")
+    @Operation(summary = "전체 채팅 기록 내보내기",
+            description = "자신이 보내거나 받은 1:1 메시지와 자신이 속한 그룹 채팅방의 메시지를 모두 파일로 내려받는다 " +
+                    "(보관된 메시지 포함, 채팅방 종류와 테이블 순서로 출력되며 전체가 id 순으로 정렬되지는 않음)",
+            security = {@SecurityRequirement(name = "authorization")})
+    @Parameter(name = "format", description = "ndjson 또는 csv")
+    @Parameter(name = "gzip", description = "gzip 압축 여부")
+    public ResponseEntity<StreamingResponseBody> export(
+            @RequestParam(required = false, defaultValue = "ndjson") String format,
+            @RequestParam(required = false, defaultValue = "false") boolean gzip) {
+
+        ChatExportService.Format exportFormat;
+        if ("ndjson".equals(format)) {
+            exportFormat = ChatExportService.Format.NDJSON;
+        } else if ("csv".equals(format)) {
+            exportFormat = ChatExportService.Format.CSV;
+        } else {
+            log.error("chat export validation error: format = {}", format);
+            throw new MyException(ErrorCode.VALIDATION_FAIL);
+        }
+
+        // 스트리밍은 다른 스레드에서 실행되므로 사용자 id 를 미리 꺼내둔다
+        String userId = SpringSecurityUtil.getAuthenticationName();
+        chatExportService.acquire();
+
+        String filename = "chat-export-" + userId + "." + format + (gzip ? ".gz" : "");
+        MediaType contentType = gzip ? GZIP : (exportFormat == ChatExportService.Format.CSV ? CSV : NDJSON);
+
+        StreamingResponseBody body = outputStream -> chatExportService.export(userId, exportFormat, gzip, outputStream);
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename).build().toString())
+                .body(body);
+    }
+}
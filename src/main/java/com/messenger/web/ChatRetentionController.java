@@ -0,0 +1,127 @@
+package com.messenger.web;
+
+import com.messenger.domain.RetentionPolicy;
+import com.messenger.dto.DefaultResponse;
+import com.messenger.dto.chat.BulkDeleteResponse;
+import com.messenger.dto.chat.RetentionPolicyRequest;
+import com.messenger.exception.ErrorCode;
+import com.messenger.exception.MyException;
+import com.messenger.service.ChatRetentionService;
+import com.messenger.validator.MemberValidator;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.*;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+@Slf4j
+@RestController
+public class ChatRetentionController {
+
+    private final ChatRetentionService chatRetentionService;
+
+    public ChatRetentionController(ChatRetentionService chatRetentionService) {
+        this.chatRetentionService = chatRetentionService;
+    }
+
+    @DeleteMapping("/api/v1/chat/personal_chat/{oppositeUserId}")
+    @Operation(summary = "1:1 채팅방의 메시지 일괄 삭제",
+            description = "1:1 채팅방에서 자신이 전송한 모든 메시지를 삭제한다",
+            security = {@SecurityRequirement(name = "authorization")})
+    @Parameter(name = "oppositeUserId", description = "상대방 사용자 id", required = true)
+    public BulkDeleteResponse deletePersonalChatByGroup(@PathVariable String oppositeUserId) {
+
+        if (MemberValidator.validateId(oppositeUserId)) {
+            log.error("ChatRetention deletePersonalChatByGroup validation error: id = {}", oppositeUserId);
+            throw new MyException(ErrorCode.VALIDATION_FAIL);
+        }
+
+        return new BulkDeleteResponse(chatRetentionService.deletePersonalChatByGroup(oppositeUserId));
+    }
+
+    @DeleteMapping("/api/v1/chat")
+    @Operation(summary = "기준 시각 이전의 1:1 메시지 일괄 삭제",
+            description = "자신이 전송한 1:1 메시지 중 기준 시각 이전의 메시지를 모두 삭제한다",
+            security = {@SecurityRequirement(name = "authorization")})
+    @Parameter(name = "before", description = "기준 시각 (ISO-8601, 예: 2023-01-01T00:00:00)", required = true)
+    public BulkDeleteResponse deletePersonalChatBefore(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime before) {
+
+        return new BulkDeleteResponse(chatRetentionService.deletePersonalChatBefore(Timestamp.valueOf(before)));
+    }
+
+    @DeleteMapping("/api/v1/groupchat/rooms/{roomId}/chats")
+    @Operation(summary = "그룹 채팅방의 메시지 일괄 삭제",
+            description = "그룹 채팅방에서 자신이 전송한 모든 메시지를 삭제한다",
+            security = {@SecurityRequirement(name = "authorization")})
+    @Parameter(name = "roomId", description = "그룹 채팅방 id", required = true)
+    public BulkDeleteResponse deleteGroupChatByRoom(@PathVariable Long roomId) {
+
+        return new BulkDeleteResponse(chatRetentionService.deleteGroupChatByRoom(roomId));
+    }
+
+    @DeleteMapping("/api/v1/groupchat")
+    @Operation(summary = "기준 시각 이전의 그룹 메시지 일괄 삭제",
+            description = "자신이 전송한 그룹 메시지 중 기준 시각 이전의 메시지를 모두 삭제한다",
+            security = {@SecurityRequirement(name = "authorization")})
+    @Parameter(name = "before", description = "기준 시각 (ISO-8601, 예: 2023-01-01T00:00:00)", required = true)
+    public BulkDeleteResponse deleteGroupChatBefore(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime before) {
+
+        return new BulkDeleteResponse(chatRetentionService.deleteGroupChatBefore(Timestamp.valueOf(before)));
+    }
+
+    @PutMapping("/api/v1/chat/personal_chat/{oppositeUserId}/retention")
+    @Operation(summary = "1:1 채팅방의 메시지 보관 정책 설정",
+            description = "보관 기간이 지난 메시지는 백그라운드 작업이 자동으로 삭제한다",
+            security = {@SecurityRequirement(name = "authorization")})
+    @Parameter(name = "oppositeUserId", description = "상대방 사용자 id", required = true)
+    public RetentionPolicy setPersonalPolicy(@PathVariable String oppositeUserId,
+                                             @RequestBody RetentionPolicyRequest request) {
+
+        if (MemberValidator.validateId(oppositeUserId)) {
+            log.error("ChatRetention setPersonalPolicy validation error: id = {}", oppositeUserId);
+            throw new MyException(ErrorCode.VALIDATION_FAIL);
+        }
+
+        return chatRetentionService.setPersonalPolicy(oppositeUserId, request.getRetentionDays());
+    }
+
+    @DeleteMapping("/api/v1/chat/personal_chat/{oppositeUserId}/retention")
+    @Operation(summary = "1:1 채팅방의 메시지 보관 정책 삭제", security = {@SecurityRequirement(name = "authorization")})
+    @Parameter(name = "oppositeUserId", description = "상대방 사용자 id", required = true)
+    public DefaultResponse removePersonalPolicy(@PathVariable String oppositeUserId) {
+
+        if (MemberValidator.validateId(oppositeUserId)) {
+            log.error("ChatRetention removePersonalPolicy validation error: id = {}", oppositeUserId);
+            throw new MyException(ErrorCode.VALIDATION_FAIL);
+        }
+
+        chatRetentionService.removePersonalPolicy(oppositeUserId);
+        return DefaultResponse.ofSuccess();
+    }
+
+    @PutMapping("/api/v1/groupchat/rooms/{roomId}/retention")
+    @Operation(summary = "그룹 채팅방의 메시지 보관 정책 설정",
+            description = "보관 기간이 지난 메시지는 백그라운드 작업이 자동으로 삭제한다",
+            security = {@SecurityRequirement(name = "authorization")})
+    @Parameter(name = "roomId", description = "그룹 채팅방 id", required = true)
+    public RetentionPolicy setGroupPolicy(@PathVariable Long roomId,
+                                          @RequestBody RetentionPolicyRequest request) {
+
+        return chatRetentionService.setGroupPolicy(roomId, request.getRetentionDays());
+    }
+
+    @DeleteMapping("/api/v1/groupchat/rooms/{roomId}/retention")
+    @Operation(summary = "그룹 채팅방의 메시지 보관 정책 삭제", security = {@SecurityRequirement(name = "authorization")})
+    @Parameter(name = "roomId", description = "그룹 채팅방 id", required = true)
+    public DefaultResponse removeGroupPolicy(@PathVariable Long roomId) {
+
+        chatRetentionService.removeGroupPolicy(roomId);
+        return DefaultResponse.ofSuccess();
+    }
+}
@@ -0,0 +1,49 @@
+package com.messenger.web;
+
+import com.messenger.dto.DefaultResponse;
+import com.messenger.dto.search.ChatSearchResponse;
+import com.messenger.service.ChatSearchService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@Slf4j
+@RestController
+public class ChatSearchController {
+
+    private final ChatSearchService chatSearchService;
+
+    public ChatSearchController(ChatSearchService chatSearchService) {
+        this.chatSearchService = chatSearchService;
+    }
+
+    @GetMapping("/api/v1/search")
+    @Operation(summary = "메시지 검색",
+            description = "자신이 볼 수 있는 1:1, 그룹 메시지의 내용을 검색한다 (관련도순)",
+            security = {@SecurityRequirement(name = "authorization")})
+    @Parameter(name = "q", description = "검색어", required = true)
+    @Parameter(name = "cursor", description = "이전 검색 결과의 다음 페이지 커서")
+    @Parameter(name = "size", description = "조회할 메시지 개수")
+    public ChatSearchResponse search(@RequestParam String q,
+                                     @RequestParam(required = false) String cursor,
+                                     @RequestParam(required = false, defaultValue = "20") Integer size) {
+
+        return chatSearchService.search(q, cursor, size);
+    }
+
+    @PostMapping("/api/v1/search/rebuild")
+    @Operation(summary = "(개발자용) 검색 색인 재생성",
+            description = "DB 의 모든 메시지로 검색 색인을 다시 만든다. 별도 thread 에서 실행하고 바로 202 를 반환한다 (이미 재생성 중이면 409)",
+            security = {@SecurityRequirement(name = "authorization")})
+    public ResponseEntity<DefaultResponse> rebuild() {
+
+        if (!chatSearchService.startRebuild()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(DefaultResponse.of(HttpStatus.CONFLICT, "already rebuilding"));
+        }
+        return ResponseEntity.accepted().body(DefaultResponse.of(HttpStatus.ACCEPTED, "rebuild started"));
+    }
+}
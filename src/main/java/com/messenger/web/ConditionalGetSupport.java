@@ -0,0 +1,59 @@
+package com.messenger.web;
+
+import com.messenger.service.ConversationVersionTracker;
+import com.messenger.util.SpringSecurityUtil;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 대화 버전으로 ETag, Last-Modified 를 만들어 조건부 GET(If-None-Match, If-Modified-Since)을 처리
+ * ETag 는 대화 버전, 요청한 사용자, query string(nextId, size), Accept 헤더를 합쳐 만든다
+ */
+@Component
+public class ConditionalGetSupport {
+
+    private final ConversationVersionTracker conversationVersionTracker;
+
+    public ConditionalGetSupport(ConversationVersionTracker conversationVersionTracker) {
+        this.conversationVersionTracker = conversationVersionTracker;
+    }
+
+    public boolean checkNotModified(ServletWebRequest webRequest, String key) {
+        return checkNotModified(webRequest, List.of(key));
+    }
+
+    /**
+     * @param webRequest 요청
+     * @param keys 응답 내용이 의존하는 대화 key 목록 (ConversationKey)
+     * @return 변경된 것이 없으면 true (304 응답 헤더가 설정되므로 컨트롤러는 바로 null 을 반환)
+     */
+    public boolean checkNotModified(ServletWebRequest webRequest, Collection<String> keys) {
+        HttpServletRequest request = webRequest.getRequest();
+
+        StringBuilder source = new StringBuilder();
+        long lastModified = -1;
+        for (String key : keys) {
+            source.append(key).append('=').append(conversationVersionTracker.version(key)).append(';');
+            lastModified = Math.max(lastModified, conversationVersionTracker.lastModified(key));
+        }
+        source.append(SpringSecurityUtil.getAuthenticationName()).append(';')
+                .append(request.getQueryString()).append(';')
+                .append(request.getHeader(HttpHeaders.ACCEPT));
+        String etag = "W/\"" + DigestUtils.md5DigestAsHex(source.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+
+        // 저장은 허용하되 매번 재검증하도록 (Spring Security 의 기본 no-store 대신)
+        HttpServletResponse response = webRequest.getResponse();
+        if (response != null) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+        }
+        return webRequest.checkNotModified(etag, lastModified);
+    }
+}
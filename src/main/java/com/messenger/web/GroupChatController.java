@@ -5,11 +5,13 @@ import com.messenger.dto.DefaultResponse;
 import com.messenger.dto.chat.MakeNewGroupRequest;
 import com.messenger.dto.chat.SendGroupChatRequest;
 import com.messenger.dto.chat.GroupChatRoomResponse;
+import com.messenger.dto.chat.SeqRangeResponse;
 import com.messenger.dto.pagination.PaginationRequest;
 import com.messenger.dto.pagination.PaginationResponse;
 import com.messenger.exception.ErrorCode;
 import com.messenger.exception.MyException;
 import com.messenger.service.GroupChatService;
+import com.messenger.util.ConversationKey;
 import com.messenger.validator.GroupChatValidator;
 import com.messenger.validator.MemberValidator;
 import io.swagger.v3.oas.annotations.Operation;
@@ -19,24 +21,32 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.WebDataBinder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import java.util.List;
+import java.util.stream.Collectors;
 
 @Slf4j
 @RestController
 public class GroupChatController {
 
+    private static final int MAX_POLL_SIZE = 100;
+    private static final int MAX_SEQ_RANGE = 500;
+
     private final GroupChatService groupChatService;
     private final GroupChatValidator groupChatValidator;
+    private final ConditionalGetSupport conditionalGetSupport;
 
     @InitBinder
     public void init(WebDataBinder webDataBinder) {
         webDataBinder.addValidators(groupChatValidator);
     }
 
-    public GroupChatController(GroupChatService groupChatService, GroupChatValidator groupChatValidator) {
+    public GroupChatController(GroupChatService groupChatService, GroupChatValidator groupChatValidator, ConditionalGetSupport conditionalGetSupport) {
         this.groupChatService = groupChatService;
         this.groupChatValidator = groupChatValidator;
+        this.conditionalGetSupport = conditionalGetSupport;
     }
 
     @GetMapping("/api/v1/groupchat/{chatId}")
@@ -50,7 +60,9 @@ public class GroupChatController {
     }
 
     @PostMapping("/api/v1/groupchat")
-    @Operation(summary = "그룹 메시지 전송", security = {@SecurityRequirement(name = "authorization")})
+    @Operation(summary = "그룹 메시지 전송",
+            description = "clientMessageId 를 함께 보내면 같은 id 로 재전송해도 한 번만 저장하고 처음 저장한 메시지를 반환한다",
+            security = {@SecurityRequirement(name = "authorization")})
     public GroupChat sendGroupChat(@RequestBody SendGroupChatRequest request,
                                    BindingResult bindingResult) {
 
@@ -82,6 +94,26 @@ public class GroupChatController {
         return PaginationResponse.of(list);
     }
 
+    @GetMapping("/api/v1/groupchat/received/poll")
+    @Operation(summary = "새로 수신한 그룹 메시지를 기다려서 조회 (long polling)",
+            description = "afterId 이후에 받은 메시지가 있으면 바로, 없으면 새 메시지를 받거나 timeoutMs 가 지날 때까지 기다렸다가 " +
+                    "오래된 순으로 응답한다. 응답의 nextId 를 다음 요청의 afterId 로 사용하고, 시간이 지나 빈 목록(nextId = -1)이면 afterId 를 그대로 사용한다",
+            security = {@SecurityRequirement(name = "authorization")})
+    @Parameter(name = "afterId", description = "마지막으로 받은 메시지 id", required = true)
+    @Parameter(name = "size", description = "조회할 메시지 개수")
+    @Parameter(name = "timeoutMs", description = "최대 대기 시간 (ms)")
+    public DeferredResult<PaginationResponse<GroupChat>> pollReceivedGroupChat(
+            @RequestParam long afterId,
+            @RequestParam(required = false, defaultValue = "20") Integer size,
+            @RequestParam(required = false, defaultValue = "30000") Long timeoutMs) {
+
+        if (size < 1 || size > MAX_POLL_SIZE || timeoutMs < 1) {
+            throw new MyException(ErrorCode.VALIDATION_FAIL);
+        }
+
+        return groupChatService.pollReceivedGroupChat(afterId, size, timeoutMs);
+    }
+
     @GetMapping("/api/v1/groupchat/rooms/{roomId}/enter")
     @Operation(summary = "그룹 채팅방에 입장",
             description = "해당 그룹의 메시지 목록을 최신순으로 가져오고, 가장 최근 수신한 메시지를 읽음 표시한다",
@@ -102,12 +134,41 @@ public class GroupChatController {
     @Parameter(name = "oppositeUserId", description = "상대방 사용자 id", required = true)
     public PaginationResponse<GroupChat> listPersonalChatByGroup(
             @PathVariable Long roomId,
-            @ModelAttribute PaginationRequest request) {
+            @ModelAttribute PaginationRequest request,
+            ServletWebRequest webRequest) {
+
+        // 변경이 없으면 메시지 테이블을 조회하지 않고 304
+        if (conditionalGetSupport.checkNotModified(webRequest, ConversationKey.group(roomId))) {
+            return null;
+        }
 
         List<GroupChat> chatList = groupChatService.listChatByGroup(roomId, request);
         return PaginationResponse.of(chatList);
     }
 
+    @GetMapping("/api/v1/groupchat/rooms/{roomId}/seq")
+    @Operation(summary = "특정 그룹 채팅방의 메시지를 순번 범위로 조회",
+            description = "채팅방의 메시지에는 1 부터 빈틈없이 증가하는 순번(seq)이 붙는다. " +
+                    "클라이언트는 받은 순번이 건너뛰면 빠진 범위만 이 API 로 다시 받는다. " +
+                    "한 번에 최대 " + MAX_SEQ_RANGE + "개 순번을 순번 순으로 응답하고, 응답의 toSeq + 1 부터 lastSeq 까지 이어서 요청한다. " +
+                    "범위 안에서 빠진 순번은 삭제된 메시지이다",
+            security = {@SecurityRequirement(name = "authorization")})
+    @Parameter(name = "roomId", description = "그룹 채팅방 id", required = true)
+    @Parameter(name = "fromSeq", description = "시작 순번 (1 이상)", required = true)
+    @Parameter(name = "toSeq", description = "끝 순번, 없으면 fromSeq 부터 최대 개수까지")
+    public SeqRangeResponse<GroupChat> listGroupChatBySeq(
+            @PathVariable Long roomId,
+            @RequestParam long fromSeq,
+            @RequestParam(required = false) Long toSeq) {
+
+        if (fromSeq < 1 || (toSeq != null && toSeq < fromSeq)) {
+            throw new MyException(ErrorCode.VALIDATION_FAIL);
+        }
+
+        long maxToSeq = fromSeq + MAX_SEQ_RANGE - 1;
+        return groupChatService.listChatBySeq(roomId, fromSeq, toSeq == null ? maxToSeq : Math.min(toSeq, maxToSeq));
+    }
+
     @GetMapping("/api/v1/groupchat/rooms/{userId}")
     @Operation(summary = "(개발자용) 그룹 채팅방 목록",
             description = "특정 유저가 포함되어 있는 모든 채팅방을 검색한다",
@@ -126,7 +187,15 @@ public class GroupChatController {
     @Operation(summary = "그룹 채팅방 목록",
             description = "자신이 포함되어 있는 모든 채팅방을 검색한다",
             security = {@SecurityRequirement(name = "authorization")})
-    public List<GroupChatRoomResponse> listGroupByUser() {
+    public List<GroupChatRoomResponse> listGroupByUser(ServletWebRequest webRequest) {
+
+        // 자신이 속한 방들의 버전이 모두 그대로면 304
+        List<String> keys = groupChatService.listRoomIdsByUser().stream()
+                .map(ConversationKey::group)
+                .collect(Collectors.toList());
+        if (conditionalGetSupport.checkNotModified(webRequest, keys)) {
+            return null;
+        }
 
         return groupChatService.listGroupByUser();
     }
@@ -5,6 +5,9 @@ import com.messenger.dto.DefaultResponse;
 import com.messenger.dto.member.*;
 import com.messenger.exception.ErrorCode;
 import com.messenger.exception.MyException;
+import com.messenger.jwt.JwtSecurityConfig;
+import com.messenger.ratelimit.LoginRateLimiter;
+import com.messenger.service.MemberSearchService;
 import com.messenger.service.MemberService;
 import com.messenger.util.Pair;
 import com.messenger.validator.MemberValidator;
@@ -17,6 +20,7 @@ import org.springframework.web.bind.WebDataBinder;
 import org.springframework.web.bind.annotation.*;
 
 import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.util.List;
 
@@ -25,22 +29,52 @@ import java.util.List;
 public class MemberController {
 
     private final MemberService memberService;
+    private final MemberSearchService memberSearchService;
     private final MemberValidator memberValidator;
+    private final LoginRateLimiter loginRateLimiter;
 
     @InitBinder
     public void init(WebDataBinder webDataBinder) {
         webDataBinder.addValidators(memberValidator);
     }
 
-    public MemberController(MemberService memberService, MemberValidator memberValidator) {
+    public MemberController(MemberService memberService, MemberSearchService memberSearchService, MemberValidator memberValidator, LoginRateLimiter loginRateLimiter) {
         this.memberService = memberService;
+        this.memberSearchService = memberSearchService;
         this.memberValidator = memberValidator;
+        this.loginRateLimiter = loginRateLimiter;
     }
 
     @GetMapping("/api/v1/members")
-    @Operation(summary = "전체 회원 목록", security = {@SecurityRequirement(name = "authorization")})
-    public List<MemberResponse> members() {
-        return MemberResponse.newList(memberService.listAll());
+    @Operation(summary = "전체 회원 목록",
+            description = "회원 id 순으로 조회한다 (커서 기반 페이지네이션)",
+            security = {@SecurityRequirement(name = "authorization")})
+    @Parameter(name = "nextId", description = "이전 조회한 마지막 회원 id")
+    @Parameter(name = "size", description = "조회할 회원 수")
+    public MemberPageResponse members(@RequestParam(required = false) String nextId,
+                                      @RequestParam(required = false, defaultValue = "100") Integer size) {
+        return MemberPageResponse.of(memberService.list(nextId, size));
+    }
+
+    @GetMapping("/api/v1/members/search")
+    @Operation(summary = "회원 검색",
+            description = "회원 id 또는 이름의 접두어(prefix)나 부분 문자열(infix)로 검색한다",
+            security = {@SecurityRequirement(name = "authorization")})
+    @Parameter(name = "q", description = "검색어", required = true)
+    @Parameter(name = "mode", description = "prefix 또는 infix")
+    @Parameter(name = "nextId", description = "이전 조회한 마지막 회원 id")
+    @Parameter(name = "size", description = "조회할 회원 수")
+    public MemberPageResponse search(@RequestParam String q,
+                                     @RequestParam(required = false, defaultValue = "prefix") String mode,
+                                     @RequestParam(required = false) String nextId,
+                                     @RequestParam(required = false, defaultValue = "20") Integer size) {
+
+        if (!"prefix".equals(mode) && !"infix".equals(mode)) {
+            log.error("member search validation error: mode = {}", mode);
+            throw new MyException(ErrorCode.VALIDATION_FAIL);
+        }
+
+        return MemberPageResponse.of(memberSearchService.search(q, "infix".equals(mode), nextId, size));
     }
 
     @PostMapping(value = "/api/v1/members")
@@ -103,6 +137,7 @@ public class MemberController {
     @PostMapping(value = "/api/v1/members/login")
     @Operation(summary = "회원 로그인", security = {@SecurityRequirement(name = "authorization")})
     public MemberLoginResponse login(@RequestBody MemberLoginRequest request,
+                                     HttpServletRequest httpServletRequest,
                                      HttpServletResponse response,
                                      BindingResult bindingResult) {
 
@@ -112,21 +147,37 @@ public class MemberController {
             throw new MyException(ErrorCode.VALIDATION_FAIL);
         }
 
-        Pair<MemberLoginResponse, Cookie> pair = memberService.login(request);
+        // 인증 전에 로그인 시도 횟수 제한
+        loginRateLimiter.check(request.getId(), httpServletRequest.getRemoteAddr());
+
+        Pair<MemberLoginResponse, List<Cookie>> pair = memberService.login(request);
         MemberLoginResponse memberResponse = pair.getFirst();
 
-        Cookie cookie = pair.getSecond();
-        response.addCookie(cookie);
+        pair.getSecond().forEach(response::addCookie);
 
         return memberResponse;
     }
 
+    @PostMapping(value = "/api/v1/members/refresh")
+    @Operation(summary = "토큰 재발급",
+            description = "refresh token (쿠키 또는 body) 으로 access token 과 refresh token 을 다시 발급한다, 사용한 refresh token 은 폐기된다")
+    public MemberLoginResponse refresh(@RequestBody(required = false) MemberRefreshRequest request,
+                                       @CookieValue(value = JwtSecurityConfig.REFRESH_COOKIE, required = false) String refreshCookie,
+                                       HttpServletResponse response) {
+
+        String refreshToken = (request != null && request.getRefreshToken() != null) ? request.getRefreshToken() : refreshCookie;
+
+        Pair<MemberLoginResponse, List<Cookie>> pair = memberService.refresh(refreshToken);
+        pair.getSecond().forEach(response::addCookie);
+
+        return pair.getFirst();
+    }
+
     @PostMapping(value = "/api/v1/members/logout")
     @Operation(summary = "회원 로그아웃", security = {@SecurityRequirement(name = "authorization")})
     public DefaultResponse logout(HttpServletResponse response) {
 
-        Cookie cookie = memberService.logout();
-        response.addCookie(cookie);
+        memberService.logout().forEach(response::addCookie);
 
         return DefaultResponse.ofSuccess();
     }
@@ -4,11 +4,14 @@ import com.messenger.domain.Chat;
 import com.messenger.dto.DefaultResponse;
 import com.messenger.dto.chat.SendPersonalChatRequest;
 import com.messenger.dto.chat.PersonalChatRoomResponse;
+import com.messenger.dto.chat.SeqRangeResponse;
 import com.messenger.dto.pagination.PaginationRequest;
 import com.messenger.dto.pagination.PaginationResponse;
 import com.messenger.exception.ErrorCode;
 import com.messenger.exception.MyException;
 import com.messenger.service.PersonalChatService;
+import com.messenger.util.ConversationKey;
+import com.messenger.util.SpringSecurityUtil;
 import com.messenger.validator.MemberValidator;
 import com.messenger.validator.PersonalChatValidator;
 import io.swagger.v3.oas.annotations.Operation;
@@ -18,6 +21,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.WebDataBinder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import java.util.List;
 
@@ -25,17 +30,22 @@ import java.util.List;
 @RestController
 public class PersonalChatController {
 
+    private static final int MAX_POLL_SIZE = 100;
+    private static final int MAX_SEQ_RANGE = 500;
+
     private final PersonalChatService chatService;
     private final PersonalChatValidator personalChatValidator;
+    private final ConditionalGetSupport conditionalGetSupport;
 
     @InitBinder
     public void init(WebDataBinder webDataBinder) {
         webDataBinder.addValidators(personalChatValidator);
     }
 
-    public PersonalChatController(PersonalChatService chatService, PersonalChatValidator personalChatValidator) {
+    public PersonalChatController(PersonalChatService chatService, PersonalChatValidator personalChatValidator, ConditionalGetSupport conditionalGetSupport) {
         this.chatService = chatService;
         this.personalChatValidator = personalChatValidator;
+        this.conditionalGetSupport = conditionalGetSupport;
     }
 
     @GetMapping("/api/v1/chat/{chatId}")
@@ -49,7 +59,9 @@ public class PersonalChatController {
     }
 
     @PostMapping("/api/v1/chat")
-    @Operation(summary = "1:1 메시지 전송", security = {@SecurityRequirement(name = "authorization")})
+    @Operation(summary = "1:1 메시지 전송",
+            description = "clientMessageId 를 함께 보내면 같은 id 로 재전송해도 한 번만 저장하고 처음 저장한 메시지를 반환한다",
+            security = {@SecurityRequirement(name = "authorization")})
     public Chat sendPersonalChat(@RequestBody SendPersonalChatRequest request,
                                  BindingResult bindingResult) {
 
@@ -101,6 +113,26 @@ public class PersonalChatController {
         return PaginationResponse.of(list);
     }
 
+    @GetMapping("/api/v1/chat/received/poll")
+    @Operation(summary = "새로 수신한 1:1 메시지를 기다려서 조회 (long polling)",
+            description = "afterId 이후에 받은 메시지가 있으면 바로, 없으면 새 메시지를 받거나 timeoutMs 가 지날 때까지 기다렸다가 " +
+                    "오래된 순으로 응답한다. 응답의 nextId 를 다음 요청의 afterId 로 사용하고, 시간이 지나 빈 목록(nextId = -1)이면 afterId 를 그대로 사용한다",
+            security = {@SecurityRequirement(name = "authorization")})
+    @Parameter(name = "afterId", description = "마지막으로 받은 메시지 id", required = true)
+    @Parameter(name = "size", description = "조회할 메시지 개수")
+    @Parameter(name = "timeoutMs", description = "최대 대기 시간 (ms)")
+    public DeferredResult<PaginationResponse<Chat>> pollReceivedPersonalChat(
+            @RequestParam long afterId,
+            @RequestParam(required = false, defaultValue = "20") Integer size,
+            @RequestParam(required = false, defaultValue = "30000") Long timeoutMs) {
+
+        if (size < 1 || size > MAX_POLL_SIZE || timeoutMs < 1) {
+            throw new MyException(ErrorCode.VALIDATION_FAIL);
+        }
+
+        return chatService.pollReceivedPersonalChat(afterId, size, timeoutMs);
+    }
+
     @GetMapping("/api/v1/chat/personal_chat/{oppositeUserId}/enter")
     @Operation(summary = "1:1 채팅방에 입장",
             description = "해당 그룹의 메시지 목록을 최신순으로 가져오고, 가장 최근 수신한 메시지를 읽음 표시한다",
@@ -121,22 +153,56 @@ public class PersonalChatController {
 
     @GetMapping("/api/v1/chat/personal_chat/{oppositeUserId}")
     @Operation(summary = "특정 1:1 채팅방의 메시지 목록",
-            description = "자신과 상대방의 사용자 id를 기준으로 최신순으로 검색한다",
+            description = "자신과 상대방의 사용자 id를 기준으로 최신순으로 검색한다, " +
+                    "If-None-Match(ETag) 또는 If-Modified-Since 가 최신이면 304 를 반환한다",
             security = {@SecurityRequirement(name = "authorization")})
     @Parameter(name = "oppositeUserId", description = "상대방 사용자 id", required = true)
     public PaginationResponse<Chat> listPersonalChatByGroup(
             @PathVariable String oppositeUserId,
-            @ModelAttribute PaginationRequest request) {
+            @ModelAttribute PaginationRequest request,
+            ServletWebRequest webRequest) {
 
         if (!MemberValidator.validateId(oppositeUserId)) {
             log.error("PersonalChat listPersonalChatByGroup validation error: id = {}", oppositeUserId);
             throw new MyException(ErrorCode.VALIDATION_FAIL);
         }
 
+        String userId = SpringSecurityUtil.getAuthenticationName();
+        if (conditionalGetSupport.checkNotModified(webRequest, ConversationKey.personal(userId, oppositeUserId))) {
+            return null;
+        }
+
         List<Chat> chatList = chatService.listPersonalChatByGroup(oppositeUserId, request);
         return PaginationResponse.of(chatList);
     }
 
+    @GetMapping("/api/v1/chat/personal_chat/{oppositeUserId}/seq")
+    @Operation(summary = "특정 1:1 채팅방의 메시지를 순번 범위로 조회",
+            description = "채팅방의 메시지에는 1 부터 빈틈없이 증가하는 순번(seq)이 붙는다. " +
+                    "클라이언트는 받은 순번이 건너뛰면 빠진 범위만 이 API 로 다시 받는다. " +
+                    "한 번에 최대 " + MAX_SEQ_RANGE + "개 순번을 순번 순으로 응답하고, 응답의 toSeq + 1 부터 lastSeq 까지 이어서 요청한다. " +
+                    "범위 안에서 빠진 순번은 삭제된 메시지이다",
+            security = {@SecurityRequirement(name = "authorization")})
+    @Parameter(name = "oppositeUserId", description = "상대방 사용자 id", required = true)
+    @Parameter(name = "fromSeq", description = "시작 순번 (1 이상)", required = true)
+    @Parameter(name = "toSeq", description = "끝 순번, 없으면 fromSeq 부터 최대 개수까지")
+    public SeqRangeResponse<Chat> listPersonalChatBySeq(
+            @PathVariable String oppositeUserId,
+            @RequestParam long fromSeq,
+            @RequestParam(required = false) Long toSeq) {
+
+        if (!MemberValidator.validateId(oppositeUserId)) {
+            log.error("PersonalChat listPersonalChatBySeq validation error: id = {}", oppositeUserId);
+            throw new MyException(ErrorCode.VALIDATION_FAIL);
+        }
+        if (fromSeq < 1 || (toSeq != null && toSeq < fromSeq)) {
+            throw new MyException(ErrorCode.VALIDATION_FAIL);
+        }
+
+        long maxToSeq = fromSeq + MAX_SEQ_RANGE - 1;
+        return chatService.listPersonalChatBySeq(oppositeUserId, fromSeq, toSeq == null ? maxToSeq : Math.min(toSeq, maxToSeq));
+    }
+
     @GetMapping("/api/v1/chat/room/{userId}")
     @Operation(summary = "(개발자용) 1:1 채팅방 목록",
             description = "특정 유저가 포함되어 있는 모든 채팅방을 검색한다",
@@ -154,9 +220,14 @@ public class PersonalChatController {
 
     @GetMapping("/api/v1/chat/room")
     @Operation(summary = "1:1 채팅방 목록",
-            description = "자신이 포함되어 있는 모든 채팅방을 검색한다",
+            description = "자신이 포함되어 있는 모든 채팅방을 검색한다, 변경이 없으면 304 를 반환한다",
             security = {@SecurityRequirement(name = "authorization")})
-    public List<PersonalChatRoomResponse> listGroupByUser() {
+    public List<PersonalChatRoomResponse> listGroupByUser(ServletWebRequest webRequest) {
+
+        String userId = SpringSecurityUtil.getAuthenticationName();
+        if (conditionalGetSupport.checkNotModified(webRequest, ConversationKey.personalRooms(userId))) {
+            return null;
+        }
 
         return chatService.listGroupByUser();
     }
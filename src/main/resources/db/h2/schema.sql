@@ -0,0 +1,287 @@
+-- embedded 프로필(H2, MySQL 호환 모드)용 스키마
+-- sql/DDL.sql 과 같은 테이블, 인덱스 (H2 가 지원하지 않는 압축 테이블 옵션만 제외)
+-- sql/DDL.sql 을 변경하면 이 파일도 함께 변경해야 한다
+
+
+-- ##################### 함수 #####################
+-- sql/Function.sql 의 FUNC_CONCAT_ID
+CREATE ALIAS IF NOT EXISTS FUNC_CONCAT_ID DETERMINISTIC FOR "com.messenger.util.H2Functions.concatId";
+
+-- ##################### 유저 #####################
+CREATE TABLE IF NOT EXISTS member (
+    id VARCHAR(30) NOT NULL UNIQUE,
+    pw VARCHAR(150) NOT NULL,
+    display_name VARCHAR(30) NOT NULL,
+    status_message VARCHAR(100),
+    join_time DATETIME DEFAULT CURRENT_TIMESTAMP,
+    role VARCHAR(30) NOT NULL DEFAULT 'USER',
+    PRIMARY KEY(id)
+);
+
+
+-- ##################### 1:1 채팅 #####################
+CREATE TABLE IF NOT EXISTS personal_chat (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    sender_user_id VARCHAR(30) NOT NULL,
+    receiver_user_id VARCHAR(30) NOT NULL,
+    group_id VARCHAR(61) NOT NULL,
+    content VARCHAR(5000) NOT NULL DEFAULT '',
+    content_codec TINYINT NOT NULL DEFAULT 0,
+    content_dict_id INT,
+    content_z VARBINARY(20480),
+    read_at DATETIME,
+    created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
+    deleted_at DATETIME,
+    client_message_id VARCHAR(64),
+    seq BIGINT,
+    blob_id CHAR(64),
+    PRIMARY KEY(id)
+);
+
+CREATE TABLE IF NOT EXISTS personal_chat_backup (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    sender_user_id VARCHAR(30) NOT NULL,
+    receiver_user_id VARCHAR(30) NOT NULL,
+    group_id VARCHAR(61) NOT NULL,
+    content VARCHAR(5000) NOT NULL DEFAULT '',
+    content_codec TINYINT NOT NULL DEFAULT 0,
+    content_dict_id INT,
+    content_z VARBINARY(20480),
+    read_at DATETIME,
+    created_at DATETIME,
+    deleted_at DATETIME DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY(id)
+);
+
+
+-- ##################### 그룹 채팅 #####################
+-- inbox_fanout : 1 이면 메시지를 보낼 때 참여자별 group_chat_inbox 에 추가 (참여자가 적은 채팅방)
+CREATE TABLE IF NOT EXISTS group_room (
+    id BIGINT NOT NULL UNIQUE AUTO_INCREMENT,
+    inbox_fanout TINYINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS group_room_members (
+    room_id BIGINT      NOT NULL,
+    user_id VARCHAR(30) NOT NULL,
+    PRIMARY KEY (room_id, user_id),
+    FOREIGN KEY (room_id) REFERENCES group_room(id),
+    FOREIGN KEY (user_id) REFERENCES member(id)
+);
+
+CREATE TABLE IF NOT EXISTS group_chat (
+    id             BIGINT        NOT NULL UNIQUE AUTO_INCREMENT,
+    sender_user_id VARCHAR(30)   NOT NULL,
+    room_id        BIGINT        NOT NULL,
+    content        VARCHAR(5000) NOT NULL DEFAULT '',
+    content_codec  TINYINT       NOT NULL DEFAULT 0,
+    content_dict_id INT,
+    content_z      VARBINARY(20480),
+    created_at     DATETIME               DEFAULT CURRENT_TIMESTAMP,
+    deleted_at     DATETIME,
+    client_message_id VARCHAR(64),
+    seq            BIGINT,
+    blob_id        CHAR(64),
+    PRIMARY KEY (id),
+    FOREIGN KEY (sender_user_id) REFERENCES member(id),
+    FOREIGN KEY (room_id) REFERENCES group_room(id)
+);
+
+CREATE TABLE IF NOT EXISTS group_chat_read_time (
+    chat_id BIGINT      NOT NULL,
+    user_id VARCHAR(30) NOT NULL,
+    read_at DATETIME    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (chat_id, user_id),
+    FOREIGN KEY (chat_id) REFERENCES group_chat(id),
+    FOREIGN KEY (user_id) REFERENCES member(id)
+);
+
+-- 사용자별 그룹 메시지 목록 (fan-out-on-write), 받은 메시지 조회를 (user_id, chat_id) 범위 하나로 처리
+CREATE TABLE IF NOT EXISTS group_chat_inbox (
+    user_id VARCHAR(30) NOT NULL,
+    chat_id BIGINT      NOT NULL,
+    PRIMARY KEY (user_id, chat_id)
+);
+
+CREATE TABLE IF NOT EXISTS group_chat_backup (
+    id             BIGINT        NOT NULL UNIQUE AUTO_INCREMENT,
+    sender_user_id VARCHAR(30)   NOT NULL,
+    target_room_id BIGINT        NOT NULL,
+    content        VARCHAR(5000) NOT NULL DEFAULT '',
+    content_codec  TINYINT       NOT NULL DEFAULT 0,
+    content_dict_id INT,
+    content_z      VARBINARY(20480),
+    created_at     DATETIME,
+    deleted_at     DATETIME               DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id)
+);
+
+
+-- ##################### 보관 정책 #####################
+-- room_key : 1:1 채팅이면 group_id, 그룹 채팅이면 room_id
+CREATE TABLE IF NOT EXISTS chat_retention_policy (
+    room_type      VARCHAR(10) NOT NULL,
+    room_key       VARCHAR(61) NOT NULL,
+    retention_days INT         NOT NULL,
+    updated_at     DATETIME             DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (room_type, room_key)
+);
+
+
+-- ##################### 대화별 순번 #####################
+-- 대화(1:1 채팅방, 그룹 채팅방)마다 메시지에 1 부터 빈틈없이 붙이는 순번(seq) 의 마지막 값
+-- 메시지를 저장하는 트랜잭션 안에서 이 행만 잠그고 증가시키므로 다른 대화의 전송과 경쟁하지 않는다
+-- room_key : 1:1 채팅이면 group_id, 그룹 채팅이면 room_id
+CREATE TABLE IF NOT EXISTS conversation_sequence (
+    room_type VARCHAR(10) NOT NULL,
+    room_key  VARCHAR(61) NOT NULL,
+    last_seq  BIGINT      NOT NULL,
+    PRIMARY KEY (room_type, room_key)
+);
+
+
+-- ##################### 메시지 본문 압축 #####################
+-- 메시지 테이블(hot, backup, archive)의 content_codec 이 0 이면 content 에 본문을 그대로,
+-- 1 이면 content_z 에 zstd 로 압축한 본문을 저장한다 (content 는 빈 문자열)
+-- content_dict_id 는 압축할 때 사용한 dictionary (NULL 이면 dictionary 없이 압축)
+-- dictionary 는 최근 메시지로 학습해서 추가하고, 압축한 메시지가 참조하므로 지우지 않는다
+CREATE TABLE IF NOT EXISTS content_dictionary (
+    id         INT      NOT NULL AUTO_INCREMENT,
+    dict       BLOB     NOT NULL,
+    created_at DATETIME          DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id)
+);
+
+
+-- ##################### 큰 메시지 본문, 첨부 파일 #####################
+-- 내용은 로컬 디스크의 content-addressed 저장소(chat.blob.dir)에 두고 여기에는 정보만 저장한다
+-- 메시지(personal_chat, group_chat)는 blob_id 와 미리보기(content)만 저장해서 메시지 목록 조회가 읽는 페이지를 작게 유지한다
+-- id : 내용의 SHA-256 hex
+-- created_at : 같은 내용을 다시 올리면 갱신, 메시지가 참조하지 않고 chat.blob.cleanup.grace-minutes 가 지나면 정리한다
+CREATE TABLE IF NOT EXISTS chat_blob (
+    id           CHAR(64)     NOT NULL,
+    size         BIGINT       NOT NULL,
+    content_type VARCHAR(100) NOT NULL,
+    created_at   DATETIME              DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id)
+);
+
+-- 파일을 올린 사용자, 메시지를 보내기 전에도 올린 사용자는 다운로드하고 첨부할 수 있다
+CREATE TABLE IF NOT EXISTS chat_blob_uploader (
+    blob_id CHAR(64)    NOT NULL,
+    user_id VARCHAR(30) NOT NULL,
+    PRIMARY KEY (blob_id, user_id)
+);
+
+
+-- ##################### 아카이브 (cold) #####################
+-- 일정 기간이 지난 메시지는 아카이브 배치 작업이 압축 테이블로 옮긴다
+-- (group_chat 은 FK 가 있어서 MySQL 파티셔닝을 사용할 수 없으므로 hot/cold 테이블로 분리)
+CREATE TABLE IF NOT EXISTS personal_chat_archive (
+    id BIGINT NOT NULL,
+    sender_user_id VARCHAR(30) NOT NULL,
+    receiver_user_id VARCHAR(30) NOT NULL,
+    group_id VARCHAR(61) NOT NULL,
+    content VARCHAR(5000) NOT NULL DEFAULT '',
+    content_codec TINYINT NOT NULL DEFAULT 0,
+    content_dict_id INT,
+    content_z VARBINARY(20480),
+    read_at DATETIME,
+    created_at DATETIME,
+    archived_at DATETIME DEFAULT CURRENT_TIMESTAMP,
+    seq BIGINT,
+    blob_id CHAR(64),
+    PRIMARY KEY(id)
+);
+
+CREATE TABLE IF NOT EXISTS group_chat_archive (
+    id             BIGINT        NOT NULL,
+    sender_user_id VARCHAR(30)   NOT NULL,
+    room_id        BIGINT        NOT NULL,
+    content        VARCHAR(5000) NOT NULL DEFAULT '',
+    content_codec  TINYINT       NOT NULL DEFAULT 0,
+    content_dict_id INT,
+    content_z      VARBINARY(20480),
+    created_at     DATETIME,
+    archived_at    DATETIME               DEFAULT CURRENT_TIMESTAMP,
+    seq            BIGINT,
+    blob_id        CHAR(64),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS group_chat_read_time_archive (
+    chat_id BIGINT      NOT NULL,
+    user_id VARCHAR(30) NOT NULL,
+    read_at DATETIME    NOT NULL,
+    PRIMARY KEY (chat_id, user_id)
+);
+
+
+-- ##################### 서버 간 이벤트 (outbox) #####################
+-- chat.event-bus.type=outbox 일 때 사용, 서버마다 처리한 마지막 id 를 chat_event_consumer 에 기록(ack)
+CREATE TABLE IF NOT EXISTS chat_event_outbox (
+    id         BIGINT      NOT NULL AUTO_INCREMENT,
+    node_id    VARCHAR(64) NOT NULL,
+    payload    TEXT        NOT NULL,
+    created_at DATETIME             DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS chat_event_consumer (
+    node_id  VARCHAR(64) NOT NULL,
+    last_id  BIGINT      NOT NULL,
+    acked_at DATETIME             DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (node_id)
+);
+
+
+-- ##################### 토큰 폐기 #####################
+-- 폐기한 토큰 id(jti) 와 family id, 서버를 다시 시작해도 폐기 상태를 유지하기 위해 저장 (expires_at: epoch ms)
+CREATE TABLE IF NOT EXISTS token_revocation (
+    id         VARCHAR(64) NOT NULL,
+    expires_at BIGINT      NOT NULL,
+    PRIMARY KEY (id)
+);
+
+
+-- ##################### Index #####################
+CREATE INDEX IF NOT EXISTS idx_member_display_name ON member (display_name);
+
+CREATE INDEX IF NOT EXISTS idx_group_id ON personal_chat (group_id, id);
+CREATE INDEX IF NOT EXISTS idx_receiver_id ON personal_chat (receiver_user_id, id);
+CREATE INDEX IF NOT EXISTS idx_sender_id ON personal_chat (sender_user_id, id);
+CREATE INDEX IF NOT EXISTS idx_receiver_sender_id ON personal_chat (receiver_user_id, sender_user_id, id);
+
+-- 삭제 표시된 메시지를 찾는 정리 작업용
+CREATE INDEX IF NOT EXISTS idx_deleted_at ON personal_chat (deleted_at);
+CREATE INDEX IF NOT EXISTS idx_group_chat_deleted_at ON group_chat (deleted_at);
+
+-- 재전송된 메시지를 한 번만 저장 (client_message_id 가 NULL 인 메시지는 중복 검사하지 않음)
+CREATE UNIQUE INDEX IF NOT EXISTS uk_personal_chat_client_message_id ON personal_chat (sender_user_id, client_message_id);
+CREATE UNIQUE INDEX IF NOT EXISTS uk_group_chat_client_message_id ON group_chat (sender_user_id, client_message_id);
+
+-- 대화별 순번으로 범위 조회 (seq 가 NULL 인 예전 메시지는 제외)
+CREATE UNIQUE INDEX IF NOT EXISTS uk_personal_chat_seq ON personal_chat (group_id, seq);
+CREATE UNIQUE INDEX IF NOT EXISTS uk_group_chat_seq ON group_chat (room_id, seq);
+
+-- 삭제, 아카이브한 메시지를 inbox 에서 제거할 때 사용
+CREATE INDEX IF NOT EXISTS idx_group_chat_inbox_chat_id ON group_chat_inbox (chat_id);
+
+CREATE INDEX IF NOT EXISTS idx_archive_group_id ON personal_chat_archive (group_id, id);
+CREATE INDEX IF NOT EXISTS idx_archive_room_id ON group_chat_archive (room_id, id);
+CREATE INDEX IF NOT EXISTS idx_archive_group_seq ON personal_chat_archive (group_id, seq);
+CREATE INDEX IF NOT EXISTS idx_archive_room_seq ON group_chat_archive (room_id, seq);
+
+-- 사용자별 내보내기(export)용
+CREATE INDEX IF NOT EXISTS idx_archive_sender_id ON personal_chat_archive (sender_user_id, id);
+CREATE INDEX IF NOT EXISTS idx_archive_receiver_id ON personal_chat_archive (receiver_user_id, id);
+
+-- blob 다운로드 권한 확인, 참조하지 않는 blob 정리용
+CREATE INDEX IF NOT EXISTS idx_personal_chat_blob_id ON personal_chat (blob_id);
+CREATE INDEX IF NOT EXISTS idx_group_chat_blob_id ON group_chat (blob_id);
+CREATE INDEX IF NOT EXISTS idx_archive_personal_blob_id ON personal_chat_archive (blob_id);
+CREATE INDEX IF NOT EXISTS idx_archive_group_blob_id ON group_chat_archive (blob_id);
+
+-- 만료된 폐기 항목 정리용
+CREATE INDEX IF NOT EXISTS idx_token_revocation_expires_at ON token_revocation (expires_at);
@@ -0,0 +1,58 @@
+package com.messenger;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.messenger.domain.Chat;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.mock.http.MockHttpOutputMessage;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurationSupport;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WebMvcConfigTest {
+
+    private static final MediaType CBOR = MediaType.valueOf("application/cbor");
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void cborResponseOmitsNullFields() throws Exception {
+        List<HttpMessageConverter<?>> converters = new DefaultConverters().get();
+        new WebMvcConfig().extendMessageConverters(converters);
+
+        // Spring MVC 처럼 Accept 에 맞는 첫 번째 converter 를 사용
+        HttpMessageConverter<Object> converter = (HttpMessageConverter<Object>) converters.stream()
+                .filter(c -> c.canWrite(Chat.class, CBOR))
+                .findFirst()
+                .orElseThrow();
+
+        Chat chat = Chat.builder()
+                .id(1L)
+                .senderUserId("alice")
+                .receiverUserId("bob")
+                .content("hello")
+                .created_at(new Timestamp(1_700_000_000_000L))
+                .build();
+        MockHttpOutputMessage output = new MockHttpOutputMessage();
+        converter.write(chat, CBOR, output);
+
+        JsonNode node = new CBORMapper().readTree(output.getBodyAsBytes());
+        assertThat(node.has("read_at")).isFalse();
+        assertThat(node.get("created_at").isNumber()).isTrue();
+        assertThat(node.get("content").asText()).isEqualTo("hello");
+    }
+
+    private static class DefaultConverters extends WebMvcConfigurationSupport {
+
+        List<HttpMessageConverter<?>> get() {
+            List<HttpMessageConverter<?>> converters = new ArrayList<>();
+            addDefaultHttpMessageConverters(converters);
+            return converters;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.messenger.blob;
+
+import com.messenger.exception.ErrorCode;
+import com.messenger.exception.MyException;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ByteRangeTest {
+
+    @Test
+    void parsesSingleRanges() {
+        assertThat(ByteRange.parse("bytes=0-99", 1000)).isEqualTo(new ByteRange(0, 99));
+        assertThat(ByteRange.parse("bytes=900-", 1000)).isEqualTo(new ByteRange(900, 999));
+        assertThat(ByteRange.parse("bytes=-100", 1000)).isEqualTo(new ByteRange(900, 999));
+        // 파일 크기를 넘는 끝 위치, suffix 는 파일 크기로 줄인다
+        assertThat(ByteRange.parse("bytes=990-2000", 1000)).isEqualTo(new ByteRange(990, 999));
+        assertThat(ByteRange.parse("bytes=-5000", 1000)).isEqualTo(new ByteRange(0, 999));
+        assertThat(ByteRange.parse("bytes=10-19", 1000).length()).isEqualTo(10);
+    }
+
+    @Test
+    void unsupportedOrInvalidHeaderMeansWholeFile() {
+        assertThat(ByteRange.parse(null, 1000)).isNull();
+        assertThat(ByteRange.parse("items=0-1", 1000)).isNull();
+        assertThat(ByteRange.parse("bytes=0-1,5-6", 1000)).isNull();
+        assertThat(ByteRange.parse("bytes=abc", 1000)).isNull();
+        assertThat(ByteRange.parse("bytes=-", 1000)).isNull();
+        assertThat(ByteRange.parse("bytes=9-5", 1000)).isNull();
+    }
+
+    @Test
+    void rangeOutsideFileIsNotSatisfiable() {
+        assertThatThrownBy(() -> ByteRange.parse("bytes=1000-", 1000))
+                .isInstanceOfSatisfying(MyException.class, e -> assertThat(e.errorCode).isEqualTo(ErrorCode.RANGE_NOT_SATISFIABLE));
+        assertThatThrownBy(() -> ByteRange.parse("bytes=-0", 1000))
+                .isInstanceOf(MyException.class);
+        assertThatThrownBy(() -> ByteRange.parse("bytes=-10", 0))
+                .isInstanceOf(MyException.class);
+    }
+}
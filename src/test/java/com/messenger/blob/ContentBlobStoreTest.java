@@ -0,0 +1,68 @@
+package com.messenger.blob;
+
+import com.messenger.exception.ErrorCode;
+import com.messenger.exception.MyException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ContentBlobStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void sameContentIsStoredOnce() throws Exception {
+        ContentBlobStore store = new ContentBlobStore(dir.toString(), 1024 * 1024, new SimpleMeterRegistry());
+        byte[] content = new byte[200_000];
+        new Random(1).nextBytes(content);
+
+        StoredBlob first = store.put(new ByteArrayInputStream(content));
+        StoredBlob second = store.put(content);
+
+        assertThat(second).isEqualTo(first);
+        assertThat(first.getSize()).isEqualTo(content.length);
+        assertThat(ContentBlobStore.isValidId(first.getId())).isTrue();
+        Path path = store.find(first.getId()).orElseThrow();
+        assertThat(Files.readAllBytes(path)).isEqualTo(content);
+        assertThat(dir.resolve("tmp")).isEmptyDirectory();
+    }
+
+    @Test
+    void idIsSha256OfContent() throws Exception {
+        ContentBlobStore store = new ContentBlobStore(dir.toString(), 1024, new SimpleMeterRegistry());
+
+        StoredBlob blob = store.put("abc".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(blob.getId()).isEqualTo("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad");
+    }
+
+    @Test
+    void tooLargeContentIsRejectedWithoutLeavingFiles() throws Exception {
+        ContentBlobStore store = new ContentBlobStore(dir.toString(), 100, new SimpleMeterRegistry());
+
+        assertThatThrownBy(() -> store.put(new byte[101]))
+                .isInstanceOfSatisfying(MyException.class, e -> assertThat(e.errorCode).isEqualTo(ErrorCode.BLOB_TOO_LARGE));
+        assertThat(dir.resolve("tmp")).isEmptyDirectory();
+        try (var files = Files.list(dir)) {
+            assertThat(files).containsExactly(dir.resolve("tmp"));
+        }
+    }
+
+    @Test
+    void invalidIdIsNotResolved() throws Exception {
+        ContentBlobStore store = new ContentBlobStore(dir.toString(), 100, new SimpleMeterRegistry());
+
+        assertThat(store.find("../../etc/passwd")).isEmpty();
+        assertThat(store.find("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad")).isEmpty();
+    }
+}
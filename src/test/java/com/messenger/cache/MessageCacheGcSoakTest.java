@@ -0,0 +1,185 @@
+package com.messenger.cache;
+
+import com.messenger.domain.Chat;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.sql.Timestamp;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 메시지 캐시를 heap(LinkedHashMap 의 Chat 객체)과 heap 밖(OffHeapMessageCache)에 둘 때의 GC 시간, heap 사용량 비교
+ * working set 만큼 채운 뒤 임의의 id 를 조회하고, 없으면 새 Chat 을 만들어 넣는다 (DB 조회 대신)
+ *
+ * 기본 빌드에서 제외된다
+ *   ./gradlew test -Psoak --tests '*MessageCacheGcSoakTest' -Dsoak.messages=1000000 -Dsoak.ops=5000000
+ * heap 캐시가 working set 을 모두 담을 수 있게 -Xmx 를 충분히 주고, -XX:MaxDirectMemorySize 는 max-bytes 보다 크게 준다
+ */
+@Tag("soak")
+class MessageCacheGcSoakTest {
+
+    @Test
+    void gcPressureOnHeapVersusOffHeap() {
+        int messages = Integer.getInteger("soak.messages", 1_000_000);
+        int ops = Integer.getInteger("soak.ops", 5_000_000);
+        long maxBytes = Long.getLong("soak.max-bytes", 512L << 20);
+
+        Result onHeap = run("on-heap", messages, ops, new OnHeapCache(messages));
+        Result offHeap = run("off-heap", messages, ops, new OffHeapCache(new OffHeapMessageCache(maxBytes, 1 << 20, 16)));
+
+        System.out.printf("message cache (%d messages, %d ops): %s / %s%n", messages, ops, onHeap, offHeap);
+        assertThat(offHeap.heapUsedBytes).isLessThan(onHeap.heapUsedBytes);
+    }
+
+    private static Result run(String name, int messages, int ops, Cache cache) {
+        Random random = new Random(42);
+        for (long id = 1; id <= messages; id++) {
+            cache.put(chat(id, random));
+        }
+        long gcCount = gcCount();
+        long gcMillis = gcMillis();
+        long startedAt = System.nanoTime();
+        long hits = 0;
+        for (int i = 0; i < ops; i++) {
+            long id = 1 + random.nextInt(messages);
+            Chat chat = cache.get(id);
+            if (chat != null) {
+                hits++;
+            } else {
+                cache.put(chat(id, random));
+            }
+        }
+        long elapsedMillis = (System.nanoTime() - startedAt) / 1_000_000;
+        Result result = new Result(name, gcCount() - gcCount, gcMillis() - gcMillis, elapsedMillis, heapUsedAfterGc(), hits);
+        // 다음 측정 전까지 cache 가 살아 있어야 heap 사용량에 포함된다
+        assertThat(cache.size()).isPositive();
+        return result;
+    }
+
+    private static Chat chat(long id, Random random) {
+        char[] content = new char[20 + random.nextInt(120)];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (char) ('가' + random.nextInt(2000));
+        }
+        return Chat.builder()
+                .id(id)
+                .senderUserId("user" + random.nextInt(10000))
+                .receiverUserId("user" + random.nextInt(10000))
+                .groupId("group" + random.nextInt(10000))
+                .content(new String(content))
+                .created_at(new Timestamp(System.currentTimeMillis()))
+                .seq(id)
+                .build();
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, bean.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, bean.getCollectionTime());
+        }
+        return millis;
+    }
+
+    private static long heapUsedAfterGc() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private interface Cache {
+        Chat get(long id);
+
+        void put(Chat chat);
+
+        long size();
+    }
+
+    private static final class OnHeapCache implements Cache {
+        private final Map<Long, Chat> map;
+
+        private OnHeapCache(int capacity) {
+            this.map = new LinkedHashMap<>(capacity * 2, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Chat> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        @Override
+        public Chat get(long id) {
+            return map.get(id);
+        }
+
+        @Override
+        public void put(Chat chat) {
+            map.put(chat.getId(), chat);
+        }
+
+        @Override
+        public long size() {
+            return map.size();
+        }
+    }
+
+    private static final class OffHeapCache implements Cache {
+        private final OffHeapMessageCache cache;
+
+        private OffHeapCache(OffHeapMessageCache cache) {
+            this.cache = cache;
+        }
+
+        @Override
+        public Chat get(long id) {
+            byte[] bytes = cache.get(id);
+            return bytes == null ? null : CachedMessageSerializer.deserializeChat(bytes);
+        }
+
+        @Override
+        public void put(Chat chat) {
+            cache.put(chat.getId(), CachedMessageSerializer.serialize(chat), cache.stamp());
+        }
+
+        @Override
+        public long size() {
+            return cache.size();
+        }
+    }
+
+    private static final class Result {
+        private final String name;
+        private final long gcCount;
+        private final long gcMillis;
+        private final long elapsedMillis;
+        private final long heapUsedBytes;
+        private final long hits;
+
+        private Result(String name, long gcCount, long gcMillis, long elapsedMillis, long heapUsedBytes, long hits) {
+            this.name = name;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+            this.elapsedMillis = elapsedMillis;
+            this.heapUsedBytes = heapUsedBytes;
+            this.hits = hits;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s gc=%d (%dms) elapsed=%dms heap-after-gc=%dMB hits=%d",
+                    name, gcCount, gcMillis, elapsedMillis, heapUsedBytes >> 20, hits);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.messenger.cache;
+
+import com.messenger.domain.Chat;
+import com.messenger.domain.GroupChat;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OffHeapMessageCacheTest {
+
+    @Test
+    void putAndGet() {
+        OffHeapMessageCache cache = new OffHeapMessageCache(1 << 20, 64 * 1024, 4);
+        byte[] value = {1, 2, 3};
+
+        assertThat(cache.put(10, value, cache.stamp())).isTrue();
+
+        assertThat(cache.get(10)).containsExactly(1, 2, 3);
+        assertThat(cache.get(11)).isNull();
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.allocatedBytes()).isEqualTo(64 * 1024);
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedWhenFull() {
+        // shard 1 개, slab 1 개 = 128 byte slot 32 개
+        OffHeapMessageCache cache = new OffHeapMessageCache(4096, 4096, 1);
+        for (long key = 1; key <= 32; key++) {
+            assertThat(cache.put(key, new byte[100], cache.stamp())).isTrue();
+        }
+        // 1 을 읽으면 가장 오래된 값은 2 가 된다
+        assertThat(cache.get(1)).isNotNull();
+
+        assertThat(cache.put(33, new byte[100], cache.stamp())).isTrue();
+
+        assertThat(cache.get(2)).isNull();
+        assertThat(cache.get(1)).isNotNull();
+        assertThat(cache.get(33)).isNotNull();
+        assertThat(cache.size()).isEqualTo(32);
+        assertThat(cache.evictions()).isEqualTo(1);
+        assertThat(cache.allocatedBytes()).isEqualTo(4096);
+    }
+
+    @Test
+    void doesNotStoreWithoutSpaceOrTooLarge() {
+        OffHeapMessageCache cache = new OffHeapMessageCache(4096, 4096, 1);
+        assertThat(cache.put(1, new byte[100], cache.stamp())).isTrue();
+
+        // 128 byte class 가 예산을 모두 사용해서 다른 class 는 slab 을 할당할 수 없다
+        assertThat(cache.put(2, new byte[1000], cache.stamp())).isFalse();
+        assertThat(cache.put(3, new byte[OffHeapMessageCache.MAX_VALUE_SIZE + 1], cache.stamp())).isFalse();
+        assertThat(cache.get(2)).isNull();
+        assertThat(cache.get(3)).isNull();
+    }
+
+    @Test
+    void invalidateRejectsStaleLoad() {
+        OffHeapMessageCache cache = new OffHeapMessageCache(1 << 20, 64 * 1024, 4);
+        cache.put(1, new byte[]{1}, cache.stamp());
+
+        // DB 조회 중에 삭제된 경우
+        long stamp = cache.stamp();
+        cache.invalidate(1);
+        assertThat(cache.get(1)).isNull();
+        assertThat(cache.put(1, new byte[]{1}, stamp)).isFalse();
+
+        assertThat(cache.put(1, new byte[]{2}, cache.stamp())).isTrue();
+        assertThat(cache.get(1)).containsExactly(2);
+    }
+
+    @Test
+    void replaceMovesValueToAnotherSizeClass() {
+        OffHeapMessageCache cache = new OffHeapMessageCache(1 << 20, 64 * 1024, 1);
+        cache.put(1, new byte[10], cache.stamp());
+        cache.put(1, new byte[3000], cache.stamp());
+
+        assertThat(cache.get(1)).hasSize(3000);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void indexStaysConsistentAfterManyPutsAndRemoves() {
+        OffHeapMessageCache cache = new OffHeapMessageCache(64L << 20, 64 * 1024, 2);
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 50_000; i++) {
+            long key = 1 + random.nextInt(5000);
+            if (random.nextInt(3) == 0) {
+                cache.invalidate(key);
+                expected.remove(key);
+            } else {
+                int value = random.nextInt();
+                cache.put(key, ByteBuffer.allocate(4).putInt(value).array(), cache.stamp());
+                expected.put(key, value);
+            }
+        }
+
+        assertThat(cache.size()).isEqualTo(expected.size());
+        for (long key = 1; key <= 5000; key++) {
+            byte[] value = cache.get(key);
+            if (expected.containsKey(key)) {
+                assertThat(ByteBuffer.wrap(value).getInt()).isEqualTo(expected.get(key));
+            } else {
+                assertThat(value).isNull();
+            }
+        }
+    }
+
+    @Test
+    void serializerRoundTrip() {
+        Timestamp createdAt = Timestamp.valueOf("2023-03-01 12:34:56.123456");
+        Chat chat = Chat.builder()
+                .id(5)
+                .senderUserId("alice")
+                .receiverUserId("bob")
+                .groupId("alice_bob")
+                .content("안녕하세요")
+                .created_at(createdAt)
+                .seq(3L)
+                .build();
+
+        Chat restored = CachedMessageSerializer.deserializeChat(CachedMessageSerializer.serialize(chat));
+
+        assertThat(restored).usingRecursiveComparison().isEqualTo(chat);
+        assertThat(restored.getRead_at()).isNull();
+        assertThat(restored.getCreated_at()).isEqualTo(createdAt);
+
+        GroupChat groupChat = GroupChat.builder()
+                .id(6)
+                .senderUserId("alice")
+                .roomId(9L)
+                .content("hi")
+                .created_at(createdAt)
+                .blobId("abc")
+                .build();
+
+        GroupChat restoredGroup = CachedMessageSerializer.deserializeGroupChat(CachedMessageSerializer.serialize(groupChat));
+
+        assertThat(restoredGroup).usingRecursiveComparison().isEqualTo(groupChat);
+        assertThat(restoredGroup.getSeq()).isNull();
+    }
+}
@@ -0,0 +1,124 @@
+package com.messenger.codec;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 메시지 본문 압축으로 줄어드는 저장 크기와 메시지 하나당 압축/해제 CPU 시간
+ * dictionary 없이 압축한 경우와 최근 메시지로 학습한 dictionary 로 압축한 경우를 비교한다
+ *
+ * 기본 빌드에서 제외된다
+ *   ./gradlew test -Psoak --tests '*ContentCodecSoakTest' -Dsoak.messages=50000 -Dsoak.min-bytes=64 -Dsoak.rounds=5
+ * 메시지는 짧은 대화(대부분)와 긴 공지(일부)를 섞어서 만든다, 실제 대화로 측정하려면 운영 DB 의 메트릭
+ * (chat.content_codec.raw_bytes, stored_bytes, compress, decompress)을 본다
+ */
+@Tag("soak")
+class ContentCodecSoakTest {
+
+    private static final String[] WORDS = {
+            "네", "알겠습니다", "오늘", "내일", "회의", "자료", "확인", "부탁드립니다", "감사합니다", "점심", "퇴근",
+            "프로젝트", "일정", "공유", "배포", "수정", "리뷰", "ㅋㅋ", "좋아요", "혹시", "시간", "괜찮으세요", "meeting",
+            "deploy", "PR", "버그", "테스트", "서버", "고객", "문의", "답변", "완료", "진행중", "링크", "보내드릴게요"
+    };
+
+    @Test
+    void compressionRatioAndCpuPerMessage() {
+        int messages = Integer.getInteger("soak.messages", 20000);
+        int minBytes = Integer.getInteger("soak.min-bytes", 64);
+        int rounds = Integer.getInteger("soak.rounds", 3);
+
+        Random random = new Random(42);
+        InMemoryContentDictionaryRepository repository = new InMemoryContentDictionaryRepository();
+        for (int i = 0; i < 20000; i++) {
+            repository.samples.add(EncodedContent.plain(message(random)));
+        }
+        List<String> contents = new ArrayList<>(messages);
+        for (int i = 0; i < messages; i++) {
+            contents.add(message(random));
+        }
+
+        ContentCodec plain = new ContentCodec(repository, true, minBytes, 3, 32768, 20000, 1000, new SimpleMeterRegistry());
+        Result withoutDict = run("zstd", plain, contents, rounds);
+
+        ContentCodec trained = new ContentCodec(repository, true, minBytes, 3, 32768, 20000, 1000, new SimpleMeterRegistry());
+        assertThat(trained.trainDictionary()).isPresent();
+        Result withDict = run("zstd+dict", trained, contents, rounds);
+
+        assertThat(withDict.storedBytes).isLessThanOrEqualTo(withoutDict.storedBytes);
+    }
+
+    private static Result run(String name, ContentCodec codec, List<String> contents, int rounds) {
+        long rawBytes = 0;
+        long storedBytes = 0;
+        int compressed = 0;
+        List<EncodedContent> encoded = new ArrayList<>(contents.size());
+        for (String content : contents) {
+            EncodedContent result = codec.encode(content);
+            encoded.add(result);
+            rawBytes += content.getBytes(StandardCharsets.UTF_8).length;
+            storedBytes += result.isCompressed() ? result.getData().length : result.getText().getBytes(StandardCharsets.UTF_8).length;
+            compressed += result.isCompressed() ? 1 : 0;
+        }
+
+        // 첫 round 는 JIT warm-up 으로 보고 버린다
+        long encodeNanos = 0;
+        long decodeNanos = 0;
+        for (int round = 0; round <= rounds; round++) {
+            long startedAt = System.nanoTime();
+            for (String content : contents) {
+                codec.encode(content);
+            }
+            long encodeElapsed = System.nanoTime() - startedAt;
+
+            startedAt = System.nanoTime();
+            for (EncodedContent content : encoded) {
+                codec.decode(content).get();
+            }
+            long decodeElapsed = System.nanoTime() - startedAt;
+            if (round > 0) {
+                encodeNanos += encodeElapsed;
+                decodeNanos += decodeElapsed;
+            }
+        }
+
+        long samples = (long) contents.size() * Math.max(1, rounds);
+        System.out.printf("%s: %d messages, compressed %d, raw %d bytes -> stored %d bytes (saved %.1f%%), " +
+                        "encode %d ns/msg, decode %d ns/msg%n",
+                name, contents.size(), compressed, rawBytes, storedBytes, 100.0 * (rawBytes - storedBytes) / rawBytes,
+                encodeNanos / samples, decodeNanos / samples);
+
+        for (int i = 0; i < contents.size(); i += 997) {
+            assertThat(codec.decode(encoded.get(i)).get()).isEqualTo(contents.get(i));
+        }
+        return new Result(storedBytes);
+    }
+
+    private static String message(Random random) {
+        // 10% 는 긴 공지, 나머지는 짧은 대화
+        int words = random.nextInt(10) == 0 ? 80 + random.nextInt(200) : 3 + random.nextInt(25);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                builder.append(' ');
+            }
+            builder.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return builder.toString();
+    }
+
+    private static final class Result {
+        private final long storedBytes;
+
+        private Result(long storedBytes) {
+            this.storedBytes = storedBytes;
+        }
+    }
+}
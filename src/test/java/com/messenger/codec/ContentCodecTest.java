@@ -0,0 +1,133 @@
+package com.messenger.codec;
+
+import com.messenger.domain.Chat;
+import com.messenger.exception.ErrorCode;
+import com.messenger.exception.MyException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ContentCodecTest {
+
+    private final InMemoryContentDictionaryRepository repository = new InMemoryContentDictionaryRepository();
+
+    @Test
+    void shortContentIsStoredPlain() {
+        EncodedContent encoded = codec(true).encode("안녕하세요");
+
+        assertThat(encoded.isCompressed()).isFalse();
+        assertThat(encoded.getText()).isEqualTo("안녕하세요");
+        assertThat(encoded.getData()).isNull();
+    }
+
+    @Test
+    void longContentIsCompressedAndDecodedLazily() {
+        ContentCodec codec = codec(true);
+        String content = "오늘 회의는 3시에 2층 회의실에서 진행합니다. ".repeat(40);
+
+        EncodedContent encoded = codec.encode(content);
+        assertThat(encoded.isCompressed()).isTrue();
+        assertThat(encoded.getText()).isEmpty();
+        assertThat(encoded.getDictId()).isNull();
+        assertThat(encoded.getData().length).isLessThan(content.length());
+
+        MessageContent decoded = codec.decode(encoded);
+        assertThat(decoded.isDecoded()).isFalse();
+        assertThat(decoded.get()).isEqualTo(content);
+        assertThat(decoded.isDecoded()).isTrue();
+    }
+
+    @Test
+    void lazyContentEqualsDecodedValueAndToStringDoesNotDecode() {
+        ContentCodec codec = codec(true);
+        String content = "오늘 회의는 3시에 2층 회의실에서 진행합니다. ".repeat(40);
+
+        MessageContent lazy = codec.decode(codec.encode(content));
+        Chat compressed = Chat.builder().id(1L).lazyContent(lazy).build();
+        assertThat(compressed.toString()).doesNotContain("회의");
+        assertThat(lazy.isDecoded()).isFalse();
+
+        Chat plain = Chat.builder().id(1L).content(content).build();
+        assertThat(compressed).isEqualTo(plain);
+        assertThat(compressed.hashCode()).isEqualTo(plain.hashCode());
+        assertThat(compressed).isNotEqualTo(Chat.builder().id(1L).content("다른 내용").build());
+    }
+
+    @Test
+    void incompressibleContentIsStoredPlain() {
+        Random random = new Random(7);
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            content.append((char) ('가' + random.nextInt(11000)));
+        }
+
+        EncodedContent encoded = codec(true).encode(content.toString());
+
+        assertThat(encoded.isCompressed()).isFalse();
+        assertThat(encoded.getText()).isEqualTo(content.toString());
+    }
+
+    @Test
+    void disabledCodecStillDecodesCompressedContent() {
+        String content = "같은 내용을 반복하는 긴 메시지입니다. ".repeat(20);
+        EncodedContent encoded = codec(true).encode(content);
+
+        ContentCodec disabled = codec(false);
+        assertThat(disabled.encode(content).isCompressed()).isFalse();
+        assertThat(disabled.decode(encoded).get()).isEqualTo(content);
+    }
+
+    @Test
+    void trainedDictionaryIsUsedForShortMessages() {
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            repository.samples.add(EncodedContent.plain(message(random)));
+        }
+        ContentCodec codec = codec(true);
+
+        Optional<Integer> dictId = codec.trainDictionary();
+        assertThat(dictId).isPresent();
+
+        String content = message(random);
+        EncodedContent encoded = codec.encode(content);
+        assertThat(encoded.isCompressed()).isTrue();
+        assertThat(encoded.getDictId()).isEqualTo(dictId.get());
+
+        // 다른 서버(새 ContentCodec)는 저장소에서 dictionary 를 읽어서 푼다
+        assertThat(codec(true).decode(encoded).get()).isEqualTo(content);
+    }
+
+    @Test
+    void trainingSkippedWithoutEnoughSamples() {
+        repository.samples.add(EncodedContent.plain("hello"));
+
+        assertThat(codec(true).trainDictionary()).isEmpty();
+        assertThat(repository.dictionaries).isEmpty();
+    }
+
+    @Test
+    void missingDictionaryFailsOnRead() {
+        EncodedContent encoded = EncodedContent.zstd(99, new byte[] {1, 2, 3});
+        MessageContent decoded = codec(true).decode(encoded);
+
+        assertThatThrownBy(decoded::get)
+                .isInstanceOfSatisfying(MyException.class, e -> assertThat(e.errorCode).isEqualTo(ErrorCode.FAIL_DECODE_CHAT));
+    }
+
+    private ContentCodec codec(boolean enabled) {
+        return new ContentCodec(repository, enabled, 64, 3, 4096, 5000, 100, new SimpleMeterRegistry());
+    }
+
+    private static final String[] NAMES = {"민수", "지영", "현우", "서연", "도윤"};
+    private static final String[] PLACES = {"2층 회의실", "강남역 카페", "본사 로비", "온라인 회의"};
+
+    private static String message(Random random) {
+        return NAMES[random.nextInt(NAMES.length)] + "님, 내일 오후 " + (1 + random.nextInt(6)) + "시에 " +
+                PLACES[random.nextInt(PLACES.length)] + "에서 프로젝트 진행 상황 공유 회의가 있습니다. 참석 가능하신가요? (일정 #" + random.nextInt(100000) + ")";
+    }
+}
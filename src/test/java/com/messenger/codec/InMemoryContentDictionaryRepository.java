@@ -0,0 +1,40 @@
+package com.messenger.codec;
+
+import com.messenger.repository.ContentDictionaryRepository;
+import com.messenger.util.Pair;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * DB 없이 ContentCodec 을 테스트하기 위한 dictionary 저장소, 학습 샘플은 samples 에 넣는다
+ */
+class InMemoryContentDictionaryRepository implements ContentDictionaryRepository {
+
+    final List<byte[]> dictionaries = new ArrayList<>();
+    final List<EncodedContent> samples = new ArrayList<>();
+
+    @Override
+    public synchronized int save(byte[] dict) {
+        dictionaries.add(dict);
+        return dictionaries.size();
+    }
+
+    @Override
+    public synchronized Optional<byte[]> findById(int id) {
+        return id >= 1 && id <= dictionaries.size() ? Optional.of(dictionaries.get(id - 1)) : Optional.empty();
+    }
+
+    @Override
+    public synchronized Optional<Pair<Integer, byte[]>> findLatest() {
+        return dictionaries.isEmpty()
+                ? Optional.empty()
+                : Optional.of(new Pair<>(dictionaries.size(), dictionaries.get(dictionaries.size() - 1)));
+    }
+
+    @Override
+    public synchronized List<EncodedContent> sampleRecentContents(int size) {
+        return new ArrayList<>(samples.subList(Math.max(0, samples.size() - size), samples.size()));
+    }
+}
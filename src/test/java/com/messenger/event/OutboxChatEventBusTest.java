@@ -0,0 +1,148 @@
+package com.messenger.event;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.messenger.MessengerTempoApplication;
+import com.messenger.domain.Chat;
+import com.messenger.domain.ChatRoomType;
+import com.messenger.dto.chat.SendPersonalChatRequest;
+import com.messenger.dto.pagination.PaginationResponse;
+import com.messenger.jwt.TokenProvider;
+import com.messenger.jwt.TokenRevocationList;
+import com.messenger.repository.PersonalChatRepository;
+import com.messenger.service.ChatReceiveNotifier;
+import com.messenger.service.ConversationVersionTracker;
+import com.messenger.service.PersonalChatService;
+import com.messenger.util.ConversationKey;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 같은 JVM 에서 서버 두 대를 띄우고 (embedded 프로필의 H2 메모리 DB 를 함께 사용)
+ * 한 서버에서 발행한 이벤트가 outbox 를 통해 다른 서버의 메모리 상태에 반영되는지 확인
+ */
+class OutboxChatEventBusTest {
+
+    private static final List<GrantedAuthority> USER = List.of(new SimpleGrantedAuthority("ROLE_USER"));
+
+    private static ConfigurableApplicationContext nodeA;
+    private static ConfigurableApplicationContext nodeB;
+
+    @BeforeAll
+    static void startNodes() {
+        nodeA = start("node-a");
+        nodeB = start("node-b");
+    }
+
+    @AfterAll
+    static void stopNodes() {
+        if (nodeA != null) {
+            nodeA.close();
+        }
+        if (nodeB != null) {
+            nodeB.close();
+        }
+    }
+
+    private static ConfigurableApplicationContext start(String nodeId) {
+        return new SpringApplicationBuilder(MessengerTempoApplication.class)
+                .profiles("embedded")
+                .properties(
+                        "server.port=0",
+                        "chat.rate-limit.enabled=false",
+                        "chat.event-bus.type=outbox",
+                        "chat.event-bus.node-id=" + nodeId,
+                        "chat.event-bus.flush-interval-ms=20",
+                        "chat.event-bus.poll-interval-ms=50")
+                .run();
+    }
+
+    @Test
+    void messageSentOnOneNodeWakesLongPollAndChangesVersionOnOtherNode() throws Exception {
+        String key = ConversationKey.personal("bussender", "busreceiver");
+        String versionBefore = nodeB.getBean(ConversationVersionTracker.class).version(key);
+
+        // 서버 B 에서 long polling 대기
+        PersonalChatRepository repositoryB = nodeB.getBean(PersonalChatRepository.class);
+        DeferredResult<PaginationResponse<Chat>> result = nodeB.getBean(ChatReceiveNotifier.class)
+                .await(ChatRoomType.PERSONAL, "busreceiver", 0, 30_000,
+                        () -> repositoryB.findByReceiverAfter("busreceiver", 0, 10));
+        Thread.sleep(200);
+        assertThat(result.hasResult()).isFalse();
+
+        // 서버 A 에서 전송
+        send(nodeA, "bussender", "busreceiver", "hello from A");
+
+        await(result::hasResult, 10_000);
+        @SuppressWarnings("unchecked")
+        PaginationResponse<Chat> response = (PaginationResponse<Chat>) result.getResult();
+        assertThat(response.getList()).extracting(Chat::getContent).containsExactly("hello from A");
+        assertThat(nodeB.getBean(ConversationVersionTracker.class).version(key)).isNotEqualTo(versionBefore);
+    }
+
+    @Test
+    void logoutOnOneNodeRevokesTokenOnOtherNode() throws Exception {
+        String family = UUID.randomUUID().toString();
+        String accessToken = nodeA.getBean(TokenProvider.class).createToken("bususer", USER, family).getAccessToken();
+        assertThat(nodeB.getBean(TokenProvider.class).validateToken(accessToken)).isTrue();
+
+        nodeA.getBean(TokenProvider.class).revoke(accessToken);
+
+        TokenRevocationList revocationListB = nodeB.getBean(TokenRevocationList.class);
+        await(() -> revocationListB.isRevoked(family), 10_000);
+        assertThat(nodeB.getBean(TokenProvider.class).validateToken(accessToken)).isFalse();
+    }
+
+    @Test
+    void eventsAreAcknowledgedByBothNodes() throws Exception {
+        for (int i = 0; i < 50; i++) {
+            send(nodeA, "busbatch", "busbatchreceiver", "batch " + i);
+        }
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(nodeA.getBean(DataSource.class));
+        await(() -> {
+            Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM chat_event_outbox", Long.class);
+            List<Map<String, Object>> consumers = jdbcTemplate.queryForList(
+                    "SELECT last_id FROM chat_event_consumer WHERE node_id IN ('node-a', 'node-b')");
+            return maxId != null && consumers.size() == 2
+                    && consumers.stream().allMatch(row -> ((Number) row.get("last_id")).longValue() >= maxId);
+        }, 10_000);
+    }
+
+    private static void send(ConfigurableApplicationContext node, String senderId, String receiverId, String content) throws Exception {
+        ObjectMapper objectMapper = node.getBean(ObjectMapper.class);
+        SendPersonalChatRequest request = objectMapper.readValue(
+                objectMapper.writeValueAsString(Map.of("receiverUserId", receiverId, "content", content)),
+                SendPersonalChatRequest.class);
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(senderId, "", USER));
+        try {
+            node.getBean(PersonalChatService.class).sendPersonalChat(request);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    private static void await(BooleanSupplier condition, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("condition not met in %d ms", timeoutMillis).isLessThan(deadline);
+            Thread.sleep(50);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.messenger.logstore;
+
+import com.messenger.logstore.LogMessageStore.Index;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 프로세스가 죽은 뒤(close 하지 않고) 다시 열었을 때 로그에서 메시지와 색인을 복구하는지 확인
+ */
+class LogMessageStoreRecoveryTest {
+
+    private static final int SEGMENT_SIZE = 64 * 1024;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void reopenWithoutCloseRestoresMessagesAndIndexes() throws IOException {
+        LogMessageStore store = LogMessageStore.open(dir, SEGMENT_SIZE);
+        for (int i = 0; i < 2000; i++) {
+            String sender = i % 2 == 0 ? "alice" : "bob";
+            String receiver = i % 2 == 0 ? "bob" : "alice";
+            store.append("alice,bob", sender, receiver, 0, "message " + i, null, "c" + i);
+        }
+        store.append("alice,carol", "carol", "alice", 0, "hi", null, null);
+        assertThat(store.markDeleted(10, "bob")).isTrue();
+        assertThat(store.markDeleted(11, "bob")).isFalse();
+        assertThat(store.markRead(12)).isTrue();
+        assertThat(store.markReadBy(13, "alice")).isTrue();
+        assertThat(store.markReadBy(13, "carol")).isTrue();
+        assertThat(store.markReadBy(13, "alice")).isFalse();
+        assertThat(store.markReadBy(10, "alice")).isFalse();
+        // 여러 segment 에 걸쳐 저장된다
+        assertThat(dir.toFile().list()).hasSizeGreaterThan(1);
+
+        // close 하지 않고 다시 연다 (프로세스 종료)
+        LogMessageStore recovered = LogMessageStore.open(dir, SEGMENT_SIZE);
+
+        assertThat(recovered.count()).isEqualTo(2001);
+        assertThat(recovered.find(10)).isEmpty();
+        assertThat(recovered.find(11)).get().extracting(MessageRecord::getContent).isEqualTo("message 10");
+        assertThat(recovered.readAt(12)).isNotNull();
+        assertThat(recovered.readBy(13)).containsOnlyKeys("alice", "carol");
+        assertThat(recovered.readAt(13)).isNull();
+        assertThat(recovered.lastSeq("alice,bob")).isEqualTo(2000);
+        assertThat(recovered.partners("alice")).containsExactlyInAnyOrder("bob", "carol");
+        assertThat(recovered.findSeqRange("alice,bob", 9, 11))
+                .extracting(MessageRecord::getSeq)
+                .containsExactly(9L, 11L);
+        assertThat(recovered.findBefore(Index.RECEIVER, "alice", Long.MAX_VALUE, 2, record -> true))
+                .extracting(MessageRecord::getId)
+                .containsExactly(2001L, 2000L);
+        assertThatThrownBy(() -> recovered.append("alice,bob", "alice", "bob", 0, "retry", null, "c0"))
+                .isInstanceOf(DuplicateKeyException.class);
+
+        MessageRecord next = recovered.append("alice,bob", "alice", "bob", 0, "after restart", null, null);
+        assertThat(next.getId()).isEqualTo(2002);
+        assertThat(next.getSeq()).isEqualTo(2001);
+        recovered.close();
+        store.close();
+    }
+
+    @Test
+    void tornRecordAndStaleTailAreDiscarded() throws IOException {
+        List<String> replayed = new ArrayList<>();
+        SegmentedLog log = SegmentedLog.open(dir, SEGMENT_SIZE, (offset, type, payload) -> {});
+        for (int i = 0; i < 3; i++) {
+            log.append((byte) 1, ("record " + i).getBytes(StandardCharsets.UTF_8));
+        }
+        int end = (int) log.size();
+        log.close();
+
+        // 중단된 레코드: 길이는 썼지만 payload 와 CRC 가 맞지 않는다
+        // 그 뒤 200 byte 위치에는 OS 가 먼저 내린 이전 레코드가 남아 있다
+        Path segment = dir.resolve("00000000.log");
+        byte[] stale = "stale".getBytes(StandardCharsets.UTF_8);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(12).putInt(100).putInt(12345).put((byte) 1).put(new byte[] {1, 2, 3}).flip(), end);
+            channel.write(validRecord(stale), end + 200);
+        }
+
+        log = SegmentedLog.open(dir, SEGMENT_SIZE, (offset, type, payload) -> replayed.add(text(payload)));
+        assertThat(replayed).containsExactly("record 0", "record 1", "record 2");
+
+        // 새 레코드가 남아 있던 레코드 바로 앞에서 끝나도 이전 레코드가 살아나지 않는다
+        log.append((byte) 1, new byte[200 - SegmentedLog.HEADER_SIZE]);
+        log.close();
+
+        replayed.clear();
+        log = SegmentedLog.open(dir, SEGMENT_SIZE, (offset, type, payload) -> replayed.add(text(payload)));
+        assertThat(replayed).hasSize(4).doesNotContain("stale");
+        log.close();
+    }
+
+    @Test
+    void messageIdGapFailsOpen() throws IOException {
+        LogMessageStore store = LogMessageStore.open(dir, SEGMENT_SIZE);
+        store.append("alice,bob", "alice", "bob", 0, "first", null, null);
+        store.append("alice,bob", "bob", "alice", 0, "second", null, null);
+        store.close();
+
+        // 첫 메시지 레코드를 그대로 한 번 더 추가한다 (id 1 뒤에 기대하는 id 는 3)
+        List<byte[]> messages = new ArrayList<>();
+        SegmentedLog log = SegmentedLog.open(dir, SEGMENT_SIZE, (offset, type, payload) -> {
+            byte[] bytes = new byte[payload.remaining()];
+            payload.duplicate().get(bytes);
+            messages.add(bytes);
+        });
+        log.append((byte) 1, messages.get(0));
+        log.close();
+
+        assertThatThrownBy(() -> LogMessageStore.open(dir, SEGMENT_SIZE))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("unexpected message id");
+    }
+
+    private static ByteBuffer validRecord(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(1);
+        crc.update(payload);
+        return ByteBuffer.allocate(SegmentedLog.HEADER_SIZE + payload.length)
+                .putInt(payload.length).putInt((int) crc.getValue()).put((byte) 1).put(payload).flip();
+    }
+
+    private static String text(ByteBuffer payload) {
+        byte[] bytes = new byte[payload.remaining()];
+        payload.duplicate().get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,137 @@
+package com.messenger.ratelimit;
+
+import com.messenger.exception.ErrorCode;
+import com.messenger.exception.MyException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 전송 횟수 제한을 통과한 요청만 DB 에 저장된다고 보고,
+ * 여러 스레드가 동시에 메시지를 보내도 저장 횟수가 quota 를 넘지 않는지 확인
+ */
+class ChatSendRateLimiterTest {
+
+    private static final int THREADS = 64;
+
+    // 사용자: burst 20, 초당 5개 / 채팅방: burst 100, 초당 30개
+    private final AtomicLong clock = new AtomicLong();
+    private final ChatSendRateLimiter limiter = new ChatSendRateLimiter(true,
+            20, 5, 1000,
+            100, 30, 1000,
+            16, 4096, new SimpleMeterRegistry(), clock::get);
+
+    @Test
+    void roomFloodStaysWithinRoomBudget() throws Exception {
+        long seconds = 10;
+        AtomicLong saved = new AtomicLong();
+
+        // 64명이 같은 방에 10초 동안 계속 전송
+        runWhileClockAdvances(seconds, thread -> {
+            try {
+                limiter.checkGroup("user-" + thread, 1L);
+                saved.incrementAndGet();
+            } catch (MyException e) {
+                assertThat(e.errorCode).isEqualTo(ErrorCode.CHAT_RATE_LIMITED);
+            }
+        });
+
+        assertThat(saved.get()).isLessThanOrEqualTo(100 + 30 * seconds);
+        assertThat(saved.get()).isGreaterThan(0);
+    }
+
+    @Test
+    void singleUserFloodStaysWithinUserBudget() throws Exception {
+        long seconds = 10;
+        AtomicLong saved = new AtomicLong();
+
+        // 한 사용자가 64개 스레드로 여러 방과 1:1 채팅에 동시에 전송
+        runWhileClockAdvances(seconds, thread -> {
+            try {
+                if (thread % 2 == 0) {
+                    limiter.checkPersonal("spammer");
+                } else {
+                    limiter.checkGroup("spammer", (long) thread);
+                }
+                saved.incrementAndGet();
+            } catch (MyException e) {
+                assertThat(e.errorCode).isEqualTo(ErrorCode.CHAT_RATE_LIMITED);
+            }
+        });
+
+        assertThat(saved.get()).isLessThanOrEqualTo(20 + 5 * seconds);
+    }
+
+    @Test
+    void burstIsAllowedThenRejected() {
+        for (int i = 0; i < 20; i++) {
+            limiter.checkPersonal("user");
+        }
+        assertThatThrownBy(() -> limiter.checkPersonal("user"))
+                .isInstanceOf(MyException.class);
+
+        // 200ms 후 토큰 1개 채워짐
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(200));
+        limiter.checkPersonal("user");
+    }
+
+    @Test
+    void roomRejectionDoesNotSpendUserToken() {
+        for (int i = 0; i < 100; i++) {
+            limiter.checkGroup("user-" + (i % 10), 1L);
+        }
+        assertThatThrownBy(() -> limiter.checkGroup("user", 1L))
+                .isInstanceOf(MyException.class);
+
+        // 채팅방 quota 초과로 거절된 전송은 사용자 quota 에 남아 있다
+        for (int i = 0; i < 20; i++) {
+            limiter.checkGroup("user", 2L);
+        }
+        assertThatThrownBy(() -> limiter.checkGroup("user", 2L))
+                .isInstanceOf(MyException.class);
+    }
+
+    private void runWhileClockAdvances(long seconds, ThreadTask task) throws Exception {
+        long end = TimeUnit.SECONDS.toNanos(seconds);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS + 1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    while (clock.get() < end) {
+                        task.run(thread);
+                    }
+                    return null;
+                }));
+            }
+            futures.add(executor.submit(() -> {
+                while (clock.get() < end) {
+                    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+                    Thread.yield();
+                }
+                return null;
+            }));
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ThreadTask {
+        void run(int thread);
+    }
+}
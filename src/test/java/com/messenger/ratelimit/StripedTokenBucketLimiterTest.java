@@ -0,0 +1,184 @@
+package com.messenger.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StripedTokenBucketLimiterTest {
+
+    private static final int THREADS = 64;
+
+    @Test
+    void singleKeyNeverExceedsCapacity() throws Exception {
+        AtomicLong clock = new AtomicLong();
+        StripedTokenBucketLimiter limiter = new StripedTokenBucketLimiter(
+                100, 100, Duration.ofMinutes(1), 16, 1024, clock::get);
+
+        AtomicInteger allowed = new AtomicInteger();
+        runConcurrently(() -> {
+            for (int i = 0; i < 1000; i++) {
+                if (limiter.tryAcquire("user")) {
+                    allowed.incrementAndGet();
+                }
+            }
+        });
+
+        assertThat(allowed.get()).isEqualTo(100);
+        assertThat(limiter.available("user")).isZero();
+    }
+
+    @Test
+    void manyKeysAreLimitedIndependently() throws Exception {
+        AtomicLong clock = new AtomicLong();
+        int keys = 1000;
+        StripedTokenBucketLimiter limiter = new StripedTokenBucketLimiter(
+                5, 5, Duration.ofMinutes(1), 64, 4096, clock::get);
+
+        AtomicLongArray allowed = new AtomicLongArray(keys);
+        runConcurrently(() -> {
+            for (int round = 0; round < 10; round++) {
+                for (int k = 0; k < keys; k++) {
+                    if (limiter.tryAcquire("key-" + k)) {
+                        allowed.incrementAndGet(k);
+                    }
+                }
+            }
+        });
+
+        for (int k = 0; k < keys; k++) {
+            assertThat(allowed.get(k)).as("key-%d", k).isEqualTo(5);
+        }
+        assertThat(limiter.size()).isEqualTo(keys);
+    }
+
+    @Test
+    void refillIsExactWhileClockAdvancesConcurrently() throws Exception {
+        AtomicLong clock = new AtomicLong();
+        // 1ms 마다 토큰 1개
+        StripedTokenBucketLimiter limiter = new StripedTokenBucketLimiter(
+                10, 1, Duration.ofMillis(1), 16, 1024, clock::get);
+        long ticks = 5000;
+
+        AtomicInteger allowed = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(THREADS - 1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            executor.submit(() -> {
+                for (int i = 0; i < ticks; i++) {
+                    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+                    Thread.yield();
+                }
+                return null;
+            });
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS - 1; t++) {
+                futures.add(executor.submit(() -> {
+                    try {
+                        while (clock.get() < TimeUnit.MILLISECONDS.toNanos(ticks)) {
+                            if (limiter.tryAcquire("user")) {
+                                allowed.incrementAndGet();
+                            }
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                }));
+            }
+            assertThat(done.await(60, TimeUnit.SECONDS)).isTrue();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // 처음 버킷 크기 + 흐른 시간 동안 채워진 토큰 수를 넘지 않는다
+        assertThat(allowed.get() + limiter.available("user")).isLessThanOrEqualTo(10 + ticks);
+    }
+
+    @Test
+    void evictIdleRemovesOnlyFullBuckets() {
+        AtomicLong clock = new AtomicLong();
+        StripedTokenBucketLimiter limiter = new StripedTokenBucketLimiter(
+                2, 2, Duration.ofSeconds(1), 4, 1024, clock::get);
+
+        limiter.tryAcquire("a");
+        limiter.tryAcquire("b");
+        limiter.tryAcquire("b");
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+
+        // a 는 다시 가득 찼고, b 는 아직 1개만 채워졌다
+        assertThat(limiter.evictIdle()).isEqualTo(1);
+        assertThat(limiter.size()).isEqualTo(1);
+        assertThat(limiter.available("b")).isEqualTo(1);
+    }
+
+    @Test
+    void keysPerStripeStayWithinCap() {
+        AtomicLong clock = new AtomicLong();
+        StripedTokenBucketLimiter limiter = new StripedTokenBucketLimiter(
+                2, 2, Duration.ofSeconds(1), 1, 3, clock::get);
+
+        // 버킷이 모두 사용 중이어도 key 수는 상한을 넘지 않는다
+        for (int k = 0; k < 100; k++) {
+            limiter.tryAcquire("key-" + k);
+            limiter.tryAcquire("key-" + k);
+        }
+        assertThat(limiter.size()).isEqualTo(3);
+
+        // 최근에 사용한 key 는 남아 있다
+        limiter.tryAcquire("key-97");
+        limiter.tryAcquire("new");
+        assertThat(limiter.available("key-97")).isZero();
+        assertThat(limiter.available("key-99")).isZero();
+        assertThat(limiter.available("key-98")).isEqualTo(2);
+    }
+
+    @Test
+    void releaseReturnsTokenUpToCapacity() {
+        AtomicLong clock = new AtomicLong();
+        StripedTokenBucketLimiter limiter = new StripedTokenBucketLimiter(
+                2, 2, Duration.ofSeconds(1), 4, 1024, clock::get);
+
+        limiter.tryAcquire("a");
+        limiter.tryAcquire("a");
+        limiter.release("a", 1);
+        assertThat(limiter.available("a")).isEqualTo(1);
+
+        limiter.release("a", 5);
+        assertThat(limiter.available("a")).isEqualTo(2);
+    }
+
+    private static void runConcurrently(Runnable task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run();
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.messenger.repository;
+
+import com.messenger.domain.Chat;
+import com.messenger.exception.MyException;
+import com.messenger.util.Pair;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * embedded 프로필(H2)에서 아카이브 테이블로 옮겨진 메시지의 삭제, 일괄 삭제와 보관 기간 만료용 id 검색
+ */
+@SpringBootTest
+@ActiveProfiles("embedded")
+class ChatArchiveDeleteTest {
+
+    @Autowired
+    private PersonalChatRepository personalChatRepository;
+
+    @Autowired
+    private GroupChatRepository groupChatRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void deletesArchivedPersonalChatIntoBackup() {
+        long chatId = 900_000_001L;
+        jdbcTemplate.update("INSERT INTO personal_chat_archive(id, sender_user_id, receiver_user_id, group_id, content, created_at) " +
+                "VALUES (?, ?, ?, FUNC_CONCAT_ID(?, ?), ?, CURRENT_TIMESTAMP)", chatId, "arcalice", "arcbob", "arcalice", "arcbob", "old");
+        assertThat(personalChatRepository.findById(chatId)).isPresent();
+
+        // 받은 사용자는 삭제할 수 없다
+        assertThatThrownBy(() -> personalChatRepository.deleteOne(chatId, "arcbob")).isInstanceOf(MyException.class);
+
+        personalChatRepository.deleteOne(chatId, "arcalice");
+
+        assertThat(personalChatRepository.findById(chatId)).isEmpty();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM personal_chat_backup WHERE id = ? AND deleted_at IS NOT NULL",
+                Integer.class, chatId)).isEqualTo(1);
+        assertThatThrownBy(() -> personalChatRepository.deleteOne(chatId, "arcalice")).isInstanceOf(MyException.class);
+    }
+
+    @Test
+    void deletesArchivedGroupChatWithReadTimes() {
+        long chatId = 900_000_002L;
+        jdbcTemplate.update("INSERT INTO group_chat_archive(id, sender_user_id, room_id, content, created_at) VALUES (?, ?, ?, ?, CURRENT_TIMESTAMP)",
+                chatId, "arcalice", 1L, "old");
+        jdbcTemplate.update("INSERT INTO group_chat_read_time_archive(chat_id, user_id, read_at) VALUES (?, ?, CURRENT_TIMESTAMP)",
+                chatId, "arcbob");
+        assertThat(groupChatRepository.findById(chatId)).isPresent();
+
+        groupChatRepository.deleteOne(chatId, "arcalice");
+
+        assertThat(groupChatRepository.findById(chatId)).isEmpty();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM group_chat_backup WHERE id = ?", Integer.class, chatId)).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM group_chat_read_time_archive WHERE chat_id = ?", Integer.class, chatId)).isZero();
+    }
+
+    @Test
+    void bulkDeleteFindsArchivedAndHotChats() {
+        // 아카이브 배치처럼 먼저 저장한 메시지를 옮긴다 (아카이브의 id 가 hot 테이블의 id 보다 작다)
+        long archivedId = personalChatRepository.save(Chat.builder()
+                .senderUserId("arccarol").receiverUserId("arcdave").content("old").build(), null).getId();
+        jdbcTemplate.update("INSERT INTO personal_chat_archive(id, sender_user_id, receiver_user_id, group_id, content, created_at) " +
+                "SELECT id, sender_user_id, receiver_user_id, group_id, content, created_at FROM personal_chat WHERE id = ?", archivedId);
+        jdbcTemplate.update("DELETE FROM personal_chat WHERE id = ?", archivedId);
+        long hotId = personalChatRepository.save(Chat.builder()
+                .senderUserId("arccarol").receiverUserId("arcdave").content("new").build(), null).getId();
+
+        List<Long> ids = personalChatRepository.findIdsByGroupId("arccarol,arcdave", 0, 10).stream()
+                .map(Pair::getFirst)
+                .collect(Collectors.toList());
+        assertThat(ids).containsExactly(archivedId, hotId);
+        // 페이지가 아카이브에서 끝나면 다음 페이지는 hot 테이블에서 이어진다
+        assertThat(personalChatRepository.findIdsByGroupId("arccarol,arcdave", 0, 1)).hasSize(1);
+        assertThat(personalChatRepository.findIdsByGroupId("arccarol,arcdave", archivedId, 1).get(0).getFirst()).isEqualTo(hotId);
+
+        assertThat(personalChatRepository.deleteByIds(ids)).isEqualTo(2);
+
+        assertThat(personalChatRepository.findById(archivedId)).isEmpty();
+        assertThat(personalChatRepository.findById(hotId)).isEmpty();
+        assertThat(personalChatRepository.findIdsByGroupId("arccarol,arcdave", 0, 10)).isEmpty();
+    }
+}
@@ -0,0 +1,84 @@
+package com.messenger.repository;
+
+import com.messenger.domain.Chat;
+import com.messenger.domain.GroupChat;
+import com.messenger.util.Pair;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * embedded 프로필(H2)에서 아카이브 테이블로 옮겨진 메시지의 읽음 시간 조회, 대화 목록과 읽음 표시
+ */
+@SpringBootTest
+@ActiveProfiles("embedded")
+class ChatArchiveReadTest {
+
+    @Autowired
+    private PersonalChatRepository personalChatRepository;
+
+    @Autowired
+    private GroupChatRepository groupChatRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void readStatusOfArchivedGroupChatComesFromArchive() {
+        long chatId = 900_000_101L;
+        jdbcTemplate.update("INSERT INTO group_chat_archive(id, sender_user_id, room_id, content, created_at) VALUES (?, ?, ?, ?, CURRENT_TIMESTAMP)",
+                chatId, "arcalice", 1L, "old");
+        jdbcTemplate.update("INSERT INTO group_chat_read_time_archive(chat_id, user_id, read_at) VALUES (?, ?, CURRENT_TIMESTAMP)",
+                chatId, "arcbob");
+        jdbcTemplate.update("INSERT INTO group_chat_read_time_archive(chat_id, user_id, read_at) VALUES (?, ?, CURRENT_TIMESTAMP)",
+                chatId, "arccarol");
+
+        assertThat(groupChatRepository.getReadStatusById(chatId)).containsOnlyKeys("arcbob", "arccarol");
+    }
+
+    @Test
+    void personalConversationWithOnlyArchivedChatsStaysListedAndCanBeRead() {
+        long chatId = 900_000_102L;
+        jdbcTemplate.update("INSERT INTO personal_chat_archive(id, sender_user_id, receiver_user_id, group_id, content, created_at) " +
+                "VALUES (?, ?, ?, FUNC_CONCAT_ID(?, ?), ?, CURRENT_TIMESTAMP)", chatId, "arcerin", "arcfrank", "arcerin", "arcfrank", "old");
+
+        assertThat(personalChatRepository.listGroupByUser("arcfrank"))
+                .extracting(Pair::getFirst, Pair::getSecond)
+                .containsExactly(tuple("arcerin", chatId));
+        assertThat(personalChatRepository.listGroupByUser("arcerin"))
+                .extracting(Pair::getFirst, Pair::getSecond)
+                .containsExactly(tuple("arcfrank", chatId));
+        assertThat(personalChatRepository.findLastReceivedByGroup("arcfrank", "arcerin"))
+                .get().extracting(Chat::getId).isEqualTo(chatId);
+
+        assertThat(personalChatRepository.markReadById(chatId)).get().extracting(Chat::getRead_at).isNotNull();
+    }
+
+    @Test
+    void groupRoomWithOnlyArchivedChatsStaysListedAndCanBeRead() {
+        long roomId = 900_000_201L;
+        long chatId = 900_000_103L;
+        for (String userId : new String[] {"arcgina", "archank"}) {
+            jdbcTemplate.update("INSERT INTO member(id, pw, display_name) VALUES (?, ?, ?)", userId, "pw", userId);
+        }
+        jdbcTemplate.update("INSERT INTO group_room(id, inbox_fanout) VALUES (?, 0)", roomId);
+        jdbcTemplate.update("INSERT INTO group_room_members(room_id, user_id) VALUES (?, ?), (?, ?)", roomId, "arcgina", roomId, "archank");
+        jdbcTemplate.update("INSERT INTO group_chat_archive(id, sender_user_id, room_id, content, created_at) VALUES (?, ?, ?, ?, CURRENT_TIMESTAMP)",
+                chatId, "arcgina", roomId, "old");
+
+        assertThat(groupChatRepository.listGroupByUser("archank"))
+                .extracting(Pair::getFirst, Pair::getSecond)
+                .containsExactly(tuple(roomId, chatId));
+        assertThat(groupChatRepository.findLastReceivedByGroup("archank", roomId))
+                .get().extracting(GroupChat::getId).isEqualTo(chatId);
+
+        groupChatRepository.markReadById(chatId, "archank");
+
+        assertThat(groupChatRepository.getReadStatusById(chatId)).containsOnlyKeys("archank");
+    }
+}
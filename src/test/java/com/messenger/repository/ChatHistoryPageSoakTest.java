@@ -0,0 +1,127 @@
+package com.messenger.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.messenger.domain.Chat;
+import com.messenger.dto.chat.SendPersonalChatRequest;
+import com.messenger.service.PersonalChatService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 큰 메시지가 섞인 채팅방의 메시지 목록(findByGroup) 페이지 조회 시간
+ * 같은 메시지를 본문 전체를 행에 저장한 채팅방(inline)과 긴 본문을 blob 으로 저장한 채팅방(off-row)에 넣고 비교한다
+ *
+ * 기본 빌드에서 제외된다
+ *   ./gradlew test -Psoak --tests '*ChatHistoryPageSoakTest' -Dsoak.messages=5000 -Dsoak.large-ratio=0.1 -Dsoak.rounds=20
+ * H2 메모리 DB 이므로 절대값보다 두 채팅방의 차이를 본다 (MySQL 에서는 페이지 읽기 차이가 더 크다)
+ */
+@SpringBootTest(properties = {"chat.rate-limit.enabled=false"})
+@ActiveProfiles("embedded")
+@Tag("soak")
+class ChatHistoryPageSoakTest {
+
+    private static final int PAGE_SIZE = 50;
+
+    @Autowired
+    private PersonalChatService personalChatService;
+
+    @Autowired
+    private PersonalChatRepository personalChatRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void historyPagesWithMixedMessageSizes() throws Exception {
+        int messages = Integer.getInteger("soak.messages", 2000);
+        double largeRatio = Double.parseDouble(System.getProperty("soak.large-ratio", "0.1"));
+        int rounds = Integer.getInteger("soak.rounds", 10);
+
+        Random random = new Random(42);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        for (int i = 0; i < messages; i++) {
+            String content = random.nextDouble() < largeRatio ? text(random, 5000) : text(random, 80);
+            // inline : 이전처럼 본문 전체를 행에 저장
+            jdbcTemplate.update("INSERT INTO personal_chat(sender_user_id, receiver_user_id, content, group_id) " +
+                    "VALUES (?, ?, ?, FUNC_CONCAT_ID(?, ?))", "histinline", "histpeer", content, "histinline", "histpeer");
+            send("histblob", "histpeer", content);
+        }
+
+        long[] inline = measure("histinline", rounds);
+        long[] offRow = measure("histblob", rounds);
+        System.out.printf("history page (size %d, %d messages, large %.0f%%): inline p50=%dus p99=%dus, off-row p50=%dus p99=%dus%n",
+                PAGE_SIZE, messages, largeRatio * 100,
+                percentile(inline, 50), percentile(inline, 99), percentile(offRow, 50), percentile(offRow, 99));
+
+        List<Chat> page = personalChatRepository.findByGroup("histblob", "histpeer", null, PAGE_SIZE);
+        assertThat(page).allSatisfy(chat -> assertThat(chat.getContent().length()).isLessThanOrEqualTo(1000));
+    }
+
+    private long[] measure(String userId, int rounds) {
+        int pages = 0;
+        long[] samples = new long[0];
+        for (int round = 0; round < rounds; round++) {
+            Integer prevId = null;
+            while (true) {
+                long startedAt = System.nanoTime();
+                List<Chat> page = personalChatRepository.findByGroup(userId, "histpeer", prevId, PAGE_SIZE);
+                long elapsed = System.nanoTime() - startedAt;
+                if (page.isEmpty()) {
+                    break;
+                }
+                if (pages == samples.length) {
+                    samples = Arrays.copyOf(samples, Math.max(16, pages * 2));
+                }
+                samples[pages++] = elapsed;
+                prevId = (int) page.get(page.size() - 1).getId();
+            }
+        }
+        long[] result = Arrays.copyOf(samples, pages);
+        Arrays.sort(result);
+        return result;
+    }
+
+    private static long percentile(long[] sorted, int percent) {
+        int index = Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * percent / 100.0) - 1);
+        return sorted[Math.max(0, index)] / 1000;
+    }
+
+    private void send(String senderId, String receiverId, String content) throws Exception {
+        SendPersonalChatRequest request = objectMapper.readValue(
+                objectMapper.writeValueAsString(Map.of("receiverUserId", receiverId, "content", content)),
+                SendPersonalChatRequest.class);
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                senderId, "", List.of(new SimpleGrantedAuthority("ROLE_USER"))));
+        try {
+            personalChatService.sendPersonalChat(request);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    private static String text(Random random, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) ('가' + random.nextInt(2000));
+        }
+        return new String(chars);
+    }
+}
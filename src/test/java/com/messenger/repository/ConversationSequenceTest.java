@@ -0,0 +1,102 @@
+package com.messenger.repository;
+
+import com.messenger.domain.Chat;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * embedded 프로필(H2)에서 대화별 순번이 동시에 저장해도 빈틈없이 붙는지 확인
+ */
+@SpringBootTest
+@ActiveProfiles("embedded")
+class ConversationSequenceTest {
+
+    @Autowired
+    private PersonalChatRepository repository;
+
+    @Test
+    void concurrentSendsGetDenseSeqInIdOrder() throws Exception {
+        int threads = 8;
+        int perThread = 25;
+        // 대화의 순번 행을 먼저 만든 뒤 같은 행을 동시에 증가시킨다
+        repository.save(chat("seqalice", "seqbob", "hello"), null);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                // 양쪽 사용자가 번갈아 보내도 같은 대화의 순번을 사용한다
+                boolean forward = t % 2 == 0;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        repository.save(chat(forward ? "seqalice" : "seqbob", forward ? "seqbob" : "seqalice", "m" + i), null);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        long total = (long) threads * perThread + 1;
+        assertThat(repository.findLastSeq("seqalice", "seqbob")).isEqualTo(total);
+        assertThat(repository.findLastSeq("seqbob", "seqalice")).isEqualTo(total);
+
+        List<Chat> all = repository.findByGroupSeqRange("seqbob", "seqalice", 1, total);
+        assertThat(all).extracting(Chat::getSeq)
+                .containsExactlyElementsOf(LongStream.rangeClosed(1, total).boxed().collect(Collectors.toList()));
+        assertThat(all).isSortedAccordingTo(Comparator.comparingLong(Chat::getId));
+    }
+
+    @Test
+    void failedSaveDoesNotLeaveGap() {
+        Chat first = repository.save(chat("seqdup", "seqother", "first"), "client-1");
+        assertThat(first.getSeq()).isEqualTo(1L);
+
+        assertThatThrownBy(() -> repository.save(chat("seqdup", "seqother", "retry"), "client-1"))
+                .isInstanceOf(DuplicateKeyException.class);
+        assertThat(repository.findLastSeq("seqdup", "seqother")).isEqualTo(1);
+
+        Chat second = repository.save(chat("seqother", "seqdup", "second"), "client-2");
+        assertThat(second.getSeq()).isEqualTo(2L);
+    }
+
+    @Test
+    void deletedMessageLeavesMissingSeqInRange() {
+        Chat first = repository.save(chat("seqdel", "seqpeer", "one"), null);
+        Chat second = repository.save(chat("seqdel", "seqpeer", "two"), null);
+        Chat third = repository.save(chat("seqdel", "seqpeer", "three"), null);
+
+        repository.deleteOne(second.getId(), "seqdel");
+
+        assertThat(repository.findByGroupSeqRange("seqdel", "seqpeer", first.getSeq(), third.getSeq()))
+                .extracting(Chat::getContent)
+                .containsExactly("one", "three");
+    }
+
+    private static Chat chat(String senderUserId, String receiverUserId, String content) {
+        return Chat.builder()
+                .senderUserId(senderUserId)
+                .receiverUserId(receiverUserId)
+                .content(content)
+                .build();
+    }
+}
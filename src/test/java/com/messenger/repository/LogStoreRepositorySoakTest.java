@@ -0,0 +1,163 @@
+package com.messenger.repository;
+
+import com.messenger.MessengerTempoApplication;
+import com.messenger.domain.Chat;
+import com.messenger.domain.GroupChat;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * logstore 저장소와 JDBC 저장소의 메시지 저장 처리량/지연 시간, 대화 첫 페이지 조회 지연 시간 비교
+ *
+ * 기본 빌드에서 제외된다
+ *   ./gradlew test -Psoak --tests '*LogStoreRepositorySoakTest' -Dsoak.messages=20000 -Dsoak.threads=8 -Dsoak.conversations=100
+ * JDBC 는 embedded 프로필(H2 메모리 DB)이므로 MySQL 보다 빠르게 나온다, 운영 비교는 MySQL 로 실행한 값을 본다
+ */
+@Tag("soak")
+class LogStoreRepositorySoakTest {
+
+    private static final int PAGE_SIZE = 50;
+
+    private static ConfigurableApplicationContext context;
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void start() {
+        context = new SpringApplicationBuilder(MessengerTempoApplication.class)
+                .profiles("embedded")
+                .properties("server.port=0", "chat.rate-limit.enabled=false")
+                .run();
+    }
+
+    @AfterAll
+    static void stop() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @Test
+    void personalChat() throws Exception {
+        int messages = Integer.getInteger("soak.messages", 10000);
+        int threads = Integer.getInteger("soak.threads", 4);
+        int conversations = Integer.getInteger("soak.conversations", 100);
+
+        PersonalChatRepository jdbc = context.getBean(JdbcTemplatePersonalChatRepository.class);
+        LogStorePersonalChatRepository logStore = new LogStorePersonalChatRepository(
+                dir.toString(), 64 * 1024 * 1024, new SimpleMeterRegistry());
+        try {
+            for (PersonalChatRepository repository : List.of(jdbc, logStore)) {
+                String name = repository == jdbc ? "jdbc" : "logstore";
+                long[] saves = run(messages, threads, i -> repository.save(Chat.builder()
+                        .senderUserId(name + "-u" + (i % conversations))
+                        .receiverUserId(name + "-peer")
+                        .content("benchmark message " + i)
+                        .build(), null));
+                long[] pages = run(messages / 10, threads, i ->
+                        repository.findByGroup(name + "-u" + (i % conversations), name + "-peer", null, PAGE_SIZE));
+                report("personal " + name, saves, pages, threads);
+                assertThat(repository.findLastSeq(name + "-u0", name + "-peer")).isEqualTo((messages + conversations - 1) / conversations);
+            }
+        } finally {
+            logStore.flush();
+            logStore.destroy();
+        }
+    }
+
+    @Test
+    void groupChat() throws Exception {
+        int messages = Integer.getInteger("soak.messages", 10000);
+        int threads = Integer.getInteger("soak.threads", 4);
+        int conversations = Integer.getInteger("soak.conversations", 100);
+
+        JdbcTemplateGroupChatRepository jdbc = context.getBean(JdbcTemplateGroupChatRepository.class);
+        LogStoreGroupChatRepository logStore = new LogStoreGroupChatRepository(
+                jdbc, dir.toString(), 64 * 1024 * 1024, new SimpleMeterRegistry());
+        try {
+            long[] roomIds = new long[conversations];
+            for (int i = 0; i < conversations; i++) {
+                jdbc.makeNewGroup(List.of("bench-a" + i, "bench-b" + i), false);
+                roomIds[i] = jdbc.findRoomIdsByUser("bench-a" + i).get(0);
+            }
+            for (GroupChatRepository repository : List.of(jdbc, logStore)) {
+                String name = repository == jdbc ? "jdbc" : "logstore";
+                long[] saves = run(messages, threads, i -> repository.save(GroupChat.builder()
+                        .senderUserId("bench-a" + (i % conversations))
+                        .roomId(roomIds[i % conversations])
+                        .content("benchmark message " + i)
+                        .build(), null));
+                long[] pages = run(messages / 10, threads, i ->
+                        repository.findByGroup("bench-a" + (i % conversations), roomIds[i % conversations], null, PAGE_SIZE));
+                report("group " + name, saves, pages, threads);
+            }
+        } finally {
+            logStore.flush();
+            logStore.destroy();
+        }
+    }
+
+    /**
+     * count 개 작업을 threads 개 thread 로 나눠 실행하고, 작업별 시간(ns)을 정렬해서 반환한다
+     * 마지막 원소 뒤에 전체 실행 시간(ns)을 붙인다
+     */
+    private static long[] run(int count, int threads, IntConsumer task) throws Exception {
+        long[] samples = new long[count + 1];
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long startedAt = System.nanoTime();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int offset = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = offset; i < count; i += threads) {
+                        long begin = System.nanoTime();
+                        task.accept(i);
+                        samples[i] = System.nanoTime() - begin;
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        samples[count] = System.nanoTime() - startedAt;
+        Arrays.sort(samples, 0, count);
+        return samples;
+    }
+
+    private static void report(String name, long[] saves, long[] pages, int threads) {
+        int saveCount = saves.length - 1;
+        int pageCount = pages.length - 1;
+        System.out.printf("%s (%d threads): save %.0f msg/s p50=%dus p99=%dus, first page p50=%dus p99=%dus%n",
+                name, threads, saveCount * 1e9 / saves[saveCount],
+                percentile(saves, saveCount, 50), percentile(saves, saveCount, 99),
+                percentile(pages, pageCount, 50), percentile(pages, pageCount, 99));
+    }
+
+    private static long percentile(long[] sorted, int count, int percent) {
+        int index = Math.min(count - 1, (int) Math.ceil(count * percent / 100.0) - 1);
+        return sorted[Math.max(0, index)] / 1000;
+    }
+}
@@ -0,0 +1,90 @@
+package com.messenger.search;
+
+import com.messenger.domain.Member;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemberSearchIndexTest {
+
+    @Test
+    void prefixSearchMatchesIdOrName() {
+        MemberSearchIndex index = index(member("alice", "Kim Minsu"), member("bob", "Alan Park"), member("carol", "Lee"));
+
+        assertThat(index.search("al", false, null, 10)).containsExactly("alice", "bob");
+        assertThat(index.search("KIM", false, null, 10)).containsExactly("alice");
+        // 접두어 검색은 중간 문자열과 맞지 않는다
+        assertThat(index.search("lice", false, null, 10)).isEmpty();
+    }
+
+    @Test
+    void infixSearchMatchesSubstring() {
+        MemberSearchIndex index = index(member("alice", "Kim Minsu"), member("malice", "Other"), member("bob", "Minsung"));
+
+        assertThat(index.search("lic", true, null, 10)).containsExactly("alice", "malice");
+        assertThat(index.search("minsu", true, null, 10)).containsExactly("alice", "bob");
+        // 3글자 미만은 접두어 검색
+        assertThat(index.search("ma", true, null, 10)).containsExactly("malice");
+    }
+
+    @Test
+    void pagesInIdOrderFromPrevId() {
+        List<String> ids = IntStream.range(0, 500).mapToObj(i -> String.format("user%03d", i)).collect(Collectors.toList());
+        // 추가 순서와 관계없이 id 순으로 반환
+        List<String> shuffled = new ArrayList<>(ids);
+        Collections.shuffle(shuffled, new Random(1));
+        MemberSearchIndex index = new MemberSearchIndex();
+        shuffled.forEach(id -> index.put(member(id, "name")));
+
+        List<String> pages = new ArrayList<>();
+        String prevId = null;
+        while (true) {
+            List<String> page = index.search("user", false, prevId, 37);
+            if (page.isEmpty()) {
+                break;
+            }
+            assertThat(page.size()).isLessThanOrEqualTo(37);
+            pages.addAll(page);
+            prevId = page.get(page.size() - 1);
+        }
+        assertThat(pages).containsExactlyElementsOf(ids);
+
+        // prevId 가 색인에 없는 값이어도 그 다음부터 시작
+        assertThat(index.search("ser", true, "user0995", 2)).containsExactly("user100", "user101");
+    }
+
+    @Test
+    void renameReplacesNameGrams() {
+        MemberSearchIndex index = index(member("dave", "Old Name"));
+
+        index.put(member("dave", "Brand New"));
+
+        assertThat(index.search("old", false, null, 10)).isEmpty();
+        assertThat(index.search("brand", false, null, 10)).containsExactly("dave");
+        assertThat(index.search("and", true, null, 10)).containsExactly("dave");
+
+        // 초기 적재는 갱신된 이름을 덮어쓰지 않는다
+        index.putIfAbsent(member("dave", "Old Name"));
+        assertThat(index.search("brand", false, null, 10)).containsExactly("dave");
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    private static MemberSearchIndex index(Member... members) {
+        MemberSearchIndex index = new MemberSearchIndex();
+        for (Member member : members) {
+            index.put(member);
+        }
+        return index;
+    }
+
+    private static Member member(String id, String name) {
+        return Member.builder().id(id).password("x").name(name).build();
+    }
+}
@@ -0,0 +1,52 @@
+package com.messenger.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IterationAwarePbkdf2PasswordEncoderTest {
+
+    @Test
+    void storesIterationsAndUpgradesWhenTheyChange() {
+        IterationAwarePbkdf2PasswordEncoder oldEncoder = new IterationAwarePbkdf2PasswordEncoder(1000);
+        IterationAwarePbkdf2PasswordEncoder newEncoder = new IterationAwarePbkdf2PasswordEncoder(2000);
+
+        String hash = oldEncoder.encode("secret");
+
+        assertThat(hash).startsWith("1000$");
+        assertThat(oldEncoder.upgradeEncoding(hash)).isFalse();
+        // 설정이 바뀌어도 저장된 반복 횟수로 검증하고, 다시 해시하도록 알린다
+        assertThat(newEncoder.matches("secret", hash)).isTrue();
+        assertThat(newEncoder.matches("wrong", hash)).isFalse();
+        assertThat(newEncoder.upgradeEncoding(hash)).isTrue();
+        assertThat(newEncoder.upgradeEncoding(newEncoder.encode("secret"))).isFalse();
+    }
+
+    @Test
+    void verifiesAndUpgradesHashWithoutIterations() {
+        Pbkdf2PasswordEncoder legacy = new Pbkdf2PasswordEncoder("", 16, 1000, 256);
+        legacy.setAlgorithm(Pbkdf2PasswordEncoder.SecretKeyFactoryAlgorithm.PBKDF2WithHmacSHA256);
+        String hash = legacy.encode("secret");
+
+        IterationAwarePbkdf2PasswordEncoder encoder = new IterationAwarePbkdf2PasswordEncoder(1000);
+
+        assertThat(encoder.matches("secret", hash)).isTrue();
+        assertThat(encoder.upgradeEncoding(hash)).isTrue();
+        assertThat(encoder.matches("secret", "abc$" + hash)).isFalse();
+    }
+
+    @Test
+    void delegatingEncoderRejectsNoop() {
+        PasswordEncoder encoder = new DelegatingPasswordEncoder("pbkdf2",
+                Map.of("pbkdf2", new IterationAwarePbkdf2PasswordEncoder(1000)));
+
+        assertThat(encoder.upgradeEncoding(encoder.encode("secret"))).isFalse();
+        assertThatThrownBy(() -> encoder.matches("secret", "{noop}secret")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
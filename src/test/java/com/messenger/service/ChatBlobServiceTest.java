@@ -0,0 +1,91 @@
+package com.messenger.service;
+
+import com.messenger.blob.ContentBlobStore;
+import com.messenger.domain.Chat;
+import com.messenger.exception.ErrorCode;
+import com.messenger.exception.MyException;
+import com.messenger.repository.PersonalChatRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * embedded 프로필(H2)에서 첨부 파일을 읽을 수 있는 사용자와 참조하지 않는 파일 정리
+ */
+@SpringBootTest
+@ActiveProfiles("embedded")
+class ChatBlobServiceTest {
+
+    @Autowired
+    private ChatBlobService chatBlobService;
+
+    @Autowired
+    private ContentBlobStore contentBlobStore;
+
+    @Autowired
+    private PersonalChatRepository personalChatRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void onlyUploaderAndMessageParticipantsCanReadBlob() {
+        String blobId = upload("bloballice");
+
+        assertThat(chatBlobService.getReadableBlob(blobId, "bloballice").getId()).isEqualTo(blobId);
+        assertNotReadable(blobId, "blobbob");
+
+        personalChatRepository.save(Chat.builder()
+                .senderUserId("bloballice").receiverUserId("blobbob").content("file").blobId(blobId).build(), null);
+
+        assertThat(chatBlobService.getReadableBlob(blobId, "blobbob").getId()).isEqualTo(blobId);
+        assertNotReadable(blobId, "blobeve");
+    }
+
+    @Test
+    void deletesBlobAfterReferencingMessageIsDeleted() {
+        String blobId = upload("blobcarol");
+        long chatId = personalChatRepository.save(Chat.builder()
+                .senderUserId("blobcarol").receiverUserId("blobdave").content("file").blobId(blobId).build(), null).getId();
+        jdbcTemplate.update("UPDATE chat_blob SET created_at = TIMESTAMPADD(DAY, -2, CURRENT_TIMESTAMP) WHERE id = ?", blobId);
+
+        // 참조하는 메시지가 있으면 남긴다
+        chatBlobService.deleteUnreferenced();
+        assertThat(contentBlobStore.find(blobId)).isPresent();
+
+        personalChatRepository.deleteOne(chatId, "blobcarol");
+        chatBlobService.deleteUnreferenced();
+
+        assertThat(contentBlobStore.find(blobId)).isEmpty();
+        assertThatThrownBy(() -> chatBlobService.getBlob(blobId)).isInstanceOf(MyException.class);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM chat_blob_uploader WHERE blob_id = ?", Integer.class, blobId)).isZero();
+    }
+
+    @Test
+    void keepsRecentlyUploadedBlob() {
+        String blobId = upload("blobfrank");
+
+        chatBlobService.deleteUnreferenced();
+
+        assertThat(contentBlobStore.find(blobId)).isPresent();
+    }
+
+    private String upload(String userId) {
+        byte[] content = UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8);
+        return chatBlobService.upload(new ByteArrayInputStream(content), "text/plain", userId).getId();
+    }
+
+    private void assertNotReadable(String blobId, String userId) {
+        assertThatThrownBy(() -> chatBlobService.getReadableBlob(blobId, userId))
+                .isInstanceOfSatisfying(MyException.class, e -> assertThat(e.errorCode).isEqualTo(ErrorCode.NOT_FOUND_BLOB));
+    }
+}
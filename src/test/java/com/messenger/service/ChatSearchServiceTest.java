@@ -0,0 +1,148 @@
+package com.messenger.service;
+
+import com.messenger.domain.Chat;
+import com.messenger.domain.ChatRoomType;
+import com.messenger.domain.GroupChat;
+import com.messenger.dto.search.ChatSearchHit;
+import com.messenger.repository.PersonalChatRepository;
+import com.messenger.search.ChatSearchIndex;
+import com.messenger.util.Pair;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * embedded 프로필(H2)에서 메시지 검색 색인의 증분 반영, 검색 범위, 페이지, 삭제, 재생성 확인
+ */
+@SpringBootTest
+@ActiveProfiles("embedded")
+class ChatSearchServiceTest {
+
+    @Autowired
+    private ChatSearchService chatSearchService;
+
+    @Autowired
+    private ChatSearchIndex chatSearchIndex;
+
+    @Autowired
+    private PersonalChatRepository personalChatRepository;
+
+    /**
+     * 다른 테스트와 같은 context 를 쓰므로, 시작할 때 빈 색인을 다시 만드는 작업이 끝난 뒤에 시작한다
+     */
+    @BeforeEach
+    void awaitStartupRebuild() throws InterruptedException {
+        awaitRebuild();
+    }
+
+    @Test
+    void indexedPersonalChatIsVisibleOnlyToParticipants() {
+        Chat chat = save("srchalice", "srchbob", "zebrafish migration notes");
+        chatSearchService.onSaved(chat);
+        chatSearchIndex.refresh();
+
+        assertThat(search("zebrafish", "srchalice", List.of())).extracting(ChatSearchHit::getChatId).containsExactly(chat.getId());
+        assertThat(search("zebrafish", "srchbob", List.of())).extracting(ChatSearchHit::getChatId).containsExactly(chat.getId());
+        assertThat(search("zebrafish", "srchmallory", List.of())).isEmpty();
+    }
+
+    @Test
+    void groupChatIsVisibleToRoomMembers() {
+        GroupChat chat = GroupChat.builder()
+                .id(800_000_001L)
+                .senderUserId("srchalice")
+                .roomId(800_001L)
+                .content("narwhal sighting")
+                .build();
+        chatSearchService.onSaved(chat);
+        chatSearchIndex.refresh();
+
+        List<ChatSearchHit> hits = search("narwhal", "srchcarol", List.of(800_001L));
+        assertThat(hits).extracting(ChatSearchHit::getType).containsExactly(ChatRoomType.GROUP);
+        assertThat(hits).extracting(ChatSearchHit::getRoomId).containsExactly(800_001L);
+        assertThat(search("narwhal", "srchcarol", List.of(800_002L))).isEmpty();
+    }
+
+    @Test
+    void pagesThroughAllHitsWithCursor() {
+        for (int i = 0; i < 5; i++) {
+            chatSearchService.onSaved(save("srchpager", "srchpeer", "axolotl page " + i));
+        }
+        chatSearchIndex.refresh();
+
+        Set<Long> seen = new HashSet<>();
+        List<Long> ordered = new ArrayList<>();
+        String cursor = null;
+        do {
+            Pair<List<ChatSearchHit>, String> page = chatSearchIndex.search("axolotl", "srchpager", List.of(), cursor, 2);
+            page.getFirst().forEach(hit -> {
+                seen.add(hit.getChatId());
+                ordered.add(hit.getChatId());
+            });
+            cursor = page.getSecond();
+        } while (cursor != null);
+
+        assertThat(ordered).hasSize(5);
+        assertThat(seen).hasSize(5);
+    }
+
+    @Test
+    void deletedChatIsRemovedFromIndex() {
+        Chat chat = save("srchdel", "srchpeer", "platypus secret");
+        chatSearchService.onSaved(chat);
+        chatSearchIndex.refresh();
+        assertThat(search("platypus", "srchdel", List.of())).hasSize(1);
+
+        personalChatRepository.deleteOne(chat.getId(), "srchdel");
+        chatSearchService.onDeleted(ChatRoomType.PERSONAL, List.of(chat.getId()));
+        chatSearchIndex.refresh();
+
+        assertThat(search("platypus", "srchdel", List.of())).isEmpty();
+    }
+
+    @Test
+    void rebuildIndexesStoredChatsAndSkipsDeleted() throws Exception {
+        // 색인하지 않고 DB 에만 저장
+        Chat kept = save("srchrebuild", "srchpeer", "quokka kept");
+        Chat deleted = save("srchrebuild", "srchpeer", "quokka deleted");
+        personalChatRepository.deleteOne(deleted.getId(), "srchrebuild");
+        assertThat(search("quokka", "srchrebuild", List.of())).isEmpty();
+
+        assertThat(chatSearchService.startRebuild()).isTrue();
+        awaitRebuild();
+
+        assertThat(search("quokka", "srchrebuild", List.of())).extracting(ChatSearchHit::getChatId).containsExactly(kept.getId());
+        // 동기 재생성도 같은 결과
+        assertThat(chatSearchService.rebuild()).isPositive();
+        assertThat(search("quokka", "srchrebuild", List.of())).extracting(ChatSearchHit::getChatId).containsExactly(kept.getId());
+    }
+
+    private void awaitRebuild() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (chatSearchService.isRebuilding() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(chatSearchService.isRebuilding()).isFalse();
+    }
+
+    private List<ChatSearchHit> search(String text, String userId, List<Long> roomIds) {
+        return chatSearchIndex.search(text, userId, roomIds, null, 20).getFirst();
+    }
+
+    private Chat save(String senderUserId, String receiverUserId, String content) {
+        return personalChatRepository.save(Chat.builder()
+                .senderUserId(senderUserId)
+                .receiverUserId(receiverUserId)
+                .content(content)
+                .build(), null);
+    }
+}
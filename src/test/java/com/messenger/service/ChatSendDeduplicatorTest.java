@@ -0,0 +1,181 @@
+package com.messenger.service;
+
+import com.messenger.domain.ChatRoomType;
+import com.messenger.exception.ErrorCode;
+import com.messenger.exception.MyException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 클라이언트가 같은 clientMessageId 로 여러 번 재전송해도 DB 에는 한 번만 저장되고
+ * 모든 요청이 처음 저장한 메시지를 받는지 확인
+ * DB 는 unique key 를 흉내 내는 map 으로 대신한다
+ */
+class ChatSendDeduplicatorTest {
+
+    private static final int THREADS = 32;
+
+    private final AtomicLong clock = new AtomicLong();
+    private final FakeTable table = new FakeTable();
+
+    @Test
+    void concurrentRetriesSaveOnce() throws Exception {
+        ChatSendDeduplicator deduplicator = deduplicator(1000);
+
+        List<Long> results = retryConcurrently(List.of(deduplicator), "client-1");
+
+        assertThat(table.inserts.get()).isEqualTo(1);
+        assertThat(results).hasSize(THREADS).containsOnly(results.get(0));
+    }
+
+    @Test
+    void concurrentRetriesOnTwoServersSaveOnce() throws Exception {
+        // 서버마다 기록이 따로 있으므로 다른 서버로 간 재전송은 unique key 로 막는다
+        List<ChatSendDeduplicator> servers = List.of(deduplicator(1000), deduplicator(1000));
+
+        List<Long> results = retryConcurrently(servers, "client-2");
+
+        assertThat(table.inserts.get()).isEqualTo(1);
+        assertThat(results).hasSize(THREADS).containsOnly(results.get(0));
+    }
+
+    @Test
+    void retryAfterWindowExpiredIsFoundInDatabase() {
+        ChatSendDeduplicator deduplicator = deduplicator(1000);
+
+        long first = send(deduplicator, "client-3");
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(11));
+        long second = send(deduplicator, "client-3");
+
+        assertThat(second).isEqualTo(first);
+        assertThat(table.inserts.get()).isEqualTo(1);
+        assertThat(table.duplicates.get()).isEqualTo(1);
+    }
+
+    @Test
+    void retryAfterFailedSendSavesAgain() {
+        ChatSendDeduplicator deduplicator = deduplicator(1000);
+        table.failNext.set(true);
+
+        assertThatThrownBy(() -> send(deduplicator, "client-4")).isInstanceOf(MyException.class);
+        long saved = send(deduplicator, "client-4");
+
+        assertThat(table.find("client-4")).contains(saved);
+        assertThat(table.inserts.get()).isEqualTo(1);
+    }
+
+    @Test
+    void windowIsBounded() {
+        ChatSendDeduplicator deduplicator = deduplicator(100);
+        for (int i = 0; i < 1000; i++) {
+            send(deduplicator, "client-bounded-" + i);
+        }
+
+        assertThat(deduplicator.size()).isLessThanOrEqualTo(100);
+        // 기록에서 빠진 id 도 다시 저장하지 않는다
+        send(deduplicator, "client-bounded-0");
+        assertThat(table.inserts.get()).isEqualTo(1000);
+    }
+
+    @Test
+    void sendWithoutClientMessageIdAlwaysSaves() {
+        ChatSendDeduplicator deduplicator = deduplicator(1000);
+
+        long first = send(deduplicator, null);
+        long second = send(deduplicator, null);
+
+        assertThat(second).isNotEqualTo(first);
+        assertThat(table.inserts.get()).isEqualTo(2);
+    }
+
+    private ChatSendDeduplicator deduplicator(int windowSize) {
+        return new ChatSendDeduplicator(windowSize, 600_000, 4, new SimpleMeterRegistry(), clock::get);
+    }
+
+    private List<Long> retryConcurrently(List<ChatSendDeduplicator> servers, String clientMessageId) throws Exception {
+        // 저장에 시간이 걸리는 동안 재전송이 겹치도록
+        table.delayMillis = 20;
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            ChatSendDeduplicator server = servers.get(i % servers.size());
+            futures.add(executor.submit(() -> {
+                start.await();
+                return send(server, clientMessageId);
+            }));
+        }
+        start.countDown();
+
+        List<Long> results = new ArrayList<>();
+        for (Future<Long> future : futures) {
+            results.add(future.get(10, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        return results;
+    }
+
+    private long send(ChatSendDeduplicator deduplicator, String clientMessageId) {
+        return deduplicator.send(ChatRoomType.PERSONAL, "sender", clientMessageId,
+                () -> table.insert(clientMessageId),
+                () -> table.find(clientMessageId));
+    }
+
+    /**
+     * (sender_user_id, client_message_id) unique key 가 있는 테이블
+     */
+    private static final class FakeTable {
+        private final ConcurrentHashMap<String, Long> rows = new ConcurrentHashMap<>();
+        private final AtomicLong sequence = new AtomicLong();
+        private final AtomicInteger inserts = new AtomicInteger();
+        private final AtomicInteger duplicates = new AtomicInteger();
+        private final AtomicBoolean failNext = new AtomicBoolean();
+        private volatile long delayMillis;
+
+        private long insert(String clientMessageId) {
+            if (failNext.compareAndSet(true, false)) {
+                throw new MyException(ErrorCode.FAIL_SAVE_CHAT);
+            }
+            pause(delayMillis);
+            long id = sequence.incrementAndGet();
+            if (clientMessageId != null && rows.putIfAbsent(clientMessageId, id) != null) {
+                duplicates.incrementAndGet();
+                throw new DuplicateKeyException("uk_personal_chat_client_message_id");
+            }
+            inserts.incrementAndGet();
+            return id;
+        }
+
+        private Optional<Long> find(String clientMessageId) {
+            return Optional.ofNullable(rows.get(clientMessageId));
+        }
+
+        private static void pause(long millis) {
+            if (millis <= 0) {
+                return;
+            }
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.messenger.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.messenger.dto.chat.SendPersonalChatRequest;
+import com.messenger.jwt.TokenProvider;
+import com.messenger.service.ChatEventStreamService;
+import com.messenger.service.PersonalChatService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * SSE 이벤트 스트림 (embedded 프로필, 실제 HTTP 연결)
+ *
+ * soak 테스트는 기본 빌드에서 제외된다
+ *   ./gradlew test -Psoak -Dsoak.connections=2000 -Dsoak.messages=20 -Dsoak.duration-ms=600000
+ * 클라이언트와 서버가 같은 JVM 이므로 연결마다 파일 디스크립터 2개가 필요하다 (ulimit -n 확인)
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"chat.rate-limit.enabled=false", "chat.sse.heartbeat-interval-ms=1000", "chat.sse.heartbeat-buckets=4"})
+@ActiveProfiles("embedded")
+class ChatEventStreamSoakTest {
+
+    private static final List<GrantedAuthority> USER = List.of(new SimpleGrantedAuthority("ROLE_USER"));
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TokenProvider tokenProvider;
+
+    @Autowired
+    private PersonalChatService personalChatService;
+
+    @Autowired
+    private ChatEventStreamService chatEventStreamService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .build();
+
+    @Test
+    void resumesFromLastEventIdAndSendsReadReceipts() throws Exception {
+        EventStream receiver = open("ssereceiver", null);
+        EventStream sender = open("ssesender", null);
+        assertThat(receiver.ready.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(sender.ready.await(10, TimeUnit.SECONDS)).isTrue();
+
+        for (int i = 0; i < 3; i++) {
+            send("ssesender", "ssereceiver", "live " + i);
+        }
+        await(() -> receiver.personal.get() == 3, 10_000);
+        String lastEventId = receiver.lastEventId;
+        receiver.close();
+
+        // 연결이 끊긴 동안 보낸 메시지는 재연결할 때 ready 전에 받는다
+        send("ssesender", "ssereceiver", "missed 0");
+        send("ssesender", "ssereceiver", "missed 1");
+        EventStream resumed = open("ssereceiver", lastEventId);
+        assertThat(resumed.ready.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(resumed.personalBeforeReady).isEqualTo(2);
+
+        // 받은 사람이 읽으면 보낸 사람에게 read 이벤트
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("ssereceiver", "", USER));
+        try {
+            personalChatService.markPersonalChatAsReadByGroup("ssereceiver", "ssesender");
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+        await(() -> sender.read.get() == 1, 10_000);
+        assertThat(sender.personal.get()).isZero();
+
+        resumed.close();
+        sender.close();
+    }
+
+    @Test
+    @Tag("soak")
+    void manyIdleStreamsReceiveEveryMessageWithoutThreadPerConnection() throws Exception {
+        int connections = Integer.getInteger("soak.connections", 300);
+        int messages = Integer.getInteger("soak.messages", 10);
+        long durationMillis = Long.getLong("soak.duration-ms", 10_000L);
+
+        int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+        List<EventStream> streams = new ArrayList<>();
+        for (int i = 0; i < connections; i++) {
+            streams.add(open(userId(i), null));
+        }
+        for (EventStream stream : streams) {
+            assertThat(stream.ready.await(60, TimeUnit.SECONDS)).isTrue();
+        }
+        assertThat(chatEventStreamService.size()).isEqualTo(connections);
+        // 연결마다 thread 를 쓰지 않는다 (HttpClient, Tomcat 의 공용 thread 만 늘어난다)
+        int threadsOpen = ManagementFactory.getThreadMXBean().getThreadCount();
+        assertThat(threadsOpen - threadsBefore).isLessThan(Math.max(50, connections / 10));
+
+        ExecutorService senders = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < connections; i++) {
+            String receiverId = userId(i);
+            futures.add(senders.submit(() -> {
+                for (int m = 0; m < messages; m++) {
+                    send("soaksender", receiverId, "soak " + m);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(120, TimeUnit.SECONDS);
+        }
+        senders.shutdown();
+        await(() -> streams.stream().allMatch(s -> s.personal.get() == messages), 120_000);
+
+        // 유휴 상태로 유지하면서 heartbeat 를 받고 연결이 끊기지 않는지 확인
+        Thread.sleep(durationMillis);
+        assertThat(streams).allMatch(s -> s.heartbeats.get() > 0);
+        assertThat(streams).allMatch(s -> s.personal.get() == messages);
+        assertThat(chatEventStreamService.size()).isEqualTo(connections);
+
+        // 클라이언트가 끊으면 다음 heartbeat 에서 정리된다
+        streams.forEach(EventStream::close);
+        await(() -> chatEventStreamService.size() == 0, 30_000);
+    }
+
+    private static String userId(int i) {
+        return String.format("soakuser%05d", i);
+    }
+
+    private void send(String senderId, String receiverId, String content) throws Exception {
+        SendPersonalChatRequest request = objectMapper.readValue(
+                objectMapper.writeValueAsString(java.util.Map.of("receiverUserId", receiverId, "content", content)),
+                SendPersonalChatRequest.class);
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(senderId, "", USER));
+        try {
+            personalChatService.sendPersonalChat(request);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    private EventStream open(String userId, String lastEventId) {
+        String token = tokenProvider.createToken(userId, USER, UUID.randomUUID().toString()).getAccessToken();
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/v1/events"))
+                .header("Accept", "text/event-stream")
+                .header("Authorization", "Bearer " + token);
+        if (lastEventId != null) {
+            request.header("Last-Event-ID", lastEventId);
+        }
+        EventStream stream = new EventStream();
+        httpClient.sendAsync(request.build(), HttpResponse.BodyHandlers.fromLineSubscriber(stream));
+        return stream;
+    }
+
+    private static void await(BooleanSupplier condition, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("condition not met in %d ms", timeoutMillis).isLessThan(deadline);
+            Thread.sleep(50);
+        }
+    }
+
+    /**
+     * text/event-stream 을 한 줄씩 읽어서 이벤트 종류별로 센다
+     */
+    private static final class EventStream implements Flow.Subscriber<String> {
+        private final CountDownLatch ready = new CountDownLatch(1);
+        private final AtomicInteger personal = new AtomicInteger();
+        private final AtomicInteger read = new AtomicInteger();
+        private final AtomicInteger heartbeats = new AtomicInteger();
+        private volatile int personalBeforeReady = -1;
+        private volatile String lastEventId;
+        private volatile Flow.Subscription subscription;
+        private String event;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(String line) {
+            if (line.startsWith(":")) {
+                heartbeats.incrementAndGet();
+            } else if (line.startsWith("event:")) {
+                event = line.substring("event:".length()).trim();
+            } else if (line.startsWith("id:")) {
+                lastEventId = line.substring("id:".length()).trim();
+            } else if (line.isEmpty() && event != null) {
+                switch (event) {
+                    case ChatEventStreamService.EVENT_READY:
+                        personalBeforeReady = personal.get();
+                        ready.countDown();
+                        break;
+                    case ChatEventStreamService.EVENT_PERSONAL:
+                        personal.incrementAndGet();
+                        break;
+                    case ChatEventStreamService.EVENT_READ:
+                        read.incrementAndGet();
+                        break;
+                    default:
+                        break;
+                }
+                event = null;
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+
+        private void close() {
+            if (subscription != null) {
+                subscription.cancel();
+            }
+        }
+    }
+}